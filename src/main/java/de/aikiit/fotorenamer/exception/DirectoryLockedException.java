@@ -0,0 +1,44 @@
+/*
+Copyright 2011, Aiki IT, FotoRenamer
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package de.aikiit.fotorenamer.exception;
+
+import org.apache.log4j.Logger;
+
+import java.io.File;
+
+/**
+ * Exception that indicates that a directory is already being processed by
+ * another run, either within this application or by another process.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+public class DirectoryLockedException extends Exception {
+    /**
+     * Logger.
+     */
+    private static final Logger LOG =
+            Logger.getLogger(DirectoryLockedException.class);
+
+    /**
+     * Provide error messages for one directory.
+     *
+     * @param directory Locked directory.
+     */
+    public DirectoryLockedException(final File directory) {
+        super(directory == null ? "null" : directory.getAbsolutePath());
+        LOG.error("directory is locked: " + directory);
+    }
+}
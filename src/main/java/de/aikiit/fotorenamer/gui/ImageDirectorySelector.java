@@ -192,9 +192,7 @@ class ImageDirectorySelector extends JPanel {
 
                             // perform renaming
                             try {
-                                CreationDateFromExifImageRenamer renamer =
-                                        new CreationDateFromExifImageRenamer(getSelectedDirectory());
-                                new Thread(renamer).start();
+                                new CreationDateFromExifImageRenamer(getSelectedDirectory()).run();
                             } catch (InvalidDirectoryException uv) {
                                 LOG.info("Invalid directory selected: {}", uv.getMessage());
                                 showErrorPopup(getParameterizedBundleString("fotorenamer.ui.error.invaliddirectory", uv.getMessage()), getBundleString("fotorenamer.ui.error.invaliddirectory.title"));
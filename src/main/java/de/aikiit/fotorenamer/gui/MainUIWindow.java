@@ -20,6 +20,7 @@ import de.aikiit.fotorenamer.exception.NoFilesFoundException;
 import de.aikiit.fotorenamer.image.CreationDateFromExifImageRenamer;
 import de.aikiit.fotorenamer.image.RemoveExifPrefixRenamer;
 import de.aikiit.fotorenamer.util.ComponentGaugeUtil;
+import de.aikiit.fotorenamer.util.JobExecutor;
 import de.aikiit.fotorenamer.util.Version;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -28,9 +29,12 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.File;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 import static de.aikiit.fotorenamer.util.LocalizationHelper.getBundleString;
 import static de.aikiit.fotorenamer.util.LocalizationHelper.getParameterizedBundleString;
@@ -65,6 +69,11 @@ public final class MainUIWindow extends JFrame implements ActionListener {
     private static final String IMAGE_LOCATION =
             File.separator + "image" + File.separator + "miniCamera.png";
 
+    /**
+     * Maximum time to wait for running jobs when the application exits.
+     */
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
     /**
      * Component containing the help window of this application.
      */
@@ -115,7 +124,13 @@ public final class MainUIWindow extends JFrame implements ActionListener {
 
         this.setTitle(getParameterizedBundleString("fotorenamer.ui.main.title", os));
         this.getContentPane().setLayout(new BorderLayout());
-        this.setDefaultCloseOperation(EXIT_ON_CLOSE);
+        this.setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+        this.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(final WindowEvent e) {
+                exit();
+            }
+        });
 
         // select directory
         JPanel verzeichnis = new JPanel(new BorderLayout());
@@ -172,8 +187,7 @@ public final class MainUIWindow extends JFrame implements ActionListener {
         Object source = event.getSource();
         // end
         if (this.endButton.equals(source)) {
-            LOG.info("Bye Bye :-)");
-            System.exit(0);
+            exit();
         } else if (this.helpButton.equals(source)) {
             LOG.info("Displaying help window.");
             showHelpWindow();
@@ -203,16 +217,14 @@ public final class MainUIWindow extends JFrame implements ActionListener {
                         if (goButton.equals(source)) {
                             goButton.setEnabled(false);
                             goButton.setText(getBundleString("fotorenamer.ui.main.progress"));
-                            CreationDateFromExifImageRenamer renamer =
-                                    new CreationDateFromExifImageRenamer(
-                                            imageDirectorySelector.getSelectedDirectory()
-                                    );
-                            new Thread(renamer).start();
+                            new CreationDateFromExifImageRenamer(
+                                    imageDirectorySelector.getSelectedDirectory()
+                            ).run();
                         } else {
                             revertButton.setEnabled(false);
                             revertButton.setText(getBundleString("fotorenamer.ui.main.progress"));
                             new RemoveExifPrefixRenamer(
-                                    imageDirectorySelector.getSelectedDirectory());
+                                    imageDirectorySelector.getSelectedDirectory()).run();
                         }
                     } catch (InvalidDirectoryException uv) {
                         LOG.info("Invalid directory selected: {}", uv.getMessage());
@@ -245,6 +257,28 @@ public final class MainUIWindow extends JFrame implements ActionListener {
         }
     }
 
+    /**
+     * Stops all renaming jobs in an orderly fashion before the application
+     * exits, so that no run is interrupted in the middle of a file.
+     */
+    private void exit() {
+        this.endButton.setEnabled(false);
+        this.goButton.setEnabled(false);
+        this.revertButton.setEnabled(false);
+        new SwingWorker<Boolean, Void>() {
+            @Override
+            protected Boolean doInBackground() {
+                return JobExecutor.getDefault().shutdown(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+
+            @Override
+            protected void done() {
+                LOG.info("Bye Bye :-)");
+                System.exit(0);
+            }
+        }.execute();
+    }
+
     /**
      * Helper to enable visibility of help window.
      *
@@ -0,0 +1,79 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.gui;
+
+import de.aikiit.fotorenamer.image.FileResult;
+import de.aikiit.fotorenamer.image.RenameFlow;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Subscriber that shows the per-file results of a renaming run in a
+ * {@link ProgressBar}. It requests one result at a time, so the UI delay of
+ * the progress bar throttles the run.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+public final class ProgressSubscriber implements RenameFlow.Subscriber<FileResult> {
+    /**
+     * Logger for this class.
+     */
+    private static final Logger LOG = LogManager.getLogger(ProgressSubscriber.class);
+
+    /**
+     * Progress bar to update.
+     */
+    private final ProgressBar progressBar;
+    /**
+     * Subscription to request further results with.
+     */
+    private RenameFlow.Subscription subscription = null;
+
+    /**
+     * Creates a subscriber for the given progress bar.
+     *
+     * @param progressBar Progress bar to update.
+     */
+    public ProgressSubscriber(final ProgressBar progressBar) {
+        this.progressBar = progressBar;
+    }
+
+    @Override
+    public void onSubscribe(final RenameFlow.Subscription newSubscription) {
+        this.subscription = newSubscription;
+        this.subscription.request(1);
+    }
+
+    @Override
+    public void onNext(final FileResult item) {
+        // update progress bar (names have a different length)
+        progressBar.setProgress();
+        progressBar.setText(item.getSource().getName());
+        progressBar.updateUI();
+        subscription.request(1);
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+        LOG.error("Renaming failed: {}", throwable.getMessage());
+    }
+
+    @Override
+    public void onComplete() {
+        LOG.debug("All results received.");
+    }
+}
@@ -16,36 +16,30 @@
 package de.aikiit.fotorenamer.image;
 
 import com.google.common.base.MoreObjects;
-import com.google.common.collect.Lists;
+import de.aikiit.fotorenamer.exception.DirectoryLockedException;
 import de.aikiit.fotorenamer.exception.InvalidDirectoryException;
 import de.aikiit.fotorenamer.exception.NoFilesFoundException;
 import de.aikiit.fotorenamer.gui.ProgressBar;
-import lombok.AccessLevel;
-import lombok.NoArgsConstructor;
+import de.aikiit.fotorenamer.gui.ProgressSubscriber;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import javax.swing.*;
 import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.util.List;
-import java.util.function.Consumer;
-import java.util.function.Predicate;
+import java.util.concurrent.ExecutionException;
 
 import static de.aikiit.fotorenamer.util.LocalizationHelper.getBundleString;
 import static de.aikiit.fotorenamer.util.LocalizationHelper.getParameterizedBundleString;
 
 /**
- * Abstract class that handles image renaming and file handling.
+ * Abstract class that connects the {@link RenameEngine} with the UI.
  * <br>
- * The onliest abstract method generates a filename from a given file
- * and should be used to provide different strategies for image renaming.
+ * Subclasses define the {@link RenameMode} and thereby the strategy of
+ * image renaming, this class shows the progress and the outcome of a run.
  *
  * @author hirsch
  * @version 2011-03-22, 11:43
  */
-@NoArgsConstructor(access = AccessLevel.PRIVATE)
 abstract class AbstractImageRenamer implements Runnable {
 
     /**
@@ -54,125 +48,131 @@ abstract class AbstractImageRenamer implements Runnable {
     private static final Logger LOG = LogManager.getLogger(AbstractImageRenamer.class);
 
     /**
-     * The currently selected directory to work on.
+     * Engine shared by all UI renamers.
      */
-    private File currentDirectory = null;
+    private static final RenameEngine ENGINE = new RenameEngine();
+
     /**
-     * The list of all relevant files in the current directory.
+     * The currently selected directory to work on.
      */
-    private List<File> imageList = null;
-
+    private final File currentDirectory;
     /**
-     * Progress bar for visual feedback of what's going on.
+     * Handle of the prepared renaming job.
      */
-    private ProgressBar progressBar = null;
+    private final RenameHandle handle;
     /**
-     * Number of files that need processing.
+     * Prefix of the bundle keys for dialog titles.
      */
-    private int amountOfFiles = 0;
+    private final String titleKeyPrefix;
 
     /**
-     * Starts image processing on the given directory if it contains
-     * relevant images. The strategy of renaming is defined by
-     * subclasses implementation of @see #renameImage(File).
+     * Prepares image processing on the given directory if it contains
+     * relevant images.
      *
-     * @param directory Name of directory to work on.
+     * @param directory      Name of directory to work on.
+     * @param mode           Strategy to derive new filenames.
+     * @param errorBudget    Maximum amount of errors before the run is aborted.
+     * @param titleKeyPrefix Prefix of the bundle keys for dialog titles.
      * @throws InvalidDirectoryException If there's a problem with
      *                                   the selected directory.
      * @throws NoFilesFoundException     If the selected directory is empty.
      */
-    AbstractImageRenamer(final String directory) throws InvalidDirectoryException, NoFilesFoundException {
+    AbstractImageRenamer(final String directory, final RenameMode mode, final ErrorBudget errorBudget,
+                         final String titleKeyPrefix) throws InvalidDirectoryException, NoFilesFoundException {
 
         if (directory == null) {
             throw new InvalidDirectoryException("null is not a directory");
         }
 
         this.currentDirectory = new File(directory);
-        if (!this.currentDirectory.isDirectory()) {
-            throw new InvalidDirectoryException(this.currentDirectory);
-        }
-
-        // retrieve relevant images in directory
-        File[] files = this.currentDirectory.listFiles(new ImageFilenameFilter());
-        if (files == null || files.length == 0) {
-            throw new NoFilesFoundException(this.currentDirectory);
-        }
-        this.imageList = Lists.newArrayList(files);
-        this.amountOfFiles = this.imageList.size();
-    }
-
-    /**
-     * Performs the actual/technical renaming.
-     */
-    private void renameFiles() {
-        LOG.info("Starting to rename {} files.", this.amountOfFiles);
-
-        Consumer<File> consumer = file -> {
-            // extract EXIF data and fetch target filename
-            String targetFilename = renameImage(file);
-
-            // update progress bar (names have a different length)
-            progressBar.setProgress();
-            progressBar.setText(file.getName());
-            progressBar.updateUI();
-
-            // TODO add second progressbar or counter for errors
-            try {
-                Files.move(file.toPath(), new File(file.getParent(), targetFilename).toPath());
-            } catch (IOException e) {
-                LOG.error("Unable to rename '{}' to '{}'", file.getName(), targetFilename);
-            }
-        };
-        Predicate<File> fileOnly = file -> file != null && file.isFile();
-
-        this.imageList.parallelStream().filter(fileOnly).forEach(consumer);
+        this.titleKeyPrefix = titleKeyPrefix;
+        this.handle = ENGINE.prepare(RenameJob.builder(this.currentDirectory)
+                .mode(mode)
+                .errorBudget(errorBudget)
+                .build());
     }
 
     /**
-     * This method provides a strategy to rename image files when
-     * iterating over a list of files.
-     * It is called during image processing.
+     * Returns the handle of the underlying renaming job.
      *
-     * @param imageFile Filename to renameFiles according to the subclass
-     *                  implementation.
-     * @return New filename for the given file.
+     * @return handle of this renamer's job.
      */
-    protected abstract String renameImage(File imageFile);
+    final RenameHandle getHandle() {
+        return this.handle;
+    }
 
     /**
      * Performs the renaming and updates the UI. All error handling is done in
-     * other methods.
+     * other methods. This method blocks until the run is finished and must
+     * not be called on the event dispatch thread.
      *
-     * @see #renameFiles()
+     * @see RenameEngine
      */
     public final void run() {
-        this.progressBar = new ProgressBar(this.amountOfFiles);
+        ProgressBar progressBar = new ProgressBar(this.handle.getFileCount());
+        this.handle.getResults().subscribe(new ProgressSubscriber(progressBar));
 
+        RenameResult result = null;
         try {
-            renameFiles();
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(null, getParameterizedBundleString("fotorenamer.ui.rename.error", MoreObjects.firstNonNull(e.getMessage(), e.getClass().getSimpleName())), getBundleString("fotorenamer.ui.rename.error.title"), JOptionPane.ERROR_MESSAGE);
-
-            this.amountOfFiles = 0;
+            result = this.handle.start().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.handle.cancel();
+            LOG.warn("Interrupted while renaming files in {}", this.currentDirectory);
+        } catch (ExecutionException e) {
+            Throwable cause = MoreObjects.firstNonNull(e.getCause(), e);
+            if (cause instanceof DirectoryLockedException) {
+                progressBar.dispose();
+                JOptionPane.showMessageDialog(null, getParameterizedBundleString("fotorenamer.ui.error.locked", cause.getMessage()), getBundleString("fotorenamer.ui.error.locked.title"), JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            JOptionPane.showMessageDialog(null, getParameterizedBundleString("fotorenamer.ui.rename.error", MoreObjects.firstNonNull(cause.getMessage(), cause.getClass().getSimpleName())), getBundleString(this.titleKeyPrefix + ".error.title"), JOptionPane.ERROR_MESSAGE);
         } finally {
-            this.progressBar.dispose();
+            progressBar.dispose();
         }
 
+        showSummary(result);
+    }
+
+    /**
+     * Shows the outcome of a run.
+     *
+     * @param result Result of the run, {@code null} if it failed.
+     */
+    private void showSummary(final RenameResult result) {
         // show UI-notification
+        long renamedFiles = result == null ? 0 : result.getStatistics().getRenamed();
         StringBuilder notification = new StringBuilder();
-        switch (this.amountOfFiles) {
-            case 0:
-                notification.append(getParameterizedBundleString("fotorenamer.ui.rename.success.message.none", this.currentDirectory.getName()));
-                break;
-            case 1:
-                notification.append(getParameterizedBundleString("fotorenamer.ui.rename.success.message.one", this.currentDirectory.getName()));
-                break;
-            default:
-                notification.append(getParameterizedBundleString("fotorenamer.ui.rename.success.message", this.amountOfFiles, this.currentDirectory.getName()));
-                break;
+        if (renamedFiles == 0) {
+            notification.append(getParameterizedBundleString("fotorenamer.ui.rename.success.message.none", this.currentDirectory.getName()));
+        } else if (renamedFiles == 1) {
+            notification.append(getParameterizedBundleString("fotorenamer.ui.rename.success.message.one", this.currentDirectory.getName()));
+        } else {
+            notification.append(getParameterizedBundleString("fotorenamer.ui.rename.success.message", renamedFiles, this.currentDirectory.getName()));
         }
 
         notification.append("\n\n");
-        JOptionPane.showMessageDialog(null, notification.toString(), getBundleString("fotorenamer.ui.rename.success.title"), JOptionPane.INFORMATION_MESSAGE);
+        if (result != null && result.getStatistics().getKnown() > 0) {
+            notification.append(getParameterizedBundleString("fotorenamer.ui.rename.known", result.getStatistics().getKnown()));
+            notification.append("\n\n");
+        }
+        int messageType = JOptionPane.INFORMATION_MESSAGE;
+        if (result != null && result.getStatistics().getErrorCount() > 0) {
+            RenameStatistics statistics = result.getStatistics();
+            notification.append(getParameterizedBundleString("fotorenamer.ui.rename.failures",
+                    statistics.getErrors(ErrorCategory.NO_EXIF),
+                    statistics.getErrors(ErrorCategory.PARSE_ERROR),
+                    statistics.getErrors(ErrorCategory.MOVE_FAILED),
+                    statistics.getErrors(ErrorCategory.COLLISION),
+                    result.getReport() == null ? "-" : result.getReport().getAbsolutePath()));
+            notification.append("\n\n");
+            messageType = JOptionPane.WARNING_MESSAGE;
+        }
+        if (result != null && result.isAborted()) {
+            notification.append(getParameterizedBundleString("fotorenamer.ui.rename.aborted", result.getJob().getErrorBudget(), result.getStatistics().getSkipped()));
+            notification.append("\n\n");
+            messageType = JOptionPane.ERROR_MESSAGE;
+        }
+        JOptionPane.showMessageDialog(null, notification.toString(), getBundleString(this.titleKeyPrefix + ".success.title"), messageType);
     }
 }
@@ -0,0 +1,374 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.collect.Lists;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of file operations in flight and adapts the limit to
+ * the observed throughput and latency of the storage device.
+ * <br>
+ * The controller works like TCP congestion control (AIMD): starting from a
+ * small limit it doubles the limit per sampling window ("slow start") until
+ * the latency rises noticeably above that of an unloaded device without a
+ * gain in throughput. From then on the limit is raised by one per window
+ * and lowered by a quarter whenever latency indicates queueing within the
+ * device. Thereby it settles near the knee of the device's throughput
+ * curve: a few operations for a USB disk, dozens for a network filer.
+ * <br>
+ * Only time spent on the storage counts as latency: limiters, the memory
+ * budget and slow subscribers report their waits via {@link #waited(long)},
+ * which are subtracted from the duration of a task.
+ * <br>
+ * Decisions are logged at debug level and exposed via
+ * {@link AdaptiveLimitMXBean}.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+final class AdaptiveLimit implements AdaptiveLimitMXBean {
+    /**
+     * Logger for this class.
+     */
+    private static final Logger LOG = LogManager.getLogger(AdaptiveLimit.class);
+
+    /**
+     * Domain and type of the registered management beans.
+     */
+    static final String OBJECT_NAME = "de.aikiit.fotorenamer:type=AdaptiveLimit,id=";
+
+    /**
+     * Latency above this multiple of the baseline indicates queueing.
+     */
+    private static final double CONGESTION_LATENCY = 1.5;
+    /**
+     * A throughput gain above this factor justifies higher latency.
+     */
+    private static final double THROUGHPUT_GAIN = 1.1;
+    private static final double DECREASE_FACTOR = 0.75;
+    /**
+     * Minimum number of completions per sampling window.
+     */
+    private static final int MIN_WINDOW = 8;
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private static final AtomicInteger IDS = new AtomicInteger();
+    /**
+     * Time the current thread's task spent waiting outside the storage.
+     */
+    private static final ThreadLocal<long[]> WAITING = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    // all fields below are guarded by lock
+    private int limit;
+    private int inFlight;
+    private boolean slowStart = true;
+    private long completed;
+    private long increases;
+    private long decreases;
+    private double throughput;
+    private double latency;
+    private double baseline = Double.MAX_VALUE;
+    private long windowStart = System.nanoTime();
+    private int windowCount;
+    private long windowLatency;
+    private boolean windowSaturated;
+
+    /**
+     * Creates a controller.
+     *
+     * @param minLimit     Lower bound of the limit, at least one.
+     * @param initialLimit Limit to start with.
+     * @param maxLimit     Upper bound of the limit.
+     */
+    AdaptiveLimit(final int minLimit, final int initialLimit, final int maxLimit) {
+        if (minLimit <= 0 || initialLimit < minLimit || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("Invalid limits " + minLimit + " <= " + initialLimit + " <= "
+                    + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.limit = initialLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * Applies the given task to all items on the given executor, with at
+     * most {@link #getLimit()} tasks running at any time. Returns once all
+     * tasks are finished, also if interrupted; the executor is shut down
+     * afterwards.
+     *
+     * @param items    Items to process.
+     * @param task     Work to perform per item.
+     * @param executor Executor that runs the tasks, it must not queue them.
+     * @param <T>      Type of the processed items.
+     * @return the items that were not dispatched because the calling thread
+     * was interrupted, empty if all were processed.
+     */
+    <T> List<T> run(final List<T> items, final Consumer<T> task, final ExecutorService executor) {
+        // errors as well, a task's thread must not swallow them
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final List<T> undispatched = Lists.newArrayList();
+        ObjectName name = register();
+        try {
+            Iterator<T> remaining = items.iterator();
+            while (remaining.hasNext() && failure.get() == null) {
+                T item = remaining.next();
+                try {
+                    acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    undispatched.add(item);
+                    remaining.forEachRemaining(undispatched::add);
+                    LOG.warn("Interrupted while dispatching files, {} remaining files are not processed",
+                            undispatched.size());
+                    break;
+                }
+                executor.execute(() -> {
+                    long[] waiting = WAITING.get();
+                    waiting[0] = 0;
+                    long start = System.nanoTime();
+                    try {
+                        task.accept(item);
+                    } catch (RuntimeException | Error e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        release(Math.max(0, System.nanoTime() - start - waiting[0]));
+                    }
+                });
+            }
+            // no task may outlive the run, its caller cleans up afterwards
+            awaitIdle();
+        } finally {
+            executor.shutdown();
+            unregister(name);
+        }
+        LOG.info("Processed {} files, settled at {} in flight ({} increases, {} decreases)", getCompleted(),
+                getLimit(), getIncreases(), getDecreases());
+
+        if (failure.get() instanceof Error) {
+            throw (Error) failure.get();
+        }
+        if (failure.get() != null) {
+            throw (RuntimeException) failure.get();
+        }
+        return undispatched;
+    }
+
+    /**
+     * Excludes time from the latency of the current thread's task, e.g.
+     * waits for rate limits, memory or a slow subscriber, which say nothing
+     * about the storage device. Has no effect outside of a task.
+     *
+     * @param nanos Time spent waiting.
+     */
+    static void waited(final long nanos) {
+        WAITING.get()[0] += nanos;
+    }
+
+    /**
+     * Waits until another operation may start.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    void acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            while (inFlight >= limit) {
+                windowSaturated = true;
+                changed.await();
+            }
+            inFlight++;
+            if (inFlight == limit) {
+                windowSaturated = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Finishes an operation and adjusts the limit once a sampling window is
+     * complete.
+     *
+     * @param latencyNanos Duration of the operation.
+     */
+    void release(final long latencyNanos) {
+        lock.lock();
+        try {
+            inFlight--;
+            completed++;
+            windowCount++;
+            windowLatency += latencyNanos;
+            if (windowCount >= Math.max(MIN_WINDOW, limit)) {
+                long now = System.nanoTime();
+                double elapsed = Math.max(1, now - windowStart) / NANOS_PER_SECOND;
+                adjust(windowCount / elapsed, windowLatency / (double) windowCount / NANOS_PER_MILLI,
+                        windowSaturated);
+                windowStart = now;
+                windowCount = 0;
+                windowLatency = 0;
+                windowSaturated = inFlight >= limit;
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void awaitIdle() {
+        lock.lock();
+        try {
+            while (inFlight > 0) {
+                changed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Decides about the limit based on a completed sampling window.
+     *
+     * @param windowThroughput Operations per second.
+     * @param windowLatency    Mean latency in milliseconds.
+     * @param saturated        Whether the limit was reached during the
+     *                         window, without that a higher limit could not
+     *                         have been used anyway.
+     */
+    void adjust(final double windowThroughput, final double windowLatency, final boolean saturated) {
+        lock.lock();
+        try {
+            // nothing of ours queues at the minimum, so it measures a device that became slower
+            baseline = limit == minLimit ? windowLatency : Math.min(baseline, windowLatency);
+            boolean queueing = windowLatency > baseline * CONGESTION_LATENCY
+                    && windowThroughput < throughput * THROUGHPUT_GAIN;
+            int previous = limit;
+            if (queueing) {
+                slowStart = false;
+                limit = Math.max(minLimit, (int) (limit * DECREASE_FACTOR));
+            } else if (saturated) {
+                limit = Math.min(maxLimit, slowStart ? limit * 2 : limit + 1);
+            }
+            if (limit > previous) {
+                increases++;
+            } else if (limit < previous) {
+                decreases++;
+            }
+            if (limit != previous) {
+                LOG.debug("Changed limit from {} to {} at {} files/s and {} ms latency (baseline {} ms)",
+                        previous, limit, String.format("%.1f", windowThroughput),
+                        String.format("%.1f", windowLatency), String.format("%.1f", baseline));
+            }
+            throughput = windowThroughput;
+            latency = windowLatency;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ObjectName register() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME + IDS.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    new StandardMBean(this, AdaptiveLimitMXBean.class, true), name);
+            return name;
+        } catch (JMException e) {
+            LOG.warn("Unable to register concurrency metrics: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static void unregister(final ObjectName name) {
+        if (name == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            LOG.debug("Unable to unregister {}: {}", name, e.getMessage());
+        }
+    }
+
+    private <V> V locked(final Supplier<V> read) {
+        lock.lock();
+        try {
+            return read.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getLimit() {
+        return locked(() -> limit);
+    }
+
+    @Override
+    public int getInFlight() {
+        return locked(() -> inFlight);
+    }
+
+    @Override
+    public long getCompleted() {
+        return locked(() -> completed);
+    }
+
+    @Override
+    public long getIncreases() {
+        return locked(() -> increases);
+    }
+
+    @Override
+    public long getDecreases() {
+        return locked(() -> decreases);
+    }
+
+    @Override
+    public double getThroughput() {
+        return locked(() -> throughput);
+    }
+
+    @Override
+    public double getLatencyMillis() {
+        return locked(() -> latency);
+    }
+
+    @Override
+    public double getBaselineLatencyMillis() {
+        return locked(() -> baseline == Double.MAX_VALUE ? 0 : baseline);
+    }
+}
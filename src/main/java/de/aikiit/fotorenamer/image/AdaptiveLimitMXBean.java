@@ -0,0 +1,68 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+/**
+ * Management interface of an {@link AdaptiveLimit}, registered as
+ * <code>de.aikiit.fotorenamer:type=AdaptiveLimit,id=&lt;n&gt;</code>
+ * while a run is processing its files.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+public interface AdaptiveLimitMXBean {
+    /**
+     * @return the current maximum number of operations in flight.
+     */
+    int getLimit();
+
+    /**
+     * @return the number of operations currently in flight.
+     */
+    int getInFlight();
+
+    /**
+     * @return the number of completed operations.
+     */
+    long getCompleted();
+
+    /**
+     * @return how often the limit was raised.
+     */
+    long getIncreases();
+
+    /**
+     * @return how often the limit was lowered.
+     */
+    long getDecreases();
+
+    /**
+     * @return the throughput of the last sampling window in operations per
+     * second.
+     */
+    double getThroughput();
+
+    /**
+     * @return the mean latency of the last sampling window in milliseconds.
+     */
+    double getLatencyMillis();
+
+    /**
+     * @return the latency of an unloaded device as currently estimated, in
+     * milliseconds.
+     */
+    double getBaselineLatencyMillis();
+}
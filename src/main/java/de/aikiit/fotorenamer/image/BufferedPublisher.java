@@ -0,0 +1,220 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publisher with a bounded buffer per subscriber. Items are delivered on the
+ * thread that submits them or requests them, {@link #submit(Object)} blocks
+ * as long as any subscriber's buffer is full. This way slow subscribers
+ * throttle the producers instead of piling up results in memory.
+ * <br>
+ * Subscribers only receive items that are submitted after they subscribed.
+ *
+ * @param <T> type of published items.
+ * @author hirsch
+ * @version 2026-10-19
+ */
+final class BufferedPublisher<T> implements RenameFlow.Publisher<T> {
+    /**
+     * Logger for this class.
+     */
+    private static final Logger LOG = LogManager.getLogger(BufferedPublisher.class);
+
+    /**
+     * Interval in which blocked producers re-check for cancellation.
+     */
+    private static final long OFFER_TIMEOUT_MS = 100;
+
+    /**
+     * Maximum number of undelivered items per subscriber.
+     */
+    private final int bufferSize;
+    /**
+     * All active subscriptions.
+     */
+    private final List<BufferedSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    /**
+     * Set once the publisher is closed.
+     */
+    private volatile boolean closed = false;
+    /**
+     * Error the publisher was closed with, if any.
+     */
+    private volatile Throwable failure = null;
+
+    /**
+     * Creates a publisher.
+     *
+     * @param bufferSize Maximum number of undelivered items per subscriber.
+     */
+    BufferedPublisher(final int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public void subscribe(final RenameFlow.Subscriber<? super T> subscriber) {
+        BufferedSubscription subscription = new BufferedSubscription(subscriber);
+        subscriptions.add(subscription);
+        subscriber.onSubscribe(subscription);
+        if (closed) {
+            subscription.terminate();
+        }
+    }
+
+    /**
+     * Publishes the given item to all current subscribers, blocks while
+     * any of them has a full buffer.
+     *
+     * @param item Item to publish.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    void submit(final T item) throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("Publisher is already closed");
+        }
+        for (BufferedSubscription subscription : subscriptions) {
+            subscription.offer(item);
+        }
+    }
+
+    /**
+     * Signals completion to all subscribers once their buffers are drained.
+     */
+    void close() {
+        closed = true;
+        subscriptions.forEach(BufferedSubscription::terminate);
+    }
+
+    /**
+     * Signals the given error to all subscribers once their buffers are
+     * drained.
+     *
+     * @param error Cause of the failure.
+     */
+    void closeExceptionally(final Throwable error) {
+        failure = error;
+        close();
+    }
+
+    /**
+     * Stops delivery to all subscribers and drops all buffered items.
+     */
+    void cancelAll() {
+        subscriptions.forEach(BufferedSubscription::cancel);
+    }
+
+    /**
+     * Subscription with its own buffer and demand counter.
+     */
+    private final class BufferedSubscription implements RenameFlow.Subscription {
+        private final RenameFlow.Subscriber<? super T> subscriber;
+        private final BlockingQueue<T> buffer = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicLong demand = new AtomicLong(0);
+        /**
+         * Work-in-progress counter that serializes all subscriber calls.
+         */
+        private final AtomicInteger wip = new AtomicInteger(0);
+        private volatile boolean cancelled = false;
+        private volatile boolean terminating = false;
+
+        BufferedSubscription(final RenameFlow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void offer(final T item) throws InterruptedException {
+            while (!cancelled && !buffer.offer(item, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                LOG.trace("Subscriber {} is lagging behind, waiting", subscriber);
+            }
+            drain();
+        }
+
+        void terminate() {
+            terminating = true;
+            drain();
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("Non-positive request: " + n));
+                return;
+            }
+            demand.accumulateAndGet(n, (current, add) -> current + add < 0 ? Long.MAX_VALUE : current + add);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            buffer.clear();
+            subscriptions.remove(this);
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                while (!cancelled && demand.get() > 0) {
+                    T item = buffer.poll();
+                    if (item == null) {
+                        break;
+                    }
+                    if (demand.get() != Long.MAX_VALUE) {
+                        demand.decrementAndGet();
+                    }
+                    deliver(item);
+                }
+                if (!cancelled && terminating && buffer.isEmpty()) {
+                    cancelled = true;
+                    subscriptions.remove(this);
+                    if (failure == null) {
+                        subscriber.onComplete();
+                    } else {
+                        subscriber.onError(failure);
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void deliver(final T item) {
+            try {
+                subscriber.onNext(item);
+            } catch (RuntimeException e) {
+                LOG.error("Subscriber {} failed, cancelling its subscription", subscriber, e);
+                cancel();
+                subscriber.onError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,416 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts the captures of a shoot by their date with bounded memory.
+ * <br>
+ * Captures are buffered until their estimated size exceeds the memory
+ * budget, then the buffer is sorted and spilled as a run to a temporary
+ * file. {@link #sorted()} merges all runs in a single pass; if there are
+ * more runs than buffers of {@link #READ_BUFFER} bytes fit into the budget
+ * they are merged into fewer, longer runs first. A shoot that fits into
+ * memory never touches the disk.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+final class CaptureRuns implements Closeable {
+    /**
+     * Logger for this class.
+     */
+    private static final Logger LOG = LogManager.getLogger(CaptureRuns.class);
+
+    /**
+     * Size of the read and write buffer of a run.
+     */
+    static final int READ_BUFFER = 64 * 1024;
+    /**
+     * Upper bound of runs that are merged at once.
+     */
+    static final int MAX_FAN_IN = 128;
+
+    /**
+     * Order of a shoot: date, fractions of a second, name and folder.
+     */
+    static final Comparator<Capture> ORDER = Comparator.comparingLong(Capture::getSeconds)
+            .thenComparingInt(Capture::getNanos)
+            .thenComparing(Capture::getPrimary)
+            .thenComparingInt(Capture::getFolder);
+
+    private final Path spillDirectory;
+    private final long memory;
+    private final int fanIn;
+    private final List<Capture> buffer = Lists.newArrayList();
+    private long buffered;
+    private final List<Run> runs = Lists.newArrayList();
+    private long spilled;
+
+    /**
+     * @param spillDirectory Directory for the temporary runs.
+     * @param memory         Number of bytes the buffered captures and the
+     *                       read buffers of a merge may use.
+     */
+    CaptureRuns(final Path spillDirectory, final long memory) {
+        this.spillDirectory = spillDirectory;
+        this.memory = memory;
+        this.fanIn = (int) Math.max(2, Math.min(MAX_FAN_IN, memory / READ_BUFFER));
+    }
+
+    /**
+     * Adds a capture, spilling the buffer if it exceeds the memory budget.
+     *
+     * @param capture Capture to add.
+     * @throws IOException if the buffer cannot be spilled.
+     */
+    void add(final Capture capture) throws IOException {
+        buffer.add(capture);
+        buffered += capture.estimateSize();
+        if (buffered > memory) {
+            spill();
+        }
+    }
+
+    private void spill() throws IOException {
+        buffer.sort(ORDER);
+        runs.add(write(new ListSource(buffer), buffer.size()));
+        spilled += buffer.size();
+        buffer.clear();
+        buffered = 0;
+    }
+
+    private Run write(final Source source, final int count) throws IOException {
+        Path file = Files.createTempFile(spillDirectory, "fotorenamer-sequence-", ".run");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file), READ_BUFFER))) {
+            for (int i = 0; i < count; i++) {
+                source.next().write(out);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return new Run(file, count);
+    }
+
+    /**
+     * @return number of runs spilled to disk so far.
+     */
+    int getRunCount() {
+        return runs.size();
+    }
+
+    /**
+     * Returns all captures in {@link #ORDER}. No further captures may be
+     * added afterwards.
+     *
+     * @return the captures, read as they are consumed.
+     * @throws IOException if the runs cannot be read or merged.
+     */
+    Source sorted() throws IOException {
+        if (runs.isEmpty()) {
+            buffer.sort(ORDER);
+            return new ListSource(buffer);
+        }
+        if (!buffer.isEmpty()) {
+            spill();
+        }
+        int passes = 0;
+        while (runs.size() > fanIn) {
+            List<Run> inputs = Lists.newArrayList(runs.subList(0, fanIn));
+            int count = 0;
+            for (Run run : inputs) {
+                count += run.count;
+            }
+            try (Merge merge = new Merge(inputs)) {
+                runs.add(write(merge, count));
+            }
+            for (Run run : inputs) {
+                Files.deleteIfExists(run.file);
+            }
+            runs.removeAll(inputs);
+            passes++;
+        }
+        LOG.info("Merging {} captures from {} runs after {} intermediate merges", spilled, runs.size(), passes);
+        return new Merge(runs);
+    }
+
+    /**
+     * Deletes all runs.
+     *
+     * @throws IOException if a run cannot be deleted.
+     */
+    @Override
+    public void close() throws IOException {
+        for (Run run : runs) {
+            Files.deleteIfExists(run.file);
+        }
+        runs.clear();
+        buffer.clear();
+    }
+
+    /**
+     * Captures in order, to be closed once they were consumed.
+     */
+    interface Source extends Closeable {
+        /**
+         * @return the next capture or {@code null} if there are no more.
+         * @throws IOException if the capture cannot be read.
+         */
+        Capture next() throws IOException;
+    }
+
+    /**
+     * Captures sorted in memory.
+     */
+    private static final class ListSource implements Source {
+        private final List<Capture> captures;
+        private int next;
+
+        ListSource(final List<Capture> captures) {
+            this.captures = captures;
+        }
+
+        @Override
+        public Capture next() {
+            return next < captures.size() ? captures.get(next++) : null;
+        }
+
+        @Override
+        public void close() {
+            // nothing to release
+        }
+    }
+
+    /**
+     * A sorted file of captures.
+     */
+    private static final class Run {
+        private final Path file;
+        private final int count;
+
+        Run(final Path file, final int count) {
+            this.file = file;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Reads a run sequentially.
+     */
+    private static final class RunReader implements Source {
+        private final DataInputStream in;
+        private int remaining;
+
+        RunReader(final Run run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run.file), READ_BUFFER));
+            this.remaining = run.count;
+        }
+
+        @Override
+        public Capture next() throws IOException {
+            if (remaining == 0) {
+                return null;
+            }
+            remaining--;
+            return Capture.read(in);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Merges runs by always taking the smallest head of all runs.
+     */
+    private static final class Merge implements Source {
+        private final List<RunReader> readers = Lists.newArrayList();
+        private final PriorityQueue<Head> heads =
+                new PriorityQueue<>(Comparator.comparing((Head head) -> head.capture, ORDER));
+
+        Merge(final List<Run> runs) throws IOException {
+            try {
+                for (Run run : runs) {
+                    RunReader reader = new RunReader(run);
+                    readers.add(reader);
+                    Capture first = reader.next();
+                    if (first != null) {
+                        heads.add(new Head(first, reader));
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public Capture next() throws IOException {
+            Head head = heads.poll();
+            if (head == null) {
+                return null;
+            }
+            Capture capture = head.capture;
+            Capture following = head.reader.next();
+            if (following != null) {
+                heads.add(new Head(following, head.reader));
+            }
+            return capture;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * The current capture of a run during a merge.
+     */
+    private static final class Head {
+        private final Capture capture;
+        private final RunReader reader;
+
+        Head(final Capture capture, final RunReader reader) {
+            this.capture = capture;
+            this.reader = reader;
+        }
+    }
+
+    /**
+     * An image and its sidecars with their capture time.
+     */
+    static final class Capture {
+        /**
+         * Approximate heap usage of a capture without its names.
+         */
+        private static final int OVERHEAD = 64;
+        /**
+         * Approximate heap usage of a name besides its characters.
+         */
+        private static final int NAME_OVERHEAD = 48;
+
+        private final long seconds;
+        private final int nanos;
+        private final int folder;
+        private final List<String> names;
+
+        /**
+         * @param date   Capture time of the primary file.
+         * @param folder Index of the folder containing the files.
+         * @param names  Names of the files, the primary first.
+         */
+        Capture(final LocalDateTime date, final int folder, final List<String> names) {
+            this(date.toEpochSecond(ZoneOffset.UTC), date.getNano(), folder, names);
+        }
+
+        private Capture(final long seconds, final int nanos, final int folder, final List<String> names) {
+            this.seconds = seconds;
+            this.nanos = nanos;
+            this.folder = folder;
+            this.names = ImmutableList.copyOf(names);
+        }
+
+        long getSeconds() {
+            return seconds;
+        }
+
+        int getNanos() {
+            return nanos;
+        }
+
+        /**
+         * @return the capture time.
+         */
+        LocalDateTime getDate() {
+            return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+        }
+
+        /**
+         * @return index of the folder containing the files.
+         */
+        int getFolder() {
+            return folder;
+        }
+
+        /**
+         * @return name of the primary file.
+         */
+        String getPrimary() {
+            return names.get(0);
+        }
+
+        /**
+         * @return names of all files, the primary first.
+         */
+        List<String> getNames() {
+            return names;
+        }
+
+        long estimateSize() {
+            long size = OVERHEAD;
+            for (String name : names) {
+                size += NAME_OVERHEAD + 2L * name.length();
+            }
+            return size;
+        }
+
+        void write(final DataOutputStream out) throws IOException {
+            out.writeLong(seconds);
+            out.writeInt(nanos);
+            out.writeInt(folder);
+            out.writeShort(names.size());
+            for (String name : names) {
+                out.writeUTF(name);
+            }
+        }
+
+        static Capture read(final DataInputStream in) throws IOException {
+            long seconds = in.readLong();
+            int nanos = in.readInt();
+            int folder = in.readInt();
+            int count = in.readUnsignedShort();
+            List<String> names = Lists.newArrayListWithCapacity(count);
+            for (int i = 0; i < count; i++) {
+                names.add(in.readUTF());
+            }
+            return new Capture(seconds, nanos, folder, names);
+        }
+    }
+}
@@ -0,0 +1,545 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.MoreFiles;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Ingests memory cards into a date-organised archive, reading every source
+ * file only once.
+ * <br>
+ * While a file is streamed to the archive its checksum is computed on the
+ * fly and its EXIF creation date is taken from the first
+ * {@link #HEADER_SIZE} bytes that were read anyway. The file is written
+ * under its final, date-prefixed name into the folder given by the
+ * {@link FolderLayout}; images without a date go into
+ * {@link #UNDATED_FOLDER}. Each copy is verified against the checksum
+ * before it appears under its final name and a manifest of all files is
+ * written per card into {@link #MANIFEST_FOLDER}. The cards themselves are
+ * never modified; images that a {@link ProcessedLedger} knows as ingested
+ * are skipped while the cards are listed.
+ * <br>
+ * Several cards are ingested in parallel, the number of files read
+ * concurrently from a single device is limited since card readers degrade
+ * quickly under concurrent access.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+public final class CardIngest {
+    /**
+     * Logger for this class.
+     */
+    private static final Logger LOG = LogManager.getLogger(CardIngest.class);
+
+    /**
+     * Folder of the archive that contains the manifests.
+     */
+    public static final String MANIFEST_FOLDER = "manifests";
+    /**
+     * Folder of the archive that contains images without creation date.
+     */
+    public static final String UNDATED_FOLDER = "undated";
+    /**
+     * Default number of files read concurrently per device.
+     */
+    public static final int DEFAULT_DEVICE_CONCURRENCY = 2;
+
+    /**
+     * Number of bytes that are searched for EXIF data.
+     */
+    static final int HEADER_SIZE = 128 * 1024;
+
+    private final File archive;
+    private final List<File> cards;
+    private final FolderLayout layout;
+    private final IngestChecksum checksum;
+    private final int deviceConcurrency;
+    private final ProcessedLedger ledger;
+    /**
+     * Makes temporary files unique if cards contain equally named images.
+     */
+    private final AtomicLong partCounter = new AtomicLong();
+
+    private CardIngest(final Builder builder) {
+        this.archive = builder.archive;
+        this.cards = ImmutableList.copyOf(builder.cards);
+        this.layout = builder.layout;
+        this.checksum = builder.checksum;
+        this.deviceConcurrency = builder.deviceConcurrency;
+        this.ledger = builder.ledger;
+    }
+
+    /**
+     * Starts the description of an ingestion.
+     *
+     * @param archive Directory to ingest into.
+     * @return a builder with default settings.
+     */
+    public static Builder builder(final File archive) {
+        return new Builder(archive);
+    }
+
+    /**
+     * Ingests all images of all cards and blocks until all are done.
+     *
+     * @return the outcome per card, in the order the cards were added.
+     * @throws IOException if the archive cannot be created or a card cannot
+     *                     be read.
+     */
+    public List<CardResult> run() throws IOException {
+        final Path archiveRoot = Files.createDirectories(archive.toPath());
+        final Map<FileStore, Semaphore> devices = new HashMap<>();
+        final Map<File, Card> owners = new HashMap<>();
+        final List<Card> states = Lists.newArrayList();
+
+        for (File card : cards) {
+            Path root = card.toPath();
+            Semaphore device = devices.computeIfAbsent(Files.getFileStore(root),
+                    store -> new Semaphore(deviceConcurrency));
+            LongAdder known = new LongAdder();
+            Card state = new Card(card, new TargetTree(archiveRoot, layout, root), device,
+                    listImages(root, purpose(archiveRoot), known), known);
+            states.add(state);
+            for (File file : state.files) {
+                owners.put(file, state);
+            }
+        }
+
+        FileTaskRunner.fromSystemProperties().run(interleave(states), file -> {
+            Card card = owners.get(file);
+            long start = System.nanoTime();
+            try {
+                card.device.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                card.failed.increment();
+                return;
+            } finally {
+                AdaptiveLimit.waited(System.nanoTime() - start);
+            }
+            try {
+                ingest(archiveRoot, card, file);
+            } catch (IOException e) {
+                LOG.error("Unable to ingest {}: {}", file, e.getMessage());
+                card.failed.increment();
+            } finally {
+                card.device.release();
+            }
+        });
+
+        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
+        Path manifests = Files.createDirectories(archiveRoot.resolve(MANIFEST_FOLDER));
+        List<CardResult> results = Lists.newArrayList();
+        for (int i = 0; i < states.size(); i++) {
+            Card card = states.get(i);
+            List<String> lines = Lists.newArrayList(card.manifest);
+            Collections.sort(lines);
+            Path manifest = writeManifest(manifests, timestamp + "_" + (i + 1) + "_" + label(card.root.toPath()),
+                    checksum.getExtension(), lines);
+            CardResult result = new CardResult(card, manifest.toFile());
+            LOG.info("Ingested {}: {}", card.root, result);
+            results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * Writes a manifest without replacing one of another ingest that was
+     * written within the same second, its name then gets a counter.
+     *
+     * @param directory Directory of all manifests.
+     * @param name      Name of the manifest without extension.
+     * @param extension Extension of the checksum.
+     * @param lines     Content of the manifest.
+     * @return the written manifest.
+     * @throws IOException if the manifest cannot be written.
+     */
+    static Path writeManifest(final Path directory, final String name, final String extension,
+                              final List<String> lines) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            Path manifest = directory.resolve((attempt == 1 ? name : name + "-" + attempt) + "." + extension);
+            try {
+                return Files.write(manifest, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.WRITE);
+            } catch (FileAlreadyExistsException e) {
+                LOG.debug("Manifest {} exists already", manifest);
+            }
+        }
+    }
+
+    /**
+     * Copies a single file and verifies the copy.
+     */
+    private void ingest(final Path archiveRoot, final Card card, final File file) throws IOException {
+        Path part = null;
+        try (HashingInputStream in = new HashingInputStream(checksum.getFunction(),
+                Files.newInputStream(file.toPath()))) {
+            byte[] header = new byte[HEADER_SIZE];
+            int length = ByteStreams.read(in, header, 0, header.length);
+
+            LocalDateTime creationDate = null;
+            try {
+                creationDate = MetaDataExtractor.getCreationDate(Arrays.copyOf(header, length), file);
+            } catch (IOException e) {
+                LOG.info("No metadata found in header of {}: {}", file, e.getMessage());
+            }
+
+            String name = creationDate == null ? file.getName()
+                    : RenameMode.EXIF_DATE_PREFIX.targetName(file, creationDate);
+            Path folder = card.tree.folder(creationDate == null ? UNDATED_FOLDER : layout.folderFor(creationDate));
+            Path target = folder.resolve(name);
+            part = folder.resolve("." + name + "." + partCounter.incrementAndGet() + VerifiedCopy.PART_SUFFIX);
+
+            try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE)) {
+                OutputStream out = Channels.newOutputStream(channel);
+                out.write(header, 0, length);
+                ByteStreams.copy(in, out);
+                channel.force(true);
+            }
+
+            HashCode hash = in.hash();
+            if (!hash.equals(hash(part))) {
+                throw new IOException("Verification of the copy of " + file + " failed");
+            }
+            BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            Files.setLastModifiedTime(part, attributes.lastModifiedTime());
+
+            try {
+                VerifiedCopy.publish(part, target);
+                card.ingested.increment();
+                remember(archiveRoot, file, attributes);
+            } catch (FileAlreadyExistsException e) {
+                if (!hash.equals(hash(target))) {
+                    throw new IOException(target + " already exists with different content", e);
+                }
+                Files.delete(part);
+                card.duplicates.increment();
+                remember(archiveRoot, file, attributes);
+            }
+            part = null;
+            card.manifest.add(hash + "  " + archiveRoot.relativize(target).toString().replace(File.separatorChar, '/'));
+        } finally {
+            if (part != null) {
+                Files.deleteIfExists(part);
+            }
+        }
+    }
+
+    private HashCode hash(final Path file) throws IOException {
+        return MoreFiles.asByteSource(file).hash(checksum.getFunction());
+    }
+
+    /**
+     * Lists the images of a card, except for those that the ledger knows as
+     * ingested into the same archive; their attributes come with the walk.
+     */
+    private List<File> listImages(final Path root, final String purpose, final LongAdder known)
+            throws IOException {
+        try (Stream<Path> files = Files.find(root, Integer.MAX_VALUE, (file, attributes) -> {
+            if (!attributes.isRegularFile() || file.getFileName() == null
+                    || !ImageFilenameFilter.isSuffixExifExtractable(file.getFileName().toString())) {
+                return false;
+            }
+            if (ledger != null && ledger.contains(purpose, file, attributes)) {
+                known.increment();
+                return false;
+            }
+            return true;
+        })) {
+            return files.map(Path::toFile).collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Remembers an image that is in the archive now, so that it is skipped
+     * when the card is ingested again.
+     */
+    private void remember(final Path archiveRoot, final File file, final BasicFileAttributes attributes) {
+        if (ledger != null) {
+            ledger.add(purpose(archiveRoot), file.toPath(), attributes);
+        }
+    }
+
+    private static String purpose(final Path archiveRoot) {
+        return "ingest " + archiveRoot.toAbsolutePath();
+    }
+
+    /**
+     * Alternates between cards, so that all devices are busy from the start.
+     */
+    private static List<File> interleave(final List<Card> cards) {
+        List<File> files = Lists.newArrayList();
+        List<Iterator<File>> iterators = Lists.newArrayList();
+        for (Card card : cards) {
+            iterators.add(card.files.iterator());
+        }
+        boolean remaining = true;
+        while (remaining) {
+            remaining = false;
+            for (Iterator<File> iterator : iterators) {
+                if (iterator.hasNext()) {
+                    files.add(iterator.next());
+                    remaining = true;
+                }
+            }
+        }
+        return files;
+    }
+
+    private static String label(final Path card) {
+        Path name = card.toAbsolutePath().normalize().getFileName();
+        return name == null ? "card" : name.toString().replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    /**
+     * State of a card during an ingestion.
+     */
+    private static final class Card {
+        private final File root;
+        private final TargetTree tree;
+        private final Semaphore device;
+        private final List<File> files;
+        private final Queue<String> manifest = new ConcurrentLinkedQueue<>();
+        private final LongAdder ingested = new LongAdder();
+        private final LongAdder duplicates = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder known;
+
+        Card(final File root, final TargetTree tree, final Semaphore device, final List<File> files,
+             final LongAdder known) {
+            this.root = root;
+            this.tree = tree;
+            this.device = device;
+            this.files = files;
+            this.known = known;
+        }
+    }
+
+    /**
+     * Outcome of ingesting a single card.
+     */
+    public static final class CardResult {
+        private final File card;
+        private final long files;
+        private final long ingested;
+        private final long duplicates;
+        private final long failed;
+        private final long known;
+        private final File manifest;
+
+        private CardResult(final Card state, final File manifest) {
+            this.card = state.root;
+            this.files = state.files.size() + state.known.sum();
+            this.ingested = state.ingested.sum();
+            this.duplicates = state.duplicates.sum();
+            this.failed = state.failed.sum();
+            this.known = state.known.sum();
+            this.manifest = manifest;
+        }
+
+        /**
+         * @return the card's root directory.
+         */
+        public File getCard() {
+            return card;
+        }
+
+        /**
+         * @return number of images found on the card.
+         */
+        public long getFiles() {
+            return files;
+        }
+
+        /**
+         * @return number of images copied into the archive.
+         */
+        public long getIngested() {
+            return ingested;
+        }
+
+        /**
+         * @return number of images that already were in the archive.
+         */
+        public long getDuplicates() {
+            return duplicates;
+        }
+
+        /**
+         * @return number of images that could not be ingested.
+         */
+        public long getFailed() {
+            return failed;
+        }
+
+        /**
+         * @return number of images that were skipped as the
+         * {@link ProcessedLedger} knows them as ingested into the archive.
+         */
+        public long getKnown() {
+            return known;
+        }
+
+        /**
+         * @return the manifest listing checksum and archive path of all
+         * ingested images.
+         */
+        public File getManifest() {
+            return manifest;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("files", files)
+                    .add("ingested", ingested)
+                    .add("duplicates", duplicates)
+                    .add("failed", failed)
+                    .add("known", known)
+                    .add("manifest", manifest)
+                    .toString();
+        }
+    }
+
+    /**
+     * Builder for {@link CardIngest}.
+     */
+    public static final class Builder {
+        private final File archive;
+        private final List<File> cards = Lists.newArrayList();
+        private FolderLayout layout = FolderLayout.DEFAULT;
+        private IngestChecksum checksum = IngestChecksum.SHA_256;
+        private int deviceConcurrency = DEFAULT_DEVICE_CONCURRENCY;
+        private ProcessedLedger ledger = ProcessedLedger.getDefault();
+
+        private Builder(final File archive) {
+            this.archive = archive;
+        }
+
+        /**
+         * @param card Root of a card, e.g. its <code>DCIM</code> directory.
+         * @return this builder.
+         */
+        public Builder card(final File card) {
+            this.cards.add(card);
+            return this;
+        }
+
+        /**
+         * @param folderLayout Folders of the archive, default is
+         *                     {@link FolderLayout#DEFAULT}.
+         * @return this builder.
+         */
+        public Builder layout(final FolderLayout folderLayout) {
+            this.layout = folderLayout;
+            return this;
+        }
+
+        /**
+         * @param algorithm Checksum of the manifests, default is
+         *                  {@link IngestChecksum#SHA_256}.
+         * @return this builder.
+         */
+        public Builder checksum(final IngestChecksum algorithm) {
+            this.checksum = algorithm;
+            return this;
+        }
+
+        /**
+         * @param concurrency Number of files read concurrently per device,
+         *                    default is {@link #DEFAULT_DEVICE_CONCURRENCY}.
+         * @return this builder.
+         */
+        public Builder deviceConcurrency(final int concurrency) {
+            this.deviceConcurrency = concurrency;
+            return this;
+        }
+
+        /**
+         * Skips images that were ingested into the same archive before, e.g.
+         * when a card that was not formatted is ingested again.
+         *
+         * @param processed Images ingested before, by default the
+         *                  application-wide {@link ProcessedLedger#getDefault()};
+         *                  {@code null} to ingest all images.
+         * @return this builder.
+         */
+        public Builder ledger(final ProcessedLedger processed) {
+            this.ledger = processed;
+            return this;
+        }
+
+        /**
+         * @return the ingestion.
+         */
+        public CardIngest build() {
+            if (archive == null || layout == null || checksum == null) {
+                throw new IllegalArgumentException("Archive, layout and checksum must be set");
+            }
+            if (cards.isEmpty() || cards.contains(null)) {
+                throw new IllegalArgumentException("At least one card must be given");
+            }
+            for (File card : cards) {
+                if (!card.isDirectory()) {
+                    throw new IllegalArgumentException(card + " is not a directory");
+                }
+            }
+            if (deviceConcurrency <= 0) {
+                throw new IllegalArgumentException("Device concurrency must be positive: " + deviceConcurrency);
+            }
+            return new CardIngest(this);
+        }
+    }
+}
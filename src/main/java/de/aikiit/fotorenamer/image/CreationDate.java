@@ -0,0 +1,131 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.function.Supplier;
+
+/**
+ * The creation date of a file together with its source.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+final class CreationDate {
+    /**
+     * Logger for this class.
+     */
+    private static final Logger LOG = LogManager.getLogger(CreationDate.class);
+
+    private final LocalDateTime date;
+    private final DateSource source;
+
+    private CreationDate(final LocalDateTime date, final DateSource source) {
+        this.date = date;
+        this.source = source;
+    }
+
+    /**
+     * Determines a file's creation date, trying the cheapest source first:
+     * <ol>
+     * <li>a date with time of day in the filename, the file is not even
+     * opened,</li>
+     * <li>the file's metadata,</li>
+     * <li>a date without time of day in the filename, also if the
+     * metadata cannot be read,</li>
+     * <li>the given file system timestamps, if any.</li>
+     * </ol>
+     *
+     * @param file          File to examine.
+     * @param filenameDates Patterns of dates in filenames.
+     * @param attributes    Attributes of the file from its directory
+     *                      listing, {@code null} to not use its timestamps.
+     * @param prefetcher    Headers read ahead, may be {@code null}.
+     * @param admission     Called right before the file is opened, the
+     *                      returned permit is closed once it was read.
+     * @return the creation date or {@code null} if there is none.
+     * @throws IOException if the metadata cannot be read and neither the
+     *                     filename nor timestamps provide a date.
+     */
+    static CreationDate resolve(final File file, final FilenameDates filenameDates,
+                                final BasicFileAttributes attributes, final HeaderPrefetcher prefetcher,
+                                final Supplier<MemoryBudget.Permit> admission)
+            throws IOException {
+        FilenameDates.Match match = filenameDates.match(file.getName());
+        if (match != null && match.isWithTime()) {
+            return new CreationDate(match.getDate(), DateSource.FILENAME);
+        }
+        LocalDateTime metadata;
+        MemoryBudget.Permit permit = admission.get();
+        try {
+            metadata = prefetcher != null && prefetcher.contains(file)
+                    ? prefetcher.getCreationDate(file) : MetaDataExtractor.getCreationDate(file);
+        } catch (IOException e) {
+            if (match == null && attributes == null) {
+                throw e;
+            }
+            LOG.info("Unable to read metadata of {}, using other dates: {}", file, e.getMessage());
+            metadata = null;
+        } finally {
+            permit.close();
+        }
+        if (metadata != null) {
+            return new CreationDate(metadata, DateSource.METADATA);
+        }
+        if (match != null) {
+            return new CreationDate(match.getDate(), DateSource.FILENAME);
+        }
+        return attributes == null ? null : new CreationDate(fromTimestamps(attributes), DateSource.FILESYSTEM);
+    }
+
+    /**
+     * Prefers the creation time, unless the file system does not provide
+     * one or it is later than the modification time, which happens for
+     * copies that keep their original modification time.
+     *
+     * @param attributes Attributes of a file.
+     * @return the timestamp in the local time zone.
+     */
+    private static LocalDateTime fromTimestamps(final BasicFileAttributes attributes) {
+        FileTime modified = attributes.lastModifiedTime();
+        FileTime created = attributes.creationTime();
+        FileTime time = created == null || created.toMillis() <= 0 || created.compareTo(modified) > 0
+                ? modified : created;
+        return LocalDateTime.ofInstant(time.toInstant(), ZoneId.systemDefault());
+    }
+
+    /**
+     * @return the creation date.
+     */
+    LocalDateTime getDate() {
+        return date;
+    }
+
+    /**
+     * @return where the date came from.
+     */
+    DateSource getSource() {
+        return source;
+    }
+}
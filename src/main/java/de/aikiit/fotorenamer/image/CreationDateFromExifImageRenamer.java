@@ -54,31 +54,20 @@ public final class CreationDateFromExifImageRenamer extends AbstractImageRenamer
      */
     public CreationDateFromExifImageRenamer(final String targetDirectory) throws
             InvalidDirectoryException, NoFilesFoundException {
-        super(targetDirectory);
+        super(targetDirectory, RenameMode.EXIF_DATE_PREFIX, ErrorBudget.fromSystemProperties(), "fotorenamer.ui.rename");
     }
 
     /**
-     * Extracts creation date from EXIF information and returns new filename. If
-     * an error occurs during EXIF data extraction the original filename is
-     * returned.
+     * Extracts creation date from EXIF information and returns new filename.
      *
-     * @param imageFile Filename to renameFiles according to the subclass
-     *                  implementation.
-     * @return New filename that includes the image's creation date.
+     * @param imageFile Image file to generate a new name for.
+     * @return New filename that includes the image's creation date, an empty
+     * String if the image does not contain a valid creation date.
+     * @throws IOException if an error occurs during EXIF data extraction.
      * @see MetaDataExtractor for more information about the file format.
      */
-    @Override
-    public String renameImage(final File imageFile) {
-        String newImageName = imageFile.getName();
+    public String renameImage(final File imageFile) throws IOException {
         LOG.info("Start renaming in CreationDateFromExifImageRenamer");
-
-        try {
-            newImageName = MetaDataExtractor.generateCreationDateInCorrectFormat(imageFile);
-        } catch (IOException e) {
-            LOG.error("Error during exif date extraction: ", e);
-            return newImageName;
-        }
-
-        return newImageName;
+        return RenameMode.EXIF_DATE_PREFIX.targetName(imageFile);
     }
 }
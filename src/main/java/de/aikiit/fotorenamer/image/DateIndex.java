@@ -0,0 +1,337 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.collect.Lists;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional index of the creation dates of the images of a directory, kept
+ * in the file {@link #FILE_NAME} within the directory.
+ * <br>
+ * The file holds a sorted array of creation date and entry offset,
+ * followed by the entries sorted by name: name, size and modification time
+ * of the file it was taken from, and its creation date. It is read into
+ * memory in one go instead of being mapped, as a mapping cannot be released
+ * on demand and would keep the file from being replaced on Windows.
+ * A run restricted to a range of creation dates finds the images within
+ * the range with a binary search on the dates and each other image with a
+ * binary search on the names, so that only the headers of images that are
+ * within the range or not indexed yet, e.g. since they changed, are read.
+ * <br>
+ * An index is only an optimisation: a missing or broken file is treated as
+ * an empty index. All offsets are checked when the file is read.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+final class DateIndex {
+    /**
+     * Logger for this class.
+     */
+    private static final Logger LOG = LogManager.getLogger(DateIndex.class);
+
+    /**
+     * Name of the index file within its directory.
+     */
+    static final String FILE_NAME = ".fotorenamer-dates";
+
+    private static final int MAGIC = 0x46524449;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    /**
+     * Creation date in seconds and entry offset.
+     */
+    private static final int DATE_SIZE = 12;
+    private static final int OFFSET_SIZE = 4;
+    /**
+     * Size, modification time and creation date following an entry's name.
+     */
+    private static final int ENTRY_TAIL = 24;
+    /**
+     * Longest name, its length is stored as an unsigned <code>short</code>.
+     */
+    private static final int MAX_NAME_LENGTH = 0xFFFF;
+
+    private static final DateIndex EMPTY = new DateIndex(ByteBuffer.allocate(0), 0);
+
+    private final ByteBuffer buffer;
+    private final int count;
+
+    private DateIndex(final ByteBuffer buffer, final int count) {
+        this.buffer = buffer;
+        this.count = count;
+    }
+
+    /**
+     * Reads the index of a directory.
+     *
+     * @param directory Directory of the index.
+     * @return its index, empty if there is none or it cannot be read.
+     */
+    static DateIndex read(final Path directory) {
+        Path file = directory.resolve(FILE_NAME);
+        if (!Files.isRegularFile(file)) {
+            return EMPTY;
+        }
+        try {
+            long length = Files.size(file);
+            if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+                throw new IOException("invalid length " + length);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("not a date index");
+            }
+            int count = buffer.getInt(8);
+            if (count < 0 || HEADER_SIZE + (long) count * (DATE_SIZE + OFFSET_SIZE) > buffer.capacity()) {
+                throw new IOException("invalid number of entries " + count);
+            }
+            int entries = HEADER_SIZE + count * (DATE_SIZE + OFFSET_SIZE);
+            for (int i = 0; i < count; i++) {
+                checkEntry(buffer, buffer.getInt(HEADER_SIZE + i * DATE_SIZE + 8), entries);
+                checkEntry(buffer, buffer.getInt(entries - (count - i) * OFFSET_SIZE), entries);
+            }
+            return new DateIndex(buffer, count);
+        } catch (IOException e) {
+            LOG.warn("Ignoring date index {}, all headers are read: {}", file, e.getMessage());
+            return EMPTY;
+        }
+    }
+
+    /**
+     * Checks that an entry lies completely within the entries of an index.
+     */
+    private static void checkEntry(final ByteBuffer buffer, final int offset, final int entries)
+            throws IOException {
+        if (offset < entries || (long) offset + 2 > buffer.capacity()
+                || (long) offset + 2 + Short.toUnsignedInt(buffer.getShort(offset)) + ENTRY_TAIL
+                > buffer.capacity()) {
+            throw new IOException("invalid entry offset " + offset);
+        }
+    }
+
+    /**
+     * @return the number of indexed images.
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Looks up an image by name.
+     *
+     * @param name Name of the image.
+     * @return its entry or {@code null} if it is not indexed.
+     */
+    Entry find(final String name) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            Entry entry = entryAt(buffer.getInt(HEADER_SIZE + count * DATE_SIZE + middle * OFFSET_SIZE));
+            int comparison = entry.name.compareTo(name);
+            if (comparison == 0) {
+                return entry;
+            }
+            if (comparison < 0) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Collects the images within a range of creation dates.
+     *
+     * @param from First creation date of the range.
+     * @param to   End of the range, exclusive.
+     * @return the entries of the images, sorted by creation date.
+     */
+    List<Entry> select(final LocalDateTime from, final LocalDateTime to) {
+        long start = seconds(from);
+        long end = seconds(to);
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (buffer.getLong(HEADER_SIZE + middle * DATE_SIZE) < start) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        List<Entry> entries = Lists.newArrayList();
+        for (int i = low; i < count && buffer.getLong(HEADER_SIZE + i * DATE_SIZE) < end; i++) {
+            entries.add(entryAt(buffer.getInt(HEADER_SIZE + i * DATE_SIZE + 8)));
+        }
+        return entries;
+    }
+
+    private Entry entryAt(final int offset) {
+        int length = Short.toUnsignedInt(buffer.getShort(offset));
+        byte[] name = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset + 2);
+        view.get(name);
+        int tail = offset + 2 + length;
+        return new Entry(new String(name, StandardCharsets.UTF_8), buffer.getLong(tail),
+                buffer.getLong(tail + 8), buffer.getLong(tail + 16));
+    }
+
+    /**
+     * Replaces the index of a directory.
+     *
+     * @param directory Directory of the index.
+     * @param entries   All images to index, names must be unique.
+     * @throws IOException if the index cannot be written.
+     */
+    static void write(final Path directory, final Collection<Entry> entries) throws IOException {
+        List<Entry> byName = Lists.newArrayList();
+        for (Entry entry : entries) {
+            if (entry.name.getBytes(StandardCharsets.UTF_8).length <= MAX_NAME_LENGTH) {
+                byName.add(entry);
+            }
+        }
+        byName.sort(Comparator.comparing(Entry::getName));
+        int count = byName.size();
+        int[] offsets = new int[count];
+        long offset = HEADER_SIZE + (long) count * (DATE_SIZE + OFFSET_SIZE);
+        for (int i = 0; i < count; i++) {
+            if (offset > Integer.MAX_VALUE) {
+                throw new IOException("Too many images to index in " + directory);
+            }
+            offsets[i] = (int) offset;
+            offset += 2 + byName.get(i).name.getBytes(StandardCharsets.UTF_8).length + ENTRY_TAIL;
+        }
+        Integer[] byDate = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            byDate[i] = i;
+        }
+        Arrays.sort(byDate, Comparator.comparingLong(i -> byName.get(i).capture));
+
+        Path file = directory.resolve(FILE_NAME);
+        Path temporary = directory.resolve(FILE_NAME + VerifiedCopy.PART_SUFFIX);
+        try (OutputStream stream = Files.newOutputStream(temporary);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(count);
+            out.writeInt(0);
+            for (int i : byDate) {
+                out.writeLong(byName.get(i).capture);
+                out.writeInt(offsets[i]);
+            }
+            for (int i = 0; i < count; i++) {
+                out.writeInt(offsets[i]);
+            }
+            for (Entry entry : byName) {
+                byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(name.length);
+                out.write(name);
+                out.writeLong(entry.size);
+                out.writeLong(entry.modified);
+                out.writeLong(entry.capture);
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOG.debug("Indexed creation dates of {} images in {}", count, directory);
+    }
+
+    private static long seconds(final LocalDateTime date) {
+        return date.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static long seconds(final BasicFileAttributes attributes) {
+        return attributes.lastModifiedTime().to(TimeUnit.SECONDS);
+    }
+
+    /**
+     * An indexed image.
+     */
+    static final class Entry {
+        private final String name;
+        private final long size;
+        /**
+         * Modification time in seconds.
+         */
+        private final long modified;
+        /**
+         * Creation date in seconds of the local time line.
+         */
+        private final long capture;
+
+        private Entry(final String name, final long size, final long modified, final long capture) {
+            this.name = name;
+            this.size = size;
+            this.modified = modified;
+            this.capture = capture;
+        }
+
+        /**
+         * @param name       Name of the image.
+         * @param attributes Attributes of the image.
+         * @param date       Its creation date.
+         */
+        Entry(final String name, final BasicFileAttributes attributes, final LocalDateTime date) {
+            this(name, attributes.size(), seconds(attributes), seconds(date));
+        }
+
+        /**
+         * @return the image's name.
+         */
+        String getName() {
+            return name;
+        }
+
+        /**
+         * @return the image's creation date.
+         */
+        LocalDateTime getDate() {
+            return LocalDateTime.ofEpochSecond(capture, 0, ZoneOffset.UTC);
+        }
+
+        /**
+         * @param attributes Current attributes of the image.
+         * @return {@code true} if the image did not change since it was
+         * indexed.
+         */
+        boolean matches(final BasicFileAttributes attributes) {
+            return attributes != null && attributes.size() == size && seconds(attributes) == modified;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+/**
+ * Where the creation date of a renamed file came from.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+public enum DateSource {
+    /**
+     * The image's own metadata, e.g. EXIF.
+     */
+    METADATA,
+    /**
+     * A date encoded in the filename, see {@link FilenameDates}.
+     */
+    FILENAME,
+    /**
+     * The file's creation or modification time, see
+     * {@link RenameJob.Builder#filesystemDates(boolean)}.
+     */
+    FILESYSTEM
+}
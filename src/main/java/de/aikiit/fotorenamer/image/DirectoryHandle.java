@@ -0,0 +1,255 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.collect.Lists;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SecureDirectoryStream;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * An opened directory that all listing, attribute reads and moves of a
+ * renaming run are performed relative to.
+ * <br>
+ * Where the platform supports it (e.g. Linux) the directory is opened once
+ * as a {@link SecureDirectoryStream}: file names are then resolved
+ * relative to the open handle instead of walking the full path for each
+ * operation, and a directory that is replaced while a run is in progress
+ * does not redirect any moves. Other platforms fall back to path based
+ * operations, as do creating subdirectories and links, which a
+ * {@link SecureDirectoryStream} does not offer.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+final class DirectoryHandle implements Closeable {
+    /**
+     * Logger for this class.
+     */
+    private static final Logger LOG = LogManager.getLogger(DirectoryHandle.class);
+
+    private final Path directory;
+    private final DirectoryStream<Path> stream;
+    private final SecureDirectoryStream<Path> secure;
+    /**
+     * Targets of moves in progress. Checking a target and moving onto it are
+     * two steps, parallel moves onto the same name must not both pass the
+     * check.
+     */
+    private final Set<String> moving = ConcurrentHashMap.newKeySet();
+
+    private DirectoryHandle(final Path directory, final DirectoryStream<Path> stream) {
+        this.directory = directory;
+        this.stream = stream;
+        this.secure = stream instanceof SecureDirectoryStream ? (SecureDirectoryStream<Path>) stream : null;
+    }
+
+    /**
+     * Opens the given directory.
+     *
+     * @param directory Directory to open.
+     * @return the opened directory, to be closed after processing.
+     * @throws IOException if the directory cannot be opened.
+     */
+    static DirectoryHandle open(final File directory) throws IOException {
+        Path path = directory.toPath();
+        DirectoryHandle handle = new DirectoryHandle(path, Files.newDirectoryStream(path));
+        if (!handle.isSecure()) {
+            LOG.debug("No directory-relative operations available for {}, using paths", path);
+        }
+        return handle;
+    }
+
+    /**
+     * @return {@code true} if operations are performed relative to the
+     * open directory.
+     */
+    boolean isSecure() {
+        return secure != null;
+    }
+
+    /**
+     * Lists all regular files whose name is accepted by the given filter.
+     * A directory's entries can only be listed once per handle.
+     *
+     * @param nameFilter Filter on the file names.
+     * @return the matching files.
+     * @throws IOException if the directory cannot be read.
+     */
+    List<File> list(final Predicate<String> nameFilter) throws IOException {
+        return Lists.newArrayList(catalog(nameFilter).getFiles());
+    }
+
+    /**
+     * Lists all regular files whose name is accepted by the given filter
+     * into a catalog, together with the attributes read to check their
+     * type, so that sizes and timestamps are available without further
+     * file system calls.
+     *
+     * @param nameFilter Filter on the file names.
+     * @return the matching files and their attributes in listing order.
+     * @throws IOException if the directory cannot be read.
+     */
+    FileCatalog catalog(final Predicate<String> nameFilter) throws IOException {
+        FileCatalog catalog = new FileCatalog();
+        int id = catalog.addDirectory(directory);
+        try {
+            for (Path entry : stream) {
+                Path fileName = entry.getFileName();
+                if (fileName == null) {
+                    continue;
+                }
+                String name = fileName.toString();
+                if (!nameFilter.test(name)) {
+                    continue;
+                }
+                try {
+                    BasicFileAttributes attributes = readAttributes(name);
+                    if (attributes.isRegularFile()) {
+                        catalog.add(id, name, attributes);
+                    }
+                } catch (IOException e) {
+                    LOG.debug("Skipping {}: {}", name, e.getMessage());
+                }
+            }
+        } catch (IllegalStateException e) {
+            throw new IOException("Directory " + directory + " was already listed", e);
+        }
+        return catalog;
+    }
+
+    /**
+     * Checks whether the given entry is a regular file, following links.
+     *
+     * @param name Name of the entry.
+     * @return {@code true} if the entry exists and is a regular file.
+     */
+    boolean isRegularFile(final String name) {
+        try {
+            return readAttributes(name).isRegularFile();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks whether the given entry exists, following links.
+     *
+     * @param name Name of the entry.
+     * @return {@code true} if the entry exists.
+     */
+    boolean exists(final String name) {
+        try {
+            readAttributes(name);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private BasicFileAttributes readAttributes(final String name) throws IOException {
+        if (secure == null) {
+            return Files.readAttributes(directory.resolve(name), BasicFileAttributes.class);
+        }
+        BasicFileAttributeView view = secure.getFileAttributeView(Paths.get(name), BasicFileAttributeView.class);
+        if (view == null) {
+            throw new NoSuchFileException(name);
+        }
+        return view.readAttributes();
+    }
+
+    /**
+     * Renames an entry of this directory. Existing files are never replaced.
+     *
+     * @param source Current name of the entry.
+     * @param target New name of the entry.
+     * @throws FileAlreadyExistsException if the target already exists.
+     * @throws IOException                if the entry cannot be renamed.
+     */
+    void move(final String source, final String target) throws IOException {
+        if (!moving.add(target)) {
+            throw new FileAlreadyExistsException(target);
+        }
+        try {
+            if (secure == null) {
+                Files.move(directory.resolve(source), directory.resolve(target));
+                return;
+            }
+            // unlike Files.move, a directory-relative move replaces existing files
+            if (exists(target)) {
+                throw new FileAlreadyExistsException(target);
+            }
+            secure.move(Paths.get(source), secure, Paths.get(target));
+        } finally {
+            moving.remove(target);
+        }
+    }
+
+    /**
+     * Creates a subdirectory unless it exists already.
+     *
+     * @param name Name of the subdirectory.
+     * @throws IOException if the subdirectory cannot be created.
+     */
+    void createDirectory(final String name) throws IOException {
+        Path subdirectory = directory.resolve(name);
+        if (!Files.isDirectory(subdirectory)) {
+            Files.createDirectories(subdirectory);
+        }
+    }
+
+    /**
+     * Replaces an entry with a hard link to another entry of this
+     * directory. The entry is replaced atomically, it never disappears.
+     *
+     * @param name   Entry to replace.
+     * @param target Entry to link to.
+     * @throws IOException if the link cannot be created.
+     */
+    void replaceWithLink(final String name, final String target) throws IOException {
+        Path link = directory.resolve("." + name + ".link");
+        Files.createLink(link, directory.resolve(target));
+        try {
+            Files.move(link, directory.resolve(name), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(link);
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        stream.close();
+    }
+}
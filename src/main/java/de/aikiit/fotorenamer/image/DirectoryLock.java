@@ -0,0 +1,153 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import de.aikiit.fotorenamer.exception.DirectoryLockedException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Exclusive lock on a directory that is being renamed.
+ * <br>
+ * Within this JVM directories are claimed by their canonical path. In
+ * addition a {@link FileLock} on the file {@link #LOCK_FILE_NAME} inside the
+ * directory keeps other processes from working on it at the same time. If
+ * the lock file cannot be created (e.g. on read-only media) only the JVM
+ * internal claim is held.
+ * <br>
+ * The lock file is left in place when the lock is released. Deleting it
+ * would allow a process that opened it just before to lock the deleted file,
+ * while a third process creates and locks a new one.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+final class DirectoryLock implements AutoCloseable {
+    /**
+     * Logger for this class.
+     */
+    private static final Logger LOG = LogManager.getLogger(DirectoryLock.class);
+
+    /**
+     * Name of the lock file, it is kept after the lock is released.
+     */
+    static final String LOCK_FILE_NAME = ".fotorenamer.lock";
+
+    /**
+     * Directories claimed within this JVM.
+     */
+    private static final Set<Path> CLAIMED = ConcurrentHashMap.newKeySet();
+
+    private final Path directory;
+    private final Path lockFile;
+    private final FileChannel channel;
+    private final FileLock fileLock;
+    private final AtomicBoolean released = new AtomicBoolean(false);
+
+    private DirectoryLock(final Path directory, final FileChannel channel, final FileLock fileLock) {
+        this.directory = directory;
+        this.lockFile = directory.resolve(LOCK_FILE_NAME);
+        this.channel = channel;
+        this.fileLock = fileLock;
+    }
+
+    /**
+     * Acquires the lock of the given directory without waiting.
+     *
+     * @param directory Directory to lock.
+     * @return the lock, to be closed after processing.
+     * @throws DirectoryLockedException if the directory is already locked.
+     */
+    static DirectoryLock acquire(final File directory) throws DirectoryLockedException {
+        Path path;
+        try {
+            path = directory.getCanonicalFile().toPath();
+        } catch (IOException e) {
+            path = directory.getAbsoluteFile().toPath();
+        }
+        if (!CLAIMED.add(path)) {
+            throw new DirectoryLockedException(directory);
+        }
+
+        Path lockFile = path.resolve(LOCK_FILE_NAME);
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock fileLock = channel.tryLock();
+            if (fileLock == null) {
+                channel.close();
+                CLAIMED.remove(path);
+                throw new DirectoryLockedException(directory);
+            }
+            return new DirectoryLock(path, channel, fileLock);
+        } catch (OverlappingFileLockException e) {
+            closeQuietly(channel);
+            CLAIMED.remove(path);
+            throw new DirectoryLockedException(directory);
+        } catch (IOException e) {
+            closeQuietly(channel);
+            LOG.warn("Unable to create lock file in {}, other processes are not kept out: {}", path, e.getMessage());
+            return new DirectoryLock(path, null, null);
+        }
+    }
+
+    /**
+     * @return {@code true} if other processes are kept out, too.
+     */
+    boolean isFileLocked() {
+        return fileLock != null;
+    }
+
+    /**
+     * Releases this lock, subsequent calls have no effect.
+     */
+    @Override
+    public void close() {
+        if (!released.compareAndSet(false, true)) {
+            return;
+        }
+        if (fileLock != null) {
+            try {
+                fileLock.release();
+            } catch (IOException e) {
+                LOG.warn("Unable to release lock file {}: {}", lockFile, e.getMessage());
+            }
+            closeQuietly(channel);
+        }
+        CLAIMED.remove(directory);
+    }
+
+    private static void closeQuietly(final FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOG.debug("Unable to close lock channel: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+/**
+ * What happens to byte-identical copies of a file before a directory is
+ * renamed. Within each group of identical files the first one by name is
+ * regarded as the original.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+public enum DuplicateAction {
+    /**
+     * Duplicates are only listed in the report of the run.
+     */
+    REPORT,
+    /**
+     * Duplicates are replaced by hard links to their original, which frees
+     * their disk space but keeps their names.
+     */
+    HARD_LINK,
+    /**
+     * Duplicates are moved into the subdirectory {@link #FOLDER} and are
+     * not renamed.
+     */
+    MOVE_ASIDE;
+
+    /**
+     * Subdirectory that duplicates are moved into.
+     */
+    public static final String FOLDER = "duplicates";
+}
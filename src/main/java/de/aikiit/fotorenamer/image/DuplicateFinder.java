@@ -0,0 +1,233 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.collect.Lists;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Finds byte-identical files.
+ * <br>
+ * Hashing every file of a large library is not affordable, therefore
+ * candidates are narrowed down in three stages:
+ * <ol>
+ * <li>files are grouped by their size from the directory listing, which
+ * costs no I/O at all,</li>
+ * <li>files of equal size are grouped by a hash of their first and last
+ * {@link #BLOCK_SIZE} bytes,</li>
+ * <li>only the remaining candidates are hashed completely, reading them via
+ * memory-mapped windows of {@link #MAP_SIZE} bytes.</li>
+ * </ol>
+ * Hard links to the same file are identical without being read, only one
+ * of them takes part in the stages.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+final class DuplicateFinder {
+    /**
+     * Logger for this class.
+     */
+    private static final Logger LOG = LogManager.getLogger(DuplicateFinder.class);
+
+    /**
+     * Size of the blocks hashed in the second stage.
+     */
+    static final int BLOCK_SIZE = 4 * 1024;
+    /**
+     * Size of a memory-mapped window in the third stage.
+     */
+    static final long MAP_SIZE = 64L * 1024 * 1024;
+
+    private static final HashFunction PARTIAL_HASH = Hashing.murmur3_128();
+    private static final HashFunction FULL_HASH = Hashing.sha256();
+
+    private final FileTaskRunner runner;
+
+    /**
+     * Creates a finder that hashes files with the given runner.
+     *
+     * @param runner Runner to hash files in parallel.
+     */
+    DuplicateFinder(final FileTaskRunner runner) {
+        this.runner = runner;
+    }
+
+    /**
+     * Groups the given files by their content.
+     *
+     * @param files    Files to check.
+     * @param size     Size of a file, e.g. from its directory listing.
+     * @param identity Identity of a file, the same for all hard links to
+     *                 it, e.g. its inode number; {@code null} if unknown.
+     * @return groups of at least two identical files, each ordered by
+     * path, so that the first file can be regarded as the original.
+     */
+    List<List<File>> find(final Collection<File> files, final ToLongFunction<File> size,
+                          final Function<File, Object> identity) {
+        // the first link of a file stands for all of them
+        final Map<Object, List<File>> links = new HashMap<>();
+        final List<File> distinct = Lists.newArrayList();
+        for (File file : files) {
+            Object key = identity.apply(file);
+            List<File> linked = key == null ? Lists.newArrayList() : links.computeIfAbsent(key,
+                    ignored -> Lists.newArrayList());
+            if (linked.isEmpty()) {
+                distinct.add(file);
+            }
+            linked.add(file);
+        }
+        final Map<File, List<File>> linked = new HashMap<>();
+        for (List<File> same : links.values()) {
+            if (same.size() > 1) {
+                linked.put(same.get(0), same);
+            }
+        }
+        LOG.debug("{} files are hard links to {} others", files.size() - distinct.size(), linked.size());
+
+        List<List<File>> candidates = splitBy(Lists.<List<File>>newArrayList(distinct), size::applyAsLong);
+        LOG.debug("{} groups of files with the same size", candidates.size());
+        candidates = splitByHash(candidates, DuplicateFinder::partialHash);
+        LOG.debug("{} groups of files with the same first and last block", candidates.size());
+        candidates = splitByHash(candidates, DuplicateFinder::fullHash);
+        LOG.debug("{} groups of duplicates", candidates.size());
+
+        List<List<File>> duplicates = Lists.newArrayList();
+        for (List<File> group : candidates) {
+            List<File> all = Lists.newArrayList();
+            for (File file : group) {
+                List<File> same = linked.remove(file);
+                if (same == null) {
+                    all.add(file);
+                } else {
+                    all.addAll(same);
+                }
+            }
+            duplicates.add(all);
+        }
+        duplicates.addAll(linked.values());
+
+        for (List<File> group : duplicates) {
+            group.sort(Comparator.comparing(File::getPath));
+        }
+        duplicates.sort(Comparator.comparing(group -> group.get(0).getPath()));
+        return duplicates;
+    }
+
+    /**
+     * Splits each group by the given key and keeps groups with more than
+     * one file.
+     */
+    private static <K> List<List<File>> splitBy(final List<List<File>> groups, final Function<File, K> key) {
+        List<List<File>> result = Lists.newArrayList();
+        for (List<File> group : groups) {
+            group.stream()
+                    .collect(Collectors.groupingBy(key))
+                    .values().stream()
+                    .filter(files -> files.size() > 1)
+                    .forEach(result::add);
+        }
+        return result;
+    }
+
+    /**
+     * Splits each group by a hash. The files of all groups are hashed in a
+     * single parallel pass, since most groups are pairs and would not keep
+     * more than two threads busy. Files that cannot be read are left out.
+     */
+    private List<List<File>> splitByHash(final List<List<File>> groups, final HashStage stage) {
+        List<File> files = Lists.newArrayList();
+        groups.forEach(files::addAll);
+        Map<File, HashCode> hashes = new ConcurrentHashMap<>();
+        runner.run(files, file -> {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                hashes.put(file, stage.hash(channel));
+            } catch (IOException | UncheckedIOException e) {
+                LOG.warn("Unable to hash {}: {}", file, e.getMessage());
+            }
+        });
+
+        List<List<File>> hashed = Lists.newArrayListWithCapacity(groups.size());
+        for (List<File> group : groups) {
+            hashed.add(group.stream().filter(hashes::containsKey).collect(Collectors.toList()));
+        }
+        return splitBy(hashed, hashes::get);
+    }
+
+    private static HashCode partialHash(final FileChannel channel) throws IOException {
+        long size = channel.size();
+        Hasher hasher = PARTIAL_HASH.newHasher();
+        ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+        read(channel, buffer, 0);
+        hasher.putBytes(buffer);
+        if (size > BLOCK_SIZE) {
+            buffer.clear();
+            read(channel, buffer, Math.max(BLOCK_SIZE, size - BLOCK_SIZE));
+            hasher.putBytes(buffer);
+        }
+        return hasher.hash();
+    }
+
+    private static void read(final FileChannel channel, final ByteBuffer buffer, final long position)
+            throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset);
+            if (read < 0) {
+                break;
+            }
+            offset += read;
+        }
+        buffer.flip();
+    }
+
+    private static HashCode fullHash(final FileChannel channel) throws IOException {
+        long size = channel.size();
+        Hasher hasher = FULL_HASH.newHasher();
+        for (long position = 0; position < size; position += MAP_SIZE) {
+            hasher.putBytes(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_SIZE, size - position)));
+        }
+        return hasher.hash();
+    }
+
+    /**
+     * A hash computed from an open file.
+     */
+    private interface HashStage {
+        HashCode hash(FileChannel channel) throws IOException;
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.base.Strings;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Defines how many errors a run may produce before it is aborted.
+ * <br>
+ * A budget is either an absolute number of errors (<code>25</code>) or a
+ * percentage of the files to process (<code>10%</code>). It can be set via
+ * the system property {@link #SYSTEM_PROPERTY}, by default a run is never
+ * aborted.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+public final class ErrorBudget {
+    /**
+     * Logger for this class.
+     */
+    private static final Logger LOG = LogManager.getLogger(ErrorBudget.class);
+
+    /**
+     * System property to configure the error budget.
+     */
+    public static final String SYSTEM_PROPERTY = "fotorenamer.errorbudget";
+
+    /**
+     * Budget that never aborts a run.
+     */
+    public static final ErrorBudget UNLIMITED = new ErrorBudget(-1, false);
+
+    /**
+     * Suffix that marks a relative budget.
+     */
+    private static final String PERCENT = "%";
+
+    /**
+     * Maximum value, either absolute or in percent; negative means unlimited.
+     */
+    private final double limit;
+    /**
+     * Whether {@link #limit} is relative to the amount of files.
+     */
+    private final boolean relative;
+
+    private ErrorBudget(final double limit, final boolean relative) {
+        this.limit = limit;
+        this.relative = relative;
+    }
+
+    /**
+     * Creates a budget that allows the given absolute number of errors.
+     *
+     * @param maxErrors Maximum number of errors before a run is aborted.
+     * @return the corresponding budget.
+     */
+    public static ErrorBudget absolute(final long maxErrors) {
+        if (maxErrors < 0) {
+            throw new IllegalArgumentException("Error budget must not be negative: " + maxErrors);
+        }
+        return new ErrorBudget(maxErrors, false);
+    }
+
+    /**
+     * Creates a budget that allows errors up to the given percentage of all
+     * files of a run.
+     *
+     * @param percent Percentage (0-100) of files that may fail.
+     * @return the corresponding budget.
+     */
+    public static ErrorBudget percentage(final double percent) {
+        if (percent < 0 || percent > 100) {
+            throw new IllegalArgumentException("Error budget must be between 0% and 100%: " + percent);
+        }
+        return new ErrorBudget(percent, true);
+    }
+
+    /**
+     * Parses a budget, e.g. <code>25</code> or <code>10%</code>.
+     *
+     * @param value Textual representation of the budget.
+     * @return the parsed budget or {@link #UNLIMITED} if the value is empty or
+     * invalid.
+     */
+    public static ErrorBudget parse(final String value) {
+        if (Strings.isNullOrEmpty(value) || value.trim().isEmpty()) {
+            return UNLIMITED;
+        }
+        String budget = value.trim();
+        try {
+            if (budget.endsWith(PERCENT)) {
+                return percentage(Double.parseDouble(budget.substring(0, budget.length() - 1).trim()));
+            }
+            return absolute(Long.parseLong(budget));
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Ignoring invalid error budget '{}': {}", budget, e.getMessage());
+            return UNLIMITED;
+        }
+    }
+
+    /**
+     * Reads the budget from the system property {@link #SYSTEM_PROPERTY}.
+     *
+     * @return the configured budget, {@link #UNLIMITED} if unset.
+     */
+    public static ErrorBudget fromSystemProperties() {
+        return parse(System.getProperty(SYSTEM_PROPERTY));
+    }
+
+    /**
+     * Checks whether the given number of errors exceeds this budget.
+     *
+     * @param errors     Number of errors that count against the budget.
+     * @param totalFiles Number of files of the current run.
+     * @return {@code true} if the run should be aborted.
+     */
+    public boolean isExceeded(final long errors, final long totalFiles) {
+        if (limit < 0) {
+            return false;
+        }
+        if (relative) {
+            return totalFiles > 0 && errors * 100.0 / totalFiles > limit;
+        }
+        return errors > limit;
+    }
+
+    @Override
+    public String toString() {
+        if (limit < 0) {
+            return "unlimited";
+        }
+        return relative ? limit + PERCENT : String.valueOf((long) limit);
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+/**
+ * Categories of problems that may occur while renaming a single file.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+public enum ErrorCategory {
+    /**
+     * The file does not contain a usable creation date.
+     */
+    NO_EXIF(false),
+    /**
+     * The file's metadata could not be read or parsed.
+     */
+    PARSE_ERROR(true),
+    /**
+     * The file could not be moved to its new name.
+     */
+    MOVE_FAILED(true),
+    /**
+     * The target filename is already taken.
+     */
+    COLLISION(true);
+
+    /**
+     * Whether this category hints at a broken storage or setup.
+     */
+    private final boolean countsAgainstBudget;
+
+    ErrorCategory(final boolean countsAgainstBudget) {
+        this.countsAgainstBudget = countsAgainstBudget;
+    }
+
+    /**
+     * Files without EXIF data are expected in any mixed directory and
+     * therefore do not count against the error budget of a run.
+     *
+     * @return {@code true} if errors of this category are checked against
+     * the {@link ErrorBudget}.
+     */
+    public boolean countsAgainstBudget() {
+        return countsAgainstBudget;
+    }
+}
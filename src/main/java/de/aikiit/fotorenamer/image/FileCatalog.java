@@ -0,0 +1,617 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compact, column-oriented catalog of the files of a run.
+ * <br>
+ * Instead of a {@link File} and a {@link BasicFileAttributes} object per
+ * file, each entry is a row in primitive arrays: the id of its directory,
+ * its name as UTF-8 bytes, its size, timestamps and inode number, the
+ * creation date once it was extracted as a packed <code>long</code> and its
+ * processing status as a <code>byte</code>. Entries are found by name via
+ * an open-addressing hash table of <code>int</code>s. This keeps a run's
+ * heap usage at about 50 bytes plus the name's length per file, so that
+ * directories of millions of files can be processed;
+ * {@link File} and {@link FileGroup} objects are only created for the
+ * files that are being processed.
+ * <br>
+ * The catalog is filled by a single thread. Afterwards it may be read
+ * concurrently, and dates and statuses may be set concurrently as long as
+ * each entry is only updated by one thread.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+final class FileCatalog {
+    /**
+     * Status of an entry that was not processed yet.
+     */
+    static final byte PENDING = 0;
+    /**
+     * Status of an entry that vanished before it was processed.
+     */
+    static final byte MISSING = -1;
+
+    private static final int INITIAL_CAPACITY = 64;
+    /**
+     * Marker of an entry without size and timestamps.
+     */
+    private static final long NO_ATTRIBUTES = -1;
+    /**
+     * Packed date of an entry without a creation date.
+     */
+    private static final long NO_DATE = 0;
+    private static final long YEAR = 10_000_000_000L;
+    private static final long MONTH = 100_000_000L;
+    private static final long DAY = 1_000_000L;
+    private static final long HOUR = 10_000L;
+    private static final long MINUTE = 100L;
+
+    private final List<Path> directories = Lists.newArrayList();
+    private final Map<Path, Integer> directoryIds = Maps.newHashMap();
+
+    private int size;
+    private int[] directory = new int[INITIAL_CAPACITY];
+    private int[] nameStart = new int[INITIAL_CAPACITY + 1];
+    private byte[] names = new byte[INITIAL_CAPACITY * 16];
+    private long[] fileSize = new long[INITIAL_CAPACITY];
+    private int[] modified = new int[INITIAL_CAPACITY];
+    private int[] created = new int[INITIAL_CAPACITY];
+    private long[] inode = new long[INITIAL_CAPACITY];
+    private long[] date = new long[INITIAL_CAPACITY];
+    private byte[] status = new byte[INITIAL_CAPACITY];
+    /**
+     * Hash table of entry index + 1, zero marks a free slot.
+     */
+    private int[] table = new int[INITIAL_CAPACITY * 2];
+
+    /**
+     * Entry indices arranged group by group, primary first.
+     */
+    private int[] groupMembers = new int[0];
+    /**
+     * Start of each group in {@link #groupMembers}, plus its end.
+     */
+    private int[] groupStart = {0};
+
+    /**
+     * Creates a catalog of the given files without attributes, e.g. for
+     * files that are not taken from a directory listing.
+     *
+     * @param files Files to add.
+     * @return the catalog.
+     */
+    static FileCatalog of(final Iterable<File> files) {
+        FileCatalog catalog = new FileCatalog();
+        for (File file : files) {
+            catalog.add(catalog.addDirectory(parentOf(file)), file.getName(), null);
+        }
+        return catalog;
+    }
+
+    private static Path parentOf(final File file) {
+        File parent = file.getParentFile();
+        return parent == null ? Paths.get("") : parent.toPath();
+    }
+
+    /**
+     * Registers a directory, registering it again returns the same id.
+     *
+     * @param path Directory of subsequently added files.
+     * @return the id of the directory.
+     */
+    int addDirectory(final Path path) {
+        return directoryIds.computeIfAbsent(path, p -> {
+            directories.add(p);
+            return directories.size() - 1;
+        });
+    }
+
+    /**
+     * Adds a file.
+     *
+     * @param directoryId Id of the file's directory.
+     * @param name        The file's name.
+     * @param attributes  Attributes of the file, may be {@code null}.
+     * @return the index of the new entry.
+     */
+    int add(final int directoryId, final String name, final BasicFileAttributes attributes) {
+        if (size == directory.length) {
+            grow();
+        }
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int start = nameStart[size];
+        if (start + bytes.length > names.length) {
+            names = Arrays.copyOf(names, Math.max(2 * names.length, start + bytes.length));
+        }
+        System.arraycopy(bytes, 0, names, start, bytes.length);
+        nameStart[size + 1] = start + bytes.length;
+        directory[size] = directoryId;
+        if (attributes == null) {
+            fileSize[size] = NO_ATTRIBUTES;
+            inode[size] = ProcessingOrder.UNKNOWN;
+        } else {
+            fileSize[size] = attributes.size();
+            modified[size] = seconds(attributes.lastModifiedTime());
+            created[size] = seconds(attributes.creationTime());
+            inode[size] = ProcessingOrder.inode(directories.get(directoryId).resolve(name).toFile(), attributes);
+        }
+        insert(size, hash(directoryId, bytes, bytes.length));
+        return size++;
+    }
+
+    private void grow() {
+        int capacity = 2 * directory.length;
+        directory = Arrays.copyOf(directory, capacity);
+        nameStart = Arrays.copyOf(nameStart, capacity + 1);
+        fileSize = Arrays.copyOf(fileSize, capacity);
+        modified = Arrays.copyOf(modified, capacity);
+        created = Arrays.copyOf(created, capacity);
+        inode = Arrays.copyOf(inode, capacity);
+        date = Arrays.copyOf(date, capacity);
+        status = Arrays.copyOf(status, capacity);
+        table = new int[2 * capacity];
+        for (int i = 0; i < size; i++) {
+            insert(i, hash(directory[i], names, nameStart[i], nameStart[i + 1]));
+        }
+    }
+
+    private void insert(final int index, final int hash) {
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = index + 1;
+    }
+
+    /**
+     * Timestamps are kept as unsigned seconds since the epoch, which lasts
+     * until 2106.
+     */
+    private static int seconds(final FileTime time) {
+        if (time == null) {
+            return 0;
+        }
+        long seconds = time.to(TimeUnit.SECONDS);
+        return seconds <= 0 ? 0 : (int) Math.min(seconds, 0xFFFFFFFFL);
+    }
+
+    private static FileTime time(final int seconds) {
+        return FileTime.from(Integer.toUnsignedLong(seconds), TimeUnit.SECONDS);
+    }
+
+    private static int hash(final int directoryId, final byte[] bytes, final int length) {
+        return hash(directoryId, bytes, 0, length);
+    }
+
+    private static int hash(final int directoryId, final byte[] bytes, final int from, final int to) {
+        int hash = directoryId;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        // spread the bits for the power of two table
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * @return the number of entries.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param index Index of an entry.
+     * @return the entry's name.
+     */
+    String getName(final int index) {
+        return new String(names, nameStart[index], nameStart[index + 1] - nameStart[index], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param index Index of an entry.
+     * @return the entry as a new file object.
+     */
+    File getFile(final int index) {
+        return directories.get(directory[index]).resolve(getName(index)).toFile();
+    }
+
+    /**
+     * Finds the entry of a file.
+     *
+     * @param file File to look up.
+     * @return its index or <code>-1</code> if it is not in this catalog.
+     */
+    int indexOf(final File file) {
+        Integer directoryId = directoryIds.get(parentOf(file));
+        if (directoryId == null) {
+            return -1;
+        }
+        byte[] bytes = file.getName().getBytes(StandardCharsets.UTF_8);
+        int mask = table.length - 1;
+        for (int slot = hash(directoryId, bytes, bytes.length) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int index = table[slot] - 1;
+            if (directory[index] == directoryId && nameEquals(index, bytes)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private boolean nameEquals(final int index, final byte[] bytes) {
+        int start = nameStart[index];
+        int length = nameStart[index + 1] - start;
+        if (length != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (names[start + i] != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param index Index of an entry.
+     * @return the entry's size in bytes, its current size if it was added
+     * without attributes.
+     */
+    long getSize(final int index) {
+        return fileSize[index] == NO_ATTRIBUTES ? getFile(index).length() : fileSize[index];
+    }
+
+    /**
+     * @param index Index of an entry.
+     * @return the entry's inode number, {@link ProcessingOrder#UNKNOWN} if
+     * there is none.
+     */
+    long getInode(final int index) {
+        return inode[index];
+    }
+
+    /**
+     * Creates a view of the attributes an entry was added with, precise to
+     * the second.
+     *
+     * @param index Index of an entry.
+     * @return the attributes or {@code null} if it was added without.
+     */
+    BasicFileAttributes getAttributes(final int index) {
+        if (fileSize[index] == NO_ATTRIBUTES) {
+            return null;
+        }
+        return new Attributes(fileSize[index], time(modified[index]), time(created[index]));
+    }
+
+    /**
+     * @param index Index of an entry.
+     * @param value Extracted creation date, {@code null} for none.
+     */
+    void setDate(final int index, final LocalDateTime value) {
+        date[index] = value == null ? NO_DATE
+                : value.getYear() * YEAR + value.getMonthValue() * MONTH + value.getDayOfMonth() * DAY
+                + value.getHour() * HOUR + value.getMinute() * MINUTE + value.getSecond();
+    }
+
+    /**
+     * @param index Index of an entry.
+     * @return the extracted creation date, {@code null} if there is none.
+     */
+    LocalDateTime getDate(final int index) {
+        long packed = date[index];
+        if (packed == NO_DATE) {
+            return null;
+        }
+        return LocalDateTime.of((int) (packed / YEAR), (int) (packed / MONTH % 100), (int) (packed / DAY % 100),
+                (int) (packed / HOUR % 100), (int) (packed / MINUTE % 100), (int) (packed % 100));
+    }
+
+    /**
+     * @param index Index of an entry.
+     * @param value Status, {@link #PENDING}, {@link #MISSING} or the
+     *              outcome of processing the entry.
+     */
+    void setStatus(final int index, final byte value) {
+        status[index] = value;
+    }
+
+    /**
+     * @param index  Index of an entry.
+     * @param result Outcome of processing the entry.
+     */
+    void setStatus(final int index, final FileResult.Status result) {
+        status[index] = (byte) (result.ordinal() + 1);
+    }
+
+    /**
+     * @param index Index of an entry.
+     * @return the entry's status.
+     */
+    byte getStatus(final int index) {
+        return status[index];
+    }
+
+    /**
+     * @param index Index of an entry.
+     * @return the outcome of processing the entry, {@code null} if it is
+     * {@link #PENDING} or {@link #MISSING}.
+     */
+    FileResult.Status getResult(final int index) {
+        return status[index] > 0 ? FileResult.Status.values()[status[index] - 1] : null;
+    }
+
+    /**
+     * @return all entries as a list of files, each created on access.
+     */
+    List<File> getFiles() {
+        return new AbstractList<File>() {
+            @Override
+            public File get(final int index) {
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException("Index " + index + " of " + size);
+                }
+                return getFile(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Groups the {@link #PENDING} entries by directory and base name, see
+     * {@link FileGroup}. Entries are sorted by a hash of their base name,
+     * so that no object is created per entry; groups that consist of
+     * sidecars only are dropped.
+     *
+     * @return the number of groups, in the order of their first entry.
+     */
+    int group() {
+        long[] keys = new long[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (status[i] == PENDING) {
+                keys[count++] = ((long) baseHash(i) << 32) | i;
+            }
+        }
+        Arrays.sort(keys, 0, count);
+
+        // groups in hash order, members in listing order
+        // one spare slot, as the members of a group are written behind its primary
+        int[] members = new int[count + 1];
+        int[] starts = new int[count + 1];
+        int groups = 0;
+        int written = 0;
+        boolean[] assigned = new boolean[count];
+        int[] candidates = new int[count];
+        for (int run = 0; run < count; ) {
+            int end = run;
+            while (end < count && (keys[end] >>> 32) == (keys[run] >>> 32)) {
+                end++;
+            }
+            // entries of a run share the hash, but not necessarily the base name
+            for (int first = run; first < end; first++) {
+                if (assigned[first]) {
+                    continue;
+                }
+                int found = 0;
+                int entry = (int) keys[first];
+                for (int other = first; other < end; other++) {
+                    if (!assigned[other] && sameBase(entry, (int) keys[other])) {
+                        assigned[other] = true;
+                        candidates[found++] = (int) keys[other];
+                    }
+                }
+                int added = arrange(candidates, found, members, written);
+                if (added > 0) {
+                    written += added;
+                    starts[++groups] = written;
+                }
+            }
+            run = end;
+        }
+
+        // order groups by their first entry in the listing
+        long[] order = new long[groups];
+        for (int g = 0; g < groups; g++) {
+            int first = Integer.MAX_VALUE;
+            for (int i = starts[g]; i < starts[g + 1]; i++) {
+                first = Math.min(first, members[i]);
+            }
+            order[g] = ((long) first << 32) | g;
+        }
+        Arrays.sort(order);
+        groupMembers = new int[written];
+        groupStart = new int[groups + 1];
+        for (int g = 0; g < groups; g++) {
+            int source = (int) order[g];
+            int length = starts[source + 1] - starts[source];
+            System.arraycopy(members, starts[source], groupMembers, groupStart[g], length);
+            groupStart[g + 1] = groupStart[g] + length;
+        }
+        return groups;
+    }
+
+    /**
+     * Writes the primary image of a group followed by its other members,
+     * in the order of {@link FileGroup}.
+     *
+     * @return the number of written members, zero for sidecars only.
+     */
+    private int arrange(final int[] candidates, final int count, final int[] target, final int offset) {
+        int primary = -1;
+        int others = offset + 1;
+        for (int i = 0; i < count; i++) {
+            int entry = candidates[i];
+            String name = getName(entry);
+            if (FileGroup.isSidecar(name)) {
+                target[others++] = entry;
+            } else if (primary < 0 || (TiffDateReader.isRaw(name) && !TiffDateReader.isRaw(getName(primary)))) {
+                if (primary >= 0) {
+                    target[others++] = primary;
+                }
+                primary = entry;
+            } else {
+                target[others++] = entry;
+            }
+        }
+        if (primary < 0) {
+            return 0;
+        }
+        target[offset] = primary;
+        return count;
+    }
+
+    private int baseEnd(final int index) {
+        for (int i = nameStart[index + 1] - 1; i >= nameStart[index]; i--) {
+            if (names[i] == '.') {
+                return i;
+            }
+        }
+        return nameStart[index + 1];
+    }
+
+    private int baseHash(final int index) {
+        return hash(directory[index], names, nameStart[index], baseEnd(index));
+    }
+
+    private boolean sameBase(final int a, final int b) {
+        if (directory[a] != directory[b]) {
+            return false;
+        }
+        int lengthA = baseEnd(a) - nameStart[a];
+        if (lengthA != baseEnd(b) - nameStart[b]) {
+            return false;
+        }
+        for (int i = 0; i < lengthA; i++) {
+            if (names[nameStart[a] + i] != names[nameStart[b] + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of groups found by the last {@link #group()}.
+     */
+    int getGroupCount() {
+        return groupStart.length - 1;
+    }
+
+    /**
+     * @param group Number of a group.
+     * @return the index of the group's primary image.
+     */
+    int getPrimary(final int group) {
+        return groupMembers[groupStart[group]];
+    }
+
+    /**
+     * Creates the files of a group.
+     *
+     * @param group Number of a group.
+     * @return the group.
+     */
+    FileGroup getGroup(final int group) {
+        int[] indices = Arrays.copyOfRange(groupMembers, groupStart[group], groupStart[group + 1]);
+        List<File> files = Lists.newArrayListWithCapacity(indices.length);
+        for (int index : indices) {
+            files.add(getFile(index));
+        }
+        return new FileGroup(files, indices);
+    }
+
+    /**
+     * Attributes of an entry, restored from its columns.
+     */
+    private static final class Attributes implements BasicFileAttributes {
+        private final long size;
+        private final FileTime modified;
+        private final FileTime created;
+
+        Attributes(final long size, final FileTime modified, final FileTime created) {
+            this.size = size;
+            this.modified = modified;
+            this.created = created;
+        }
+
+        @Override
+        public FileTime lastModifiedTime() {
+            return modified;
+        }
+
+        @Override
+        public FileTime lastAccessTime() {
+            return modified;
+        }
+
+        @Override
+        public FileTime creationTime() {
+            return created;
+        }
+
+        @Override
+        public boolean isRegularFile() {
+            return true;
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return false;
+        }
+
+        @Override
+        public boolean isSymbolicLink() {
+            return false;
+        }
+
+        @Override
+        public boolean isOther() {
+            return false;
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public Object fileKey() {
+            return null;
+        }
+    }
+}
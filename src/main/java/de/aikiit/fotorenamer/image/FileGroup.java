@@ -0,0 +1,116 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Files of a directory that belong together since they share their base
+ * name, e.g. <code>IMG_0001.CR2</code>, <code>IMG_0001.JPG</code>,
+ * <code>IMG_0001.xmp</code> and <code>IMG_0001.THM</code>.
+ * <br>
+ * A group is renamed as a whole: the creation date is read once from its
+ * primary image and applied to all members, so that catalogues like
+ * Lightroom still find the sidecars of an image after renaming.
+ * <br>
+ * Groups are found by {@link FileCatalog#group()} and created on demand
+ * while a run processes them.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+final class FileGroup {
+    /**
+     * File extensions of sidecars, i.e. metadata and thumbnails that are
+     * renamed with their image but never on their own.
+     */
+    static final List<String> SIDECAR_EXTENSIONS = ImmutableList.of("xmp", "thm");
+
+    private final List<File> members;
+    private final int[] indices;
+
+    /**
+     * Creates a group.
+     *
+     * @param members All files of the group, the primary image first.
+     * @param indices The members' indices in their {@link FileCatalog}.
+     */
+    FileGroup(final List<File> members, final int[] indices) {
+        this.members = ImmutableList.copyOf(members);
+        this.indices = indices.clone();
+    }
+
+    /**
+     * Checks the filename only, without accessing the file itself.
+     *
+     * @param name Filename to check.
+     * @return {@code true} if the file is a sidecar.
+     */
+    static boolean isSidecar(final String name) {
+        String extension = Files.getFileExtension(name).toLowerCase(Locale.ROOT);
+        return SIDECAR_EXTENSIONS.contains(extension);
+    }
+
+    /**
+     * Groups the given files by directory and base name.
+     * Groups that consist of sidecars only are dropped.
+     *
+     * @param files Images and sidecars of a directory listing.
+     * @return all groups that contain at least one image, in the order of
+     * their first file.
+     */
+    static List<FileGroup> group(final Collection<File> files) {
+        FileCatalog catalog = FileCatalog.of(files);
+        int count = catalog.group();
+        ImmutableList.Builder<FileGroup> groups = ImmutableList.builder();
+        for (int group = 0; group < count; group++) {
+            groups.add(catalog.getGroup(group));
+        }
+        return groups.build();
+    }
+
+    /**
+     * The image the group's creation date is read from: a RAW image if
+     * there is one, since it is the camera's original, otherwise the first
+     * other image.
+     *
+     * @return the group's primary image.
+     */
+    File getPrimary() {
+        return members.get(0);
+    }
+
+    /**
+     * @return all files of this group, the primary image first.
+     */
+    List<File> getMembers() {
+        return members;
+    }
+
+    /**
+     * @param member Position of a member in {@link #getMembers()}.
+     * @return the member's index in its {@link FileCatalog}.
+     */
+    int getIndex(final int member) {
+        return indices[member];
+    }
+}
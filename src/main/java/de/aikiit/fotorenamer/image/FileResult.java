@@ -0,0 +1,161 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import java.io.File;
+
+/**
+ * Outcome of processing a single file within a renaming run.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+public final class FileResult {
+
+    /**
+     * Possible outcomes for a file.
+     */
+    public enum Status {
+        /**
+         * The file was renamed successfully.
+         */
+        RENAMED,
+        /**
+         * The file already had its target name.
+         */
+        UNCHANGED,
+        /**
+         * The file could not be renamed, see {@link #getErrorCategory()}.
+         */
+        FAILED,
+        /**
+         * The file was not processed since the run was aborted or cancelled.
+         */
+        SKIPPED,
+        /**
+         * The file duplicates another file and was moved aside, see
+         * {@link DuplicateAction#MOVE_ASIDE}.
+         */
+        DUPLICATE,
+        /**
+         * The file was processed by an earlier run and has not changed
+         * since, see {@link ProcessedLedger}.
+         */
+        KNOWN,
+        /**
+         * The file was left untouched since its creation date is outside the
+         * job's capture range, see {@link RenameJob#hasCaptureRange()}.
+         */
+        EXCLUDED
+    }
+
+    private final File source;
+    private final String targetName;
+    private final Status status;
+    private final ErrorCategory errorCategory;
+    private final String message;
+    private final DateSource dateSource;
+
+    private FileResult(final File source, final String targetName, final Status status,
+                       final ErrorCategory errorCategory, final String message, final DateSource dateSource) {
+        this.source = source;
+        this.targetName = targetName;
+        this.status = status;
+        this.errorCategory = errorCategory;
+        this.message = message;
+        this.dateSource = dateSource;
+    }
+
+    static FileResult renamed(final File source, final String targetName, final DateSource dateSource) {
+        return new FileResult(source, targetName, Status.RENAMED, null, null, dateSource);
+    }
+
+    static FileResult unchanged(final File source) {
+        return new FileResult(source, source.getName(), Status.UNCHANGED, null, null, null);
+    }
+
+    static FileResult failed(final File source, final String targetName, final ErrorCategory category,
+                             final String message) {
+        return new FileResult(source, targetName, Status.FAILED, category, message, null);
+    }
+
+    static FileResult skipped(final File source) {
+        return new FileResult(source, null, Status.SKIPPED, null, null, null);
+    }
+
+    static FileResult known(final File source) {
+        return new FileResult(source, source.getName(), Status.KNOWN, null, null, null);
+    }
+
+    static FileResult excluded(final File source) {
+        return new FileResult(source, source.getName(), Status.EXCLUDED, null, null, null);
+    }
+
+    static FileResult duplicate(final File source, final String targetName, final File original) {
+        return new FileResult(source, targetName, Status.DUPLICATE, null, "duplicate of " + original.getName(), null);
+    }
+
+    /**
+     * @return the processed file with its original name.
+     */
+    public File getSource() {
+        return source;
+    }
+
+    /**
+     * @return the new filename, relative to the job's target directory when
+     * organising into folders, {@code null} if none could be determined.
+     */
+    public String getTargetName() {
+        return targetName;
+    }
+
+    /**
+     * @return the outcome for this file.
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the type of error if the status is {@link Status#FAILED},
+     * {@code null} otherwise.
+     */
+    public ErrorCategory getErrorCategory() {
+        return errorCategory;
+    }
+
+    /**
+     * @return details about a failure, may be {@code null}.
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return where the creation date of a renamed file came from,
+     * {@code null} if it was renamed without a date.
+     */
+    public DateSource getDateSource() {
+        return dateSource;
+    }
+
+    @Override
+    public String toString() {
+        return status + " " + source + (targetName == null ? "" : " -> " + targetName)
+                + (errorCategory == null ? "" : " (" + errorCategory + ": " + message + ")");
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Runs the per-file work of a renaming run, i.e. metadata extraction and
+ * the move of each file.
+ * <br>
+ * By default an {@link AdaptiveLimit} finds the number of files processed
+ * concurrently on platform threads; with a fixed limit this Java 8
+ * implementation uses a parallel stream on the common pool. The
+ * multi-release JAR contains a Java 21 variant of this
+ * class in <code>META-INF/versions/21</code> that runs each file on a
+ * virtual thread instead.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+final class FileTaskRunner {
+    /**
+     * Logger for this class.
+     */
+    private static final Logger LOG = LogManager.getLogger(FileTaskRunner.class);
+
+    /**
+     * System property to select the thread mode, {@link #PLATFORM} or
+     * {@link #VIRTUAL}.
+     */
+    static final String MODE_PROPERTY = "fotorenamer.threads";
+    /**
+     * System property to limit the number of files processed concurrently,
+     * either a fixed number for virtual threads or {@link #ADAPTIVE}.
+     */
+    static final String IN_FLIGHT_PROPERTY = "fotorenamer.io.inflight";
+    /**
+     * Let an {@link AdaptiveLimit} find the number of files processed
+     * concurrently, the default.
+     */
+    static final String ADAPTIVE = "adaptive";
+
+    /**
+     * Process files with a parallel stream on platform threads.
+     */
+    static final String PLATFORM = "platform";
+    /**
+     * Process each file on its own virtual thread (Java 21+).
+     */
+    static final String VIRTUAL = "virtual";
+
+    /**
+     * Default fixed number of files processed concurrently on virtual
+     * threads.
+     */
+    static final int DEFAULT_IN_FLIGHT = 64;
+    /**
+     * Upper bound of the number of files processed concurrently with an
+     * adaptive limit.
+     */
+    static final int MAX_ADAPTIVE_IN_FLIGHT = 256;
+
+    private final String mode;
+    private final int maxInFlight;
+    private final boolean adaptive;
+
+    /**
+     * Creates a runner with a fixed limit.
+     *
+     * @param requestedMode Thread mode, falls back to {@link #PLATFORM} if
+     *                      virtual threads are not supported.
+     * @param maxInFlight   Maximum number of files processed concurrently
+     *                      on virtual threads.
+     */
+    FileTaskRunner(final String requestedMode, final int maxInFlight) {
+        this(requestedMode, maxInFlight, false);
+    }
+
+    /**
+     * Creates a runner.
+     *
+     * @param requestedMode Thread mode, falls back to {@link #PLATFORM} if
+     *                      virtual threads are not supported.
+     * @param maxInFlight   Maximum number of files processed concurrently
+     *                      on virtual threads, or the upper bound of an
+     *                      adaptive limit.
+     * @param adaptive      Whether an {@link AdaptiveLimit} controls the
+     *                      number of files processed concurrently.
+     */
+    FileTaskRunner(final String requestedMode, final int maxInFlight, final boolean adaptive) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("Number of files in flight must be positive: " + maxInFlight);
+        }
+        if (VIRTUAL.equals(requestedMode)) {
+            LOG.warn("Virtual threads require Java 21, falling back to platform threads");
+        }
+        this.mode = PLATFORM;
+        this.maxInFlight = maxInFlight;
+        this.adaptive = adaptive;
+    }
+
+    /**
+     * Creates a runner configured via {@link #MODE_PROPERTY} and
+     * {@link #IN_FLIGHT_PROPERTY}.
+     *
+     * @return the configured runner.
+     */
+    static FileTaskRunner fromSystemProperties() {
+        String mode = System.getProperty(MODE_PROPERTY, PLATFORM);
+        String inFlight = System.getProperty(IN_FLIGHT_PROPERTY, ADAPTIVE).trim();
+        if (ADAPTIVE.equals(inFlight)) {
+            return new FileTaskRunner(mode, MAX_ADAPTIVE_IN_FLIGHT, true);
+        }
+        try {
+            return new FileTaskRunner(mode, Math.max(1, Integer.parseInt(inFlight)));
+        } catch (NumberFormatException e) {
+            LOG.warn("Ignoring invalid number of files in flight: {}", e.getMessage());
+            return new FileTaskRunner(mode, MAX_ADAPTIVE_IN_FLIGHT, true);
+        }
+    }
+
+    /**
+     * @return {@code true} if this runtime supports virtual threads.
+     */
+    static boolean isVirtualThreadSupported() {
+        return false;
+    }
+
+    /**
+     * @return the effective thread mode.
+     */
+    String getMode() {
+        return mode;
+    }
+
+    /**
+     * @return the maximum number of files processed concurrently on
+     * virtual threads, the upper bound if the limit is adaptive.
+     */
+    int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * @return {@code true} if the number of files processed concurrently
+     * adapts to the storage device.
+     */
+    boolean isAdaptive() {
+        return adaptive;
+    }
+
+    private AdaptiveLimit newLimit() {
+        int initial = Math.min(maxInFlight, Runtime.getRuntime().availableProcessors());
+        return new AdaptiveLimit(1, initial, maxInFlight);
+    }
+
+    private static ExecutorService newPlatformExecutor() {
+        return Executors.newCachedThreadPool(
+                new ThreadFactoryBuilder().setNameFormat("fotorenamer-io-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Applies the given task to all files, or groups of files, and returns
+     * once all of them are processed.
+     *
+     * @param files Files to process.
+     * @param task  Work to perform per file.
+     * @param <T>   Type of the processed items.
+     * @return the items that were not processed because the calling thread
+     * was interrupted, empty if all were processed.
+     */
+    <T> List<T> run(final List<T> files, final Consumer<T> task) {
+        if (adaptive) {
+            return newLimit().run(files, task, newPlatformExecutor());
+        }
+        files.parallelStream().forEach(task);
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,229 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Dates encoded in filenames, e.g. <code>IMG_20230514_101530.jpg</code> of
+ * phones or <code>IMG-20230514-WA0001.jpg</code> of messengers.
+ * <br>
+ * Each pattern is a regular expression with the named groups
+ * <code>year</code>, <code>month</code> and <code>day</code> and optionally
+ * <code>hour</code>, <code>minute</code> and <code>second</code>. All
+ * patterns are compiled once into a single combined expression, so that a
+ * filename is scanned only once regardless of the number of patterns.
+ * Additional patterns can be set via the system property
+ * {@link #SYSTEM_PROPERTY}, separated by {@value #SEPARATOR}.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+public final class FilenameDates {
+    /**
+     * Logger for this class.
+     */
+    private static final Logger LOG = LogManager.getLogger(FilenameDates.class);
+
+    /**
+     * System property to configure additional patterns.
+     */
+    public static final String SYSTEM_PROPERTY = "fotorenamer.filenamedates";
+    /**
+     * Separator of the patterns in {@link #SYSTEM_PROPERTY}.
+     */
+    public static final String SEPARATOR = ";";
+
+    private static final String[] FIELDS = {"year", "month", "day", "hour", "minute", "second"};
+    private static final int REQUIRED_FIELDS = 3;
+
+    /**
+     * Built-in patterns: phone cameras (<code>IMG_20230514_101530</code>,
+     * <code>PXL_20230514_101530123</code>), screenshot tools
+     * (<code>Screenshot 2023-05-14 at 10.15.30</code>) and messengers
+     * (<code>IMG-20230514-WA0001</code>, date only).
+     */
+    public static final List<String> DEFAULT_PATTERNS = ImmutableList.of(
+            "(?<!\\d)(?<year>\\d{4})(?<month>\\d{2})(?<day>\\d{2})[_-](?<hour>\\d{2})(?<minute>\\d{2})"
+                    + "(?<second>\\d{2})",
+            "(?<!\\d)(?<year>\\d{4})-(?<month>\\d{2})-(?<day>\\d{2})(?: at |[ _-])(?<hour>\\d{2})[.:-]"
+                    + "(?<minute>\\d{2})[.:-](?<second>\\d{2})",
+            "(?<!\\d)(?<year>\\d{4})(?<month>\\d{2})(?<day>\\d{2})-WA\\d+");
+
+    /**
+     * Instance with the built-in patterns only.
+     */
+    public static final FilenameDates DEFAULT = of(DEFAULT_PATTERNS);
+
+    private final List<String> patterns;
+    private final Pattern combined;
+    /**
+     * Whether each pattern contains a time of day.
+     */
+    private final boolean[] withTime;
+
+    private FilenameDates(final List<String> patterns) {
+        this.patterns = ImmutableList.copyOf(patterns);
+        this.withTime = new boolean[patterns.size()];
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < patterns.size(); i++) {
+            String pattern = patterns.get(i);
+            for (int field = 0; field < FIELDS.length; field++) {
+                boolean present = pattern.contains(group(FIELDS[field]));
+                if (field < REQUIRED_FIELDS && !present) {
+                    throw new IllegalArgumentException("Pattern lacks group '" + FIELDS[field] + "': " + pattern);
+                }
+                if (field == REQUIRED_FIELDS) {
+                    withTime[i] = present;
+                }
+                // group names must be unique within the combined expression
+                pattern = pattern.replace(group(FIELDS[field]), "(?<" + FIELDS[field] + i + ">");
+            }
+            regex.append(regex.length() == 0 ? "" : "|").append("(?:").append(pattern).append(')');
+        }
+        try {
+            this.combined = Pattern.compile(regex.length() == 0 ? "(?!)" : regex.toString());
+        } catch (PatternSyntaxException e) {
+            throw new IllegalArgumentException("Invalid filename date pattern: " + e.getMessage(), e);
+        }
+    }
+
+    private static String group(final String name) {
+        return "(?<" + name + ">";
+    }
+
+    /**
+     * Compiles the given patterns.
+     *
+     * @param patterns Regular expressions with named groups, see class
+     *                 comment; an empty list never matches.
+     * @return the compiled patterns.
+     * @throws IllegalArgumentException if a pattern is invalid.
+     */
+    public static FilenameDates of(final List<String> patterns) {
+        return new FilenameDates(patterns);
+    }
+
+    /**
+     * Adds the patterns of the system property {@link #SYSTEM_PROPERTY} to
+     * the built-in ones.
+     *
+     * @return the configured patterns, {@link #DEFAULT} if none or invalid
+     * ones are set.
+     */
+    public static FilenameDates fromSystemProperties() {
+        String value = System.getProperty(SYSTEM_PROPERTY);
+        if (Strings.isNullOrEmpty(value) || value.trim().isEmpty()) {
+            return DEFAULT;
+        }
+        try {
+            return of(ImmutableList.<String>builder().addAll(DEFAULT_PATTERNS)
+                    .addAll(Splitter.on(SEPARATOR).trimResults().omitEmptyStrings().split(value)).build());
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Ignoring invalid filename date patterns '{}': {}", value, e.getMessage());
+            return DEFAULT;
+        }
+    }
+
+    /**
+     * @return all patterns.
+     */
+    public List<String> getPatterns() {
+        return patterns;
+    }
+
+    /**
+     * Searches the first valid date in the given filename; impossible dates
+     * like a 13th month are skipped.
+     *
+     * @param name Filename to search.
+     * @return the date or {@code null} if the name does not contain one.
+     */
+    Match match(final String name) {
+        Matcher matcher = combined.matcher(name);
+        int start = 0;
+        while (start < name.length() && matcher.find(start)) {
+            for (int i = 0; i < withTime.length; i++) {
+                if (matcher.group(FIELDS[0] + i) != null) {
+                    Match match = toMatch(matcher, i);
+                    if (match != null) {
+                        return match;
+                    }
+                    break;
+                }
+            }
+            start = matcher.start() + 1;
+        }
+        return null;
+    }
+
+    private Match toMatch(final Matcher matcher, final int pattern) {
+        int[] values = new int[FIELDS.length];
+        for (int field = 0; field < (withTime[pattern] ? FIELDS.length : REQUIRED_FIELDS); field++) {
+            String value = matcher.group(FIELDS[field] + pattern);
+            values[field] = value == null ? 0 : Integer.parseInt(value);
+        }
+        try {
+            return new Match(LocalDateTime.of(values[0], values[1], values[2], values[3], values[4], values[5]),
+                    withTime[pattern]);
+        } catch (DateTimeException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return patterns.toString();
+    }
+
+    /**
+     * A date found in a filename.
+     */
+    static final class Match {
+        private final LocalDateTime date;
+        private final boolean withTime;
+
+        Match(final LocalDateTime date, final boolean withTime) {
+            this.date = date;
+            this.withTime = withTime;
+        }
+
+        /**
+         * @return the date, midnight if the name contains no time of day.
+         */
+        LocalDateTime getDate() {
+            return date;
+        }
+
+        /**
+         * @return {@code true} if the name contains the time of day, too.
+         */
+        boolean isWithTime() {
+            return withTime;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Describes the folder tree images are organised into, derived from their
+ * creation date.
+ * <br>
+ * A layout is a {@link DateTimeFormatter} pattern whose folders are
+ * separated by <code>/</code>, e.g. <code>yyyy/MM/dd</code> or
+ * <code>yyyy/yyyy-MM</code>. Literal text can be quoted as usual, e.g.
+ * <code>yyyy/'Q'Q</code>.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+public final class FolderLayout {
+    /**
+     * Template of the default layout.
+     */
+    public static final String DEFAULT_TEMPLATE = "yyyy/MM/dd";
+
+    /**
+     * One folder per year, month and day.
+     */
+    public static final FolderLayout DEFAULT = of(DEFAULT_TEMPLATE);
+
+    /**
+     * Separator of folders within a template.
+     */
+    private static final String SEPARATOR = "/";
+
+    private final String template;
+    private final DateTimeFormatter formatter;
+
+    private FolderLayout(final String template) {
+        this.template = template;
+        this.formatter = DateTimeFormatter.ofPattern(template);
+    }
+
+    /**
+     * Creates a layout from the given template.
+     *
+     * @param template Date pattern with folders separated by <code>/</code>.
+     * @return the corresponding layout.
+     * @throws IllegalArgumentException if the template is empty, not a valid
+     *                                  pattern or would leave the target
+     *                                  directory.
+     */
+    public static FolderLayout of(final String template) {
+        if (Strings.isNullOrEmpty(template) || template.trim().isEmpty()) {
+            throw new IllegalArgumentException("Folder layout must not be empty");
+        }
+        if (template.startsWith(SEPARATOR) || template.endsWith(SEPARATOR)) {
+            throw new IllegalArgumentException("Folder layout must be relative: " + template);
+        }
+        FolderLayout layout = new FolderLayout(template.trim());
+        // check a sample to reject patterns that produce empty or parent folders
+        for (String folder : Splitter.on(SEPARATOR).split(layout.folderFor(LocalDateTime.of(2011, 1, 30, 13, 11, 2)))) {
+            if (folder.isEmpty() || ".".equals(folder) || "..".equals(folder) || folder.contains("\\")) {
+                throw new IllegalArgumentException("Invalid folder '" + folder + "' in layout: " + template);
+            }
+        }
+        return layout;
+    }
+
+    /**
+     * Returns the folder of the given date.
+     *
+     * @param creationDate An image's creation date.
+     * @return the folder relative to the target directory, separated by
+     * <code>/</code>.
+     */
+    public String folderFor(final LocalDateTime creationDate) {
+        return creationDate.format(formatter);
+    }
+
+    /**
+     * @return the template of this layout.
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+}
@@ -0,0 +1,395 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+
+/**
+ * Reads the headers of the JPEG images of a run ahead of their parsing.
+ * <br>
+ * Whenever a worker asks for an image's creation date, the first
+ * {@link #INITIAL_READ} bytes of the next {@link #DEFAULT_DEPTH} images in
+ * processing order are requested via {@link AsynchronousFileChannel}, so
+ * that the storage device always has requests queued while the workers
+ * parse. The date is parsed from the completed buffer; only if the EXIF
+ * segment (APP1) turns out to reach beyond it, a larger read is issued.
+ * All reads complete on a small, fixed pool of {@link #IO_THREADS}
+ * threads.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+final class HeaderPrefetcher implements Closeable {
+    /**
+     * Logger for this class.
+     */
+    private static final Logger LOG = LogManager.getLogger(HeaderPrefetcher.class);
+
+    /**
+     * System property of the number of images read ahead, <code>0</code>
+     * disables prefetching.
+     */
+    static final String SYSTEM_PROPERTY = "fotorenamer.prefetch";
+    /**
+     * Default number of images read ahead.
+     */
+    static final int DEFAULT_DEPTH = 16;
+    /**
+     * Number of bytes read per image at first, sufficient for the EXIF data
+     * of most cameras.
+     */
+    static final int INITIAL_READ = 64 * 1024;
+    /**
+     * Number of threads that complete the reads.
+     */
+    static final int IO_THREADS = 4;
+
+    /**
+     * File extensions of the JPEG images that are prefetched.
+     */
+    private static final List<String> JPEG_EXTENSIONS = ImmutableList.of("jpg", "jpeg");
+
+    private static final int MARKER = 0xFF;
+    private static final int SOI = 0xD8;
+    private static final int EOI = 0xD9;
+    private static final int SOS = 0xDA;
+    private static final int APP1 = 0xE1;
+    private static final int TEM = 0x01;
+    private static final int RST0 = 0xD0;
+    private static final int RST7 = 0xD7;
+    private static final byte[] EXIF_IDENTIFIER = {'E', 'x', 'i', 'f', 0, 0};
+
+    /**
+     * Read of a file that was consumed already.
+     */
+    private static final CompletableFuture<byte[]> CONSUMED = CompletableFuture.completedFuture(new byte[0]);
+
+    private final FileCatalog catalog;
+    /**
+     * Catalog indices of the prefetched images in processing order.
+     */
+    private final int[] files;
+    /**
+     * Position of each catalog entry in {@link #files}, <code>-1</code> if
+     * it is not prefetched.
+     */
+    private final int[] positions;
+    private final AtomicReferenceArray<CompletableFuture<byte[]>> reads;
+    private final AtomicInteger issued = new AtomicInteger();
+    private final int depth;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a prefetcher.
+     *
+     * @param files Images in the order they are parsed, others than JPEG
+     *              images are ignored.
+     * @param depth Number of images read ahead, at least 1.
+     */
+    HeaderPrefetcher(final List<File> files, final int depth) {
+        this(FileCatalog.of(files), IntStream.range(0, files.size()).toArray(), depth);
+    }
+
+    /**
+     * Creates a prefetcher for the entries of a catalog.
+     *
+     * @param catalog Catalog of the images.
+     * @param indices Catalog indices of the images in the order they are
+     *                parsed, others than JPEG images are ignored.
+     * @param depth   Number of images read ahead, at least 1.
+     */
+    HeaderPrefetcher(final FileCatalog catalog, final int[] indices, final int depth) {
+        this.catalog = catalog;
+        this.positions = new int[catalog.size()];
+        Arrays.fill(positions, -1);
+        int count = 0;
+        int[] jpegs = new int[indices.length];
+        for (int index : indices) {
+            if (isJpeg(catalog.getName(index)) && positions[index] < 0) {
+                positions[index] = count;
+                jpegs[count++] = index;
+            }
+        }
+        this.files = Arrays.copyOf(jpegs, count);
+        this.reads = new AtomicReferenceArray<>(count);
+        this.depth = Math.max(1, depth);
+        this.executor = Executors.newFixedThreadPool(IO_THREADS,
+                new ThreadFactoryBuilder().setNameFormat("fotorenamer-prefetch-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Creates a prefetcher configured via {@link #SYSTEM_PROPERTY}.
+     *
+     * @param catalog Catalog of the images.
+     * @param indices Catalog indices of the images in the order they are
+     *                parsed.
+     * @return the prefetcher or {@code null} if prefetching is disabled.
+     */
+    static HeaderPrefetcher fromSystemProperties(final FileCatalog catalog, final int[] indices) {
+        int depth = DEFAULT_DEPTH;
+        try {
+            depth = Integer.parseInt(System.getProperty(SYSTEM_PROPERTY, String.valueOf(DEFAULT_DEPTH)).trim());
+        } catch (NumberFormatException e) {
+            LOG.warn("Ignoring invalid prefetch depth: {}", e.getMessage());
+        }
+        return depth <= 0 ? null : new HeaderPrefetcher(catalog, indices, depth);
+    }
+
+    /**
+     * Checks the filename only, without accessing the file itself.
+     *
+     * @param name Filename to check.
+     * @return {@code true} if the file is prefetched as a JPEG image.
+     */
+    static boolean isJpeg(final String name) {
+        return JPEG_EXTENSIONS.contains(Files.getFileExtension(name).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @param file File to check.
+     * @return {@code true} if the file's header is read by this prefetcher.
+     */
+    boolean contains(final File file) {
+        int index = catalog.indexOf(file);
+        return index >= 0 && positions[index] >= 0;
+    }
+
+    /**
+     * Extracts an image's creation date from its prefetched header and
+     * requests the headers of the images that follow it.
+     *
+     * @param file Image to read, must be {@link #contains(File) contained}.
+     * @return the creation date or {@code null} if the image does not
+     * contain a valid one.
+     * @throws IOException if the image cannot be read or its metadata
+     *                     cannot be parsed.
+     */
+    LocalDateTime getCreationDate(final File file) throws IOException {
+        int index = positions[catalog.indexOf(file)];
+        for (int next = issued.get(); next <= Math.min(index + depth, files.length - 1); next = issued.get()) {
+            if (issued.compareAndSet(next, next + 1)) {
+                slot(next);
+            }
+        }
+        byte[] header = await(slot(index));
+        reads.set(index, CONSUMED);
+
+        // a header shorter than requested is the complete file
+        int requested = INITIAL_READ;
+        int required = requiredLength(header);
+        while (required > header.length && header.length >= requested) {
+            LOG.debug("EXIF segment of {} exceeds {} bytes, reading {}", file, header.length, required);
+            requested = required;
+            header = await(read(file, requested));
+            required = requiredLength(header);
+        }
+        return MetaDataExtractor.getCreationDate(trim(header, required), file);
+    }
+
+    /**
+     * Returns the read of the file at the given position, issuing it unless
+     * that happened already.
+     */
+    private CompletableFuture<byte[]> slot(final int index) {
+        CompletableFuture<byte[]> read = reads.get(index);
+        if (read != null) {
+            return read;
+        }
+        CompletableFuture<byte[]> started = new CompletableFuture<>();
+        if (!reads.compareAndSet(index, null, started)) {
+            return reads.get(index);
+        }
+        read(catalog.getFile(files[index]), INITIAL_READ).whenComplete((bytes, e) -> {
+            if (e != null) {
+                started.completeExceptionally(e);
+            } else {
+                started.complete(bytes);
+            }
+        });
+        return started;
+    }
+
+    /**
+     * Reads up to the given number of bytes from the start of a file
+     * without blocking.
+     *
+     * @param file   File to read.
+     * @param length Maximum number of bytes.
+     * @return the bytes read, fewer than requested if the file is smaller.
+     */
+    private CompletableFuture<byte[]> read(final File file, final int length) {
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        AsynchronousFileChannel channel;
+        ByteBuffer buffer;
+        try {
+            channel = AsynchronousFileChannel.open(file.toPath(),
+                    Collections.singleton(StandardOpenOption.READ), executor);
+            buffer = ByteBuffer.allocate((int) Math.min(length, channel.size()));
+        } catch (IOException | RuntimeException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        result.whenComplete((bytes, e) -> {
+            try {
+                channel.close();
+            } catch (IOException closing) {
+                LOG.debug("Unable to close {}: {}", file, closing.getMessage());
+            }
+        });
+        channel.read(buffer, 0, buffer, new CompletionHandler<Integer, ByteBuffer>() {
+            @Override
+            public void completed(final Integer read, final ByteBuffer target) {
+                if (read < 0 || !target.hasRemaining()) {
+                    result.complete(Arrays.copyOf(target.array(), target.position()));
+                } else {
+                    channel.read(target, target.position(), target, this);
+                }
+            }
+
+            @Override
+            public void failed(final Throwable e, final ByteBuffer target) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    private static byte[] await(final CompletableFuture<byte[]> read) throws IOException {
+        try {
+            return read.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Determines how many bytes of a JPEG image are needed to parse its
+     * EXIF data by walking its segments up to the EXIF segment (APP1) or
+     * the start of the image data.
+     *
+     * @param header The first bytes of an image.
+     * @return the number of bytes needed, larger than the header if more
+     * bytes must be read; the header's length if it is no JPEG image.
+     */
+    static int requiredLength(final byte[] header) {
+        if (header.length < 2 || (header[0] & MARKER) != MARKER || (header[1] & MARKER) != SOI) {
+            return header.length;
+        }
+        int position = 2;
+        while (position + 4 <= header.length) {
+            if ((header[position] & MARKER) != MARKER) {
+                // not a marker, let the parser report the broken image
+                return header.length;
+            }
+            int marker = header[position + 1] & MARKER;
+            if (marker == MARKER) {
+                position++;
+                continue;
+            }
+            if (marker == SOS || marker == EOI) {
+                return position;
+            }
+            if (marker == TEM || (marker >= RST0 && marker <= RST7)) {
+                position += 2;
+                continue;
+            }
+            int end = position + 2 + (((header[position + 2] & MARKER) << 8) | (header[position + 3] & MARKER));
+            if (marker == APP1 && isExif(header, position + 4)) {
+                return end;
+            }
+            position = end;
+        }
+        // the next segment's header is not complete, read twice as much
+        return Math.max(position + 4, 2 * header.length);
+    }
+
+    private static boolean isExif(final byte[] header, final int offset) {
+        if (offset + EXIF_IDENTIFIER.length > header.length) {
+            return true;
+        }
+        for (int i = 0; i < EXIF_IDENTIFIER.length; i++) {
+            if (header[offset + i] != EXIF_IDENTIFIER[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Cuts a header after its metadata and terminates it, so that the
+     * parser does not run into truncated image data.
+     */
+    private static byte[] trim(final byte[] header, final int length) {
+        if (length >= header.length || length < 2) {
+            return header;
+        }
+        byte[] trimmed = Arrays.copyOf(header, length + 2);
+        trimmed[length] = (byte) MARKER;
+        trimmed[length + 1] = (byte) EOI;
+        return trimmed;
+    }
+
+    /**
+     * Waits for reads that were issued but not consumed, e.g. after a run
+     * was cancelled, so that their files are closed, and stops the threads.
+     */
+    @Override
+    public void close() {
+        for (int i = 0; i < reads.length(); i++) {
+            CompletableFuture<byte[]> read = reads.getAndSet(i, CONSUMED);
+            if (read != null) {
+                try {
+                    await(read);
+                } catch (IOException e) {
+                    LOG.debug("Prefetching {} failed: {}", catalog.getName(files[i]), e.getMessage());
+                }
+            }
+        }
+        executor.shutdown();
+    }
+}
@@ -16,7 +16,7 @@
 package de.aikiit.fotorenamer.image;
 
 import com.google.common.base.Strings;
-import com.google.common.collect.Lists;
+import com.google.common.collect.ImmutableList;
 
 import java.io.File;
 import java.io.FilenameFilter;
@@ -24,14 +24,17 @@ import java.util.List;
 
 /**
  * Filter to prevent wrong files from being manipulated by this tool. Currently
- * only files with the extensions {@link #EXTENSIONS}.
+ * only files with the extensions {@link #EXTENSIONS}, including HEIC images
+ * and videos, see {@link IsoBmffReader}, RAW images, see
+ * {@link TiffDateReader}, and PNG images, see {@link PngReader}.
  *
  * @author hirsch
  * @version 2011-04-02, 13:52
  */
 class ImageFilenameFilter implements FilenameFilter {
 
-    private static final List<String> EXTENSIONS = Lists.newArrayList("jpg", "jpeg", "png");
+    private static final List<String> EXTENSIONS = ImmutableList.<String>builder()
+            .add("jpg", "jpeg", PngReader.EXTENSION).addAll(IsoBmffReader.EXTENSIONS).addAll(TiffDateReader.RAW_EXTENSIONS).build();
 
     /**
      * Filter filenames in a directory for images.
@@ -45,7 +48,14 @@ class ImageFilenameFilter implements FilenameFilter {
         return !(Strings.isNullOrEmpty(name) || dir == null) && new File(dir, name).isFile() && isSuffixExifExtractable(name);
     }
 
-    private static boolean isSuffixExifExtractable(final String name) {
+    /**
+     * Checks the filename only, without accessing the file itself.
+     *
+     * @param name Filename to check.
+     * @return <code>true</code> if the file's suffix is part of
+     * {@link #EXTENSIONS}.
+     */
+    static boolean isSuffixExifExtractable(final String name) {
         if (!Strings.isNullOrEmpty(name)) {
             String file = name.trim().toLowerCase();
             for (String suffix : EXTENSIONS) {
@@ -0,0 +1,59 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Checksums that are computed while ingesting files, see
+ * {@link CardIngest}.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+public enum IngestChecksum {
+    /**
+     * SHA-256, manifests can be checked with <code>sha256sum -c</code>.
+     */
+    SHA_256("sha256", Hashing.sha256()),
+    /**
+     * CRC32C, a fast checksum that detects transfer errors but no tampering.
+     */
+    CRC32C("crc32c", Hashing.crc32c());
+
+    private final String extension;
+    private final HashFunction function;
+
+    IngestChecksum(final String extension, final HashFunction function) {
+        this.extension = extension;
+        this.function = function;
+    }
+
+    /**
+     * @return the file extension of manifests using this checksum.
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * @return the function computing this checksum.
+     */
+    HashFunction getFunction() {
+        return function;
+    }
+}
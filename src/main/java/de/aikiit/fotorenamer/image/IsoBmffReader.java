@@ -0,0 +1,291 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Extracts the creation date of ISO base media files (ISO/IEC 14496-12),
+ * i.e. HEIC/HEIF stills and MP4/MOV videos.
+ * <br>
+ * The reader seeks through the box structure and only reads the few boxes
+ * it needs, the media data itself is never read:
+ * <ul>
+ * <li>HEIC: <code>meta</code> &rarr; <code>iinf</code> locates the
+ * <code>Exif</code> item, <code>iloc</code> its position in the file; the
+ * item is a TIFF structure read by {@link TiffDateReader}.</li>
+ * <li>Videos: <code>moov</code> &rarr; <code>mvhd</code> contains the
+ * creation time in UTC, it is converted to the local time zone like the
+ * EXIF dates of stills.</li>
+ * </ul>
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class IsoBmffReader {
+    /**
+     * File extensions of supported containers.
+     */
+    static final List<String> EXTENSIONS = ImmutableList.of("heic", "heif", "mp4", "mov", "m4v");
+
+    /**
+     * Seconds between 1904-01-01 (the epoch of <code>mvhd</code>) and
+     * 1970-01-01.
+     */
+    private static final long EPOCH_OFFSET = 2082844800L;
+    /**
+     * Upper bound of boxes per level, protects against corrupt files.
+     */
+    private static final int MAX_BOXES = 10000;
+    /**
+     * Upper bound of the size of a box that is read completely.
+     */
+    private static final int MAX_BOX_SIZE = 1024 * 1024;
+    private static final int HEADER_SIZE = 8;
+    private static final int FULL_BOX_HEADER_SIZE = 4;
+
+    /**
+     * Checks the filename only, without accessing the file itself.
+     *
+     * @param name Filename to check.
+     * @return {@code true} if the file is a supported container.
+     */
+    static boolean isSupported(final String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        for (String extension : EXTENSIONS) {
+            if (lower.endsWith("." + extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Extracts the creation date of the given file.
+     *
+     * @param file ISO base media file.
+     * @return the creation date or {@code null} if there is none.
+     * @throws IOException if the file cannot be read or is invalid.
+     */
+    static LocalDateTime getCreationDate(final Path file) throws IOException {
+        try (PositionedReader reader = new PositionedReader(file)) {
+            List<Box> boxes = children(reader, 0, reader.size());
+            Box meta = find(boxes, "meta");
+            if (meta != null) {
+                LocalDateTime date = fromExifItem(reader, meta);
+                if (date != null) {
+                    return date;
+                }
+            }
+            Box moov = find(boxes, "moov");
+            return moov == null ? null : fromMovieHeader(reader, moov);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Invalid ISO base media file " + file, e);
+        }
+    }
+
+    private static LocalDateTime fromExifItem(final PositionedReader reader, final Box meta) throws IOException {
+        List<Box> boxes = children(reader, meta.content + FULL_BOX_HEADER_SIZE, meta.end);
+        Box iinf = find(boxes, "iinf");
+        Box iloc = find(boxes, "iloc");
+        if (iinf == null || iloc == null) {
+            return null;
+        }
+        long item = findExifItem(reader, iinf);
+        if (item < 0) {
+            return null;
+        }
+        long offset = findItemOffset(content(reader, iloc), item);
+        if (offset < 0) {
+            return null;
+        }
+        // the item starts with the offset of the TIFF header
+        long tiffOffset = reader.read(offset, 4, ByteOrder.BIG_ENDIAN).getInt() & 0xFFFFFFFFL;
+        return TiffDateReader.read(reader, offset + 4 + tiffOffset);
+    }
+
+    private static long findExifItem(final PositionedReader reader, final Box iinf) throws IOException {
+        int version = reader.read(iinf.content, 1, ByteOrder.BIG_ENDIAN).get();
+        long entries = iinf.content + FULL_BOX_HEADER_SIZE + (version == 0 ? 2 : 4);
+        for (Box infe : children(reader, entries, iinf.end)) {
+            if (!"infe".equals(infe.type)) {
+                continue;
+            }
+            ByteBuffer content = content(reader, infe);
+            int infeVersion = content.get();
+            content.position(FULL_BOX_HEADER_SIZE);
+            if (infeVersion < 2) {
+                continue;
+            }
+            long id = infeVersion == 2 ? content.getShort() & 0xFFFF : content.getInt() & 0xFFFFFFFFL;
+            content.getShort();
+            if ("Exif".equals(fourCc(content))) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses the item locations and returns the file position of the first
+     * extent of the given item.
+     */
+    private static long findItemOffset(final ByteBuffer iloc, final long item) {
+        int version = iloc.get();
+        iloc.position(FULL_BOX_HEADER_SIZE);
+        int sizes = iloc.getShort() & 0xFFFF;
+        int offsetSize = sizes >> 12;
+        int lengthSize = (sizes >> 8) & 0xF;
+        int baseOffsetSize = (sizes >> 4) & 0xF;
+        int indexSize = version > 0 ? sizes & 0xF : 0;
+        long count = version < 2 ? iloc.getShort() & 0xFFFF : iloc.getInt() & 0xFFFFFFFFL;
+
+        for (long i = 0; i < count; i++) {
+            long id = version < 2 ? iloc.getShort() & 0xFFFF : iloc.getInt() & 0xFFFFFFFFL;
+            int constructionMethod = version > 0 ? iloc.getShort() & 0xF : 0;
+            iloc.getShort();
+            long baseOffset = sized(iloc, baseOffsetSize);
+            int extents = iloc.getShort() & 0xFFFF;
+            long first = -1;
+            for (int e = 0; e < extents; e++) {
+                sized(iloc, indexSize);
+                long extentOffset = sized(iloc, offsetSize);
+                sized(iloc, lengthSize);
+                if (e == 0) {
+                    first = baseOffset + extentOffset;
+                }
+            }
+            if (id == item) {
+                // only items stored at file offsets are supported
+                return constructionMethod == 0 ? first : -1;
+            }
+        }
+        return -1;
+    }
+
+    private static long sized(final ByteBuffer buffer, final int size) {
+        switch (size) {
+            case 0:
+                return 0;
+            case 4:
+                return buffer.getInt() & 0xFFFFFFFFL;
+            case 8:
+                return buffer.getLong();
+            default:
+                throw new IllegalArgumentException("Invalid field size " + size);
+        }
+    }
+
+    private static LocalDateTime fromMovieHeader(final PositionedReader reader, final Box moov) throws IOException {
+        Box mvhd = find(children(reader, moov.content, moov.end), "mvhd");
+        if (mvhd == null) {
+            return null;
+        }
+        ByteBuffer header = reader.read(mvhd.content, FULL_BOX_HEADER_SIZE + 8, ByteOrder.BIG_ENDIAN);
+        int version = header.get();
+        header.position(FULL_BOX_HEADER_SIZE);
+        long created = version == 1 ? header.getLong() : header.getInt() & 0xFFFFFFFFL;
+        if (created == 0) {
+            return null;
+        }
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(created - EPOCH_OFFSET), ZoneId.systemDefault());
+    }
+
+    /**
+     * Lists the boxes between the given positions without reading their
+     * content.
+     */
+    private static List<Box> children(final PositionedReader reader, final long from, final long to)
+            throws IOException {
+        List<Box> boxes = Lists.newArrayList();
+        long position = from;
+        while (position + HEADER_SIZE <= to) {
+            if (boxes.size() >= MAX_BOXES) {
+                throw new IOException("Too many boxes at " + from);
+            }
+            ByteBuffer header = reader.read(position, HEADER_SIZE, ByteOrder.BIG_ENDIAN);
+            long size = header.getInt() & 0xFFFFFFFFL;
+            String type = fourCc(header);
+            long content = position + HEADER_SIZE;
+            if (size == 1) {
+                size = reader.read(content, 8, ByteOrder.BIG_ENDIAN).getLong();
+                content += 8;
+            } else if (size == 0) {
+                size = to - position;
+            }
+            if (size < content - position || position + size > to) {
+                throw new IOException("Invalid size of box " + type + " at " + position);
+            }
+            boxes.add(new Box(type, content, position + size));
+            position += size;
+        }
+        return boxes;
+    }
+
+    private static Box find(final List<Box> boxes, final String type) {
+        for (Box box : boxes) {
+            if (type.equals(box.type)) {
+                return box;
+            }
+        }
+        return null;
+    }
+
+    private static ByteBuffer content(final PositionedReader reader, final Box box) throws IOException {
+        long size = box.end - box.content;
+        if (size > MAX_BOX_SIZE) {
+            throw new IOException("Box " + box.type + " is too large: " + size);
+        }
+        return reader.read(box.content, (int) size, ByteOrder.BIG_ENDIAN);
+    }
+
+    private static String fourCc(final ByteBuffer buffer) {
+        byte[] type = new byte[4];
+        buffer.get(type);
+        return new String(type, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Position of a box within the file.
+     */
+    private static final class Box {
+        private final String type;
+        private final long content;
+        private final long end;
+
+        Box(final String type, final long content, final long end) {
+            this.type = type;
+            this.content = content;
+            this.end = end;
+        }
+    }
+}
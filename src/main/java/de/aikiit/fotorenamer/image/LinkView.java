@@ -0,0 +1,653 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
+import de.aikiit.fotorenamer.exception.DirectoryLockedException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A chronological view of an image library that leaves the library itself
+ * untouched.
+ * <br>
+ * The view is a folder tree according to a {@link FolderLayout} that
+ * contains a link per image, named as {@link RenameMode#EXIF_DATE_PREFIX}
+ * would rename it. Hard links are used if possible, so that building a view
+ * does not copy any data; symbolic links are used across filesystems.
+ * <br>
+ * The view is maintained incrementally: an index file
+ * ({@link #INDEX_FILE_NAME}) in the view's root remembers size and
+ * modification time of each linked image. An update only reads the
+ * metadata of images that are new or changed since the last update and
+ * only removes links of images that are gone.
+ * <br>
+ * To avoid reading the attributes of every image of a large library, e.g.
+ * on a network share, a snapshot of each directory is kept as well
+ * ({@link #SNAPSHOT_FILE_NAME}): its modification time, number of entries,
+ * a hash of their names and its subdirectories. A directory whose
+ * modification time is unchanged is not listed at all, its images are
+ * taken from the index and its subdirectories from the snapshot. Adding,
+ * removing or renaming an image changes the time of its directory; an
+ * image that is modified in place, keeping its name, is only noticed once
+ * its directory changes.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+public final class LinkView {
+    /**
+     * Logger for this class.
+     */
+    private static final Logger LOG = LogManager.getLogger(LinkView.class);
+
+    /**
+     * Name of the index file within the view's root.
+     */
+    static final String INDEX_FILE_NAME = ".fotorenamer-view";
+
+    /**
+     * Name of the file within the view's root that keeps the snapshots of
+     * the library's directories.
+     */
+    static final String SNAPSHOT_FILE_NAME = ".fotorenamer-view-dirs";
+
+    /**
+     * Directories modified this shortly before a scan may change again
+     * within the resolution of their modification time. Next time they are
+     * listed to compare the names of their entries, without reading the
+     * entries' attributes.
+     */
+    static final long RACY_MILLIS = 2000;
+
+    /**
+     * Prefix of the snapshot file's header line containing the time of
+     * the scan.
+     */
+    private static final String SCAN_TIME = "#";
+
+    /**
+     * Separator of the index file's columns.
+     */
+    private static final String TAB = "\t";
+
+    private final Path sourceRoot;
+    private final Path viewRoot;
+    private final FolderLayout layout;
+
+    /**
+     * Describes a view.
+     *
+     * @param sourceRoot Root of the image library, all subdirectories are
+     *                   included.
+     * @param viewRoot   Root of the view, it is created if necessary.
+     * @param layout     Folder layout of the view.
+     */
+    public LinkView(final File sourceRoot, final File viewRoot, final FolderLayout layout) {
+        if (sourceRoot == null || viewRoot == null || layout == null) {
+            throw new IllegalArgumentException("Source, view and layout must be set");
+        }
+        this.sourceRoot = sourceRoot.toPath().toAbsolutePath().normalize();
+        this.viewRoot = viewRoot.toPath().toAbsolutePath().normalize();
+        this.layout = layout;
+    }
+
+    /**
+     * Brings the view up to date with its library.
+     *
+     * @return the changes made to the view.
+     * @throws DirectoryLockedException if the view is updated by someone
+     *                                  else at the moment.
+     * @throws IOException              if the library cannot be read or
+     *                                  the view cannot be written.
+     */
+    public Result update() throws DirectoryLockedException, IOException {
+        if (!Files.isDirectory(sourceRoot)) {
+            throw new IOException(sourceRoot + " is not a directory");
+        }
+        TargetTree tree = new TargetTree(viewRoot, layout, sourceRoot);
+        DirectoryLock lock = DirectoryLock.acquire(viewRoot.toFile());
+        try {
+            return update(tree);
+        } finally {
+            lock.close();
+        }
+    }
+
+    private Result update(final TargetTree tree) throws IOException {
+        final Map<String, IndexEntry> index = readIndex();
+        final Result result = new Result();
+        // without an index the images of unchanged directories are unknown
+        final Scan scan = scan(index, index.isEmpty() ? new Snapshots(0) : readSnapshots(), result);
+        final Map<String, BasicFileAttributes> sources = scan.sources;
+
+        // drop links of removed or changed images
+        Iterator<Map.Entry<String, IndexEntry>> entries = index.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, IndexEntry> entry = entries.next();
+            if (scan.unchanged.contains(entry.getKey())) {
+                result.unchanged.increment();
+                continue;
+            }
+            BasicFileAttributes attributes = sources.get(entry.getKey());
+            if (attributes != null && entry.getValue().matches(attributes)) {
+                sources.remove(entry.getKey());
+                result.unchanged.increment();
+                continue;
+            }
+            if (!entry.getValue().link.isEmpty()) {
+                Files.deleteIfExists(viewRoot.resolve(entry.getValue().link));
+            }
+            entries.remove();
+            if (attributes == null) {
+                result.removed.increment();
+            }
+        }
+
+        // link new or changed images
+        List<File> files = Lists.newArrayListWithCapacity(sources.size());
+        for (String source : sources.keySet()) {
+            files.add(sourceRoot.resolve(source).toFile());
+        }
+        FileTaskRunner.fromSystemProperties().run(files, file -> {
+            String source = relative(sourceRoot, file.toPath());
+            BasicFileAttributes attributes = sources.get(source);
+            try {
+                LocalDateTime creationDate = MetaDataExtractor.getCreationDate(file);
+                if (creationDate == null) {
+                    // remembered as well, so that it is not read again until it changes
+                    index.put(source, new IndexEntry("", attributes));
+                    result.noDate.increment();
+                    return;
+                }
+                String name = RenameMode.EXIF_DATE_PREFIX.targetName(file, creationDate);
+                tree.link(file.toPath(), creationDate, name);
+                index.put(source, new IndexEntry(tree.relativeTarget(creationDate, name), attributes));
+                result.added.increment();
+            } catch (FileAlreadyExistsException e) {
+                if (!linkExists(index, source, file, attributes, e, result)) {
+                    scan.incomplete.add(parent(source));
+                }
+            } catch (IOException e) {
+                LOG.error("Unable to link {}: {}", file, e.getMessage());
+                result.failed.increment();
+                // its directory is listed again next time to retry
+                scan.incomplete.add(parent(source));
+            }
+        });
+
+        writeIndex(index);
+        writeSnapshots(scan);
+        LOG.info("Updated view {} of {}: {}", viewRoot, sourceRoot, result);
+        return result;
+    }
+
+    /**
+     * Handles an existing link, which is either left over from an update that
+     * could not write its index or belongs to another image of the same name.
+     *
+     * @return {@code true} if the link belongs to the image.
+     */
+    private boolean linkExists(final Map<String, IndexEntry> index, final String source, final File file,
+                               final BasicFileAttributes attributes, final FileAlreadyExistsException e,
+                               final Result result) {
+        try {
+            Path link = e.getFile() == null ? null : Paths.get(e.getFile());
+            if (link != null && Files.isSameFile(link, file.toPath())) {
+                index.put(source, new IndexEntry(relative(viewRoot, link), attributes));
+                result.added.increment();
+                return true;
+            }
+        } catch (IOException ignored) {
+            // treated as a collision
+        }
+        LOG.warn("Unable to link {}, {} already exists in the view", file, e.getFile());
+        result.failed.increment();
+        return false;
+    }
+
+    /**
+     * Collects all images of the library with their attributes. Directories
+     * that are unchanged according to their snapshot are not listed, their
+     * images are known from the index.
+     *
+     * @param index    Images of the last update.
+     * @param previous Snapshots of the last update.
+     * @param result   Counters of this update.
+     * @return the images of the library and the snapshots of its
+     * directories.
+     */
+    private Scan scan(final Map<String, IndexEntry> index, final Snapshots previous, final Result result) {
+        final Map<String, List<String>> indexed = new HashMap<>();
+        for (String source : index.keySet()) {
+            indexed.computeIfAbsent(parent(source), directory -> Lists.newArrayList()).add(source);
+        }
+        final Scan scan = new Scan(System.currentTimeMillis());
+        final Deque<String> pending = new ArrayDeque<>();
+        pending.push("");
+        while (!pending.isEmpty()) {
+            String directory = pending.pop();
+            Path path = directory.isEmpty() ? sourceRoot : sourceRoot.resolve(directory);
+            if (path.equals(viewRoot)) {
+                continue;
+            }
+            BasicFileAttributes attributes;
+            List<String> names = Lists.newArrayList();
+            try {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                Snapshot snapshot = previous.directories.get(directory);
+                long modified = attributes.lastModifiedTime().toMillis();
+                if (snapshot != null && snapshot.modified == modified
+                        && modified < previous.scanTime - RACY_MILLIS) {
+                    reuse(directory, snapshot, indexed, scan, pending, result);
+                    continue;
+                }
+                try (DirectoryStream<Path> entries = Files.newDirectoryStream(path)) {
+                    for (Path entry : entries) {
+                        Path name = entry.getFileName();
+                        if (name != null) {
+                            names.add(name.toString());
+                        }
+                    }
+                }
+                if (snapshot != null && snapshot.modified == modified && snapshot.matches(names)) {
+                    // modified shortly before the last scan, but still the same entries
+                    reuse(directory, snapshot, indexed, scan, pending, result);
+                    continue;
+                }
+            } catch (IOException e) {
+                LOG.warn("Unable to read {}, keeping its links: {}", path, e.getMessage());
+                keep(directory, indexed, scan);
+                continue;
+            }
+
+            List<String> children = Lists.newArrayList();
+            boolean complete = true;
+            for (String name : names) {
+                String relative = directory.isEmpty() ? name : directory + "/" + name;
+                try {
+                    BasicFileAttributes entry = Files.readAttributes(path.resolve(name), BasicFileAttributes.class,
+                            LinkOption.NOFOLLOW_LINKS);
+                    if (entry.isDirectory()) {
+                        children.add(name);
+                        pending.push(relative);
+                    } else if (entry.isRegularFile() && ImageFilenameFilter.isSuffixExifExtractable(name)) {
+                        if (relative.contains(TAB) || relative.contains("\n")) {
+                            LOG.warn("Ignoring {}, its name cannot be indexed", path.resolve(name));
+                        } else {
+                            scan.sources.put(relative, entry);
+                        }
+                    }
+                } catch (IOException e) {
+                    LOG.warn("Unable to read {}, keeping its links: {}", path.resolve(name), e.getMessage());
+                    keep(relative, indexed, scan);
+                    complete = false;
+                }
+            }
+            if (complete) {
+                scan.directories.put(directory, new Snapshot(attributes.lastModifiedTime().toMillis(), names,
+                        children));
+            }
+        }
+        return scan;
+    }
+
+    /**
+     * Takes over an unchanged directory from the last update.
+     */
+    private static void reuse(final String directory, final Snapshot snapshot,
+                              final Map<String, List<String>> indexed, final Scan scan,
+                              final Deque<String> pending, final Result result) {
+        scan.unchanged.addAll(indexed.getOrDefault(directory, Collections.emptyList()));
+        scan.directories.put(directory, snapshot);
+        for (String child : snapshot.children) {
+            pending.push(directory.isEmpty() ? child : directory + "/" + child);
+        }
+        result.skippedDirectories.increment();
+    }
+
+    /**
+     * Keeps the links of an image or directory that cannot be read, including
+     * everything below it, as only images that are known to be gone or
+     * changed may lose their links. Without a snapshot the directory is
+     * listed again next time.
+     */
+    private static void keep(final String relative, final Map<String, List<String>> indexed, final Scan scan) {
+        for (Map.Entry<String, List<String>> directory : indexed.entrySet()) {
+            String name = directory.getKey();
+            if (relative.isEmpty() || name.equals(relative) || name.startsWith(relative + "/")) {
+                scan.unchanged.addAll(directory.getValue());
+            }
+        }
+        if (indexed.getOrDefault(parent(relative), Collections.emptyList()).contains(relative)) {
+            scan.unchanged.add(relative);
+        }
+    }
+
+    private static String parent(final String source) {
+        int separator = source.lastIndexOf('/');
+        return separator < 0 ? "" : source.substring(0, separator);
+    }
+
+    private Map<String, IndexEntry> readIndex() throws IOException {
+        Map<String, IndexEntry> index = new ConcurrentHashMap<>();
+        Path file = viewRoot.resolve(INDEX_FILE_NAME);
+        if (!Files.exists(file)) {
+            return index;
+        }
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            List<String> columns = Splitter.on(TAB).splitToList(line);
+            if (columns.size() != 4) {
+                LOG.warn("Ignoring invalid line in {}: {}", file, line);
+                continue;
+            }
+            if (!viewRoot.resolve(columns.get(1)).normalize().startsWith(viewRoot)) {
+                // links are deleted by their index entry, never leave the view
+                LOG.warn("Ignoring link outside of the view in {}: {}", file, line);
+                continue;
+            }
+            try {
+                index.put(columns.get(0), new IndexEntry(columns.get(1),
+                        Long.parseLong(columns.get(2)), Long.parseLong(columns.get(3))));
+            } catch (NumberFormatException e) {
+                LOG.warn("Ignoring invalid line in {}: {}", file, line);
+            }
+        }
+        return index;
+    }
+
+    private void writeIndex(final Map<String, IndexEntry> index) throws IOException {
+        List<String> lines = Lists.newArrayListWithCapacity(index.size());
+        for (Map.Entry<String, IndexEntry> entry : index.entrySet()) {
+            IndexEntry value = entry.getValue();
+            lines.add(entry.getKey() + TAB + value.link + TAB + value.size + TAB + value.lastModified);
+        }
+        Path file = viewRoot.resolve(INDEX_FILE_NAME);
+        Path temporary = viewRoot.resolve(INDEX_FILE_NAME + VerifiedCopy.PART_SUFFIX);
+        Files.write(temporary, lines, StandardCharsets.UTF_8);
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Snapshots readSnapshots() throws IOException {
+        Path file = viewRoot.resolve(SNAPSHOT_FILE_NAME);
+        if (!Files.exists(file)) {
+            return new Snapshots(0);
+        }
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).startsWith(SCAN_TIME)) {
+            LOG.warn("Ignoring invalid snapshots in {}", file);
+            return new Snapshots(0);
+        }
+        Snapshots snapshots;
+        try {
+            snapshots = new Snapshots(Long.parseLong(lines.get(0).substring(SCAN_TIME.length())));
+        } catch (NumberFormatException e) {
+            LOG.warn("Ignoring invalid snapshots in {}", file);
+            return new Snapshots(0);
+        }
+        for (String line : lines.subList(1, lines.size())) {
+            List<String> columns = Splitter.on(TAB).splitToList(line);
+            if (columns.size() < 4) {
+                LOG.warn("Ignoring invalid line in {}: {}", file, line);
+                continue;
+            }
+            try {
+                snapshots.directories.put(columns.get(0), new Snapshot(Long.parseLong(columns.get(1)),
+                        Integer.parseInt(columns.get(2)), Long.parseUnsignedLong(columns.get(3), 16),
+                        columns.subList(4, columns.size())));
+            } catch (NumberFormatException e) {
+                LOG.warn("Ignoring invalid line in {}: {}", file, line);
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * Writes the snapshots of all directories except those with images that
+     * could not be linked, which are listed again by the next update.
+     */
+    private void writeSnapshots(final Scan scan) throws IOException {
+        List<String> lines = Lists.newArrayListWithCapacity(scan.directories.size() + 1);
+        lines.add(SCAN_TIME + scan.time);
+        for (Map.Entry<String, Snapshot> entry : scan.directories.entrySet()) {
+            Snapshot snapshot = entry.getValue();
+            if (scan.incomplete.contains(entry.getKey()) || !snapshot.isStorable(entry.getKey())) {
+                continue;
+            }
+            StringBuilder line = new StringBuilder(entry.getKey()).append(TAB).append(snapshot.modified)
+                    .append(TAB).append(snapshot.count).append(TAB).append(Long.toHexString(snapshot.names));
+            for (String child : snapshot.children) {
+                line.append(TAB).append(child);
+            }
+            lines.add(line.toString());
+        }
+        Path file = viewRoot.resolve(SNAPSHOT_FILE_NAME);
+        Path temporary = viewRoot.resolve(SNAPSHOT_FILE_NAME + VerifiedCopy.PART_SUFFIX);
+        Files.write(temporary, lines, StandardCharsets.UTF_8);
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String relative(final Path root, final Path file) {
+        return root.relativize(file).toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * An image of the index with its link.
+     */
+    private static final class IndexEntry {
+        /**
+         * Link relative to the view's root, empty if the image has no
+         * creation date.
+         */
+        private final String link;
+        private final long size;
+        private final long lastModified;
+
+        IndexEntry(final String link, final long size, final long lastModified) {
+            this.link = link;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        IndexEntry(final String link, final BasicFileAttributes attributes) {
+            this(link, attributes.size(), attributes.lastModifiedTime().toMillis());
+        }
+
+        boolean matches(final BasicFileAttributes attributes) {
+            return size == attributes.size() && lastModified == attributes.lastModifiedTime().toMillis();
+        }
+    }
+
+    /**
+     * A directory of the library as seen by an update.
+     */
+    private static final class Snapshot {
+        private final long modified;
+        private final int count;
+        /**
+         * Order-independent hash of the entries' names.
+         */
+        private final long names;
+        private final List<String> children;
+
+        Snapshot(final long modified, final int count, final long names, final List<String> children) {
+            this.modified = modified;
+            this.count = count;
+            this.names = names;
+            this.children = ImmutableList.copyOf(children);
+        }
+
+        Snapshot(final long modified, final List<String> entries, final List<String> children) {
+            this(modified, entries.size(), hash(entries), children);
+        }
+
+        private static long hash(final List<String> entries) {
+            long hash = 0;
+            for (String entry : entries) {
+                hash += Hashing.murmur3_128().hashString(entry, StandardCharsets.UTF_8).asLong();
+            }
+            return hash;
+        }
+
+        boolean matches(final List<String> entries) {
+            return count == entries.size() && names == hash(entries);
+        }
+
+        /**
+         * @return {@code false} if a name would break the snapshot file.
+         */
+        boolean isStorable(final String directory) {
+            if (directory.contains(TAB) || directory.contains("\n")) {
+                return false;
+            }
+            for (String child : children) {
+                if (child.contains(TAB) || child.contains("\n")) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Snapshots of all directories at the time of a scan.
+     */
+    private static final class Snapshots {
+        private final long scanTime;
+        private final Map<String, Snapshot> directories = new HashMap<>();
+
+        Snapshots(final long scanTime) {
+            this.scanTime = scanTime;
+        }
+    }
+
+    /**
+     * Outcome of scanning the library.
+     */
+    private static final class Scan {
+        private final long time;
+        private final Map<String, BasicFileAttributes> sources = new ConcurrentHashMap<>();
+        /**
+         * Indexed images of directories that were not listed or could not
+         * be read.
+         */
+        private final Set<String> unchanged = new HashSet<>();
+        private final Map<String, Snapshot> directories = new HashMap<>();
+        /**
+         * Directories with images that could not be linked.
+         */
+        private final Set<String> incomplete = ConcurrentHashMap.newKeySet();
+
+        Scan(final long time) {
+            this.time = time;
+        }
+    }
+
+    /**
+     * Changes made by an update of a view.
+     */
+    public static final class Result {
+        private final LongAdder added = new LongAdder();
+        private final LongAdder removed = new LongAdder();
+        private final LongAdder unchanged = new LongAdder();
+        private final LongAdder noDate = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder skippedDirectories = new LongAdder();
+
+        /**
+         * @return number of images that were linked.
+         */
+        public long getAdded() {
+            return added.sum();
+        }
+
+        /**
+         * @return number of links that were removed since their image is gone.
+         */
+        public long getRemoved() {
+            return removed.sum();
+        }
+
+        /**
+         * @return number of images that were already linked.
+         */
+        public long getUnchanged() {
+            return unchanged.sum();
+        }
+
+        /**
+         * @return number of images without a creation date.
+         */
+        public long getNoDate() {
+            return noDate.sum();
+        }
+
+        /**
+         * @return number of images that could not be linked.
+         */
+        public long getFailed() {
+            return failed.sum();
+        }
+
+        /**
+         * @return number of directories that were not listed since they are
+         * unchanged.
+         */
+        public long getSkippedDirectories() {
+            return skippedDirectories.sum();
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("added", getAdded())
+                    .add("removed", getRemoved())
+                    .add("unchanged", getUnchanged())
+                    .add("noDate", getNoDate())
+                    .add("failed", getFailed())
+                    .add("skippedDirectories", getSkippedDirectories())
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.base.Strings;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A semaphore weighted by bytes that bounds the memory all runs may use for
+ * metadata extraction at the same time.
+ * <br>
+ * Each file is admitted with the number of bytes its extraction is expected
+ * to read, see {@link MetaDataExtractor#estimateBytesRead(java.io.File, long)}.
+ * Admission is not first come, first served: while a large RAW image waits
+ * for enough of the budget to become free, smaller files that fit into the
+ * remainder pass it. A file larger than the whole budget is admitted once
+ * nothing else is in flight, so that it is processed alone.
+ * <br>
+ * The application-wide budget is configured via {@link #SYSTEM_PROPERTY},
+ * e.g. <code>256M</code>, and defaults to a quarter of the maximum heap.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+final class MemoryBudget {
+    /**
+     * Logger for this class.
+     */
+    private static final Logger LOG = LogManager.getLogger(MemoryBudget.class);
+
+    /**
+     * System property of the application-wide budget in bytes, with an
+     * optional unit <code>K</code>, <code>M</code> or <code>G</code>.
+     */
+    static final String SYSTEM_PROPERTY = "fotorenamer.memorybudget";
+
+    /**
+     * Share of the maximum heap that is used by default.
+     */
+    private static final int DEFAULT_HEAP_DIVISOR = 4;
+
+    private final long budget;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private long inUse;
+
+    /**
+     * Creates a budget.
+     *
+     * @param budget Number of bytes that may be in flight at the same time.
+     */
+    MemoryBudget(final long budget) {
+        if (budget <= 0) {
+            throw new IllegalArgumentException("Memory budget must be positive: " + budget);
+        }
+        this.budget = budget;
+    }
+
+    /**
+     * Returns the application-wide budget that all jobs share, configured
+     * via {@link #SYSTEM_PROPERTY}.
+     *
+     * @return the default budget.
+     */
+    static MemoryBudget getDefault() {
+        return Holder.INSTANCE;
+    }
+
+    private static MemoryBudget createDefault() {
+        String value = System.getProperty(SYSTEM_PROPERTY);
+        if (!Strings.isNullOrEmpty(value)) {
+            try {
+                return new MemoryBudget((long) RateLimits.parseAmount(value));
+            } catch (IllegalArgumentException e) {
+                LOG.warn("Ignoring invalid memory budget: {}", e.getMessage());
+            }
+        }
+        return new MemoryBudget(Runtime.getRuntime().maxMemory() / DEFAULT_HEAP_DIVISOR);
+    }
+
+    /**
+     * Waits until the given number of bytes fits into the budget and
+     * reserves it. Interrupts are deferred until the bytes are reserved.
+     *
+     * @param bytes Number of bytes the caller is about to read.
+     * @return the reservation, to be closed once the bytes are no longer
+     * needed.
+     */
+    Permit acquire(final long bytes) {
+        long weight = Math.max(1, Math.min(bytes, budget));
+        boolean interrupted = false;
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            while (inUse + weight > budget) {
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            inUse += weight;
+        } finally {
+            lock.unlock();
+            AdaptiveLimit.waited(System.nanoTime() - start);
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return new Permit(weight);
+    }
+
+    private void release(final long weight) {
+        lock.lock();
+        try {
+            inUse -= weight;
+            // wake all waiters, any of them may fit into what is free now
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of bytes that may be in flight at the same time.
+     */
+    long getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return the number of bytes currently reserved.
+     */
+    long getInUse() {
+        lock.lock();
+        try {
+            return inUse;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryBudget{budget=" + budget + ", inUse=" + getInUse() + "}";
+    }
+
+    /**
+     * Bytes reserved from a budget, released when closed.
+     */
+    final class Permit implements AutoCloseable {
+        private final long weight;
+        private boolean closed;
+
+        private Permit(final long weight) {
+            this.weight = weight;
+        }
+
+        /**
+         * @return the number of reserved bytes.
+         */
+        long getWeight() {
+            return weight;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(weight);
+            }
+        }
+    }
+
+    /**
+     * The application-wide instance, created on first use.
+     */
+    private static final class Holder {
+        private static final MemoryBudget INSTANCE = createDefault();
+    }
+}
@@ -26,6 +26,9 @@ import org.apache.log4j.Logger;
 
 import java.io.File;
 import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 
 /**
  * Helper class to extract metadata from given images. This class uses Apache
@@ -67,6 +70,22 @@ final class MetaDataExtractor {
      */
     private static final int VALID_EXIF_DATE_LENGTH = 21;
 
+    /**
+     * Format of EXIF dates, without the surrounding apostrophes.
+     */
+    private static final DateTimeFormatter EXIF_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy:MM:dd HH:mm:ss");
+
+    /**
+     * Number of bytes the positioned readers are expected to read, roughly
+     * the size of an image's header and metadata.
+     */
+    static final long HEADER_ESTIMATE = 64 * 1024;
+
+    /**
+     * Number of decimal places of nanoseconds.
+     */
+    private static final int NANO_DIGITS = 9;
+
     /**
      * Constructor is not visible to avoid instantiation.
      */
@@ -89,9 +108,19 @@ final class MetaDataExtractor {
         assert image != null : "Parameter image must not be null";
         assert tag != null : "Parameter tag must not be null";
 
-        String result = EMPTY_STRING;
-        ImageMetadata metadata = Imaging.getMetadata(image);
+        return getExifMetadata(Imaging.getMetadata(image), tag);
+    }
 
+    /**
+     * Returns the requested tag as String from already parsed metadata.
+     *
+     * @param metadata Metadata of an image, may be {@code null}.
+     * @param tag      Tag to extract.
+     * @return Returns exif tag value, in case of any errors the value is an
+     * empty String.
+     */
+    private static String getExifMetadata(final ImageMetadata metadata, final TagInfo tag) {
+        String result = EMPTY_STRING;
         if (metadata instanceof JpegImageMetadata) {
             JpegImageMetadata jpegMetadata = (JpegImageMetadata) metadata;
             TiffField field = jpegMetadata.findExifValueWithExactMatch(tag);
@@ -104,6 +133,153 @@ final class MetaDataExtractor {
         return result == null ? EMPTY_STRING : result;
     }
 
+    /**
+     * Extracts the date this image was created, see
+     * {@link #generateCreationDateInCorrectFormat(File)} for the EXIF
+     * conventions. HEIC images and videos are read via
+     * {@link IsoBmffReader}, RAW images via {@link TiffDateReader} and PNG
+     * images via {@link PngReader}.
+     *
+     * @param image Image to extract metadata from.
+     * @return the creation date or {@code null} if the image does not
+     * contain a valid one.
+     * @throws IOException If an error occurs when accessing the image's
+     *                     metadata.
+     */
+    static LocalDateTime getCreationDate(final File image) throws IOException {
+        if (IsoBmffReader.isSupported(image.getName())) {
+            return IsoBmffReader.getCreationDate(image.toPath());
+        }
+        if (TiffDateReader.isRaw(image.getName())) {
+            return TiffDateReader.getCreationDate(image.toPath());
+        }
+        if (PngReader.isPng(image.getName())) {
+            return PngReader.getCreationDate(image.toPath());
+        }
+        return parseCreationDate(getExifMetadata(image, ExifTagConstants.EXIF_TAG_DATE_TIME_ORIGINAL), image);
+    }
+
+    /**
+     * Extracts the date an image was created including the fractions of a
+     * second given by <code>SubSecTimeOriginal</code>, which tell apart the
+     * frames of a burst shot within the same second. Only JPEG and RAW
+     * images carry them, other formats are resolved to the second as in
+     * {@link #getCreationDate(File)}.
+     *
+     * @param image Image to extract metadata from.
+     * @return the creation date or {@code null} if the image does not
+     * contain a valid one.
+     * @throws IOException If an error occurs when accessing the image's
+     *                     metadata.
+     */
+    static LocalDateTime getCaptureTime(final File image) throws IOException {
+        if (TiffDateReader.isRaw(image.getName())) {
+            return TiffDateReader.getCaptureTime(image.toPath());
+        }
+        if (IsoBmffReader.isSupported(image.getName()) || PngReader.isPng(image.getName())) {
+            return getCreationDate(image);
+        }
+        ImageMetadata metadata = Imaging.getMetadata(image);
+        LocalDateTime date = parseCreationDate(
+                getExifMetadata(metadata, ExifTagConstants.EXIF_TAG_DATE_TIME_ORIGINAL), image);
+        if (date == null) {
+            return null;
+        }
+        return date.withNano(toNanos(getExifMetadata(metadata, ExifTagConstants.EXIF_TAG_SUB_SEC_TIME_ORIGINAL)));
+    }
+
+    /**
+     * Converts the value of an EXIF <code>SubSecTime</code> tag, the
+     * decimal places of the seconds, e.g. <code>42</code> for 0.42 seconds.
+     *
+     * @param value Value of the tag, optionally in apostrophes, may be
+     *              {@code null}.
+     * @return the fractions in nanoseconds, {@code 0} if the value is
+     * missing or invalid.
+     */
+    static int toNanos(final String value) {
+        if (Strings.isNullOrEmpty(value)) {
+            return 0;
+        }
+        String fraction = value.replaceAll(APOSTROPHE, EMPTY_STRING).trim();
+        int digits = 0;
+        while (digits < fraction.length() && digits < NANO_DIGITS
+                && fraction.charAt(digits) >= '0' && fraction.charAt(digits) <= '9') {
+            digits++;
+        }
+        if (digits == 0) {
+            return 0;
+        }
+        return Integer.parseInt(Strings.padEnd(fraction.substring(0, digits), NANO_DIGITS, '0'));
+    }
+
+    /**
+     * Extracts the date an image was created from its first bytes, which is
+     * sufficient for JPEG files as their EXIF data precedes the image data.
+     * ISO base media files, RAW and PNG images are read via
+     * {@link IsoBmffReader}, {@link TiffDateReader} and {@link PngReader}
+     * instead, which costs a few additional reads of their structure.
+     *
+     * @param header The first bytes of an image.
+     * @param image  The image the bytes were read from, used for logging only.
+     * @return the creation date or {@code null} if the header does not
+     * contain a valid one.
+     * @throws IOException If the header's metadata cannot be parsed.
+     */
+    static LocalDateTime getCreationDate(final byte[] header, final File image) throws IOException {
+        if (IsoBmffReader.isSupported(image.getName())) {
+            // the relevant boxes may be anywhere in the file, e.g. moov at its end
+            return IsoBmffReader.getCreationDate(image.toPath());
+        }
+        if (TiffDateReader.isRaw(image.getName())) {
+            return TiffDateReader.getCreationDate(image.toPath());
+        }
+        if (PngReader.isPng(image.getName())) {
+            return PngReader.getCreationDate(image.toPath());
+        }
+        ImageMetadata metadata;
+        try {
+            metadata = Imaging.getMetadata(header);
+        } catch (IllegalArgumentException e) {
+            // without a file name the format is guessed from the bytes only
+            throw new IOException("Unknown image format of " + image, e);
+        }
+        return parseCreationDate(getExifMetadata(metadata, ExifTagConstants.EXIF_TAG_DATE_TIME_ORIGINAL), image);
+    }
+
+    /**
+     * Estimates how many bytes {@link #getCreationDate(File)} reads from the
+     * given file. {@link IsoBmffReader}, {@link TiffDateReader} and
+     * {@link PngReader} only read the structures they need, whereas Apache
+     * Commons Imaging may buffer a file entirely, which is why such files
+     * count with their full size.
+     *
+     * @param image Image to read.
+     * @param size  The image's size in bytes.
+     * @return the expected number of bytes read.
+     */
+    static long estimateBytesRead(final File image, final long size) {
+        String name = image.getName();
+        if (IsoBmffReader.isSupported(name) || TiffDateReader.isRaw(name) || PngReader.isPng(name)) {
+            return Math.min(size, HEADER_ESTIMATE);
+        }
+        return size;
+    }
+
+    private static LocalDateTime parseCreationDate(final String dateValue, final File image) {
+        if (Strings.isNullOrEmpty(dateValue) || dateValue.length() != VALID_EXIF_DATE_LENGTH) {
+            LOG.info("No valid creation date extracted from file " + image);
+            return null;
+        }
+
+        try {
+            return LocalDateTime.parse(dateValue.replaceAll(APOSTROPHE, EMPTY_STRING), EXIF_DATE_FORMAT);
+        } catch (DateTimeParseException e) {
+            LOG.info("Invalid creation date " + dateValue + " in file " + image);
+            return null;
+        }
+    }
+
     /**
      * Helper to extract the date this image was created to be used during the
      * renaming process.
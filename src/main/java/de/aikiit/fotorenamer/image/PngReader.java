@@ -0,0 +1,220 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * Extracts the creation date of PNG images by walking their chunk headers.
+ * <br>
+ * Only the headers and the few metadata chunks are read, image data
+ * (<code>IDAT</code>) is skipped by its length. The date is taken from
+ * <ul>
+ * <li>an <code>eXIf</code> chunk, which is a TIFF structure read by
+ * {@link TiffDateReader}, or</li>
+ * <li>the textual keyword <code>Creation Time</code> of a
+ * <code>tEXt</code> or uncompressed <code>iTXt</code> chunk.</li>
+ * </ul>
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class PngReader {
+    /**
+     * Logger for this class.
+     */
+    private static final Logger LOG = LogManager.getLogger(PngReader.class);
+
+    /**
+     * File extension of PNG images.
+     */
+    static final String EXTENSION = "png";
+    /**
+     * Keyword of the creation date in textual chunks.
+     */
+    static final String CREATION_TIME = "Creation Time";
+
+    private static final long SIGNATURE = 0x89504E470D0A1A0AL;
+    private static final int SIGNATURE_SIZE = 8;
+    /**
+     * Length and type precede, the CRC follows each chunk's data.
+     */
+    private static final int HEADER_SIZE = 8;
+    private static final int CRC_SIZE = 4;
+    /**
+     * Upper bound of chunks, protects against corrupt files.
+     */
+    private static final int MAX_CHUNKS = 100000;
+    /**
+     * Upper bound of the size of a textual chunk that is read.
+     */
+    private static final int MAX_TEXT_SIZE = 4096;
+    /**
+     * The PNG specification recommends RFC 1123 for <code>Creation
+     * Time</code>, but tools also write ISO 8601 and EXIF dates.
+     */
+    private static final DateTimeFormatter[] LOCAL_FORMATS = {
+            DateTimeFormatter.ofPattern("yyyy:MM:dd HH:mm:ss"), DateTimeFormatter.ISO_LOCAL_DATE_TIME};
+    private static final DateTimeFormatter[] ZONED_FORMATS = {
+            DateTimeFormatter.RFC_1123_DATE_TIME, DateTimeFormatter.ISO_OFFSET_DATE_TIME};
+
+    /**
+     * Checks the filename only, without accessing the file itself.
+     *
+     * @param name Filename to check.
+     * @return {@code true} if the file is a PNG image.
+     */
+    static boolean isPng(final String name) {
+        return name.toLowerCase(Locale.ROOT).endsWith("." + EXTENSION);
+    }
+
+    /**
+     * Extracts the creation date of the given image. A date of an
+     * <code>eXIf</code> chunk is preferred over a textual one, an invalid
+     * <code>eXIf</code> chunk is ignored.
+     *
+     * @param file PNG image.
+     * @return the creation date or {@code null} if there is none.
+     * @throws IOException if the file cannot be read or is invalid.
+     */
+    static LocalDateTime getCreationDate(final Path file) throws IOException {
+        try (PositionedReader reader = new PositionedReader(file)) {
+            if (reader.read(0, SIGNATURE_SIZE, ByteOrder.BIG_ENDIAN).getLong() != SIGNATURE) {
+                throw new IOException("No PNG signature in " + file);
+            }
+            LocalDateTime text = null;
+            long position = SIGNATURE_SIZE;
+            for (int i = 0; i < MAX_CHUNKS && position + HEADER_SIZE <= reader.size(); i++) {
+                ByteBuffer header = reader.read(position, HEADER_SIZE, ByteOrder.BIG_ENDIAN);
+                long length = header.getInt() & 0xFFFFFFFFL;
+                String type = new String(header.array(), 4, 4, StandardCharsets.US_ASCII);
+                long data = position + HEADER_SIZE;
+                switch (type) {
+                    case "eXIf":
+                        try {
+                            LocalDateTime exif = TiffDateReader.read(reader, data);
+                            if (exif != null) {
+                                return exif;
+                            }
+                        } catch (IOException e) {
+                            // a textual date may still be found
+                            LOG.debug("Ignoring invalid eXIf chunk of {}: {}", file, e.getMessage());
+                        }
+                        break;
+                    case "tEXt":
+                    case "iTXt":
+                        if (text == null) {
+                            text = fromText(reader, data, length, "iTXt".equals(type));
+                        }
+                        break;
+                    case "IDAT":
+                        // metadata usually precedes the image data, it may follow it though
+                        if (text != null) {
+                            return text;
+                        }
+                        break;
+                    case "IEND":
+                        return text;
+                    default:
+                        break;
+                }
+                position = data + length + CRC_SIZE;
+            }
+            return text;
+        }
+    }
+
+    private static LocalDateTime fromText(final PositionedReader reader, final long data, final long length,
+                                          final boolean international) throws IOException {
+        if (length > MAX_TEXT_SIZE) {
+            return null;
+        }
+        byte[] content = reader.read(data, (int) length, ByteOrder.BIG_ENDIAN).array();
+        int keywordEnd = indexOf(content, 0);
+        if (keywordEnd < 0 || !CREATION_TIME.equals(new String(content, 0, keywordEnd, StandardCharsets.ISO_8859_1))) {
+            return null;
+        }
+        int start = keywordEnd + 1;
+        Charset charset = StandardCharsets.ISO_8859_1;
+        if (international) {
+            // compression flag and method, language tag and translated keyword
+            if (start + 2 > content.length || content[start] != 0) {
+                return null;
+            }
+            int language = indexOf(content, start + 2);
+            int translated = language < 0 ? -1 : indexOf(content, language + 1);
+            if (translated < 0) {
+                return null;
+            }
+            start = translated + 1;
+            charset = StandardCharsets.UTF_8;
+        }
+        return parse(new String(content, start, content.length - start, charset).trim());
+    }
+
+    private static int indexOf(final byte[] content, final int from) {
+        for (int i = from; i < content.length; i++) {
+            if (content[i] == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses a textual date, dates with a time zone are converted to the
+     * local one like the dates of videos.
+     *
+     * @param value Textual date.
+     * @return the date or {@code null} if it has an unknown format.
+     */
+    static LocalDateTime parse(final String value) {
+        for (DateTimeFormatter format : LOCAL_FORMATS) {
+            try {
+                return LocalDateTime.parse(value, format);
+            } catch (DateTimeParseException e) {
+                // try the next format
+            }
+        }
+        for (DateTimeFormatter format : ZONED_FORMATS) {
+            try {
+                return ZonedDateTime.parse(value, format).withZoneSameInstant(ZoneId.systemDefault())
+                        .toLocalDateTime();
+            } catch (DateTimeParseException e) {
+                // try the next format
+            }
+        }
+        LOG.debug("Ignoring invalid date '{}'", value);
+        return null;
+    }
+}
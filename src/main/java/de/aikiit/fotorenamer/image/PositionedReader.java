@@ -0,0 +1,88 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads small chunks at arbitrary positions of a file, so that container
+ * formats can be parsed by seeking through their structure instead of
+ * reading them completely.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+final class PositionedReader implements Closeable {
+    private final FileChannel channel;
+    private final long size;
+
+    /**
+     * Opens the given file for reading.
+     *
+     * @param file File to read.
+     * @throws IOException if the file cannot be opened.
+     */
+    PositionedReader(final Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+    }
+
+    /**
+     * @return the size of the file.
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Reads exactly the given number of bytes.
+     *
+     * @param position Position to read from.
+     * @param length   Number of bytes to read.
+     * @param order    Byte order of the returned buffer.
+     * @return a buffer containing the bytes, ready to be read.
+     * @throws EOFException if the file ends before.
+     * @throws IOException  if the file cannot be read.
+     */
+    ByteBuffer read(final long position, final int length, final ByteOrder order) throws IOException {
+        if (position < 0 || length < 0 || position + length > size) {
+            throw new EOFException("Unable to read " + length + " bytes at " + position + " of " + size);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(order);
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of file at " + offset);
+            }
+            offset += read;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
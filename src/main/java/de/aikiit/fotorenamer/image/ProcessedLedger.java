@@ -0,0 +1,624 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers files that were processed by earlier runs, so that incremental
+ * runs over a whole archive neither read nor rename them again.
+ * <br>
+ * An entry consists of the purpose of a run, e.g. the {@link RenameMode},
+ * and the absolute path, size and modification time of a file after it was
+ * processed; a file that changes is processed again. The ledger file keeps
+ * 128 bit fingerprints of all entries sorted, preceded by a Bloom filter of
+ * them and every {@link #FENCE_INTERVAL}th fingerprint, which are all that
+ * is loaded when a ledger is opened. Files that were never processed, e.g.
+ * those of a new shoot, are thereby told apart in memory; a processed file
+ * costs a single read of at most a few kilobytes to rule out a false
+ * positive of the filter.
+ * <br>
+ * New entries are appended to a journal next to the ledger file, which is
+ * replayed when the ledger is opened. {@link #compact(File, boolean)} merges
+ * the journal into the sorted file and optionally drops entries of files
+ * that are gone or changed; it must only be called while no run uses the
+ * ledger.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+public final class ProcessedLedger implements Closeable {
+    /**
+     * Logger for this class.
+     */
+    private static final Logger LOG = LogManager.getLogger(ProcessedLedger.class);
+
+    /**
+     * System property with the path of the application-wide ledger, unset
+     * to not remember processed files.
+     */
+    public static final String SYSTEM_PROPERTY = "fotorenamer.ledger";
+    /**
+     * Suffix of the journal file next to the ledger file.
+     */
+    public static final String JOURNAL_SUFFIX = ".journal";
+
+    /**
+     * Every how many fingerprints one is kept in memory.
+     */
+    static final int FENCE_INTERVAL = 256;
+    /**
+     * False positive probability of the Bloom filter.
+     */
+    static final double FALSE_POSITIVES = 0.01;
+
+    private static final int MAGIC = 0x46524C47;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int FINGERPRINT_SIZE = 16;
+    /**
+     * Lower bound of the expected insertions of a Bloom filter.
+     */
+    private static final int MIN_EXPECTED = 1024;
+
+    /**
+     * Fingerprints of the sorted file, {@code null} if there is none.
+     */
+    private final BloomFilter<Long> filter;
+    private final long[] fenceHigh;
+    private final long[] fenceLow;
+    private final int count;
+    private final long indexOffset;
+    private final PositionedReader reader;
+    private final Path journal;
+    /**
+     * Fingerprints of the journal, i.e. added since the last compaction.
+     */
+    private final Set<Fingerprint> recent = ConcurrentHashMap.newKeySet();
+    private DataOutputStream journalOut;
+    private final LongAdder filtered = new LongAdder();
+    private final LongAdder confirmed = new LongAdder();
+
+    private ProcessedLedger(final Path file, final BloomFilter<Long> filter, final long[] fenceHigh,
+                            final long[] fenceLow, final int count, final long indexOffset,
+                            final PositionedReader reader) {
+        this.journal = journalOf(file);
+        this.filter = filter;
+        this.fenceHigh = fenceHigh;
+        this.fenceLow = fenceLow;
+        this.count = count;
+        this.indexOffset = indexOffset;
+        this.reader = reader;
+    }
+
+    /**
+     * Opens a ledger, an empty one if the file does not exist yet.
+     *
+     * @param ledger Ledger file, its journal is kept next to it.
+     * @return the ledger, to be closed after use.
+     * @throws IOException if the ledger or its journal cannot be read.
+     */
+    public static ProcessedLedger open(final File ledger) throws IOException {
+        Path file = ledger.toPath().toAbsolutePath();
+        ProcessedLedger result;
+        if (!Files.exists(file)) {
+            result = new ProcessedLedger(file, null, new long[0], new long[0], 0, 0, null);
+        } else {
+            PositionedReader reader = new PositionedReader(file);
+            try {
+                Header header = Header.read(reader, file);
+                ByteBuffer bloom = reader.read(HEADER_SIZE, header.bloomLength, ByteOrder.BIG_ENDIAN);
+                BloomFilter<Long> filter = BloomFilter.readFrom(new ByteArrayInputStream(bloom.array()),
+                        Funnels.longFunnel());
+                int fences = fenceCount(header.count);
+                ByteBuffer fence = reader.read(HEADER_SIZE + header.bloomLength, fences * FINGERPRINT_SIZE,
+                        ByteOrder.BIG_ENDIAN);
+                long[] high = new long[fences];
+                long[] low = new long[fences];
+                for (int i = 0; i < fences; i++) {
+                    high[i] = fence.getLong();
+                    low[i] = fence.getLong();
+                }
+                result = new ProcessedLedger(file, filter, high, low, header.count, header.indexOffset(), reader);
+            } catch (IOException | RuntimeException e) {
+                reader.close();
+                throw e instanceof IOException ? (IOException) e : new IOException("Invalid ledger " + file, e);
+            }
+        }
+        result.replay();
+        LOG.info("Opened ledger {} with {} entries and {} journal entries", file, result.count,
+                result.recent.size());
+        return result;
+    }
+
+    /**
+     * Returns the ledger configured via {@link #SYSTEM_PROPERTY}, which is
+     * shared by all runs and never closed; each entry is written through to
+     * its journal.
+     *
+     * @return the application-wide ledger, {@code null} if none is
+     * configured or it cannot be opened.
+     */
+    public static ProcessedLedger getDefault() {
+        return Holder.INSTANCE;
+    }
+
+    private static ProcessedLedger createDefault() {
+        String value = System.getProperty(SYSTEM_PROPERTY);
+        if (Strings.isNullOrEmpty(value)) {
+            return null;
+        }
+        try {
+            return open(new File(value));
+        } catch (IOException e) {
+            LOG.warn("Ignoring ledger {}, all files are processed: {}", value, e.getMessage());
+            return null;
+        }
+    }
+
+    private static Path journalOf(final Path file) {
+        return file.resolveSibling(file.getFileName() + JOURNAL_SUFFIX);
+    }
+
+    private static int fenceCount(final int entries) {
+        return (entries + FENCE_INTERVAL - 1) / FENCE_INTERVAL;
+    }
+
+    private void replay() throws IOException {
+        for (Entry entry : readJournal(journal)) {
+            recent.add(entry.fingerprint);
+        }
+    }
+
+    /**
+     * Reads all complete entries of a journal. An incomplete entry at its
+     * end, left behind by an interrupted write, is cut off, so that the
+     * entries appended afterwards are read correctly.
+     *
+     * @param journal The journal file.
+     * @return its entries, none if it does not exist.
+     * @throws IOException if the journal cannot be read or truncated.
+     */
+    private static List<Entry> readJournal(final Path journal) throws IOException {
+        List<Entry> entries = Lists.newArrayList();
+        if (!Files.exists(journal)) {
+            return entries;
+        }
+        long complete = 0;
+        try (CountingInputStream counting = new CountingInputStream(
+                new BufferedInputStream(Files.newInputStream(journal)));
+             DataInputStream in = new DataInputStream(counting)) {
+            for (Entry entry = Entry.read(in, journal); entry != null; entry = Entry.read(in, journal)) {
+                entries.add(entry);
+                complete = counting.getCount();
+            }
+        }
+        if (complete < Files.size(journal)) {
+            try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+                channel.truncate(complete);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Checks whether a file was processed for the given purpose in its
+     * current state. This is safe to call concurrently.
+     *
+     * @param purpose    Purpose of the run, e.g. the name of its mode.
+     * @param path       The file.
+     * @param attributes The file's current attributes.
+     * @return {@code true} if the file was processed and has not changed
+     * since; {@code false} if unsure, e.g. as the ledger cannot be read.
+     */
+    public boolean contains(final String purpose, final Path path, final BasicFileAttributes attributes) {
+        Fingerprint fingerprint = Fingerprint.of(purpose, key(path), attributes.size(), seconds(attributes));
+        if (recent.contains(fingerprint)) {
+            return true;
+        }
+        if (filter == null || !filter.mightContain(fingerprint.high)) {
+            filtered.increment();
+            return false;
+        }
+        confirmed.increment();
+        try {
+            return find(fingerprint);
+        } catch (IOException e) {
+            LOG.warn("Unable to read ledger, processing {} again: {}", path, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Binary search, first among the fences in memory, then within the
+     * single block of fingerprints that may contain the given one.
+     */
+    private boolean find(final Fingerprint fingerprint) throws IOException {
+        int low = 0;
+        int high = fenceHigh.length - 1;
+        int block = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (Fingerprint.compare(fenceHigh[middle], fenceLow[middle], fingerprint) <= 0) {
+                block = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        if (block < 0) {
+            return false;
+        }
+        int from = block * FENCE_INTERVAL;
+        int length = Math.min(FENCE_INTERVAL, count - from);
+        ByteBuffer fingerprints = reader.read(indexOffset + (long) from * FINGERPRINT_SIZE,
+                length * FINGERPRINT_SIZE, ByteOrder.BIG_ENDIAN);
+        low = 0;
+        high = length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int position = middle * FINGERPRINT_SIZE;
+            int comparison = Fingerprint.compare(fingerprints.getLong(position), fingerprints.getLong(position + 8),
+                    fingerprint);
+            if (comparison == 0) {
+                return true;
+            }
+            if (comparison < 0) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remembers a processed file by appending it to the journal. Failures
+     * are logged only, the file is processed again by the next run.
+     *
+     * @param purpose    Purpose of the run, e.g. the name of its mode.
+     * @param path       The file after it was processed.
+     * @param attributes The file's attributes after it was processed.
+     */
+    public void add(final String purpose, final Path path, final BasicFileAttributes attributes) {
+        if (contains(purpose, path, attributes)) {
+            return;
+        }
+        Entry entry = new Entry(Fingerprint.of(purpose, key(path), attributes.size(), seconds(attributes)),
+                attributes.size(), seconds(attributes), key(path));
+        if (!recent.add(entry.fingerprint)) {
+            return;
+        }
+        synchronized (this) {
+            try {
+                if (journalOut == null) {
+                    journalOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(journal,
+                            StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+                }
+                entry.write(journalOut);
+                journalOut.flush();
+            } catch (IOException e) {
+                LOG.warn("Unable to remember {} in {}: {}", path, journal, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return number of lookups that were answered by the Bloom filter
+     * alone.
+     */
+    long getFiltered() {
+        return filtered.sum();
+    }
+
+    /**
+     * @return number of lookups that read the ledger file.
+     */
+    long getConfirmed() {
+        return confirmed.sum();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (journalOut != null) {
+                journalOut.close();
+                journalOut = null;
+            }
+        } finally {
+            if (reader != null) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Merges the journal into the sorted ledger file, removing entries that
+     * were added twice. Must only be called while no run uses the ledger.
+     *
+     * @param ledger Ledger file.
+     * @param prune  Whether to drop entries of files that no longer exist
+     *               or have changed since they were processed.
+     * @return the number of entries of the compacted ledger.
+     * @throws IOException if the ledger cannot be read or written.
+     */
+    public static int compact(final File ledger, final boolean prune) throws IOException {
+        Path file = ledger.toPath().toAbsolutePath();
+        Path journal = journalOf(file);
+        List<Entry> entries = Lists.newArrayList();
+        if (Files.exists(file)) {
+            Header header;
+            try (PositionedReader reader = new PositionedReader(file)) {
+                header = Header.read(reader, file);
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                ByteStreams.skipFully(in, header.indexOffset() + (long) header.count * FINGERPRINT_SIZE);
+                for (int i = 0; i < header.count; i++) {
+                    Entry entry = Entry.read(in, file);
+                    if (entry == null) {
+                        throw new EOFException("Ledger " + file + " is truncated");
+                    }
+                    entries.add(entry);
+                }
+            }
+        }
+        List<Entry> journalEntries = readJournal(journal);
+        int fromJournal = journalEntries.size();
+        entries.addAll(journalEntries);
+
+        entries.sort(Comparator.comparing((Entry entry) -> entry.fingerprint, Fingerprint.ORDER));
+        List<Entry> kept = Lists.newArrayListWithCapacity(entries.size());
+        for (Entry entry : entries) {
+            if (!kept.isEmpty() && kept.get(kept.size() - 1).fingerprint.equals(entry.fingerprint)) {
+                continue;
+            }
+            if (prune && !entry.isCurrent()) {
+                continue;
+            }
+            kept.add(entry);
+        }
+        write(file, kept);
+        Files.deleteIfExists(journal);
+        LOG.info("Compacted ledger {}: {} entries, {} from the journal, {} dropped", file, kept.size(),
+                fromJournal, entries.size() - kept.size());
+        return kept.size();
+    }
+
+    private static void write(final Path file, final List<Entry> entries) throws IOException {
+        BloomFilter<Long> filter = BloomFilter.create(Funnels.longFunnel(), Math.max(MIN_EXPECTED, entries.size()),
+                FALSE_POSITIVES);
+        for (Entry entry : entries) {
+            filter.put(entry.fingerprint.high);
+        }
+        ByteArrayOutputStream bloom = new ByteArrayOutputStream();
+        filter.writeTo(bloom);
+
+        Path temporary = file.resolveSibling(file.getFileName() + VerifiedCopy.PART_SUFFIX);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            out.writeInt(bloom.size());
+            bloom.writeTo(out);
+            for (int i = 0; i < entries.size(); i += FENCE_INTERVAL) {
+                entries.get(i).fingerprint.write(out);
+            }
+            for (Entry entry : entries) {
+                entry.fingerprint.write(out);
+            }
+            for (Entry entry : entries) {
+                entry.write(out);
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String key(final Path path) {
+        return path.toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * Modification times are compared to the second, as some file systems
+     * and the {@link FileCatalog} do not store them more precisely.
+     */
+    private static long seconds(final BasicFileAttributes attributes) {
+        return attributes.lastModifiedTime().to(TimeUnit.SECONDS);
+    }
+
+    /**
+     * The fixed part at the start of a ledger file.
+     */
+    private static final class Header {
+        private final int count;
+        private final int bloomLength;
+
+        private Header(final int count, final int bloomLength) {
+            this.count = count;
+            this.bloomLength = bloomLength;
+        }
+
+        static Header read(final PositionedReader reader, final Path file) throws IOException {
+            ByteBuffer header = reader.read(0, HEADER_SIZE, ByteOrder.BIG_ENDIAN);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException(file + " is not a ledger");
+            }
+            int count = header.getInt();
+            int bloomLength = header.getInt();
+            if (count < 0 || bloomLength < 0) {
+                throw new IOException("Invalid header of ledger " + file);
+            }
+            return new Header(count, bloomLength);
+        }
+
+        long indexOffset() {
+            return HEADER_SIZE + (long) bloomLength + (long) fenceCount(count) * FINGERPRINT_SIZE;
+        }
+    }
+
+    /**
+     * A processed file as stored in the journal and the ledger file.
+     */
+    private static final class Entry {
+        private final Fingerprint fingerprint;
+        private final long size;
+        private final long modified;
+        private final String path;
+
+        Entry(final Fingerprint fingerprint, final long size, final long modified, final String path) {
+            this.fingerprint = fingerprint;
+            this.size = size;
+            this.modified = modified;
+            this.path = path;
+        }
+
+        boolean isCurrent() {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(Paths.get(path), BasicFileAttributes.class);
+                return attributes.size() == size && seconds(attributes) == modified;
+            } catch (NoSuchFileException e) {
+                return false;
+            } catch (IOException e) {
+                LOG.debug("Keeping {}, its attributes cannot be read: {}", path, e.getMessage());
+                return true;
+            }
+        }
+
+        void write(final DataOutputStream out) throws IOException {
+            fingerprint.write(out);
+            out.writeLong(size);
+            out.writeLong(modified);
+            out.writeUTF(path);
+        }
+
+        /**
+         * @return the next entry or {@code null} at the end of the input,
+         * which is also where an incomplete entry of an interrupted write
+         * ends a journal.
+         */
+        static Entry read(final DataInputStream in, final Path source) throws IOException {
+            long high;
+            try {
+                high = in.readLong();
+            } catch (EOFException e) {
+                return null;
+            }
+            try {
+                long low = in.readLong();
+                long size = in.readLong();
+                long modified = in.readLong();
+                String path = in.readUTF();
+                return new Entry(new Fingerprint(high, low), size, modified, path);
+            } catch (EOFException e) {
+                LOG.warn("Ignoring incomplete entry at the end of {}", source);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * A 128 bit hash of an entry; its upper half feeds the Bloom filter.
+     */
+    private static final class Fingerprint {
+        static final Comparator<Fingerprint> ORDER = (a, b) -> compare(a.high, a.low, b);
+
+        private final long high;
+        private final long low;
+
+        Fingerprint(final long high, final long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        static Fingerprint of(final String purpose, final String path, final long size, final long modified) {
+            ByteBuffer hash = ByteBuffer.wrap(Hashing.murmur3_128().newHasher()
+                    .putString(purpose, StandardCharsets.UTF_8)
+                    .putByte((byte) 0)
+                    .putString(path, StandardCharsets.UTF_8)
+                    .putLong(size)
+                    .putLong(modified)
+                    .hash().asBytes());
+            return new Fingerprint(hash.getLong(), hash.getLong());
+        }
+
+        static int compare(final long high, final long low, final Fingerprint other) {
+            int comparison = Long.compare(high, other.high);
+            return comparison != 0 ? comparison : Long.compare(low, other.low);
+        }
+
+        void write(final DataOutputStream out) throws IOException {
+            out.writeLong(high);
+            out.writeLong(low);
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (!(other instanceof Fingerprint)) {
+                return false;
+            }
+            Fingerprint fingerprint = (Fingerprint) other;
+            return high == fingerprint.high && low == fingerprint.low;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(high ^ low);
+        }
+    }
+
+    /**
+     * The application-wide instance, created on first use.
+     */
+    private static final class Holder {
+        private static final ProcessedLedger INSTANCE = createDefault();
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.ToLongFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Order in which the files of a run are handed to the workers.
+ * <br>
+ * A directory listing returns files in an order unrelated to their place
+ * on disk, e.g. hashed on ext4, which turns the header reads of a run into
+ * random seeks on spinning disks. {@link #INODE} sorts the files by inode
+ * number, which file systems like ext4 and XFS allocate close to the file's
+ * data, and hands contiguous chunks to the workers so that each of them
+ * reads mostly sequentially. Java offers no access to physical extents,
+ * so the inode number is the best available hint.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+enum ProcessingOrder {
+    /**
+     * Process files in listing order, one file per task.
+     */
+    LISTING,
+    /**
+     * Process files in inode order, in chunks of {@link #CHUNK_SIZE}.
+     * Files without an inode number keep their listing order after all
+     * others.
+     */
+    INODE;
+
+    /**
+     * System property to select the order, <code>listing</code> (default)
+     * or <code>inode</code>.
+     */
+    static final String SYSTEM_PROPERTY = "fotorenamer.order";
+
+    /**
+     * Number of neighbouring files a worker processes one after another in
+     * {@link #INODE} order.
+     */
+    static final int CHUNK_SIZE = 16;
+
+    /**
+     * Marker of an unknown inode number.
+     */
+    static final long UNKNOWN = -1;
+
+    /**
+     * Logger for this class.
+     */
+    private static final Logger LOG = LogManager.getLogger(ProcessingOrder.class);
+
+    /**
+     * Inode number in the file key of Unix file systems, e.g.
+     * <code>(dev=803,ino=1234)</code>.
+     */
+    private static final Pattern FILE_KEY_INODE = Pattern.compile("ino=(\\d{1,18})");
+
+    /**
+     * Reads the order from {@link #SYSTEM_PROPERTY}.
+     *
+     * @return the configured order, {@link #LISTING} if unset or invalid.
+     */
+    static ProcessingOrder fromSystemProperties() {
+        String value = System.getProperty(SYSTEM_PROPERTY, LISTING.name()).trim();
+        try {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Ignoring invalid processing order '{}'", value);
+            return LISTING;
+        }
+    }
+
+    /**
+     * Arranges items into the tasks of a run.
+     *
+     * @param items Items in listing order.
+     * @param inode Inode number of an item, {@link #UNKNOWN} if there is
+     *              none; only used by {@link #INODE}.
+     * @param <T>   Type of the items.
+     * @return the tasks, each a list of items to process one after another.
+     */
+    <T> List<List<T>> arrange(final List<T> items, final ToLongFunction<T> inode) {
+        if (this == LISTING) {
+            return Lists.transform(items, ImmutableList::of);
+        }
+        List<T> sorted = Lists.newArrayList(items);
+        // stable, so that files without an inode number keep their order
+        sorted.sort(Comparator.comparingLong(item -> {
+            long number = inode.applyAsLong(item);
+            return number < 0 ? Long.MAX_VALUE : number;
+        }));
+        return Lists.partition(sorted, CHUNK_SIZE);
+    }
+
+    /**
+     * Determines a file's inode number, preferably from the file key of
+     * attributes that were read anyway, otherwise via the
+     * <code>unix:ino</code> attribute.
+     *
+     * @param file       File to examine.
+     * @param attributes Attributes from the directory listing, may be
+     *                   {@code null}.
+     * @return the inode number or {@link #UNKNOWN} if the file system does
+     * not provide one.
+     */
+    static long inode(final File file, final BasicFileAttributes attributes) {
+        Object key = attributes == null ? null : attributes.fileKey();
+        if (key != null) {
+            Matcher matcher = FILE_KEY_INODE.matcher(key.toString());
+            if (matcher.find()) {
+                return Long.parseLong(matcher.group(1));
+            }
+        }
+        try {
+            Object inode = Files.getAttribute(file.toPath(), "unix:ino");
+            return inode instanceof Number ? ((Number) inode).longValue() : UNKNOWN;
+        } catch (UnsupportedOperationException | IllegalArgumentException | IOException e) {
+            return UNKNOWN;
+        }
+    }
+}
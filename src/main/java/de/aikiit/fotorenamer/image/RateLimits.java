@@ -0,0 +1,379 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.RateLimiter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token-bucket limits of the load a renaming run puts on shared storage:
+ * files per second, bytes read per second and metadata operations, i.e.
+ * metadata reads and moves, per second.
+ * <br>
+ * Limits are written like <code>files=20,bytes=50M,ops=100</code>, omitted
+ * limits are unlimited. Optionally they follow a daily schedule of time
+ * windows, e.g.
+ * <code>08:00-18:00 files=20,bytes=50M;18:00-08:00 unlimited</code>;
+ * outside all windows the base limits apply. All limits can be changed
+ * while jobs are running via {@link RateLimitsMXBean}.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+public final class RateLimits implements RateLimitsMXBean {
+    /**
+     * Logger for this class.
+     */
+    private static final Logger LOG = LogManager.getLogger(RateLimits.class);
+
+    /**
+     * System property of the base limits.
+     */
+    public static final String SYSTEM_PROPERTY = "fotorenamer.ratelimit";
+    /**
+     * System property of the schedule.
+     */
+    public static final String SCHEDULE_PROPERTY = "fotorenamer.ratelimit.schedule";
+    /**
+     * Name of the application-wide instance's management bean.
+     */
+    public static final String OBJECT_NAME = "de.aikiit.fotorenamer:type=RateLimits";
+
+    /**
+     * Limits that never slow down a run.
+     */
+    public static final String UNLIMITED = "unlimited";
+
+    private final Rates base;
+    private final List<Window> schedule;
+    private final String scheduleText;
+    private final Limiter files = new Limiter();
+    private final Limiter bytes = new Limiter();
+    private final Limiter operations = new Limiter();
+    private volatile boolean followingSchedule = true;
+    /**
+     * The rates last applied from the schedule, to detect changes.
+     */
+    private Rates applied;
+
+    /**
+     * Creates limits.
+     *
+     * @param base     Limits outside of scheduled windows, e.g.
+     *                 <code>files=20,bytes=50M,ops=100</code>.
+     * @param schedule Time windows with their own limits, may be empty.
+     * @throws IllegalArgumentException if the limits or the schedule are
+     *                                  invalid.
+     */
+    public RateLimits(final String base, final String schedule) {
+        this.base = Rates.parse(base);
+        ImmutableList.Builder<Window> windows = ImmutableList.builder();
+        if (!Strings.isNullOrEmpty(schedule)) {
+            for (String window : Splitter.on(';').trimResults().omitEmptyStrings().split(schedule)) {
+                windows.add(Window.parse(window));
+            }
+        }
+        this.schedule = windows.build();
+        this.scheduleText = Strings.nullToEmpty(schedule).trim();
+        applySchedule(LocalTime.now());
+    }
+
+    /**
+     * Returns the application-wide limits that all jobs share, configured
+     * via {@link #SYSTEM_PROPERTY} and {@link #SCHEDULE_PROPERTY}.
+     *
+     * @return the default limits.
+     */
+    public static RateLimits getDefault() {
+        return Holder.INSTANCE;
+    }
+
+    private static RateLimits createDefault() {
+        RateLimits limits;
+        try {
+            limits = new RateLimits(System.getProperty(SYSTEM_PROPERTY), System.getProperty(SCHEDULE_PROPERTY));
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Ignoring invalid rate limits: {}", e.getMessage());
+            limits = new RateLimits(null, null);
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    new StandardMBean(limits, RateLimitsMXBean.class, true), new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            LOG.warn("Unable to register rate limits: {}", e.getMessage());
+        }
+        return limits;
+    }
+
+    /**
+     * Waits until the given number of files may be processed.
+     *
+     * @param count Number of files.
+     */
+    void acquireFiles(final int count) {
+        applySchedule(LocalTime.now());
+        files.acquire(count);
+    }
+
+    /**
+     * Waits until the given amount of bytes may be read.
+     *
+     * @param amount Number of bytes.
+     */
+    void acquireBytes(final long amount) {
+        applySchedule(LocalTime.now());
+        bytes.acquire(amount);
+    }
+
+    /**
+     * Waits until another metadata operation may be performed.
+     */
+    void acquireOperation() {
+        applySchedule(LocalTime.now());
+        operations.acquire(1);
+    }
+
+    /**
+     * Applies the limits of the window the given time is in.
+     *
+     * @param now Current time of day.
+     */
+    synchronized void applySchedule(final LocalTime now) {
+        if (!followingSchedule) {
+            return;
+        }
+        Rates rates = base;
+        for (Window window : schedule) {
+            if (window.contains(now)) {
+                rates = window.rates;
+                break;
+            }
+        }
+        if (rates != applied) {
+            LOG.info("Applying rate limits {}", rates);
+            files.setRate(rates.files);
+            bytes.setRate(rates.bytes);
+            operations.setRate(rates.operations);
+            applied = rates;
+        }
+    }
+
+    @Override
+    public synchronized double getFilesPerSecond() {
+        return files.rate;
+    }
+
+    @Override
+    public synchronized void setFilesPerSecond(final double rate) {
+        followingSchedule = false;
+        files.setRate(rate);
+    }
+
+    @Override
+    public synchronized double getBytesPerSecond() {
+        return bytes.rate;
+    }
+
+    @Override
+    public synchronized void setBytesPerSecond(final double rate) {
+        followingSchedule = false;
+        bytes.setRate(rate);
+    }
+
+    @Override
+    public synchronized double getOperationsPerSecond() {
+        return operations.rate;
+    }
+
+    @Override
+    public synchronized void setOperationsPerSecond(final double rate) {
+        followingSchedule = false;
+        operations.setRate(rate);
+    }
+
+    @Override
+    public boolean isFollowingSchedule() {
+        return followingSchedule;
+    }
+
+    @Override
+    public synchronized void setFollowingSchedule(final boolean follow) {
+        followingSchedule = follow;
+        applied = null;
+        applySchedule(LocalTime.now());
+    }
+
+    @Override
+    public String getSchedule() {
+        return scheduleText;
+    }
+
+    @Override
+    public String toString() {
+        return "files=" + files.rate + ",bytes=" + bytes.rate + ",ops=" + operations.rate
+                + (followingSchedule ? "" : " (manual)");
+    }
+
+    /**
+     * Parses a number with an optional binary unit, e.g. <code>50M</code>.
+     *
+     * @param amount Number, optionally followed by <code>K</code>,
+     *               <code>M</code> or <code>G</code>.
+     * @return the amount in units.
+     * @throws IllegalArgumentException if the amount is not a number.
+     */
+    static double parseAmount(final String amount) {
+        String upper = amount.trim().toUpperCase(Locale.ROOT);
+        long factor = 1;
+        int unit = "KMG".indexOf(upper.isEmpty() ? ' ' : upper.charAt(upper.length() - 1));
+        if (unit >= 0) {
+            factor = 1L << (10 * (unit + 1));
+            upper = upper.substring(0, upper.length() - 1);
+        }
+        try {
+            return Double.parseDouble(upper) * factor;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid amount '" + amount + "'", e);
+        }
+    }
+
+    /**
+     * A token bucket, rates of zero or less are unlimited.
+     */
+    private static final class Limiter {
+        private final RateLimiter limiter = RateLimiter.create(1);
+        private volatile double rate;
+
+        void setRate(final double newRate) {
+            if (newRate > 0) {
+                limiter.setRate(newRate);
+            }
+            rate = newRate;
+        }
+
+        void acquire(final long permits) {
+            if (rate > 0 && permits > 0) {
+                double waited = limiter.acquire((int) Math.min(permits, Integer.MAX_VALUE));
+                AdaptiveLimit.waited((long) (waited * TimeUnit.SECONDS.toNanos(1)));
+            }
+        }
+    }
+
+    /**
+     * Rates of all three limits.
+     */
+    private static final class Rates {
+        private final double files;
+        private final double bytes;
+        private final double operations;
+
+        Rates(final double files, final double bytes, final double operations) {
+            this.files = files;
+            this.bytes = bytes;
+            this.operations = operations;
+        }
+
+        static Rates parse(final String value) {
+            double files = 0;
+            double bytes = 0;
+            double operations = 0;
+            if (!Strings.isNullOrEmpty(value) && !UNLIMITED.equals(value.trim())) {
+                for (String limit : Splitter.on(',').trimResults().omitEmptyStrings().split(value)) {
+                    List<String> pair = Splitter.on('=').trimResults().splitToList(limit);
+                    if (pair.size() != 2) {
+                        throw new IllegalArgumentException("Invalid rate limit '" + limit + "'");
+                    }
+                    switch (pair.get(0).toLowerCase(Locale.ROOT)) {
+                        case "files":
+                            files = parseAmount(pair.get(1));
+                            break;
+                        case "bytes":
+                            bytes = parseAmount(pair.get(1));
+                            break;
+                        case "ops":
+                            operations = parseAmount(pair.get(1));
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Unknown rate limit '" + pair.get(0) + "'");
+                    }
+                }
+            }
+            return new Rates(files, bytes, operations);
+        }
+
+        @Override
+        public String toString() {
+            return "files=" + files + ",bytes=" + bytes + ",ops=" + operations;
+        }
+    }
+
+    /**
+     * A daily time window with its own rates, it may span midnight.
+     */
+    private static final class Window {
+        private final LocalTime from;
+        private final LocalTime to;
+        private final Rates rates;
+
+        Window(final LocalTime from, final LocalTime to, final Rates rates) {
+            this.from = from;
+            this.to = to;
+            this.rates = rates;
+        }
+
+        static Window parse(final String window) {
+            List<String> parts = Splitter.on(' ').trimResults().omitEmptyStrings().limit(2).splitToList(window);
+            List<String> times = Splitter.on('-').trimResults().splitToList(parts.get(0));
+            if (parts.size() != 2 || times.size() != 2) {
+                throw new IllegalArgumentException("Invalid schedule window '" + window + "'");
+            }
+            try {
+                return new Window(LocalTime.parse(times.get(0)), LocalTime.parse(times.get(1)),
+                        Rates.parse(parts.get(1)));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid schedule window '" + window + "'", e);
+            }
+        }
+
+        boolean contains(final LocalTime time) {
+            if (from.isBefore(to)) {
+                return !time.isBefore(from) && time.isBefore(to);
+            }
+            return !time.isBefore(from) || time.isBefore(to);
+        }
+    }
+
+    /**
+     * The application-wide instance, created on first use.
+     */
+    private static final class Holder {
+        private static final RateLimits INSTANCE = createDefault();
+    }
+}
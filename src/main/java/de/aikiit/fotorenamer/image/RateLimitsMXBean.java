@@ -0,0 +1,73 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+/**
+ * Management interface of the {@link RateLimits}, registered as
+ * {@value RateLimits#OBJECT_NAME}. Rates of zero or less are unlimited;
+ * setting a rate stops following the schedule.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+public interface RateLimitsMXBean {
+    /**
+     * @return the maximum number of files processed per second.
+     */
+    double getFilesPerSecond();
+
+    /**
+     * @param rate Maximum number of files processed per second.
+     */
+    void setFilesPerSecond(double rate);
+
+    /**
+     * @return the maximum number of bytes read per second.
+     */
+    double getBytesPerSecond();
+
+    /**
+     * @param rate Maximum number of bytes read per second.
+     */
+    void setBytesPerSecond(double rate);
+
+    /**
+     * @return the maximum number of metadata operations, i.e. metadata
+     * reads and moves, per second.
+     */
+    double getOperationsPerSecond();
+
+    /**
+     * @param rate Maximum number of metadata operations per second.
+     */
+    void setOperationsPerSecond(double rate);
+
+    /**
+     * @return {@code true} if the rates follow the configured schedule.
+     */
+    boolean isFollowingSchedule();
+
+    /**
+     * @param follow Whether the rates follow the configured schedule again,
+     *               or keep their current values.
+     */
+    void setFollowingSchedule(boolean follow);
+
+    /**
+     * @return the configured schedule, empty if there is none.
+     */
+    String getSchedule();
+}
@@ -0,0 +1,785 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
+import de.aikiit.fotorenamer.exception.DirectoryLockedException;
+import de.aikiit.fotorenamer.exception.InvalidDirectoryException;
+import de.aikiit.fotorenamer.exception.NoFilesFoundException;
+import de.aikiit.fotorenamer.util.JobExecutor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+/**
+ * UI-independent engine that performs the actual renaming of files.
+ * <br>
+ * Usage:
+ * <pre>
+ * RenameHandle handle = new RenameEngine().prepare(RenameJob.builder(directory).build());
+ * handle.getResults().subscribe(mySubscriber);
+ * RenameResult result = handle.start().join();
+ * </pre>
+ * Starting a job locks its directory until the job is finished, see
+ * {@link DirectoryLock}.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+public final class RenameEngine {
+    /**
+     * The logger of this class.
+     */
+    private static final Logger LOG = LogManager.getLogger(RenameEngine.class);
+
+    /**
+     * Executor that runs the jobs.
+     */
+    private final Executor executor;
+
+    /**
+     * Creates an engine that runs its jobs on the application-wide
+     * {@link JobExecutor}.
+     */
+    public RenameEngine() {
+        this(JobExecutor.getDefault());
+    }
+
+    /**
+     * Creates an engine that runs its jobs on the given executor.
+     *
+     * @param executor Executor to run jobs with.
+     */
+    public RenameEngine(final Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor must not be null");
+        }
+        this.executor = executor;
+    }
+
+    /**
+     * Validates the given job and collects all relevant files without
+     * starting it.
+     *
+     * @param job Job to prepare.
+     * @return a handle to subscribe to and start the job.
+     * @throws InvalidDirectoryException If there's a problem with
+     *                                   the selected directory.
+     * @throws NoFilesFoundException     If the selected directory is empty.
+     */
+    public RenameHandle prepare(final RenameJob job) throws InvalidDirectoryException, NoFilesFoundException {
+        File directory = job.getDirectory();
+        if (directory == null) {
+            throw new InvalidDirectoryException("null is not a directory");
+        }
+        if (!directory.isDirectory()) {
+            throw new InvalidDirectoryException(directory);
+        }
+
+        // retrieve relevant images and their sidecars in directory
+        FileCatalog catalog;
+        try (DirectoryHandle handle = DirectoryHandle.open(directory)) {
+            catalog = handle.catalog(
+                    name -> ImageFilenameFilter.isSuffixExifExtractable(name) || FileGroup.isSidecar(name));
+        } catch (IOException e) {
+            LOG.error("Unable to list {}: {}", directory, e.getMessage());
+            throw new InvalidDirectoryException(directory);
+        }
+        if (catalog.group() == 0) {
+            throw new NoFilesFoundException(directory);
+        }
+        return new RenameHandle(this, job, catalog);
+    }
+
+    /**
+     * Prepares and immediately starts the given job.
+     *
+     * @param job Job to run.
+     * @return a handle of the running job.
+     * @throws InvalidDirectoryException If there's a problem with
+     *                                   the selected directory.
+     * @throws NoFilesFoundException     If the selected directory is empty.
+     */
+    public RenameHandle submit(final RenameJob job) throws InvalidDirectoryException, NoFilesFoundException {
+        RenameHandle handle = prepare(job);
+        handle.start();
+        return handle;
+    }
+
+    /**
+     * Locks the given handle's directory and runs its job asynchronously.
+     *
+     * @param handle Handle to run.
+     */
+    void execute(final RenameHandle handle) {
+        final DirectoryLock lock;
+        try {
+            lock = DirectoryLock.acquire(handle.getJob().getDirectory());
+        } catch (DirectoryLockedException e) {
+            fail(handle, e);
+            return;
+        }
+
+        try {
+            executor.execute(new EngineJob(handle, lock));
+        } catch (RejectedExecutionException e) {
+            lock.close();
+            fail(handle, e);
+        }
+    }
+
+    private static void fail(final RenameHandle handle, final Throwable cause) {
+        handle.getPublisher().closeExceptionally(cause);
+        handle.getResultFuture().completeExceptionally(cause);
+    }
+
+    /**
+     * A job's execution that holds its directory lock until it is finished
+     * or cancelled before it could start.
+     */
+    private final class EngineJob implements JobExecutor.CancellableJob {
+        private final RenameHandle handle;
+        private final DirectoryLock lock;
+        private final AtomicBoolean started = new AtomicBoolean(false);
+
+        EngineJob(final RenameHandle handle, final DirectoryLock lock) {
+            this.handle = handle;
+            this.lock = lock;
+        }
+
+        @Override
+        public void run() {
+            if (!started.compareAndSet(false, true)) {
+                return;
+            }
+            // release the lock before anybody is notified about the outcome
+            RenameResult result;
+            try {
+                result = RenameEngine.this.run(handle);
+            } catch (Throwable e) {
+                LOG.error("Renaming in {} failed", handle.getJob().getDirectory(), e);
+                lock.close();
+                fail(handle, e);
+                if (e instanceof Error) {
+                    throw (Error) e;
+                }
+                return;
+            } finally {
+                lock.close();
+            }
+            handle.getPublisher().close();
+            handle.getResultFuture().complete(result);
+        }
+
+        @Override
+        public void cancel() {
+            handle.cancel();
+            if (started.compareAndSet(false, true)) {
+                LOG.info("Job for {} was cancelled before it started", handle.getJob().getDirectory());
+                lock.close();
+                RenameStatistics statistics = new RenameStatistics();
+                statistics.skipped(handle.getFileCount());
+                handle.getPublisher().close();
+                handle.getResultFuture().complete(new RenameResult(handle.getJob(), handle.getFileCount(),
+                        statistics, false, true, null));
+            }
+        }
+    }
+
+    /**
+     * Performs the actual/technical renaming.
+     *
+     * @param handle Handle of the job to run.
+     * @return the result of the job.
+     */
+    private RenameResult run(final RenameHandle handle) {
+        final RenameJob job = handle.getJob();
+        final FileCatalog catalog = handle.getCatalog();
+        final RenameStatistics statistics = new RenameStatistics();
+        final AtomicBoolean aborted = new AtomicBoolean(false);
+        LOG.info("Starting to rename {} files with error budget {}.", catalog.size(), job.getErrorBudget());
+
+        final FileTaskRunner runner = FileTaskRunner.fromSystemProperties();
+        final ProcessingOrder order = ProcessingOrder.fromSystemProperties();
+        LOG.debug("Processing files with {} threads in {} order", runner.getMode(), order);
+
+        // all file operations of this run are relative to the opened directory
+        try (DirectoryHandle directory = DirectoryHandle.open(job.getDirectory())) {
+            final TargetTree tree = job.isOrganizing() ? new TargetTree(job.getTargetDirectory().toPath(),
+                    job.getFolderLayout(), job.getDirectory().toPath()) : null;
+            for (int i = 0; i < catalog.size(); i++) {
+                catalog.setStatus(i, directory.isRegularFile(catalog.getName(i))
+                        ? FileCatalog.PENDING : FileCatalog.MISSING);
+            }
+            if (job.getDuplicateAction() != null) {
+                handleDuplicates(handle, directory, runner, catalog, statistics);
+            }
+
+            // groups are referred to by number, their files are created when processed
+            final DateIndex dates = job.isUsingDateIndex() ? DateIndex.read(job.getDirectory().toPath()) : null;
+            final Map<String, DateIndex.Entry> indexed = new ConcurrentHashMap<>();
+            final int[] groups = select(handle, catalog, dates, statistics);
+            final List<List<Integer>> tasks = order.arrange(Ints.asList(groups),
+                    group -> catalog.getInode(catalog.getPrimary(group)));
+            final IntStream.Builder headers = IntStream.builder();
+            if (tree != null || job.getMode().usesCreationDate() || job.hasCaptureRange()) {
+                for (List<Integer> task : tasks) {
+                    for (int group : task) {
+                        int primary = catalog.getPrimary(group);
+                        FilenameDates.Match match = job.getFilenameDates().match(catalog.getName(primary));
+                        if (match == null || !match.isWithTime()) {
+                            headers.add(primary);
+                        }
+                    }
+                }
+            }
+            // null if disabled, which try-with-resources skips
+            try (HeaderPrefetcher prefetcher = HeaderPrefetcher.fromSystemProperties(catalog,
+                    headers.build().toArray())) {
+                final List<List<Integer>> undispatched = runner.run(tasks, chunk -> chunk.forEach(number -> {
+                    final FileGroup group = catalog.getGroup(number);
+                    List<FileResult> results;
+                    if (aborted.get() || handle.isCancelled()) {
+                        results = skip(group, statistics);
+                    } else {
+                        results = process(directory, tree, group, handle, prefetcher, statistics);
+                        remember(job, group, catalog, results);
+                        if (dates != null) {
+                            index(tree, group, catalog, results, indexed);
+                        }
+                    }
+
+                    if (job.getErrorBudget().isExceeded(statistics.getBudgetRelevantErrorCount(), catalog.size())
+                            && aborted.compareAndSet(false, true)) {
+                        LOG.error("Error budget {} exceeded after {} errors, aborting run in {}",
+                                job.getErrorBudget(), statistics.getBudgetRelevantErrorCount(), job.getDirectory());
+                    }
+                    for (int i = 0; i < results.size(); i++) {
+                        catalog.setStatus(group.getIndex(i), results.get(i).getStatus());
+                    }
+                    results.forEach(result -> publish(handle, result));
+                }));
+                if (!undispatched.isEmpty()) {
+                    // interrupted, the groups that were never started are accounted for as on a cancel
+                    handle.cancel();
+                    boolean interrupted = Thread.interrupted();
+                    for (List<Integer> chunk : undispatched) {
+                        for (int number : chunk) {
+                            FileGroup group = catalog.getGroup(number);
+                            List<FileResult> results = skip(group, statistics);
+                            for (int i = 0; i < results.size(); i++) {
+                                catalog.setStatus(group.getIndex(i), results.get(i).getStatus());
+                            }
+                            results.forEach(result -> publish(handle, result));
+                        }
+                    }
+                    if (interrupted) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+            if (dates != null) {
+                updateDateIndex(job, catalog, dates, indexed);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        File report = statistics.writeReport(job.getDirectory());
+        return new RenameResult(job, catalog.size(), statistics, aborted.get(), handle.isCancelled(), report);
+    }
+
+    /**
+     * Accounts for a group that is not processed because its run was
+     * aborted or cancelled.
+     *
+     * @param group      Files of the group.
+     * @param statistics Counters of the current run.
+     * @return the results of its files.
+     */
+    private static List<FileResult> skip(final FileGroup group, final RenameStatistics statistics) {
+        List<FileResult> results = Lists.newArrayList();
+        for (File file : group.getMembers()) {
+            statistics.skipped();
+            results.add(FileResult.skipped(file));
+        }
+        return results;
+    }
+
+    /**
+     * Groups the catalog and reports the groups whose files were all
+     * processed by an earlier run according to the job's
+     * {@link ProcessedLedger}, as well as those that the {@link DateIndex}
+     * places outside the job's capture range, so that their headers are
+     * neither prefetched nor read.
+     *
+     * @param handle     Handle of the running job.
+     * @param catalog    Files of the run.
+     * @param dates      Index of the directory, may be {@code null}.
+     * @param statistics Counters of the current run.
+     * @return the numbers of the groups that remain to be processed.
+     */
+    private static int[] select(final RenameHandle handle, final FileCatalog catalog, final DateIndex dates,
+                                final RenameStatistics statistics) {
+        final int count = catalog.group();
+        final RenameJob job = handle.getJob();
+        final ProcessedLedger ledger = job.getLedger();
+        final boolean ranged = dates != null && dates.size() > 0 && job.hasCaptureRange();
+        if (ledger == null && !ranged) {
+            return IntStream.range(0, count).toArray();
+        }
+        final String purpose = job.getLedgerPurpose();
+        final Map<String, DateIndex.Entry> inRange = new HashMap<>();
+        if (ranged) {
+            for (DateIndex.Entry entry : dates.select(job.getCaptureFrom(), job.getCaptureTo())) {
+                inRange.put(entry.getName(), entry);
+            }
+        }
+        final IntStream.Builder pending = IntStream.builder();
+        for (int number = 0; number < count; number++) {
+            FileGroup group = catalog.getGroup(number);
+            boolean known = ledger != null;
+            for (int i = 0; i < group.getMembers().size() && known; i++) {
+                int index = group.getIndex(i);
+                BasicFileAttributes attributes = catalog.getAttributes(index);
+                known = catalog.getStatus(index) == FileCatalog.PENDING && attributes != null
+                        && ledger.contains(purpose, group.getMembers().get(i).toPath(), attributes);
+            }
+            if (known) {
+                for (int i = 0; i < group.getMembers().size(); i++) {
+                    statistics.known();
+                    catalog.setStatus(group.getIndex(i), FileResult.Status.KNOWN);
+                    publish(handle, FileResult.known(group.getMembers().get(i)));
+                }
+                continue;
+            }
+            LocalDateTime excluded = ranged ? indexedDateOutside(job, catalog, group, dates, inRange) : null;
+            if (excluded == null) {
+                pending.add(number);
+                continue;
+            }
+            for (int i = 0; i < group.getMembers().size(); i++) {
+                statistics.excluded();
+                catalog.setDate(group.getIndex(i), excluded);
+                catalog.setStatus(group.getIndex(i), FileResult.Status.EXCLUDED);
+                publish(handle, FileResult.excluded(group.getMembers().get(i)));
+            }
+        }
+        return pending.build().toArray();
+    }
+
+    /**
+     * Looks up the creation date of a group's primary image in the
+     * directory's index; images within the range were found by a single
+     * binary search beforehand, all others are looked up by name.
+     *
+     * @return the indexed date if it is outside the job's capture range,
+     * {@code null} if the group is to be processed.
+     */
+    private static LocalDateTime indexedDateOutside(final RenameJob job, final FileCatalog catalog,
+                                                    final FileGroup group, final DateIndex dates,
+                                                    final Map<String, DateIndex.Entry> inRange) {
+        final int primary = group.getIndex(0);
+        final BasicFileAttributes attributes = catalog.getAttributes(primary);
+        final String name = group.getPrimary().getName();
+        DateIndex.Entry entry = inRange.get(name);
+        if (entry != null && entry.matches(attributes)) {
+            return null;
+        }
+        entry = dates.find(name);
+        if (entry == null || !entry.matches(attributes) || job.isInCaptureRange(entry.getDate())) {
+            return null;
+        }
+        return entry.getDate();
+    }
+
+    /**
+     * Collects the creation dates of the files of a group that remain in
+     * the directory for its {@link DateIndex}. Moves keep size and
+     * modification time, so the attributes from the directory listing
+     * still apply.
+     *
+     * @param tree    Target of an organising run, {@code null} if renamed
+     *                in place.
+     * @param group   Files that were processed.
+     * @param catalog Files of the run.
+     * @param results Outcome for each member of the group.
+     * @param indexed Entries collected so far by their current name.
+     */
+    private static void index(final TargetTree tree, final FileGroup group, final FileCatalog catalog,
+                              final List<FileResult> results, final Map<String, DateIndex.Entry> indexed) {
+        for (int i = 0; i < results.size(); i++) {
+            FileResult result = results.get(i);
+            int index = group.getIndex(i);
+            BasicFileAttributes attributes = catalog.getAttributes(index);
+            LocalDateTime date = catalog.getDate(index);
+            boolean remains = result.getStatus() == FileResult.Status.EXCLUDED
+                    || result.getStatus() == FileResult.Status.UNCHANGED
+                    || (result.getStatus() == FileResult.Status.RENAMED && tree == null);
+            if (remains && attributes != null && date != null) {
+                indexed.put(result.getTargetName(), new DateIndex.Entry(result.getTargetName(), attributes, date));
+            }
+        }
+    }
+
+    /**
+     * Writes the directory's {@link DateIndex} after a run: the entries of
+     * the run's files are added, entries of files that were not processed
+     * are kept as long as the files did not change, all others are dropped.
+     *
+     * @param job     The finished job.
+     * @param catalog Files of the run.
+     * @param dates   Index read at the start of the run.
+     * @param indexed Entries of the processed files by their new name.
+     */
+    private static void updateDateIndex(final RenameJob job, final FileCatalog catalog, final DateIndex dates,
+                                        final Map<String, DateIndex.Entry> indexed) {
+        final Map<String, DateIndex.Entry> entries = new HashMap<>();
+        for (int i = 0; i < catalog.size(); i++) {
+            FileResult.Status status = catalog.getResult(i);
+            if (catalog.getStatus(i) == FileCatalog.MISSING || status == FileResult.Status.RENAMED
+                    || status == FileResult.Status.DUPLICATE) {
+                continue;
+            }
+            String name = catalog.getName(i);
+            DateIndex.Entry entry = dates.size() == 0 ? null : dates.find(name);
+            if (entry != null && entry.matches(catalog.getAttributes(i))) {
+                entries.put(name, entry);
+            }
+        }
+        entries.putAll(indexed);
+        try {
+            DateIndex.write(job.getDirectory().toPath(), entries.values());
+        } catch (IOException e) {
+            LOG.warn("Unable to update the date index of {}: {}", job.getDirectory(), e.getMessage());
+        }
+    }
+
+    /**
+     * Adds the files of a group that have their target name now to the
+     * job's {@link ProcessedLedger}. Moves keep size and modification time,
+     * so the attributes from the directory listing still apply.
+     *
+     * @param job     The running job.
+     * @param group   Files that were processed.
+     * @param catalog Files of the run.
+     * @param results Outcome for each member of the group.
+     */
+    private static void remember(final RenameJob job, final FileGroup group, final FileCatalog catalog,
+                                 final List<FileResult> results) {
+        if (job.getLedger() == null) {
+            return;
+        }
+        final Path root = (job.isOrganizing() ? job.getTargetDirectory() : job.getDirectory()).toPath();
+        for (int i = 0; i < results.size(); i++) {
+            FileResult result = results.get(i);
+            BasicFileAttributes attributes = catalog.getAttributes(group.getIndex(i));
+            if (attributes != null && (result.getStatus() == FileResult.Status.RENAMED
+                    || result.getStatus() == FileResult.Status.UNCHANGED)) {
+                job.getLedger().add(job.getLedgerPurpose(), root.resolve(result.getTargetName()), attributes);
+            }
+        }
+    }
+
+    /**
+     * Searches byte-identical files and handles them according to the job's
+     * {@link DuplicateAction} before any file is renamed.
+     *
+     * @param handle     Handle of the running job.
+     * @param directory  Opened directory of the files.
+     * @param runner     Runner to hash files with.
+     * @param catalog    Files of the run, duplicates that are moved aside
+     *                   are no longer {@link FileCatalog#PENDING}.
+     * @param statistics Counters of the current run.
+     */
+    private static void handleDuplicates(final RenameHandle handle, final DirectoryHandle directory,
+                                         final FileTaskRunner runner, final FileCatalog catalog,
+                                         final RenameStatistics statistics) {
+        final DuplicateAction action = handle.getJob().getDuplicateAction();
+        // sidecars follow their images, identical ones are no duplicates
+        final List<File> images = Lists.newArrayList();
+        final Map<File, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < catalog.size(); i++) {
+            if (catalog.getStatus(i) == FileCatalog.PENDING && !FileGroup.isSidecar(catalog.getName(i))) {
+                File image = catalog.getFile(i);
+                images.add(image);
+                indexes.put(image, i);
+            }
+        }
+        // sizes and inode numbers are known from the listing
+        final List<List<File>> duplicates = new DuplicateFinder(runner).find(images,
+                image -> catalog.getSize(indexes.get(image)), image -> {
+                    long inode = catalog.getInode(indexes.get(image));
+                    return inode == ProcessingOrder.UNKNOWN ? null : inode;
+                });
+        for (List<File> group : duplicates) {
+            File original = group.get(0);
+            for (File duplicate : group.subList(1, group.size())) {
+                LOG.info("{} duplicates {}", duplicate.getName(), original.getName());
+                statistics.duplicate(duplicate, original);
+                try {
+                    if (action == DuplicateAction.HARD_LINK) {
+                        directory.replaceWithLink(duplicate.getName(), original.getName());
+                    } else if (action == DuplicateAction.MOVE_ASIDE) {
+                        String target = DuplicateAction.FOLDER + "/" + duplicate.getName();
+                        directory.createDirectory(DuplicateAction.FOLDER);
+                        directory.move(duplicate.getName(), target);
+                        catalog.setStatus(catalog.indexOf(duplicate), FileResult.Status.DUPLICATE);
+                        publish(handle, FileResult.duplicate(duplicate, target, original));
+                    }
+                } catch (IOException e) {
+                    LOG.warn("Unable to handle duplicate {}: {}", duplicate, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Publishes a file's result, the run is cancelled if it is interrupted
+     * while waiting for slow subscribers.
+     *
+     * @param handle Handle of the running job.
+     * @param result Result to publish.
+     */
+    private static void publish(final RenameHandle handle, final FileResult result) {
+        long start = System.nanoTime();
+        try {
+            handle.getPublisher().submit(result);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.warn("Interrupted while publishing results, cancelling run in {}", handle.getJob().getDirectory());
+            handle.cancel();
+        } finally {
+            // subscribers throttle the run, not the storage
+            AdaptiveLimit.waited(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Renames a group of files and accounts for the results. The creation
+     * date is read once from the group's primary image; all members are
+     * checked for collisions before any of them is moved, and members that
+     * were already moved are moved back if a later one fails. Files,
+     * metadata reads and moves are throttled by the job's
+     * {@link RateLimits}; metadata is only read once the bytes it is
+     * expected to take fit into the application-wide {@link MemoryBudget}.
+     *
+     * @param directory  Opened directory of the files.
+     * @param tree       Target of an organising run, {@code null} to rename
+     *                   in place.
+     * @param group      Files to rename.
+     * @param handle     Handle of the running job.
+     * @param prefetcher Headers read ahead, may be {@code null}.
+     * @param statistics Counters of the current run.
+     * @return the outcome for each member of the group.
+     */
+    private static List<FileResult> process(final DirectoryHandle directory, final TargetTree tree,
+                                            final FileGroup group, final RenameHandle handle,
+                                            final HeaderPrefetcher prefetcher,
+                                            final RenameStatistics statistics) {
+        final List<File> members = group.getMembers();
+        final List<FileResult> results = Lists.newArrayList();
+        final RenameJob job = handle.getJob();
+        final RenameMode mode = job.getMode();
+        final RateLimits limits = job.getRateLimits();
+        final FileCatalog catalog = handle.getCatalog();
+        final File primary = group.getPrimary();
+        final int primaryIndex = group.getIndex(0);
+        limits.acquireFiles(members.size());
+
+        // extract the creation date and fetch target filenames
+        final LocalDateTime creationDate;
+        final DateSource dateSource;
+        try {
+            CreationDate date = tree != null || mode.usesCreationDate() || job.hasCaptureRange()
+                    ? CreationDate.resolve(primary, job.getFilenameDates(),
+                    job.isUsingFilesystemDates() ? catalog.getAttributes(primaryIndex) : null, prefetcher, () -> {
+                        long size = catalog.getSize(primaryIndex);
+                        long bytes = prefetcher != null && prefetcher.contains(primary)
+                                ? Math.min(size, HeaderPrefetcher.INITIAL_READ)
+                                : MetaDataExtractor.estimateBytesRead(primary, size);
+                        limits.acquireOperation();
+                        limits.acquireBytes(bytes);
+                        return MemoryBudget.getDefault().acquire(bytes);
+                    }) : null;
+            creationDate = date == null ? null : date.getDate();
+            dateSource = date == null ? null : date.getSource();
+        } catch (IOException e) {
+            LOG.error("Unable to extract metadata from '{}': {}", primary.getName(), e.getMessage());
+            for (File file : members) {
+                statistics.failed(ErrorCategory.PARSE_ERROR, file, e.getMessage());
+                results.add(FileResult.failed(file, null, ErrorCategory.PARSE_ERROR, e.getMessage()));
+            }
+            return results;
+        }
+        if (!job.isInCaptureRange(creationDate)) {
+            for (int i = 0; i < members.size(); i++) {
+                catalog.setDate(group.getIndex(i), creationDate);
+                statistics.excluded();
+                results.add(FileResult.excluded(members.get(i)));
+            }
+            return results;
+        }
+        final List<String> targets = Lists.newArrayList();
+        for (File file : members) {
+            String targetFilename = mode.targetName(file, creationDate);
+            if (targetFilename == null || targetFilename.isEmpty() || (tree != null && creationDate == null)) {
+                for (File member : members) {
+                    statistics.failed(ErrorCategory.NO_EXIF, member, null);
+                    results.add(FileResult.failed(member, null, ErrorCategory.NO_EXIF, null));
+                }
+                return results;
+            }
+            targets.add(targetFilename);
+        }
+        if (dateSource != null) {
+            statistics.dated(dateSource);
+        }
+        for (int i = 0; i < members.size(); i++) {
+            catalog.setDate(group.getIndex(i), creationDate);
+        }
+
+        // plan: all targets must be free before anything is moved
+        for (int i = 0; i < members.size(); i++) {
+            String target = targets.get(i);
+            boolean taken = tree != null ? tree.exists(creationDate, target)
+                    : !target.equals(members.get(i).getName()) && directory.exists(target);
+            if (taken) {
+                String relative = tree != null ? tree.relativeTarget(creationDate, target) : target;
+                LOG.error("Unable to rename '{}', '{}' already exists", members.get(i).getName(), relative);
+                for (File member : members) {
+                    statistics.failed(ErrorCategory.COLLISION, member, relative);
+                    results.add(FileResult.failed(member, relative, ErrorCategory.COLLISION, "target exists"));
+                }
+                return results;
+            }
+        }
+
+        final List<FileMove> undo = Lists.newArrayList();
+        for (int i = 0; i < members.size(); i++) {
+            final File file = members.get(i);
+            final String target = targets.get(i);
+            if (!target.equals(file.getName()) || tree != null) {
+                limits.acquireOperation();
+            }
+            if (tree != null && !tree.isSameFileStore()) {
+                // copied to the other file system and read again for verification
+                limits.acquireBytes(2 * catalog.getSize(group.getIndex(i)));
+            }
+            FileResult result;
+            if (tree != null) {
+                result = move(file, tree.relativeTarget(creationDate, target), dateSource, statistics,
+                        () -> tree.move(file.toPath(), creationDate, target));
+                undo.add(() -> tree.restore(file.toPath(), creationDate, target));
+            } else if (target.equals(file.getName())) {
+                result = FileResult.unchanged(file);
+                undo.add(() -> { });
+            } else {
+                result = move(file, target, dateSource, statistics, () -> directory.move(file.getName(), target));
+                undo.add(() -> directory.move(target, file.getName()));
+            }
+            results.add(result);
+            if (result.getStatus() == FileResult.Status.FAILED) {
+                rollback(results, undo.subList(0, i), statistics);
+                // the remaining members are not moved, but must be accounted for as well
+                String reason = "not renamed, '" + file.getName() + "' of its group failed";
+                for (File member : members.subList(i + 1, members.size())) {
+                    statistics.failed(result.getErrorCategory(), member, reason);
+                    results.add(FileResult.failed(member, null, result.getErrorCategory(), reason));
+                }
+                break;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Moves the already renamed members of a group back after a later
+     * member failed, so that a group is never split up.
+     *
+     * @param results    Results of the group so far, updated in place.
+     * @param undo       Reverse moves of the successfully processed members.
+     * @param statistics Counters of the current run.
+     */
+    private static void rollback(final List<FileResult> results, final List<FileMove> undo,
+                                 final RenameStatistics statistics) {
+        for (int i = 0; i < undo.size(); i++) {
+            FileResult result = results.get(i);
+            if (result.getStatus() != FileResult.Status.RENAMED) {
+                continue;
+            }
+            try {
+                undo.get(i).run();
+                statistics.reverted();
+                results.set(i, FileResult.unchanged(result.getSource()));
+            } catch (IOException e) {
+                LOG.error("Unable to move '{}' back from '{}': {}", result.getSource().getName(),
+                        result.getTargetName(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Moves a single file and accounts for the result.
+     *
+     * @param file       File to move.
+     * @param target     Its new name.
+     * @param dateSource Where the date of the new name came from, may be
+     *                   {@code null}.
+     * @param statistics Counters of the current run.
+     * @param move       The actual move.
+     * @return the outcome for the file.
+     */
+    private static FileResult move(final File file, final String target, final DateSource dateSource,
+                                   final RenameStatistics statistics, final FileMove move) {
+        try {
+            move.run();
+            statistics.renamed();
+            return FileResult.renamed(file, target, dateSource);
+        } catch (FileAlreadyExistsException e) {
+            LOG.error("Unable to rename '{}', '{}' already exists", file.getName(), target);
+            statistics.failed(ErrorCategory.COLLISION, file, target);
+            return FileResult.failed(file, target, ErrorCategory.COLLISION, "target exists");
+        } catch (IOException e) {
+            LOG.error("Unable to rename '{}' to '{}'", file.getName(), target);
+            statistics.failed(ErrorCategory.MOVE_FAILED, file, e.getMessage());
+            return FileResult.failed(file, target, ErrorCategory.MOVE_FAILED, e.getMessage());
+        }
+    }
+
+    /**
+     * A move that may fail.
+     */
+    private interface FileMove {
+        void run() throws IOException;
+    }
+}
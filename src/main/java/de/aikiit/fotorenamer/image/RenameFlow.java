@@ -0,0 +1,101 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * Reactive streams interfaces used to publish the results of a renaming run.
+ * <br>
+ * As fotorenamer still runs on Java 8 these interfaces mirror
+ * <code>java.util.concurrent.Flow</code> one to one, so that adapting them
+ * on newer JDKs is a matter of method references. Subscribers signal demand
+ * via {@link Subscription#request(long)}; a run does not outpace its
+ * slowest subscriber by more than its buffer size.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class RenameFlow {
+
+    /**
+     * Producer of items that are received by subscribers.
+     *
+     * @param <T> type of published items.
+     */
+    @FunctionalInterface
+    public interface Publisher<T> {
+        /**
+         * Adds the given subscriber.
+         *
+         * @param subscriber Subscriber to add.
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * Receiver of items. All methods of a subscriber are called sequentially.
+     *
+     * @param <T> type of received items.
+     */
+    public interface Subscriber<T> {
+        /**
+         * Called once before any other method.
+         *
+         * @param subscription Subscription to request items with.
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Called with the next requested item.
+         *
+         * @param item Next item.
+         */
+        void onNext(T item);
+
+        /**
+         * Called on an unrecoverable error, no further calls follow.
+         *
+         * @param throwable The error.
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Called after the last item, no further calls follow.
+         */
+        void onComplete();
+    }
+
+    /**
+     * Link between publisher and subscriber.
+     */
+    public interface Subscription {
+        /**
+         * Adds the given number of items to the unfulfilled demand.
+         *
+         * @param n Number of items, must be positive,
+         *          {@link Long#MAX_VALUE} means unbounded.
+         */
+        void request(long n);
+
+        /**
+         * Stops the delivery of items to the subscriber.
+         */
+        void cancel();
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import java.io.File;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Handle of a prepared or running renaming job.
+ * <br>
+ * Subscribe to {@link #getResults()} or add listeners before calling
+ * {@link #start()}, results of files processed before subscription are not
+ * replayed. If the job's directory is already locked by another job the
+ * result completes exceptionally with a
+ * {@link de.aikiit.fotorenamer.exception.DirectoryLockedException}.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+public final class RenameHandle {
+    private final RenameEngine engine;
+    private final RenameJob job;
+    /**
+     * Files and attributes read while listing the directory.
+     */
+    private final FileCatalog catalog;
+    private final BufferedPublisher<FileResult> publisher;
+    private final CompletableFuture<RenameResult> result = new CompletableFuture<>();
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+    RenameHandle(final RenameEngine engine, final RenameJob job, final FileCatalog catalog) {
+        this.engine = engine;
+        this.job = job;
+        this.catalog = catalog;
+        this.publisher = new BufferedPublisher<>(job.getBufferSize());
+    }
+
+    /**
+     * @return the job this handle belongs to.
+     */
+    public RenameJob getJob() {
+        return job;
+    }
+
+    /**
+     * @return the number of files to process.
+     */
+    public int getFileCount() {
+        return catalog.size();
+    }
+
+    /**
+     * Per-file results of this job. Subscribers control the pace of the
+     * job: once a subscriber's buffer is full, processing waits until it
+     * requests more items.
+     *
+     * @return publisher of all per-file results.
+     */
+    public RenameFlow.Publisher<FileResult> getResults() {
+        return publisher;
+    }
+
+    /**
+     * Registers a listener that receives all per-file results.
+     *
+     * @param listener Listener to add.
+     */
+    public void addListener(final RenameListener listener) {
+        publisher.subscribe(new RenameFlow.Subscriber<FileResult>() {
+            @Override
+            public void onSubscribe(final RenameFlow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(final FileResult item) {
+                listener.onFileProcessed(item);
+            }
+
+            @Override
+            public void onError(final Throwable throwable) {
+                // reported via the result future
+            }
+
+            @Override
+            public void onComplete() {
+                // reported via the result future
+            }
+        });
+    }
+
+    /**
+     * Starts the job, subsequent calls have no effect.
+     *
+     * @return the future result of this job.
+     */
+    public CompletableFuture<RenameResult> start() {
+        if (started.compareAndSet(false, true)) {
+            engine.execute(this);
+        }
+        return getResult();
+    }
+
+    /**
+     * @return the future result of this job, completed once all files are
+     * processed. Completing the returned future does not affect the job.
+     */
+    public CompletableFuture<RenameResult> getResult() {
+        return result.thenApply(r -> r);
+    }
+
+    /**
+     * Cancels this job, files not yet processed are skipped.
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    /**
+     * @return {@code true} if {@link #cancel()} was called.
+     */
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    List<File> getFiles() {
+        return catalog.getFiles();
+    }
+
+    FileCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * @param file A file of this job.
+     * @return the attributes read while listing the file, {@code null} if
+     * it was not listed.
+     */
+    BasicFileAttributes getAttributes(final File file) {
+        int index = catalog.indexOf(file);
+        return index < 0 ? null : catalog.getAttributes(index);
+    }
+
+    BufferedPublisher<FileResult> getPublisher() {
+        return publisher;
+    }
+
+    CompletableFuture<RenameResult> getResultFuture() {
+        return result;
+    }
+}
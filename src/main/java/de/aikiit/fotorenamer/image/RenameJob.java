@@ -0,0 +1,426 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.base.MoreObjects;
+
+import java.io.File;
+import java.time.LocalDateTime;
+
+/**
+ * Immutable description of a renaming run, create it via
+ * {@link #builder(File)}.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+public final class RenameJob {
+    /**
+     * Default number of results buffered per subscriber.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 256;
+    /**
+     * System property to fall back to file system timestamps by default.
+     */
+    public static final String FILESYSTEM_DATES_PROPERTY = "fotorenamer.filesystemdates";
+    /**
+     * System property to keep an index of the creation dates in each
+     * directory by default.
+     */
+    public static final String DATE_INDEX_PROPERTY = "fotorenamer.dateindex";
+
+    private final File directory;
+    private final RenameMode mode;
+    private final ErrorBudget errorBudget;
+    private final int bufferSize;
+    private final File targetDirectory;
+    private final FolderLayout folderLayout;
+    private final DuplicateAction duplicateAction;
+    private final FilenameDates filenameDates;
+    private final boolean filesystemDates;
+    private final RateLimits rateLimits;
+    private final ProcessedLedger ledger;
+    private final LocalDateTime captureFrom;
+    private final LocalDateTime captureTo;
+    private final boolean dateIndex;
+
+    private RenameJob(final Builder builder) {
+        this.directory = builder.directory;
+        this.mode = builder.mode;
+        this.errorBudget = builder.errorBudget;
+        this.bufferSize = builder.bufferSize;
+        this.targetDirectory = builder.targetDirectory;
+        this.folderLayout = builder.folderLayout;
+        this.duplicateAction = builder.duplicateAction;
+        this.filenameDates = builder.filenameDates;
+        this.filesystemDates = builder.filesystemDates;
+        this.rateLimits = builder.rateLimits == null ? RateLimits.getDefault() : builder.rateLimits;
+        this.ledger = builder.ledger;
+        this.captureFrom = builder.captureFrom;
+        this.captureTo = builder.captureTo;
+        this.dateIndex = builder.dateIndex;
+    }
+
+    /**
+     * Starts the description of a job.
+     *
+     * @param directory Directory to work on.
+     * @return a builder with default settings.
+     */
+    public static Builder builder(final File directory) {
+        return new Builder(directory);
+    }
+
+    /**
+     * @return the directory to work on.
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the strategy to derive new filenames.
+     */
+    public RenameMode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return the maximum amount of errors before the job is aborted.
+     */
+    public ErrorBudget getErrorBudget() {
+        return errorBudget;
+    }
+
+    /**
+     * @return the number of results that are buffered per subscriber.
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @return the directory images are organised into or {@code null} if
+     * they are renamed in place.
+     */
+    public File getTargetDirectory() {
+        return targetDirectory;
+    }
+
+    /**
+     * @return the folder layout below {@link #getTargetDirectory()} or
+     * {@code null} if images are renamed in place.
+     */
+    public FolderLayout getFolderLayout() {
+        return folderLayout;
+    }
+
+    /**
+     * @return {@code true} if images are moved into a folder tree instead
+     * of being renamed in place.
+     */
+    public boolean isOrganizing() {
+        return folderLayout != null;
+    }
+
+    /**
+     * @return what happens to byte-identical files before renaming or
+     * {@code null} if duplicates are not searched for.
+     */
+    public DuplicateAction getDuplicateAction() {
+        return duplicateAction;
+    }
+
+    /**
+     * @return the patterns of dates encoded in filenames.
+     */
+    public FilenameDates getFilenameDates() {
+        return filenameDates;
+    }
+
+    /**
+     * @return {@code true} if files without any other date are renamed
+     * using their file system timestamps.
+     */
+    public boolean isUsingFilesystemDates() {
+        return filesystemDates;
+    }
+
+    /**
+     * @return the limits of the load the job puts on the storage.
+     */
+    public RateLimits getRateLimits() {
+        return rateLimits;
+    }
+
+    /**
+     * @return the files processed by earlier runs, {@code null} if they are
+     * not remembered.
+     */
+    public ProcessedLedger getLedger() {
+        return ledger;
+    }
+
+    /**
+     * @return the first creation date of the images to process,
+     * {@code null} if the job is not restricted to a range.
+     */
+    public LocalDateTime getCaptureFrom() {
+        return captureFrom;
+    }
+
+    /**
+     * @return the end of the range of creation dates to process, exclusive;
+     * {@code null} if the job is not restricted to a range.
+     */
+    public LocalDateTime getCaptureTo() {
+        return captureTo;
+    }
+
+    /**
+     * @return {@code true} if the job is restricted to a range of creation
+     * dates.
+     */
+    public boolean hasCaptureRange() {
+        return captureFrom != null;
+    }
+
+    /**
+     * @param date Creation date of an image.
+     * @return {@code true} if an image of this date is to be processed.
+     */
+    boolean isInCaptureRange(final LocalDateTime date) {
+        return captureFrom == null || (date != null && !date.isBefore(captureFrom) && date.isBefore(captureTo));
+    }
+
+    /**
+     * @return {@code true} if the directory's {@link DateIndex} is used and
+     * updated.
+     */
+    public boolean isUsingDateIndex() {
+        return dateIndex;
+    }
+
+    /**
+     * @return the purpose under which this job's files are remembered, files
+     * renamed in one mode are processed again in another.
+     */
+    String getLedgerPurpose() {
+        return isOrganizing() ? "organize " + targetDirectory.getAbsolutePath() + " " + folderLayout
+                : mode.name();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("directory", directory)
+                .add("mode", mode)
+                .add("errorBudget", errorBudget)
+                .add("bufferSize", bufferSize)
+                .add("targetDirectory", targetDirectory)
+                .add("folderLayout", folderLayout)
+                .add("duplicateAction", duplicateAction)
+                .add("filenameDates", filenameDates)
+                .add("filesystemDates", filesystemDates)
+                .add("rateLimits", rateLimits)
+                .add("ledger", ledger != null)
+                .add("captureFrom", captureFrom)
+                .add("captureTo", captureTo)
+                .add("dateIndex", dateIndex)
+                .toString();
+    }
+
+    /**
+     * Builder for {@link RenameJob}s.
+     */
+    public static final class Builder {
+        private final File directory;
+        private RenameMode mode = RenameMode.EXIF_DATE_PREFIX;
+        private ErrorBudget errorBudget = ErrorBudget.fromSystemProperties();
+        private int bufferSize = DEFAULT_BUFFER_SIZE;
+        private File targetDirectory;
+        private FolderLayout folderLayout;
+        private DuplicateAction duplicateAction;
+        private FilenameDates filenameDates = FilenameDates.fromSystemProperties();
+        private boolean filesystemDates = Boolean.getBoolean(FILESYSTEM_DATES_PROPERTY);
+        private RateLimits rateLimits;
+        private ProcessedLedger ledger = ProcessedLedger.getDefault();
+        private LocalDateTime captureFrom;
+        private LocalDateTime captureTo;
+        private boolean dateIndex = Boolean.getBoolean(DATE_INDEX_PROPERTY);
+
+        private Builder(final File directory) {
+            this.directory = directory;
+        }
+
+        /**
+         * @param renameMode Strategy to derive new filenames, default is
+         *                   {@link RenameMode#EXIF_DATE_PREFIX}.
+         * @return this builder.
+         */
+        public Builder mode(final RenameMode renameMode) {
+            this.mode = renameMode;
+            return this;
+        }
+
+        /**
+         * @param budget Maximum amount of errors, default is read from
+         *               {@link ErrorBudget#fromSystemProperties()}.
+         * @return this builder.
+         */
+        public Builder errorBudget(final ErrorBudget budget) {
+            this.errorBudget = budget;
+            return this;
+        }
+
+        /**
+         * @param size Number of results buffered per subscriber.
+         * @return this builder.
+         */
+        public Builder bufferSize(final int size) {
+            this.bufferSize = size;
+            return this;
+        }
+
+        /**
+         * Moves images into folders below the given directory instead of
+         * renaming them in place, e.g. <code>2011/01/30</code> for
+         * {@link FolderLayout#DEFAULT}. The directory may be on another
+         * filesystem.
+         *
+         * @param target Directory to organise images into.
+         * @param layout Folders derived from each image's creation date.
+         * @return this builder.
+         */
+        public Builder organizeInto(final File target, final FolderLayout layout) {
+            this.targetDirectory = target;
+            this.folderLayout = layout;
+            return this;
+        }
+
+        /**
+         * Searches for byte-identical files before renaming, by default
+         * duplicates are not searched for.
+         *
+         * @param action What happens to duplicates, {@code null} to skip the
+         *               search.
+         * @return this builder.
+         */
+        public Builder duplicates(final DuplicateAction action) {
+            this.duplicateAction = action;
+            return this;
+        }
+
+        /**
+         * @param dates Patterns of dates encoded in filenames, default is
+         *              read from {@link FilenameDates#fromSystemProperties()}.
+         * @return this builder.
+         */
+        public Builder filenameDates(final FilenameDates dates) {
+            this.filenameDates = dates;
+            return this;
+        }
+
+        /**
+         * Uses the file system's creation time, or the modification time if
+         * there is none, for files with neither a metadata nor a filename
+         * date. By default read from {@link #FILESYSTEM_DATES_PROPERTY},
+         * which is unset.
+         *
+         * @param enabled Whether to fall back to file system timestamps.
+         * @return this builder.
+         */
+        public Builder filesystemDates(final boolean enabled) {
+            this.filesystemDates = enabled;
+            return this;
+        }
+
+        /**
+         * @param limits Limits of the load on the storage, by default the
+         *               application-wide {@link RateLimits#getDefault()}
+         *               shared by all jobs.
+         * @return this builder.
+         */
+        public Builder rateLimits(final RateLimits limits) {
+            this.rateLimits = limits;
+            return this;
+        }
+
+        /**
+         * Skips files that were processed by earlier runs and remembers the
+         * files processed by this one.
+         *
+         * @param processed Files processed by earlier runs, by default the
+         *                  application-wide {@link ProcessedLedger#getDefault()};
+         *                  {@code null} to process all files.
+         * @return this builder.
+         */
+        public Builder ledger(final ProcessedLedger processed) {
+            this.ledger = processed;
+            return this;
+        }
+
+        /**
+         * Restricts the job to images created within a range, all others
+         * are left untouched.
+         *
+         * @param from First creation date to process.
+         * @param to   End of the range, exclusive.
+         * @return this builder.
+         */
+        public Builder captureRange(final LocalDateTime from, final LocalDateTime to) {
+            this.captureFrom = from;
+            this.captureTo = to;
+            return this;
+        }
+
+        /**
+         * Keeps an index of the images' creation dates in the directory
+         * and updates it after each run, so that a run restricted by
+         * {@link #captureRange(LocalDateTime, LocalDateTime)} only reads
+         * images within the range or not indexed yet. By default read from
+         * {@link #DATE_INDEX_PROPERTY}, which is unset.
+         *
+         * @param enabled Whether to use an index.
+         * @return this builder.
+         */
+        public Builder dateIndex(final boolean enabled) {
+            this.dateIndex = enabled;
+            return this;
+        }
+
+        /**
+         * @return the job description.
+         */
+        public RenameJob build() {
+            if (mode == null || errorBudget == null || filenameDates == null) {
+                throw new IllegalArgumentException("Mode, error budget and filename dates must be set");
+            }
+            if (bufferSize <= 0) {
+                throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+            }
+            if ((targetDirectory == null) != (folderLayout == null)) {
+                throw new IllegalArgumentException("Target directory and folder layout must be set together");
+            }
+            if ((captureFrom == null) != (captureTo == null)
+                    || (captureFrom != null && !captureFrom.isBefore(captureTo))) {
+                throw new IllegalArgumentException("Capture range must end after it starts: " + captureFrom
+                        + " - " + captureTo);
+            }
+            return new RenameJob(this);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import de.aikiit.fotorenamer.util.LocalizationHelper;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Strategies to derive a new filename from a given image file.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+public enum RenameMode {
+    /**
+     * Prefixes the filename with the image's EXIF creation date.
+     *
+     * @see MetaDataExtractor#getCreationDate(File)
+     */
+    EXIF_DATE_PREFIX(true) {
+        @Override
+        String targetName(final File imageFile, final LocalDateTime creationDate) {
+            if (creationDate == null) {
+                return "";
+            }
+            return creationDate.format(PREFIX_FORMAT) + imageFile.getName();
+        }
+    },
+    /**
+     * Removes a date prefix added by {@link #EXIF_DATE_PREFIX} in order to
+     * be able to play images back onto a camera device that is not able to
+     * deal with long filenames.
+     */
+    REMOVE_DATE_PREFIX(false) {
+        @Override
+        String targetName(final File imageFile, final LocalDateTime creationDate) {
+            return LocalizationHelper.removeCrLf(imageFile.getName()).replaceFirst(REPLACE_PATTERN, "");
+        }
+    };
+
+    /**
+     * Pattern applied to find already renamed image files.
+     * Should match: 20110507_180520_IMG_8192small.JPG
+     */
+    private static final String REPLACE_PATTERN = "\\d{8}[_]\\d{4}(\\d{2})?[_]";
+
+    /**
+     * Format of the prefix added by {@link #EXIF_DATE_PREFIX}.
+     */
+    private static final DateTimeFormatter PREFIX_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss_");
+
+    /**
+     * Whether this mode needs the image's creation date.
+     */
+    private final boolean usesCreationDate;
+
+    RenameMode(final boolean usesCreationDate) {
+        this.usesCreationDate = usesCreationDate;
+    }
+
+    /**
+     * @return {@code true} if the new filename depends on the image's
+     * creation date.
+     */
+    boolean usesCreationDate() {
+        return usesCreationDate;
+    }
+
+    /**
+     * Generates the new filename of the given file.
+     *
+     * @param imageFile File to rename.
+     * @return New filename, an empty String if none can be determined.
+     * @throws IOException if the file's metadata cannot be read.
+     */
+    String targetName(final File imageFile) throws IOException {
+        return targetName(imageFile, usesCreationDate ? MetaDataExtractor.getCreationDate(imageFile) : null);
+    }
+
+    /**
+     * Generates the new filename of the given file from an already
+     * extracted creation date.
+     *
+     * @param imageFile    File to rename.
+     * @param creationDate The image's creation date, may be {@code null}.
+     * @return New filename, an empty String if none can be determined.
+     */
+    abstract String targetName(File imageFile, LocalDateTime creationDate);
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import java.io.File;
+
+/**
+ * Summary of a finished renaming run.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+public final class RenameResult {
+    private final RenameJob job;
+    private final int totalFiles;
+    private final RenameStatistics statistics;
+    private final boolean aborted;
+    private final boolean cancelled;
+    private final File report;
+
+    RenameResult(final RenameJob job, final int totalFiles, final RenameStatistics statistics,
+                 final boolean aborted, final boolean cancelled, final File report) {
+        this.job = job;
+        this.totalFiles = totalFiles;
+        this.statistics = statistics;
+        this.aborted = aborted;
+        this.cancelled = cancelled;
+        this.report = report;
+    }
+
+    /**
+     * @return the job this result belongs to.
+     */
+    public RenameJob getJob() {
+        return job;
+    }
+
+    /**
+     * @return the number of files the run found.
+     */
+    public int getTotalFiles() {
+        return totalFiles;
+    }
+
+    /**
+     * @return counters of renamed files and errors.
+     */
+    public RenameStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @return {@code true} if the run's error budget was exceeded.
+     */
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    /**
+     * @return {@code true} if the run was cancelled via its handle.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return the failure report, {@code null} if there were no errors.
+     */
+    public File getReport() {
+        return report;
+    }
+}
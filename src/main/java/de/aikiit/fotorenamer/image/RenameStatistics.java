@@ -0,0 +1,314 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.collect.Lists;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the outcome of a renaming run. All counters are lock-free and can
+ * be updated concurrently by the worker threads of a run.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+public final class RenameStatistics {
+    /**
+     * Logger for this class.
+     */
+    private static final Logger LOG = LogManager.getLogger(RenameStatistics.class);
+
+    /**
+     * Marker of duplicates in the report.
+     */
+    private static final String DUPLICATE = "DUPLICATE";
+
+    /**
+     * Number of successfully renamed files.
+     */
+    private final LongAdder renamed = new LongAdder();
+    /**
+     * Number of files that were not processed since the run was aborted.
+     */
+    private final LongAdder skipped = new LongAdder();
+    /**
+     * Number of files that were processed by an earlier run.
+     */
+    private final LongAdder known = new LongAdder();
+    /**
+     * Number of files outside the run's capture range.
+     */
+    private final LongAdder excluded = new LongAdder();
+    /**
+     * Number of byte-identical copies of other files.
+     */
+    private final LongAdder duplicates = new LongAdder();
+    /**
+     * Error counters per category, the map itself is never modified after
+     * construction.
+     */
+    private final Map<ErrorCategory, LongAdder> errors = new EnumMap<>(ErrorCategory.class);
+    /**
+     * Number of images per source of their creation date, the map itself is
+     * never modified after construction.
+     */
+    private final Map<DateSource, LongAdder> dateSources = new EnumMap<>(DateSource.class);
+    /**
+     * Detailed information about each failure and duplicate for the final
+     * report.
+     */
+    private final Queue<String> failures = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Creates an empty set of counters.
+     */
+    public RenameStatistics() {
+        for (ErrorCategory category : ErrorCategory.values()) {
+            errors.put(category, new LongAdder());
+        }
+        for (DateSource source : DateSource.values()) {
+            dateSources.put(source, new LongAdder());
+        }
+    }
+
+    /**
+     * Counts a successfully renamed file.
+     */
+    void renamed() {
+        renamed.increment();
+    }
+
+    /**
+     * Takes back a renamed file that was moved back to its original name
+     * since another file of its group could not be renamed.
+     */
+    void reverted() {
+        renamed.decrement();
+    }
+
+    /**
+     * Counts a file that was skipped due to an aborted or cancelled run.
+     */
+    void skipped() {
+        skipped.increment();
+    }
+
+    /**
+     * Counts files that were skipped altogether.
+     *
+     * @param files Number of skipped files.
+     */
+    void skipped(final long files) {
+        skipped.add(files);
+    }
+
+    /**
+     * Counts a file that was skipped since it was processed by an earlier
+     * run.
+     */
+    void known() {
+        known.increment();
+    }
+
+    /**
+     * Counts a file that was left untouched since it was created outside
+     * the run's capture range.
+     */
+    void excluded() {
+        excluded.increment();
+    }
+
+    /**
+     * Counts a byte-identical copy of another file and keeps it for the
+     * report.
+     *
+     * @param file     The duplicate.
+     * @param original The file it duplicates.
+     */
+    void duplicate(final File file, final File original) {
+        duplicates.increment();
+        failures.add(DUPLICATE + "\t" + file + "\t" + original);
+    }
+
+    /**
+     * Counts an image whose creation date was determined, once per group of
+     * files that share the date.
+     *
+     * @param source Where the date came from.
+     */
+    void dated(final DateSource source) {
+        dateSources.get(source).increment();
+    }
+
+    /**
+     * Counts an error and keeps its details for the failure report.
+     *
+     * @param category Type of error.
+     * @param file     File that could not be processed.
+     * @param reason   Human readable reason, may be {@code null}.
+     */
+    void failed(final ErrorCategory category, final File file, final String reason) {
+        errors.get(category).increment();
+        failures.add(category + "\t" + file + "\t" + (reason == null ? "" : reason));
+    }
+
+    /**
+     * @return number of successfully renamed files.
+     */
+    public long getRenamed() {
+        return renamed.sum();
+    }
+
+    /**
+     * @return number of files that were skipped after an abort or cancellation.
+     */
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    /**
+     * @return number of files that were processed by an earlier run and
+     * have not changed since.
+     */
+    public long getKnown() {
+        return known.sum();
+    }
+
+    /**
+     * @return number of files that were created outside the run's capture
+     * range.
+     */
+    public long getExcluded() {
+        return excluded.sum();
+    }
+
+    /**
+     * @return number of files that duplicate another file of the run.
+     */
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    /**
+     * @param source Source to query.
+     * @return number of images whose creation date came from the given
+     * source.
+     */
+    public long getDated(final DateSource source) {
+        return dateSources.get(source).sum();
+    }
+
+    /**
+     * @param category Category to query.
+     * @return number of errors of the given category.
+     */
+    public long getErrors(final ErrorCategory category) {
+        return errors.get(category).sum();
+    }
+
+    /**
+     * @return number of errors of all categories.
+     */
+    public long getErrorCount() {
+        long sum = 0;
+        for (LongAdder counter : errors.values()) {
+            sum += counter.sum();
+        }
+        return sum;
+    }
+
+    /**
+     * @return number of errors that are checked against an {@link ErrorBudget}.
+     */
+    public long getBudgetRelevantErrorCount() {
+        long sum = 0;
+        for (Map.Entry<ErrorCategory, LongAdder> entry : errors.entrySet()) {
+            if (entry.getKey().countsAgainstBudget()) {
+                sum += entry.getValue().sum();
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Creates the failure report's content: a summary of all counters
+     * followed by one tab-separated line per failure.
+     *
+     * @param directory Directory the run worked on.
+     * @return all lines of the report.
+     */
+    List<String> createReport(final File directory) {
+        List<String> lines = Lists.newArrayList();
+        lines.add("# fotorenamer failure report for " + directory);
+        lines.add("# renamed: " + getRenamed());
+        lines.add("# skipped: " + getSkipped());
+        lines.add("# known: " + getKnown());
+        lines.add("# excluded: " + getExcluded());
+        lines.add("# duplicates: " + getDuplicates());
+        for (DateSource source : DateSource.values()) {
+            lines.add("# dates from " + source + ": " + getDated(source));
+        }
+        for (ErrorCategory category : ErrorCategory.values()) {
+            lines.add("# " + category + ": " + getErrors(category));
+        }
+        lines.addAll(failures);
+        return lines;
+    }
+
+    /**
+     * Writes the failure report into the temporary directory, since the
+     * directory that is worked on may be the one that is broken. Each report
+     * gets a file of its own, also if runs finish at the same time.
+     *
+     * @param directory Directory the run worked on.
+     * @return the report file or {@code null} if there were neither errors
+     * nor duplicates or the report could not be written.
+     */
+    public File writeReport(final File directory) {
+        if (getErrorCount() == 0 && getDuplicates() == 0) {
+            return null;
+        }
+        String prefix = "fotorenamer-failures-" + new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date()) + "-";
+        List<String> lines = createReport(directory);
+        Path report = null;
+        try {
+            report = Files.createTempFile(prefix, ".txt");
+            Files.write(report, lines, StandardCharsets.UTF_8);
+            LOG.info("Wrote failure report with {} errors to {}", getErrorCount(), report);
+            return report.toFile();
+        } catch (IOException e) {
+            LOG.error("Unable to write failure report {}, dumping it to the log instead",
+                    report == null ? prefix : report);
+            lines.forEach(LOG::error);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,542 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.aikiit.fotorenamer.exception.DirectoryLockedException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Numbers the images of a shoot in the order they were taken, across all
+ * cards and folders the shoot is spread over, e.g.
+ * <code>20230514_101530_0042.jpg</code>.
+ * <br>
+ * The capture time of each image is read once, including the fractions of
+ * a second of bursts; images taken at the same time are ordered by name
+ * and folder. Headers are read in parallel by a {@link FileTaskRunner}
+ * within the {@link RateLimits} and the {@link MemoryBudget}, a single
+ * thread collects the captures. Since a shoot may consist of more images
+ * than fit into memory, the captures are sorted externally by
+ * {@link CaptureRuns} within a configurable memory budget, see
+ * {@link #SYSTEM_PROPERTY}. Sidecars get the name of their image. Images
+ * without a date are reported and keep their name.
+ * <br>
+ * Images are renamed in two passes: the first moves them to temporary
+ * names while it numbers the merged runs and writes the renames to a plan
+ * in the spill directory, the second gives them their numbers. This way
+ * numbers that shift since an earlier run, e.g. because another card holds
+ * earlier frames, do not collide with each other. Files that already carry
+ * their number are not touched.
+ * <br>
+ * All folders are locked while they are numbered. Existing files are never
+ * replaced, a target name that is taken counts as a collision. A capture is
+ * never split up: if one of its files cannot be renamed, the others are
+ * moved back.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+public final class ShootSequencer {
+    /**
+     * Logger for this class.
+     */
+    private static final Logger LOG = LogManager.getLogger(ShootSequencer.class);
+
+    /**
+     * System property to configure the memory budget for sorting, e.g.
+     * <code>64M</code>.
+     */
+    public static final String SYSTEM_PROPERTY = "fotorenamer.sequence.memory";
+    /**
+     * Default memory budget for sorting in bytes.
+     */
+    public static final long DEFAULT_MEMORY = 16 * 1024 * 1024;
+    /**
+     * Minimum number of digits of a sequence number.
+     */
+    static final int MIN_DIGITS = 4;
+    /**
+     * Prefix of the temporary names of images between the two passes.
+     */
+    static final String TEMPORARY_PREFIX = ".fotorenamer-sequence-";
+    /**
+     * Maximum number of captures read ahead of the sorting.
+     */
+    static final int QUEUE_SIZE = 1024;
+
+    /**
+     * Interval in which blocked readers re-check whether the sorting failed.
+     */
+    private static final long OFFER_TIMEOUT_MS = 100;
+    /**
+     * Marks the end of the captures of a folder.
+     */
+    private static final CaptureRuns.Capture END = new CaptureRuns.Capture(LocalDateTime.MIN, -1,
+            Collections.emptyList());
+    /**
+     * Threads that hand the captures of a folder to the readers.
+     */
+    private static final ThreadFactory SCANNERS = new ThreadFactoryBuilder()
+            .setNameFormat("fotorenamer-sequence-%d").setDaemon(true).build();
+
+    /**
+     * Format of the date part of a new name.
+     */
+    private static final DateTimeFormatter PREFIX_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss_");
+
+    private final List<File> folders;
+    private final File spillDirectory;
+    private final long memory;
+    private final FilenameDates filenameDates;
+    private final RateLimits rateLimits;
+
+    private ShootSequencer(final Builder builder) {
+        this.folders = ImmutableList.copyOf(builder.folders);
+        this.spillDirectory = builder.spillDirectory;
+        this.memory = builder.memory;
+        this.filenameDates = builder.filenameDates;
+        this.rateLimits = builder.rateLimits == null ? RateLimits.getDefault() : builder.rateLimits;
+    }
+
+    /**
+     * Starts the description of a sequencing run.
+     *
+     * @return a builder with default settings.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Reads the memory budget from the system property
+     * {@link #SYSTEM_PROPERTY}.
+     *
+     * @return the configured budget in bytes, {@link #DEFAULT_MEMORY} if
+     * unset or invalid.
+     */
+    static long memoryFromSystemProperties() {
+        String value = System.getProperty(SYSTEM_PROPERTY);
+        if (!Strings.isNullOrEmpty(value)) {
+            try {
+                long memory = (long) RateLimits.parseAmount(value);
+                if (memory > 0) {
+                    return memory;
+                }
+                LOG.warn("Ignoring memory budget for sorting that is not positive: {}", value);
+            } catch (IllegalArgumentException e) {
+                LOG.warn("Ignoring invalid memory budget for sorting: {}", e.getMessage());
+            }
+        }
+        return DEFAULT_MEMORY;
+    }
+
+    /**
+     * Numbers all images of all folders and blocks until all are renamed.
+     *
+     * @return the outcome of the run.
+     * @throws DirectoryLockedException if a folder is being renamed already.
+     * @throws IOException              if a folder cannot be read or the
+     *                                  captures cannot be sorted.
+     */
+    public RenameStatistics run() throws DirectoryLockedException, IOException {
+        RenameStatistics statistics = new RenameStatistics();
+        List<DirectoryLock> locks = Lists.newArrayList();
+        List<DirectoryHandle> handles = Lists.newArrayList();
+        try {
+            for (File folder : folders) {
+                locks.add(DirectoryLock.acquire(folder));
+            }
+            for (File folder : folders) {
+                handles.add(DirectoryHandle.open(folder));
+            }
+            Path spill = Files.createDirectories(spillDirectory.toPath());
+            try (CaptureRuns runs = new CaptureRuns(spill, memory)) {
+                long total = 0;
+                for (int folder = 0; folder < handles.size(); folder++) {
+                    total += scan(handles.get(folder), folder, runs, statistics);
+                }
+                LOG.info("Numbering {} images of {} folders, {} runs spilled", total, folders.size(),
+                        runs.getRunCount());
+                int digits = Math.max(MIN_DIGITS, Long.toString(total).length());
+                Path plan = Files.createTempFile(spill, "fotorenamer-sequence-", ".plan");
+                try {
+                    long planned = 0;
+                    try (CaptureRuns.Source captures = runs.sorted();
+                         DataOutputStream out = new DataOutputStream(
+                                 new BufferedOutputStream(Files.newOutputStream(plan)))) {
+                        long number = 0;
+                        for (CaptureRuns.Capture capture = captures.next(); capture != null;
+                             capture = captures.next()) {
+                            number++;
+                            String base = capture.getDate().format(PREFIX_FORMAT)
+                                    + Strings.padStart(Long.toString(number), digits, '0');
+                            if (prepare(handles.get(capture.getFolder()), capture, base, out, statistics)) {
+                                planned++;
+                            }
+                        }
+                    }
+                    try (DataInputStream in = new DataInputStream(
+                            new BufferedInputStream(Files.newInputStream(plan)))) {
+                        for (long i = 0; i < planned; i++) {
+                            int folder = in.readInt();
+                            int count = in.readInt();
+                            List<String> names = Lists.newArrayListWithCapacity(count);
+                            List<String> targets = Lists.newArrayListWithCapacity(count);
+                            for (int member = 0; member < count; member++) {
+                                names.add(in.readUTF());
+                                targets.add(in.readUTF());
+                            }
+                            finish(handles.get(folder), folders.get(folder), names, targets, statistics);
+                        }
+                    }
+                } finally {
+                    Files.deleteIfExists(plan);
+                }
+            }
+        } finally {
+            for (DirectoryHandle handle : handles) {
+                try {
+                    handle.close();
+                } catch (IOException e) {
+                    LOG.debug("Unable to close directory: {}", e.getMessage());
+                }
+            }
+            locks.forEach(DirectoryLock::close);
+        }
+        return statistics;
+    }
+
+    /**
+     * Adds the captures of all dated images of a folder. Their headers are
+     * read in parallel, the captures are added by the calling thread only.
+     *
+     * @return the number of captures added.
+     */
+    private long scan(final DirectoryHandle handle, final int folder, final CaptureRuns runs,
+                      final RenameStatistics statistics) throws IOException {
+        final FileCatalog catalog = handle.catalog(
+                name -> ImageFilenameFilter.isSuffixExifExtractable(name) || FileGroup.isSidecar(name));
+        final List<Integer> groups = IntStream.range(0, catalog.group()).boxed().collect(Collectors.toList());
+        final BlockingQueue<CaptureRuns.Capture> captures = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        final AtomicBoolean stopped = new AtomicBoolean(false);
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        SCANNERS.newThread(() -> {
+            try {
+                FileTaskRunner.fromSystemProperties().run(groups, group -> {
+                    if (stopped.get()) {
+                        return;
+                    }
+                    FileGroup files = catalog.getGroup(group);
+                    LocalDateTime date = captureTime(files.getPrimary(), catalog.getSize(files.getIndex(0)),
+                            statistics);
+                    if (date == null) {
+                        return;
+                    }
+                    List<String> names = Lists.newArrayListWithCapacity(files.getMembers().size());
+                    for (File member : files.getMembers()) {
+                        names.add(member.getName());
+                    }
+                    hand(captures, new CaptureRuns.Capture(date, folder, names), stopped);
+                });
+            } catch (RuntimeException e) {
+                failure.set(e);
+            } finally {
+                hand(captures, END, stopped);
+            }
+        }).start();
+
+        long added = 0;
+        try {
+            for (CaptureRuns.Capture capture = captures.take(); capture != END; capture = captures.take()) {
+                runs.add(capture);
+                added++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading the captures of " + folders.get(folder));
+        } finally {
+            stopped.set(true);
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return added;
+    }
+
+    /**
+     * Waits until a capture fits into the queue, unless the sorting stopped.
+     */
+    private static void hand(final BlockingQueue<CaptureRuns.Capture> captures, final CaptureRuns.Capture capture,
+                             final AtomicBoolean stopped) {
+        try {
+            while (!stopped.get() && !captures.offer(capture, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                LOG.trace("Sorting is lagging behind, waiting");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopped.set(true);
+        }
+    }
+
+    /**
+     * Determines the capture time of an image, preferring a date with time
+     * of day in its name as the engine does.
+     *
+     * @return the capture time or {@code null} if there is none.
+     */
+    private LocalDateTime captureTime(final File image, final long size, final RenameStatistics statistics) {
+        FilenameDates.Match match = filenameDates.match(image.getName());
+        if (match != null && match.isWithTime()) {
+            statistics.dated(DateSource.FILENAME);
+            return match.getDate();
+        }
+        long bytes = MetaDataExtractor.estimateBytesRead(image, size);
+        rateLimits.acquireOperation();
+        rateLimits.acquireBytes(bytes);
+        MemoryBudget.Permit permit = MemoryBudget.getDefault().acquire(bytes);
+        try {
+            LocalDateTime date = MetaDataExtractor.getCaptureTime(image);
+            if (date != null) {
+                statistics.dated(DateSource.METADATA);
+                return date;
+            }
+        } catch (IOException e) {
+            if (match == null) {
+                statistics.failed(ErrorCategory.PARSE_ERROR, image, e.getMessage());
+                return null;
+            }
+            LOG.info("Unable to read metadata of {}, using its filename: {}", image, e.getMessage());
+        } finally {
+            permit.close();
+        }
+        if (match != null) {
+            statistics.dated(DateSource.FILENAME);
+            return match.getDate();
+        }
+        statistics.failed(ErrorCategory.NO_EXIF, image, null);
+        return null;
+    }
+
+    /**
+     * Moves the files of a capture that do not carry their number yet to
+     * temporary names and adds them to the plan. If one of them cannot be
+     * moved, the others are moved back.
+     *
+     * @return whether the capture was added to the plan.
+     */
+    private boolean prepare(final DirectoryHandle handle, final CaptureRuns.Capture capture, final String base,
+                            final DataOutputStream plan, final RenameStatistics statistics) throws IOException {
+        List<String> names = Lists.newArrayList();
+        List<String> targets = Lists.newArrayList();
+        List<String> temporaries = Lists.newArrayList();
+        for (String name : capture.getNames()) {
+            int dot = name.lastIndexOf('.');
+            String target = base + (dot < 0 ? "" : name.substring(dot));
+            if (!target.equals(name)) {
+                names.add(name);
+                targets.add(target);
+                temporaries.add(TEMPORARY_PREFIX + target);
+            }
+        }
+        if (names.isEmpty()) {
+            return false;
+        }
+        File folder = folders.get(capture.getFolder());
+        for (int i = 0; i < names.size(); i++) {
+            try {
+                handle.move(names.get(i), temporaries.get(i));
+            } catch (IOException e) {
+                restore(handle, folder, temporaries.subList(0, i), names);
+                failed(folder, names, i, targets.get(i), e, statistics);
+                return false;
+            }
+        }
+        plan.writeInt(capture.getFolder());
+        plan.writeInt(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            plan.writeUTF(names.get(i));
+            plan.writeUTF(targets.get(i));
+        }
+        return true;
+    }
+
+    /**
+     * Gives the files of a planned capture their numbers. If one of them
+     * cannot be renamed, all of them are moved back to their former names.
+     */
+    private static void finish(final DirectoryHandle handle, final File folder, final List<String> names,
+                               final List<String> targets, final RenameStatistics statistics) {
+        List<String> temporaries = Lists.newArrayListWithCapacity(targets.size());
+        for (String target : targets) {
+            temporaries.add(TEMPORARY_PREFIX + target);
+        }
+        for (int i = 0; i < targets.size(); i++) {
+            try {
+                handle.move(temporaries.get(i), targets.get(i));
+            } catch (IOException e) {
+                restore(handle, folder, targets.subList(0, i), temporaries);
+                restore(handle, folder, temporaries, names);
+                failed(folder, names, i, targets.get(i), e, statistics);
+                return;
+            }
+        }
+        for (int i = 0; i < targets.size(); i++) {
+            statistics.renamed();
+        }
+    }
+
+    /**
+     * Moves files back to the names at the same positions, as far as
+     * possible.
+     */
+    private static void restore(final DirectoryHandle handle, final File folder, final List<String> current,
+                                final List<String> former) {
+        for (int i = 0; i < current.size(); i++) {
+            try {
+                handle.move(current.get(i), former.get(i));
+            } catch (IOException e) {
+                LOG.error("Unable to move '{}' back to '{}' in {}: {}", current.get(i), former.get(i), folder,
+                        e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Accounts for a capture that could not be renamed because one of its
+     * files failed.
+     */
+    private static void failed(final File folder, final List<String> names, final int failed, final String target,
+                               final IOException e, final RenameStatistics statistics) {
+        ErrorCategory category = e instanceof FileAlreadyExistsException
+                ? ErrorCategory.COLLISION : ErrorCategory.MOVE_FAILED;
+        String group = "not renamed, '" + names.get(failed) + "' of its capture failed";
+        for (int i = 0; i < names.size(); i++) {
+            String reason = i != failed ? group
+                    : category == ErrorCategory.COLLISION ? target : e.getMessage();
+            statistics.failed(category, folder.toPath().resolve(names.get(i)).toFile(), reason);
+        }
+    }
+
+    /**
+     * Builder for {@link ShootSequencer}.
+     */
+    public static final class Builder {
+        private final List<File> folders = Lists.newArrayList();
+        private File spillDirectory = new File(System.getProperty("java.io.tmpdir"));
+        private long memory = memoryFromSystemProperties();
+        private FilenameDates filenameDates = FilenameDates.fromSystemProperties();
+        private RateLimits rateLimits;
+
+        private Builder() {
+        }
+
+        /**
+         * @param folder A folder of the shoot, e.g. a card's
+         *               <code>DCIM/100CANON</code> directory.
+         * @return this builder.
+         */
+        public Builder folder(final File folder) {
+            folders.add(folder);
+            return this;
+        }
+
+        /**
+         * @param directory Directory for temporary files while sorting,
+         *                  defaults to the system's temporary directory.
+         * @return this builder.
+         */
+        public Builder spillDirectory(final File directory) {
+            this.spillDirectory = directory;
+            return this;
+        }
+
+        /**
+         * @param bytes Memory the sorting may use before it spills to disk,
+         *              defaults to {@link #SYSTEM_PROPERTY}.
+         * @return this builder.
+         */
+        public Builder memory(final long bytes) {
+            this.memory = bytes;
+            return this;
+        }
+
+        /**
+         * @param dates Patterns of dates in filenames, defaults to
+         *              {@link FilenameDates#fromSystemProperties()}.
+         * @return this builder.
+         */
+        public Builder filenameDates(final FilenameDates dates) {
+            this.filenameDates = dates;
+            return this;
+        }
+
+        /**
+         * @param limits Limits of the load on the storage while headers are
+         *               read, defaults to {@link RateLimits#getDefault()}.
+         * @return this builder.
+         */
+        public Builder rateLimits(final RateLimits limits) {
+            this.rateLimits = limits;
+            return this;
+        }
+
+        /**
+         * @return the sequencer.
+         * @throws IllegalArgumentException if no folder was added, a folder
+         *                                  was added twice or the memory
+         *                                  budget is not positive.
+         */
+        public ShootSequencer build() {
+            if (folders.isEmpty()) {
+                throw new IllegalArgumentException("At least one folder is required");
+            }
+            if (folders.stream().map(File::getAbsoluteFile).distinct().count() != folders.size()) {
+                throw new IllegalArgumentException("Folders must not be added twice: " + folders);
+            }
+            if (memory <= 0) {
+                throw new IllegalArgumentException("Memory budget must be positive: " + memory);
+            }
+            return new ShootSequencer(this);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Target directory of a run that organises images into folders according
+ * to a {@link FolderLayout}.
+ * <br>
+ * Folders are created once per run and cached afterwards. Whether source
+ * and target are on the same filesystem is checked once as well: files are
+ * then either renamed or moved via {@link VerifiedCopy}, and linked with
+ * hard or symbolic links respectively.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+final class TargetTree {
+    /**
+     * Logger for this class.
+     */
+    private static final Logger LOG = LogManager.getLogger(TargetTree.class);
+
+    private final Path root;
+    private final FolderLayout layout;
+    private final boolean sameFileStore;
+    /**
+     * Folders that were already created, by their relative name.
+     */
+    private final ConcurrentMap<String, Path> folders = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the target directory if necessary.
+     *
+     * @param root            Target directory.
+     * @param layout          Layout of the folders below the target directory.
+     * @param sourceDirectory Directory the images are taken from.
+     * @throws IOException if the target directory cannot be created.
+     */
+    TargetTree(final Path root, final FolderLayout layout, final Path sourceDirectory) throws IOException {
+        this.root = Files.createDirectories(root);
+        this.layout = layout;
+        this.sameFileStore = Files.getFileStore(this.root).equals(Files.getFileStore(sourceDirectory));
+        if (!sameFileStore) {
+            LOG.info("{} is on a different filesystem than {}, files are copied", root, sourceDirectory);
+        }
+    }
+
+    /**
+     * @return {@code true} if files can be renamed into this tree.
+     */
+    boolean isSameFileStore() {
+        return sameFileStore;
+    }
+
+    /**
+     * Returns the path of a file within this tree.
+     *
+     * @param creationDate The image's creation date.
+     * @param name         New filename.
+     * @return the path relative to the target directory.
+     */
+    String relativeTarget(final LocalDateTime creationDate, final String name) {
+        return layout.folderFor(creationDate) + "/" + name;
+    }
+
+    /**
+     * @param creationDate The image's creation date.
+     * @param name         New filename.
+     * @return {@code true} if the file's target within this tree is taken.
+     */
+    boolean exists(final LocalDateTime creationDate, final String name) {
+        return Files.exists(root.resolve(relativeTarget(creationDate, name)), LinkOption.NOFOLLOW_LINKS);
+    }
+
+    /**
+     * Moves a file back out of this tree, reverting
+     * {@link #move(Path, LocalDateTime, String)}.
+     *
+     * @param source       Original location of the file.
+     * @param creationDate The image's creation date.
+     * @param name         Its filename within this tree.
+     * @throws IOException if the file cannot be moved back.
+     */
+    void restore(final Path source, final LocalDateTime creationDate, final String name) throws IOException {
+        Path target = root.resolve(relativeTarget(creationDate, name));
+        if (sameFileStore) {
+            VerifiedCopy.publish(target, source);
+        } else {
+            VerifiedCopy.move(target, source);
+        }
+    }
+
+    /**
+     * Moves a file into the folder of its creation date. A file of the same
+     * name is never replaced, also not if another job moves it there at the
+     * same time.
+     *
+     * @param source       File to move.
+     * @param creationDate The image's creation date.
+     * @param name         New filename.
+     * @throws java.nio.file.FileAlreadyExistsException if the target already
+     *                                                  exists.
+     * @throws IOException                              if the file cannot be
+     *                                                  moved.
+     */
+    void move(final Path source, final LocalDateTime creationDate, final String name) throws IOException {
+        Path target = folder(layout.folderFor(creationDate)).resolve(name);
+        if (sameFileStore) {
+            VerifiedCopy.publish(source, target);
+        } else {
+            VerifiedCopy.move(source, target);
+        }
+    }
+
+    /**
+     * Creates a link to a file in the folder of its creation date. Hard
+     * links are preferred, a symbolic link is created if source and target
+     * are on different filesystems or hard links are not supported.
+     *
+     * @param source       File to link to.
+     * @param creationDate The image's creation date.
+     * @param name         Name of the link.
+     * @return {@code true} if a hard link was created.
+     * @throws java.nio.file.FileAlreadyExistsException if the link already
+     *                                                  exists.
+     * @throws IOException                              if the link cannot be
+     *                                                  created.
+     */
+    boolean link(final Path source, final LocalDateTime creationDate, final String name) throws IOException {
+        Path link = folder(layout.folderFor(creationDate)).resolve(name);
+        if (sameFileStore) {
+            try {
+                Files.createLink(link, source);
+                return true;
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                if (e instanceof FileAlreadyExistsException) {
+                    throw (FileAlreadyExistsException) e;
+                }
+                LOG.debug("Unable to create hard link {}, using a symbolic link instead: {}", link, e.getMessage());
+            }
+        }
+        Files.createSymbolicLink(link, source.toAbsolutePath());
+        return false;
+    }
+
+    /**
+     * Returns a folder of this tree, it is created on first access.
+     *
+     * @param relative Folder relative to the target directory, separated by
+     *                 <code>/</code>.
+     * @return the folder.
+     * @throws IOException if the folder cannot be created.
+     */
+    Path folder(final String relative) throws IOException {
+        try {
+            return folders.computeIfAbsent(relative, key -> {
+                try {
+                    return Files.createDirectories(root.resolve(key));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.collect.ImmutableList;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Extracts the creation date from a TIFF structure by following IFD0 to
+ * its EXIF sub-IFD. Only the directories and the date value itself are
+ * read, the image data is never touched. Besides the EXIF item of HEIC
+ * images this reads most RAW formats, which are TIFF files themselves.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class TiffDateReader {
+    /**
+     * Logger for this class.
+     */
+    private static final Logger LOG = LogManager.getLogger(TiffDateReader.class);
+
+    /**
+     * Tag of the file's modification date in IFD0.
+     */
+    static final int TAG_DATE_TIME = 0x0132;
+    /**
+     * Tag of the pointer to the EXIF sub-IFD in IFD0.
+     */
+    static final int TAG_EXIF_IFD = 0x8769;
+    /**
+     * Tag of the creation date in the EXIF sub-IFD.
+     */
+    static final int TAG_DATE_TIME_ORIGINAL = 0x9003;
+    /**
+     * Tag of the fractions of a second of the creation date in the EXIF
+     * sub-IFD.
+     */
+    static final int TAG_SUB_SEC_TIME_ORIGINAL = 0x9291;
+
+    /**
+     * File extensions of TIFF-based RAW formats: Canon, Nikon, Sony, Adobe,
+     * Pentax, Olympus and Panasonic.
+     */
+    static final List<String> RAW_EXTENSIONS = ImmutableList.of("cr2", "nef", "nrw", "arw", "dng", "pef", "orf",
+            "rw2");
+
+    private static final int TYPE_ASCII = 2;
+    private static final int ENTRY_SIZE = 12;
+    /**
+     * Upper bound of entries per directory, protects against corrupt files.
+     */
+    private static final int MAX_ENTRIES = 1000;
+    private static final int DATE_LENGTH = 19;
+    /**
+     * Upper bound of short text values, e.g. fractions of a second.
+     */
+    private static final int MAX_TEXT_LENGTH = 32;
+    private static final DateTimeFormatter EXIF_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy:MM:dd HH:mm:ss");
+
+    /**
+     * Checks the filename only, without accessing the file itself.
+     *
+     * @param name Filename to check.
+     * @return {@code true} if the file is a TIFF-based RAW image.
+     */
+    static boolean isRaw(final String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        for (String extension : RAW_EXTENSIONS) {
+            if (lower.endsWith("." + extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the creation date of a TIFF-based RAW image. Only its header,
+     * the two directories and the date itself are read, usually a few
+     * hundred bytes of a file of dozens of megabytes.
+     *
+     * @param file RAW image.
+     * @return the creation date or {@code null} if there is none.
+     * @throws IOException if the file cannot be read or is invalid.
+     */
+    static LocalDateTime getCreationDate(final Path file) throws IOException {
+        try (PositionedReader reader = new PositionedReader(file)) {
+            return read(reader, 0);
+        }
+    }
+
+    /**
+     * Reads the creation date of a TIFF-based RAW image including the
+     * fractions of a second given by <code>SubSecTimeOriginal</code>, which
+     * tell apart the frames of a burst.
+     *
+     * @param file RAW image.
+     * @return the creation date or {@code null} if there is none.
+     * @throws IOException if the file cannot be read or is invalid.
+     */
+    static LocalDateTime getCaptureTime(final Path file) throws IOException {
+        try (PositionedReader reader = new PositionedReader(file)) {
+            return read(reader, 0, true);
+        }
+    }
+
+    /**
+     * Reads the creation date of the TIFF structure at the given position.
+     * The EXIF <code>DateTimeOriginal</code> is preferred, IFD0's
+     * <code>DateTime</code> is used if there is none.
+     *
+     * @param reader Opened file.
+     * @param start  Position of the TIFF header within the file, all
+     *               offsets are relative to it.
+     * @return the creation date or {@code null} if there is none.
+     * @throws IOException if the structure cannot be read or is invalid.
+     */
+    static LocalDateTime read(final PositionedReader reader, final long start) throws IOException {
+        return read(reader, start, false);
+    }
+
+    private static LocalDateTime read(final PositionedReader reader, final long start, final boolean subSeconds)
+            throws IOException {
+        ByteBuffer header = reader.read(start, 8, ByteOrder.BIG_ENDIAN);
+        ByteOrder order;
+        short mark = header.getShort();
+        if (mark == 0x4949) {
+            order = ByteOrder.LITTLE_ENDIAN;
+        } else if (mark == 0x4D4D) {
+            order = ByteOrder.BIG_ENDIAN;
+        } else {
+            throw new IOException("No TIFF header at " + start);
+        }
+        header.order(order);
+        // the magic number differs for some RAW formats (e.g. ORF, RW2), it is not checked
+        header.getShort();
+        long ifd0 = header.getInt() & 0xFFFFFFFFL;
+
+        Entry[] directory = find(reader, start, ifd0, order, TAG_DATE_TIME, TAG_EXIF_IFD);
+        Entry dateTime = directory[0];
+        Entry exif = directory[1];
+        if (exif != null) {
+            Entry[] exifDirectory = subSeconds
+                    ? find(reader, start, exif.valueOrOffset, order, TAG_DATE_TIME_ORIGINAL, TAG_SUB_SEC_TIME_ORIGINAL)
+                    : find(reader, start, exif.valueOrOffset, order, TAG_DATE_TIME_ORIGINAL);
+            LocalDateTime date = toDate(reader, start, exifDirectory[0]);
+            if (date != null && subSeconds) {
+                return date.withNano(MetaDataExtractor.toNanos(toText(reader, start, order, exifDirectory[1])));
+            }
+            if (date != null) {
+                return date;
+            }
+        }
+        return toDate(reader, start, dateTime);
+    }
+
+    /**
+     * Collects the entries of the given tags in a single pass over a
+     * directory.
+     *
+     * @return the entries in the order of the tags, {@code null} for tags
+     * that are missing.
+     */
+    private static Entry[] find(final PositionedReader reader, final long start, final long ifd,
+                                final ByteOrder order, final int... tags) throws IOException {
+        int count = reader.read(start + ifd, 2, order).getShort() & 0xFFFF;
+        if (count > MAX_ENTRIES) {
+            throw new IOException("Invalid number of directory entries: " + count);
+        }
+        ByteBuffer entries = reader.read(start + ifd + 2, count * ENTRY_SIZE, order);
+        Entry[] found = new Entry[tags.length];
+        for (int i = 0; i < count; i++) {
+            int entryTag = entries.getShort() & 0xFFFF;
+            int type = entries.getShort() & 0xFFFF;
+            long values = entries.getInt() & 0xFFFFFFFFL;
+            long valueOrOffset = entries.getInt() & 0xFFFFFFFFL;
+            for (int t = 0; t < tags.length; t++) {
+                if (entryTag == tags[t] && found[t] == null) {
+                    found[t] = new Entry(type, values, valueOrOffset);
+                }
+            }
+        }
+        return found;
+    }
+
+    private static LocalDateTime toDate(final PositionedReader reader, final long start, final Entry entry)
+            throws IOException {
+        if (entry == null || entry.type != TYPE_ASCII || entry.count < DATE_LENGTH) {
+            return null;
+        }
+        ByteBuffer value = reader.read(start + entry.valueOrOffset, DATE_LENGTH, ByteOrder.BIG_ENDIAN);
+        String date = new String(value.array(), StandardCharsets.US_ASCII);
+        try {
+            return LocalDateTime.parse(date, EXIF_DATE_FORMAT);
+        } catch (DateTimeParseException e) {
+            LOG.debug("Ignoring invalid date '{}'", date);
+            return null;
+        }
+    }
+
+    /**
+     * Reads a short ASCII value, which is stored within the entry itself if
+     * it fits into four bytes.
+     */
+    private static String toText(final PositionedReader reader, final long start, final ByteOrder order,
+                                 final Entry entry) throws IOException {
+        if (entry == null || entry.type != TYPE_ASCII || entry.count > MAX_TEXT_LENGTH) {
+            return null;
+        }
+        int length = (int) entry.count;
+        byte[] value;
+        if (length <= 4) {
+            value = ByteBuffer.allocate(4).order(order).putInt((int) entry.valueOrOffset).array();
+        } else {
+            value = reader.read(start + entry.valueOrOffset, length, ByteOrder.BIG_ENDIAN).array();
+        }
+        return new String(value, 0, length, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * A directory entry; values of more than four bytes are stored at an
+     * offset.
+     */
+    private static final class Entry {
+        private final int type;
+        private final long count;
+        private final long valueOrOffset;
+
+        Entry(final int type, final long count, final long valueOrOffset) {
+            this.type = type;
+            this.count = count;
+            this.valueOrOffset = valueOrOffset;
+        }
+    }
+}
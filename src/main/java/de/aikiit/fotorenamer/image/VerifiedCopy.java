@@ -0,0 +1,174 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.util.concurrent.Striped;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Lock;
+import java.util.zip.CRC32;
+
+/**
+ * Moves files between different filesystems by copying and deleting them.
+ * <br>
+ * Unlike {@link Files#move(Path, Path, java.nio.file.CopyOption...)}, which
+ * silently falls back to a stream based copy in this case, the data is
+ * transferred with {@link FileChannel#transferTo(long, long,
+ * java.nio.channels.WritableByteChannel)} so that the kernel can copy
+ * without passing it through the JVM. The copy is written to a hidden
+ * temporary file, verified against the source and only then published
+ * under its final name, see {@link #publish(Path, Path)}, before the source
+ * is deleted.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class VerifiedCopy {
+    /**
+     * Suffix of incomplete copies.
+     */
+    static final String PART_SUFFIX = ".part";
+
+    /**
+     * Size of the buffer used to verify copies.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Serialises moves to the same target where hard links are not
+     * supported.
+     */
+    private static final Striped<Lock> PUBLISHING = Striped.lock(64);
+
+    /**
+     * Moves the given file by copying, verifying and deleting it.
+     *
+     * @param source File to move.
+     * @param target New location, must not exist yet.
+     * @throws FileAlreadyExistsException if the target already exists.
+     * @throws IOException                if the file cannot be copied or the
+     *                                    copy differs from the source; the
+     *                                    source is kept in this case.
+     */
+    static void move(final Path source, final Path target) throws IOException {
+        if (Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+            throw new FileAlreadyExistsException(target.toString());
+        }
+
+        Path part = target.resolveSibling("." + target.getFileName() + PART_SUFFIX);
+        try {
+            transfer(source, part);
+            verify(source, part);
+            Files.setLastModifiedTime(part, Files.getLastModifiedTime(source));
+            publish(part, target);
+        } catch (IOException e) {
+            Files.deleteIfExists(part);
+            throw e;
+        }
+        Files.delete(source);
+    }
+
+    /**
+     * Gives a file a new name on the same file system without ever replacing
+     * a file. A hard link fails atomically if the name is taken, also if
+     * another worker or process publishes a file of the same name at the
+     * same time; the old name is removed afterwards. File systems without
+     * hard links, e.g. exFAT, fall back to a move that is exclusive among
+     * the workers of this process.
+     *
+     * @param file   File to publish.
+     * @param target Its new name.
+     * @throws FileAlreadyExistsException if the target exists, the file is
+     *                                    kept under its old name then.
+     * @throws IOException                if the file cannot be published.
+     */
+    static void publish(final Path file, final Path target) throws IOException {
+        try {
+            Files.createLink(target, file);
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            Lock lock = PUBLISHING.get(target);
+            lock.lock();
+            try {
+                Files.move(file, target);
+            } finally {
+                lock.unlock();
+            }
+            return;
+        }
+        try {
+            Files.delete(file);
+        } catch (IOException e) {
+            // a file is never left under both names
+            Files.deleteIfExists(target);
+            throw e;
+        }
+    }
+
+    private static void transfer(final Path source, final Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                long transferred = in.transferTo(position, size - position, out);
+                if (transferred <= 0) {
+                    throw new IOException("Unable to copy " + source + " after " + position + " of " + size + " bytes");
+                }
+                position += transferred;
+            }
+            out.force(true);
+        }
+    }
+
+    /**
+     * Compares size and checksum of both files.
+     *
+     * @param source Original file.
+     * @param copy   Copy of the original file.
+     * @throws IOException if the files cannot be read or differ.
+     */
+    static void verify(final Path source, final Path copy) throws IOException {
+        if (Files.size(source) != Files.size(copy) || checksum(source) != checksum(copy)) {
+            throw new IOException("Verification of the copy of " + source + " failed");
+        }
+    }
+
+    private static long checksum(final Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.util;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Application-wide executor for renaming jobs.
+ * <br>
+ * At most {@link #getMaxConcurrentJobs()} jobs run at the same time, further
+ * jobs are queued. On shutdown queued jobs are dropped and running jobs are
+ * asked to stop after their current files, so that no file is left
+ * half-processed when the application exits.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+public final class JobExecutor implements Executor {
+    /**
+     * Logger for this class.
+     */
+    private static final Logger LOG = LogManager.getLogger(JobExecutor.class);
+
+    /**
+     * System property to configure the number of concurrent jobs.
+     */
+    public static final String SYSTEM_PROPERTY = "fotorenamer.jobs";
+
+    /**
+     * Default number of concurrent jobs.
+     */
+    private static final int DEFAULT_CONCURRENT_JOBS = 2;
+
+    /**
+     * Idle time after which worker threads terminate.
+     */
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * Maximum time the shutdown hook waits for running jobs.
+     */
+    private static final long SHUTDOWN_HOOK_TIMEOUT_SECONDS = 30;
+
+    /**
+     * Job that can be stopped before or while it runs.
+     */
+    public interface CancellableJob extends Runnable {
+        /**
+         * Stops the job. If it was not started yet it must not do any work
+         * afterwards but still report its completion to interested parties.
+         */
+        void cancel();
+    }
+
+    /**
+     * The application-wide instance, created on first use.
+     */
+    private static final class Holder {
+        private static final JobExecutor INSTANCE = createDefault();
+    }
+
+    private final ThreadPoolExecutor pool;
+    /**
+     * Jobs that are currently executed.
+     */
+    private final Set<Runnable> running = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates an executor that runs the given number of jobs concurrently.
+     *
+     * @param maxConcurrentJobs Maximum number of concurrently running jobs.
+     */
+    public JobExecutor(final int maxConcurrentJobs) {
+        if (maxConcurrentJobs <= 0) {
+            throw new IllegalArgumentException("Number of concurrent jobs must be positive: " + maxConcurrentJobs);
+        }
+        this.pool = new ThreadPoolExecutor(maxConcurrentJobs, maxConcurrentJobs,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("fotorenamer-job-%d").build()) {
+            @Override
+            protected void beforeExecute(final Thread thread, final Runnable job) {
+                running.add(job);
+            }
+
+            @Override
+            protected void afterExecute(final Runnable job, final Throwable throwable) {
+                running.remove(job);
+            }
+        };
+        // let the JVM exit if no jobs are left
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    private static JobExecutor createDefault() {
+        int jobs = DEFAULT_CONCURRENT_JOBS;
+        try {
+            jobs = Integer.parseInt(System.getProperty(SYSTEM_PROPERTY, String.valueOf(DEFAULT_CONCURRENT_JOBS)).trim());
+        } catch (NumberFormatException e) {
+            LOG.warn("Ignoring invalid number of concurrent jobs: {}", e.getMessage());
+        }
+        JobExecutor executor = new JobExecutor(Math.max(1, jobs));
+        Runtime.getRuntime().addShutdownHook(new Thread(
+                () -> executor.shutdown(SHUTDOWN_HOOK_TIMEOUT_SECONDS, TimeUnit.SECONDS), "fotorenamer-shutdown"));
+        return executor;
+    }
+
+    /**
+     * Returns the application-wide executor, its concurrency is configured
+     * via the system property {@link #SYSTEM_PROPERTY}.
+     *
+     * @return the default executor.
+     */
+    public static JobExecutor getDefault() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Runs or queues the given job.
+     *
+     * @param job Job to run, preferably a {@link CancellableJob}.
+     * @throws RejectedExecutionException if this executor is shut down.
+     */
+    @Override
+    public void execute(final Runnable job) {
+        pool.execute(job);
+    }
+
+    /**
+     * @return the maximum number of concurrently running jobs.
+     */
+    public int getMaxConcurrentJobs() {
+        return pool.getMaximumPoolSize();
+    }
+
+    /**
+     * @return the number of running jobs.
+     */
+    public int getRunningJobs() {
+        return running.size();
+    }
+
+    /**
+     * @return the number of jobs waiting for execution.
+     */
+    public int getQueuedJobs() {
+        return pool.getQueue().size();
+    }
+
+    /**
+     * @return {@code true} if no new jobs are accepted.
+     */
+    public boolean isShutdown() {
+        return pool.isShutdown();
+    }
+
+    /**
+     * Stops accepting jobs, cancels all queued and running jobs and waits
+     * for the running ones to finish their current files.
+     *
+     * @param timeout Maximum time to wait.
+     * @param unit    Unit of the timeout.
+     * @return {@code true} if all jobs finished in time.
+     */
+    public boolean shutdown(final long timeout, final TimeUnit unit) {
+        pool.shutdown();
+
+        List<Runnable> queued = Lists.newArrayList();
+        pool.getQueue().drainTo(queued);
+        if (!queued.isEmpty() || !running.isEmpty()) {
+            LOG.info("Shutting down: dropping {} queued and stopping {} running jobs", queued.size(), running.size());
+        }
+        queued.forEach(JobExecutor::cancel);
+        running.forEach(JobExecutor::cancel);
+
+        try {
+            return pool.awaitTermination(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void cancel(final Runnable job) {
+        if (job instanceof CancellableJob) {
+            ((CancellableJob) job).cancel();
+        }
+    }
+}
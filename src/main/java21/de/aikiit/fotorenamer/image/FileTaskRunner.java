@@ -0,0 +1,227 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Runs the per-file work of a renaming run, i.e. metadata extraction and
+ * the move of each file.
+ * <br>
+ * This is the Java 21 implementation of the multi-release JAR. By default
+ * each file is processed on its own virtual thread, an
+ * {@link AdaptiveLimit} or a fixed semaphore bounds the number of files in
+ * flight so that slow storage is not flooded with requests. Blocking reads
+ * and moves then no longer tie up the few platform threads of the common
+ * pool.
+ *
+ * @author hirsch
+ * @version 2026-10-19
+ */
+final class FileTaskRunner {
+    /**
+     * Logger for this class.
+     */
+    private static final Logger LOG = LogManager.getLogger(FileTaskRunner.class);
+
+    /**
+     * System property to select the thread mode, {@link #PLATFORM} or
+     * {@link #VIRTUAL}.
+     */
+    static final String MODE_PROPERTY = "fotorenamer.threads";
+    /**
+     * System property to limit the number of files processed concurrently,
+     * either a fixed number for virtual threads or {@link #ADAPTIVE}.
+     */
+    static final String IN_FLIGHT_PROPERTY = "fotorenamer.io.inflight";
+    /**
+     * Let an {@link AdaptiveLimit} find the number of files processed
+     * concurrently, the default.
+     */
+    static final String ADAPTIVE = "adaptive";
+
+    /**
+     * Process files with a parallel stream on platform threads.
+     */
+    static final String PLATFORM = "platform";
+    /**
+     * Process each file on its own virtual thread.
+     */
+    static final String VIRTUAL = "virtual";
+
+    /**
+     * Default fixed number of files processed concurrently on virtual
+     * threads.
+     */
+    static final int DEFAULT_IN_FLIGHT = 64;
+    /**
+     * Upper bound of the number of files processed concurrently with an
+     * adaptive limit.
+     */
+    static final int MAX_ADAPTIVE_IN_FLIGHT = 256;
+
+    private final String mode;
+    private final int maxInFlight;
+    private final boolean adaptive;
+
+    /**
+     * Creates a runner with a fixed limit.
+     *
+     * @param requestedMode Thread mode, {@link #PLATFORM} or
+     *                      {@link #VIRTUAL}.
+     * @param maxInFlight   Maximum number of files processed concurrently
+     *                      on virtual threads.
+     */
+    FileTaskRunner(final String requestedMode, final int maxInFlight) {
+        this(requestedMode, maxInFlight, false);
+    }
+
+    /**
+     * Creates a runner.
+     *
+     * @param requestedMode Thread mode, {@link #PLATFORM} or
+     *                      {@link #VIRTUAL}.
+     * @param maxInFlight   Maximum number of files processed concurrently
+     *                      on virtual threads, or the upper bound of an
+     *                      adaptive limit.
+     * @param adaptive      Whether an {@link AdaptiveLimit} controls the
+     *                      number of files processed concurrently.
+     */
+    FileTaskRunner(final String requestedMode, final int maxInFlight, final boolean adaptive) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("Number of files in flight must be positive: " + maxInFlight);
+        }
+        this.mode = PLATFORM.equals(requestedMode) ? PLATFORM : VIRTUAL;
+        this.maxInFlight = maxInFlight;
+        this.adaptive = adaptive;
+    }
+
+    /**
+     * Creates a runner configured via {@link #MODE_PROPERTY} and
+     * {@link #IN_FLIGHT_PROPERTY}, virtual threads are used by default.
+     *
+     * @return the configured runner.
+     */
+    static FileTaskRunner fromSystemProperties() {
+        String mode = System.getProperty(MODE_PROPERTY, VIRTUAL);
+        String inFlight = System.getProperty(IN_FLIGHT_PROPERTY, ADAPTIVE).trim();
+        if (ADAPTIVE.equals(inFlight)) {
+            return new FileTaskRunner(mode, MAX_ADAPTIVE_IN_FLIGHT, true);
+        }
+        try {
+            return new FileTaskRunner(mode, Math.max(1, Integer.parseInt(inFlight)));
+        } catch (NumberFormatException e) {
+            LOG.warn("Ignoring invalid number of files in flight: {}", e.getMessage());
+            return new FileTaskRunner(mode, MAX_ADAPTIVE_IN_FLIGHT, true);
+        }
+    }
+
+    /**
+     * @return {@code true} if this runtime supports virtual threads.
+     */
+    static boolean isVirtualThreadSupported() {
+        return true;
+    }
+
+    /**
+     * @return the effective thread mode.
+     */
+    String getMode() {
+        return mode;
+    }
+
+    /**
+     * @return the maximum number of files processed concurrently on
+     * virtual threads, the upper bound if the limit is adaptive.
+     */
+    int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * @return {@code true} if the number of files processed concurrently
+     * adapts to the storage device.
+     */
+    boolean isAdaptive() {
+        return adaptive;
+    }
+
+    private AdaptiveLimit newLimit() {
+        int initial = Math.min(maxInFlight, Runtime.getRuntime().availableProcessors());
+        return new AdaptiveLimit(1, initial, maxInFlight);
+    }
+
+    private static ExecutorService newPlatformExecutor() {
+        return Executors.newCachedThreadPool(
+                new ThreadFactoryBuilder().setNameFormat("fotorenamer-io-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Applies the given task to all files, or groups of files, and returns
+     * once all of them are processed.
+     *
+     * @param files Files to process.
+     * @param task  Work to perform per file.
+     * @param <T>   Type of the processed items.
+     */
+    <T> void run(final List<T> files, final Consumer<T> task) {
+        if (adaptive) {
+            newLimit().run(files, task,
+                    PLATFORM.equals(mode) ? newPlatformExecutor() : Executors.newVirtualThreadPerTaskExecutor());
+            return;
+        }
+        if (PLATFORM.equals(mode)) {
+            files.parallelStream().forEach(task);
+            return;
+        }
+
+        final Semaphore inFlight = new Semaphore(maxInFlight);
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (T file : files) {
+                if (failure.get() != null) {
+                    break;
+                }
+                inFlight.acquire();
+                executor.execute(() -> {
+                    try {
+                        task.accept(file);
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.warn("Interrupted while dispatching files, remaining files are not processed");
+        }
+
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.collect.Lists;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveLimitTest {
+
+    /**
+     * Simulates a device that serves up to <code>knee</code> requests in
+     * parallel, beyond that requests queue up: throughput stays constant
+     * while latency grows.
+     */
+    private static void converge(final AdaptiveLimit limit, final int knee) {
+        final double serviceMillis = 10;
+        int maximum = 0;
+        for (int window = 0; window < 200; window++) {
+            int current = limit.getLimit();
+            double latency = serviceMillis * Math.max(1.0, current / (double) knee);
+            limit.adjust(current / latency * 1000, latency, true);
+            if (window >= 100) {
+                maximum = Math.max(maximum, limit.getLimit());
+            }
+        }
+        assertTrue(limit.getLimit() >= knee / 2, "limit " + limit.getLimit() + " for knee " + knee);
+        assertTrue(maximum <= knee * 2, "maximum " + maximum + " for knee " + knee);
+    }
+
+    @Test
+    void limitSettlesNearTheKnee() {
+        converge(new AdaptiveLimit(1, 2, 256), 4);
+        converge(new AdaptiveLimit(1, 8, 256), 64);
+
+        AdaptiveLimit limit = new AdaptiveLimit(1, 4, 256);
+        converge(limit, 16);
+        assertTrue(limit.getIncreases() > 0);
+        assertTrue(limit.getDecreases() > 0);
+    }
+
+    @Test
+    void limitStaysWithinBounds() {
+        AdaptiveLimit limit = new AdaptiveLimit(2, 2, 8);
+        for (int i = 0; i < 20; i++) {
+            limit.adjust(100, 10, true);
+        }
+        assertEquals(8, limit.getLimit());
+
+        // an idle device gives no reason to raise the limit
+        AdaptiveLimit idle = new AdaptiveLimit(1, 2, 8);
+        idle.adjust(100, 10, false);
+        assertEquals(2, idle.getLimit());
+
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveLimit(0, 1, 2));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveLimit(1, 4, 2));
+    }
+
+    @Test
+    void allItemsAreProcessedWithinTheLimit() throws Exception {
+        List<Integer> items = Lists.newArrayList();
+        for (int i = 0; i < 200; i++) {
+            items.add(i);
+        }
+        Set<Integer> processed = ConcurrentHashMap.newKeySet();
+        AtomicBoolean registered = new AtomicBoolean();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        AdaptiveLimit limit = new AdaptiveLimit(1, 2, 16);
+        ObjectName pattern = new ObjectName(AdaptiveLimit.OBJECT_NAME + "*");
+
+        limit.run(items, item -> {
+            maxInFlight.accumulateAndGet(limit.getInFlight(), Math::max);
+            registered.compareAndSet(false, !ManagementFactory.getPlatformMBeanServer()
+                    .queryNames(pattern, null).isEmpty());
+            processed.add(item);
+        }, Executors.newCachedThreadPool());
+
+        assertEquals(items.size(), processed.size());
+        assertEquals(items.size(), limit.getCompleted());
+        assertEquals(0, limit.getInFlight());
+        assertTrue(maxInFlight.get() <= 16);
+        assertTrue(registered.get());
+        assertTrue(ManagementFactory.getPlatformMBeanServer().queryNames(pattern, null).isEmpty());
+    }
+
+    @Test
+    void interruptedRunsWaitForTheirTasks() throws Exception {
+        List<Integer> items = Lists.newArrayList();
+        for (int i = 0; i < 10; i++) {
+            items.add(i);
+        }
+        Thread dispatcher = Thread.currentThread();
+        AtomicBoolean finished = new AtomicBoolean(false);
+        List<Integer> undispatched = new AdaptiveLimit(1, 1, 1).run(items, item -> {
+            // the second item waits for this one to finish and is interrupted meanwhile
+            dispatcher.interrupt();
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            finished.set(true);
+        }, Executors.newCachedThreadPool());
+
+        assertTrue(Thread.interrupted());
+        assertTrue(finished.get());
+        assertEquals(items.subList(1, items.size()), undispatched);
+    }
+
+    @Test
+    void waitsOutsideTheStorageAreNoLatency() {
+        List<Integer> items = Lists.newArrayList();
+        for (int i = 0; i < 32; i++) {
+            items.add(i);
+        }
+        AdaptiveLimit limit = new AdaptiveLimit(1, 2, 2);
+        limit.run(items, item -> {
+            long start = System.nanoTime();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            AdaptiveLimit.waited(System.nanoTime() - start);
+        }, Executors.newCachedThreadPool());
+
+        assertTrue(limit.getLatencyMillis() < 10, "latency: " + limit.getLatencyMillis());
+    }
+}
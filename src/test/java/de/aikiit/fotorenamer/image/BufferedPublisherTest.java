@@ -0,0 +1,125 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BufferedPublisherTest {
+
+    /**
+     * Subscriber that only receives what is requested explicitly.
+     */
+    private static final class ManualSubscriber implements RenameFlow.Subscriber<Integer> {
+        private final List<Integer> items = new CopyOnWriteArrayList<>();
+        private final AtomicReference<RenameFlow.Subscription> subscription = new AtomicReference<>();
+        private final AtomicBoolean completed = new AtomicBoolean(false);
+
+        @Override
+        public void onSubscribe(final RenameFlow.Subscription s) {
+            subscription.set(s);
+        }
+
+        @Override
+        public void onNext(final Integer item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            // not expected
+        }
+
+        @Override
+        public void onComplete() {
+            completed.set(true);
+        }
+    }
+
+    @Test
+    void invalidBufferSize() {
+        assertThrows(IllegalArgumentException.class, () -> new BufferedPublisher<Integer>(0));
+    }
+
+    @Test
+    void producerIsBlockedUntilSubscriberRequests() throws Exception {
+        BufferedPublisher<Integer> publisher = new BufferedPublisher<>(2);
+        ManualSubscriber subscriber = new ManualSubscriber();
+        publisher.subscribe(subscriber);
+
+        CountDownLatch allSubmitted = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 5; i++) {
+                    publisher.submit(i);
+                }
+                publisher.close();
+                allSubmitted.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+
+        assertFalse(allSubmitted.await(300, TimeUnit.MILLISECONDS));
+        assertTrue(subscriber.items.isEmpty());
+
+        subscriber.subscription.get().request(1);
+        assertEquals(1, subscriber.items.size());
+
+        subscriber.subscription.get().request(Long.MAX_VALUE);
+        assertTrue(allSubmitted.await(5, TimeUnit.SECONDS));
+        producer.join();
+        assertEquals(5, subscriber.items.size());
+        assertEquals(Integer.valueOf(4), subscriber.items.get(4));
+        assertTrue(subscriber.completed.get());
+    }
+
+    @Test
+    void cancelledSubscribersDoNotBlockProducers() throws Exception {
+        BufferedPublisher<Integer> publisher = new BufferedPublisher<>(1);
+        ManualSubscriber subscriber = new ManualSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.get().cancel();
+
+        for (int i = 0; i < 10; i++) {
+            publisher.submit(i);
+        }
+        publisher.close();
+        assertTrue(subscriber.items.isEmpty());
+        assertFalse(subscriber.completed.get());
+    }
+
+    @Test
+    void lateSubscribersAreCompletedImmediately() {
+        BufferedPublisher<Integer> publisher = new BufferedPublisher<>(1);
+        publisher.close();
+        ManualSubscriber subscriber = new ManualSubscriber();
+        publisher.subscribe(subscriber);
+        assertTrue(subscriber.completed.get());
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CaptureRunsTest {
+
+    private static final LocalDateTime SHOOT = LocalDateTime.of(2023, 5, 14, 10, 15, 30);
+
+    @TempDir
+    Path spill;
+
+    @Test
+    void capturesAreOrderedByTimeFractionNameAndFolder() throws Exception {
+        try (CaptureRuns runs = new CaptureRuns(spill, 1 << 20)) {
+            runs.add(new CaptureRuns.Capture(SHOOT.withNano(500_000_000), 0, ImmutableList.of("B.jpg")));
+            runs.add(new CaptureRuns.Capture(SHOOT, 1, ImmutableList.of("A.jpg")));
+            runs.add(new CaptureRuns.Capture(SHOOT, 0, ImmutableList.of("A.jpg", "A.xmp")));
+            runs.add(new CaptureRuns.Capture(SHOOT.withNano(100_000_000), 0, ImmutableList.of("C.jpg")));
+            runs.add(new CaptureRuns.Capture(SHOOT.minusSeconds(1), 2, ImmutableList.of("Z.jpg")));
+            assertEquals(0, runs.getRunCount());
+
+            try (CaptureRuns.Source sorted = runs.sorted()) {
+                assertEquals("Z.jpg", sorted.next().getPrimary());
+                CaptureRuns.Capture first = sorted.next();
+                assertEquals(ImmutableList.of("A.jpg", "A.xmp"), first.getNames());
+                assertEquals(0, first.getFolder());
+                assertEquals(1, sorted.next().getFolder());
+                CaptureRuns.Capture burst = sorted.next();
+                assertEquals("C.jpg", burst.getPrimary());
+                assertEquals(SHOOT.withNano(100_000_000), burst.getDate());
+                assertEquals("B.jpg", sorted.next().getPrimary());
+                assertNull(sorted.next());
+            }
+        }
+        try (Stream<Path> files = Files.list(spill)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void spilledRunsAreMergedInOrder() throws Exception {
+        Random random = new Random(42);
+        List<CaptureRuns.Capture> expected = Lists.newArrayList();
+        // a few captures per run and a fan-in of two force intermediate merges
+        try (CaptureRuns runs = new CaptureRuns(spill, 1000)) {
+            for (int i = 0; i < 500; i++) {
+                CaptureRuns.Capture capture = new CaptureRuns.Capture(
+                        SHOOT.plusSeconds(random.nextInt(100)).withNano(random.nextInt(10) * 100_000_000),
+                        random.nextInt(3), ImmutableList.of("IMG_" + random.nextInt(1000) + ".JPG"));
+                expected.add(capture);
+                runs.add(capture);
+            }
+            assertTrue(runs.getRunCount() > 50);
+            expected.sort(CaptureRuns.ORDER);
+
+            try (CaptureRuns.Source sorted = runs.sorted()) {
+                for (CaptureRuns.Capture capture : expected) {
+                    CaptureRuns.Capture actual = sorted.next();
+                    assertEquals(capture.getDate(), actual.getDate());
+                    assertEquals(capture.getFolder(), actual.getFolder());
+                    assertEquals(capture.getNames(), actual.getNames());
+                }
+                assertNull(sorted.next());
+            }
+        }
+        try (Stream<Path> files = Files.list(spill)) {
+            assertEquals(0, files.count());
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.hash.Hashing;
+import de.aikiit.fotorenamer.TestConstants;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CardIngestTest {
+
+    @TempDir
+    Path cardA;
+
+    @TempDir
+    Path cardB;
+
+    @TempDir
+    Path archive;
+
+    @Test
+    void cardsAreIngestedWithManifest() throws Exception {
+        File image = new File(TestConstants.FULLPATH_TEST_IMG);
+        if (!image.exists()) {
+            image = new File(TestConstants.FULLPATH_TEST_IMG_RENAMED);
+        }
+        Path dcim = Files.createDirectories(cardA.resolve("DCIM/100CANON"));
+        Files.copy(image.toPath(), dcim.resolve(TestConstants.PLAIN_FILE_NAME));
+        Files.write(cardB.resolve("IMG_0001.JPG"), new byte[]{1, 2, 3});
+
+        CardIngest ingest = CardIngest.builder(archive.toFile()).card(cardA.toFile()).card(cardB.toFile()).build();
+        List<CardIngest.CardResult> results = ingest.run();
+
+        assertEquals(2, results.size());
+        assertEquals(1, results.get(0).getIngested());
+        assertEquals(1, results.get(1).getIngested());
+
+        Path copy = archive.resolve("2011/01/30/20110130_131102_" + TestConstants.PLAIN_FILE_NAME);
+        byte[] content = Files.readAllBytes(image.toPath());
+        assertArrayEquals(content, Files.readAllBytes(copy));
+        assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(
+                archive.resolve(CardIngest.UNDATED_FOLDER).resolve("IMG_0001.JPG")));
+        // cards are left untouched
+        assertTrue(Files.exists(dcim.resolve(TestConstants.PLAIN_FILE_NAME)));
+
+        List<String> manifest = Files.readAllLines(results.get(0).getManifest().toPath(), StandardCharsets.UTF_8);
+        assertEquals(Hashing.sha256().hashBytes(content) + "  2011/01/30/20110130_131102_"
+                + TestConstants.PLAIN_FILE_NAME, manifest.get(0));
+
+        // ingesting a card again only detects duplicates
+        CardIngest.CardResult again = CardIngest.builder(archive.toFile()).card(cardA.toFile())
+                .checksum(IngestChecksum.CRC32C).build().run().get(0);
+        assertEquals(0, again.getIngested());
+        assertEquals(1, again.getDuplicates());
+        assertTrue(again.getManifest().getName().endsWith(".crc32c"));
+    }
+
+    @Test
+    void imagesOfTheLedgerAreNotReadAgain(@TempDir final Path state) throws Exception {
+        Files.write(cardA.resolve("IMG_0001.JPG"), new byte[]{1, 2, 3});
+        try (ProcessedLedger ledger = ProcessedLedger.open(state.resolve("ledger").toFile())) {
+            assertEquals(1, CardIngest.builder(archive.toFile()).card(cardA.toFile()).ledger(ledger).build().run()
+                    .get(0).getIngested());
+            Files.write(cardA.resolve("IMG_0002.JPG"), new byte[]{4});
+
+            CardIngest.CardResult again = CardIngest.builder(archive.toFile()).card(cardA.toFile()).ledger(ledger)
+                    .build().run().get(0);
+            assertEquals(2, again.getFiles());
+            assertEquals(1, again.getKnown());
+            assertEquals(1, again.getIngested());
+            assertEquals(0, again.getDuplicates());
+        }
+    }
+
+    @Test
+    void invalidIngestionsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> CardIngest.builder(archive.toFile()).build());
+        assertThrows(IllegalArgumentException.class,
+                () -> CardIngest.builder(archive.toFile()).card(cardA.toFile()).deviceConcurrency(0).build());
+    }
+
+    @Test
+    void manifestsOfTheSameSecondAreKept() throws Exception {
+        Path first = CardIngest.writeManifest(archive, "20230514_101530_1_DCIM", "sha256",
+                Collections.singletonList("a"));
+        Path second = CardIngest.writeManifest(archive, "20230514_101530_1_DCIM", "sha256",
+                Collections.singletonList("b"));
+        assertEquals("20230514_101530_1_DCIM-2.sha256", second.getFileName().toString());
+        assertEquals(Collections.singletonList("a"), Files.readAllLines(first, StandardCharsets.UTF_8));
+        assertEquals(Collections.singletonList("b"), Files.readAllLines(second, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DateIndexTest {
+
+    @TempDir
+    Path directory;
+
+    private DateIndex.Entry entry(final String name, final LocalDateTime date) throws Exception {
+        Path file = Files.write(directory.resolve(name), name.getBytes(StandardCharsets.UTF_8));
+        return new DateIndex.Entry(name, Files.readAttributes(file, BasicFileAttributes.class), date);
+    }
+
+    @Test
+    void imagesAreFoundByNameAndRange() throws Exception {
+        DateIndex.write(directory, Arrays.asList(
+                entry("b.jpg", LocalDateTime.of(2023, 5, 14, 10, 15, 30)),
+                entry("a.jpg", LocalDateTime.of(2023, 6, 1, 0, 0)),
+                entry("c.jpg", LocalDateTime.of(2011, 1, 30, 13, 11, 2)),
+                entry("0.jpg", LocalDateTime.of(2023, 5, 1, 0, 0))));
+
+        DateIndex index = DateIndex.read(directory);
+        assertEquals(4, index.size());
+        assertEquals(LocalDateTime.of(2011, 1, 30, 13, 11, 2), index.find("c.jpg").getDate());
+        assertNull(index.find("d.jpg"));
+        assertTrue(index.find("a.jpg").matches(Files.readAttributes(directory.resolve("a.jpg"),
+                BasicFileAttributes.class)));
+        Files.write(directory.resolve("a.jpg"), new byte[]{1}, StandardOpenOption.APPEND);
+        assertFalse(index.find("a.jpg").matches(Files.readAttributes(directory.resolve("a.jpg"),
+                BasicFileAttributes.class)));
+
+        // the end of a range is exclusive
+        List<String> may = index.select(LocalDateTime.of(2023, 5, 1, 0, 0), LocalDateTime.of(2023, 6, 1, 0, 0))
+                .stream().map(DateIndex.Entry::getName).collect(Collectors.toList());
+        assertEquals(Arrays.asList("0.jpg", "b.jpg"), may);
+        assertTrue(index.select(LocalDateTime.of(2024, 1, 1, 0, 0), LocalDateTime.of(2025, 1, 1, 0, 0)).isEmpty());
+    }
+
+    @Test
+    void brokenIndexIsEmpty() throws Exception {
+        assertEquals(0, DateIndex.read(directory).size());
+        Files.write(directory.resolve(DateIndex.FILE_NAME), new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14,
+                15, 16});
+        assertEquals(0, DateIndex.read(directory).size());
+        assertNull(DateIndex.read(directory).find("a.jpg"));
+
+        // a truncated index must not fail a run
+        DateIndex.write(directory, Arrays.asList(entry("a.jpg", LocalDateTime.of(2023, 5, 14, 10, 15, 30)),
+                entry("b.jpg", LocalDateTime.of(2023, 5, 14, 10, 15, 31))));
+        Path file = directory.resolve(DateIndex.FILE_NAME);
+        byte[] content = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(content, content.length - 10));
+        assertEquals(0, DateIndex.read(directory).size());
+    }
+}
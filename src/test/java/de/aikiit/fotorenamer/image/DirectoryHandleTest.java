@@ -0,0 +1,68 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DirectoryHandleTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void listOnlyMatchingRegularFiles() throws Exception {
+        Files.write(directory.resolve("a.jpg"), new byte[1]);
+        Files.write(directory.resolve("b.txt"), new byte[1]);
+        Files.createDirectory(directory.resolve("c.jpg"));
+
+        try (DirectoryHandle handle = DirectoryHandle.open(directory.toFile())) {
+            List<File> files = handle.list(ImageFilenameFilter::isSuffixExifExtractable);
+            assertEquals(1, files.size());
+            assertEquals(directory.resolve("a.jpg").toFile(), files.get(0));
+            assertTrue(handle.isRegularFile("a.jpg"));
+            assertFalse(handle.isRegularFile("c.jpg"));
+            assertFalse(handle.isRegularFile("missing.jpg"));
+        }
+    }
+
+    @Test
+    void moveNeverReplacesExistingFiles() throws Exception {
+        Files.write(directory.resolve("a.jpg"), new byte[]{1});
+        Files.write(directory.resolve("b.jpg"), new byte[]{2});
+
+        try (DirectoryHandle handle = DirectoryHandle.open(directory.toFile())) {
+            assertThrows(FileAlreadyExistsException.class, () -> handle.move("a.jpg", "b.jpg"));
+            assertArrayEquals(new byte[]{2}, Files.readAllBytes(directory.resolve("b.jpg")));
+
+            handle.move("a.jpg", "c.jpg");
+            assertFalse(handle.exists("a.jpg"));
+            assertTrue(handle.exists("c.jpg"));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import de.aikiit.fotorenamer.exception.DirectoryLockedException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DirectoryLockTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void directoryCanOnlyBeLockedOnce() throws Exception {
+        try (DirectoryLock lock = DirectoryLock.acquire(directory.toFile())) {
+            assertTrue(lock.isFileLocked());
+            assertTrue(Files.exists(directory.resolve(DirectoryLock.LOCK_FILE_NAME)));
+            assertThrows(DirectoryLockedException.class, () -> DirectoryLock.acquire(directory.toFile()));
+            // same directory via a different path
+            assertThrows(DirectoryLockedException.class,
+                    () -> DirectoryLock.acquire(directory.resolve(".").toFile()));
+        }
+        // the lock file is kept, so that no process can lock a deleted one
+        assertTrue(Files.exists(directory.resolve(DirectoryLock.LOCK_FILE_NAME)));
+
+        DirectoryLock again = DirectoryLock.acquire(directory.toFile());
+        again.close();
+        // closing twice is safe
+        again.close();
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.collect.Lists;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DuplicateFinderTest {
+
+    @TempDir
+    Path directory;
+
+    private File write(final String name, final byte[] content) throws Exception {
+        return Files.write(directory.resolve(name), content).toFile();
+    }
+
+    @Test
+    void onlyIdenticalFilesAreGrouped() throws Exception {
+        byte[] content = new byte[3 * DuplicateFinder.BLOCK_SIZE];
+        new Random(7).nextBytes(content);
+        File original = write("a.jpg", content);
+        File copy = write("b.jpg", content.clone());
+
+        // same size and same first and last block, but a different middle
+        byte[] middle = content.clone();
+        middle[DuplicateFinder.BLOCK_SIZE + 1]++;
+        File differentMiddle = write("c.jpg", middle);
+
+        // same size, different last block
+        byte[] tail = content.clone();
+        tail[tail.length - 1]++;
+        File differentTail = write("d.jpg", tail);
+
+        File smaller = write("e.jpg", new byte[10]);
+
+        List<List<File>> duplicates = new DuplicateFinder(new FileTaskRunner(FileTaskRunner.PLATFORM, 1))
+                .find(Lists.newArrayList(smaller, differentTail, differentMiddle, copy, original), File::length,
+                        file -> null);
+
+        assertEquals(1, duplicates.size());
+        assertEquals(Lists.newArrayList(original, copy), duplicates.get(0));
+    }
+
+    @Test
+    void hardLinksAreReportedWithoutReadingThem() throws Exception {
+        byte[] content = new byte[3 * DuplicateFinder.BLOCK_SIZE];
+        new Random(11).nextBytes(content);
+        File original = write("a.jpg", content);
+        File copy = write("c.jpg", content.clone());
+        // does not exist, reading it would fail
+        File link = directory.resolve("b.jpg").toFile();
+        File otherLink = directory.resolve("e.jpg").toFile();
+        File other = write("d.jpg", new byte[10]);
+
+        List<List<File>> duplicates = new DuplicateFinder(new FileTaskRunner(FileTaskRunner.PLATFORM, 1))
+                .find(Lists.newArrayList(original, link, copy, other, otherLink),
+                        file -> content.length, file -> file.equals(link) || file.equals(original) ? "a"
+                                : file.equals(other) || file.equals(otherLink) ? "d" : null);
+
+        assertEquals(2, duplicates.size());
+        assertEquals(Lists.newArrayList(original, link, copy), duplicates.get(0));
+        assertEquals(Lists.newArrayList(other, otherLink), duplicates.get(1));
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ErrorBudgetTest {
+
+    @Test
+    void emptyOrInvalidValuesAreUnlimited() {
+        assertEquals(ErrorBudget.UNLIMITED, ErrorBudget.parse(null));
+        assertEquals(ErrorBudget.UNLIMITED, ErrorBudget.parse(" "));
+        assertEquals(ErrorBudget.UNLIMITED, ErrorBudget.parse("foo"));
+        assertEquals(ErrorBudget.UNLIMITED, ErrorBudget.parse("-3"));
+        assertEquals(ErrorBudget.UNLIMITED, ErrorBudget.parse("120%"));
+        assertFalse(ErrorBudget.UNLIMITED.isExceeded(Long.MAX_VALUE, 1));
+    }
+
+    @Test
+    void absoluteBudget() {
+        ErrorBudget budget = ErrorBudget.parse("2");
+        assertEquals("2", budget.toString());
+        assertFalse(budget.isExceeded(2, 1000));
+        assertTrue(budget.isExceeded(3, 1000));
+    }
+
+    @Test
+    void percentageBudget() {
+        ErrorBudget budget = ErrorBudget.parse(" 10 %");
+        assertFalse(budget.isExceeded(10, 100));
+        assertTrue(budget.isExceeded(11, 100));
+        assertFalse(budget.isExceeded(11, 0));
+    }
+
+    @Test
+    void invalidFactoryArguments() {
+        assertThrows(IllegalArgumentException.class, () -> ErrorBudget.absolute(-1));
+        assertThrows(IllegalArgumentException.class, () -> ErrorBudget.percentage(101));
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class FileCatalogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void entriesAreFoundByName() {
+        FileCatalog catalog = new FileCatalog();
+        int first = catalog.addDirectory(Paths.get("a"));
+        int second = catalog.addDirectory(Paths.get("b"));
+        assertEquals(first, catalog.addDirectory(Paths.get("a")));
+        // beyond the initial capacity
+        for (int i = 0; i < 1000; i++) {
+            catalog.add(i % 2 == 0 ? first : second, "IMG_" + i + ".JPG", null);
+        }
+        catalog.add(first, "Ümlaut ß.jpg", null);
+
+        assertEquals(1001, catalog.size());
+        assertEquals(new File("b", "IMG_999.JPG"), catalog.getFile(999));
+        assertEquals(999, catalog.indexOf(new File("b", "IMG_999.JPG")));
+        assertEquals(-1, catalog.indexOf(new File("a", "IMG_999.JPG")));
+        assertEquals(-1, catalog.indexOf(new File("c", "IMG_999.JPG")));
+        assertEquals(1000, catalog.indexOf(new File("a", "Ümlaut ß.jpg")));
+        assertEquals("Ümlaut ß.jpg", catalog.getName(1000));
+        assertNull(catalog.getAttributes(0));
+    }
+
+    @Test
+    void datesAndStatusesArePacked() {
+        FileCatalog catalog = FileCatalog.of(ImmutableList.of(new File("a.jpg"), new File("b.jpg")));
+        LocalDateTime date = LocalDateTime.of(2011, 1, 30, 13, 11, 2);
+        catalog.setDate(0, date);
+        catalog.setStatus(0, FileResult.Status.RENAMED);
+        catalog.setStatus(1, FileCatalog.MISSING);
+
+        assertEquals(date, catalog.getDate(0));
+        assertNull(catalog.getDate(1));
+        assertEquals(FileResult.Status.RENAMED, catalog.getResult(0));
+        assertNull(catalog.getResult(1));
+        assertEquals(FileCatalog.MISSING, catalog.getStatus(1));
+    }
+
+    @Test
+    void attributesAreKeptPerSecond() throws Exception {
+        Path file = Files.write(directory.resolve("IMG_0001.JPG"), new byte[42]);
+        FileTime modified = FileTime.from(1_296_393_062_123L, TimeUnit.MILLISECONDS);
+        Files.setLastModifiedTime(file, modified);
+        Files.write(directory.resolve("notes.txt"), new byte[1]);
+
+        FileCatalog catalog;
+        try (DirectoryHandle handle = DirectoryHandle.open(directory.toFile())) {
+            catalog = handle.catalog(ImageFilenameFilter::isSuffixExifExtractable);
+        }
+        assertEquals(1, catalog.size());
+        BasicFileAttributes attributes = catalog.getAttributes(0);
+        assertEquals(42, attributes.size());
+        assertEquals(42, catalog.getSize(0));
+        assertEquals(FileTime.from(1_296_393_062L, TimeUnit.SECONDS), attributes.lastModifiedTime());
+        assertEquals(file.toFile(), catalog.getFile(0));
+    }
+
+    @Test
+    void pendingEntriesAreGrouped() {
+        FileCatalog catalog = FileCatalog.of(ImmutableList.of(new File("IMG_2.xmp"), new File("IMG_1.JPG"),
+                new File("IMG_2.JPG"), new File("IMG_1.CR2"), new File("IMG_1.xmp"), new File("IMG_3.thm")));
+        catalog.setStatus(2, FileResult.Status.DUPLICATE);
+
+        assertEquals(1, catalog.group());
+        assertEquals(3, catalog.getPrimary(0));
+        assertEquals(ImmutableList.of(new File("IMG_1.CR2"), new File("IMG_1.JPG"), new File("IMG_1.xmp")),
+                catalog.getGroup(0).getMembers());
+        assertEquals(1, catalog.getGroup(0).getIndex(1));
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileGroupTest {
+
+    @Test
+    void filesAreGroupedByDirectoryAndBaseName() {
+        File jpeg = new File("a", "IMG_0001.JPG");
+        File raw = new File("a", "IMG_0001.NEF");
+        File xmp = new File("a", "IMG_0001.xmp");
+        File other = new File("b", "IMG_0001.JPG");
+        File orphan = new File("a", "IMG_0002.THM");
+
+        List<FileGroup> groups = FileGroup.group(ImmutableList.of(xmp, jpeg, raw, other, orphan));
+
+        assertEquals(2, groups.size());
+        assertEquals(raw, groups.get(0).getPrimary());
+        assertEquals(ImmutableList.of(raw, xmp, jpeg), groups.get(0).getMembers());
+        assertEquals(ImmutableList.of(other), groups.get(1).getMembers());
+    }
+
+    @Test
+    void sidecarsAreRecognisedByExtension() {
+        assertTrue(FileGroup.isSidecar("IMG_0001.XMP"));
+        assertTrue(FileGroup.isSidecar("IMG_0001.thm"));
+        assertFalse(FileGroup.isSidecar("IMG_0001.JPG"));
+        assertFalse(FileGroup.isSidecar("xmp"));
+    }
+}
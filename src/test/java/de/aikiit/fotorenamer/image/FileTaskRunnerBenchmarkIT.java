@@ -0,0 +1,97 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.collect.Lists;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the throughput of platform and virtual threads on a slow
+ * filesystem, e.g. a NAS share, that is simulated by a fixed latency per
+ * file. Runs against the packaged multi-release JAR via
+ * <code>mvn verify -Pbenchmark</code>, the virtual thread variant is only
+ * available when running on Java 21 or newer.
+ */
+class FileTaskRunnerBenchmarkIT {
+
+    private static final Logger LOG = LogManager.getLogger(FileTaskRunnerBenchmarkIT.class);
+
+    private static final int FILES = 500;
+    private static final long LATENCY_MILLIS = 20;
+
+    @TempDir
+    Path directory;
+
+    private long measure(final String mode, final List<File> files) {
+        final LongAdder bytes = new LongAdder();
+        final FileTaskRunner runner = new FileTaskRunner(mode, FileTaskRunner.DEFAULT_IN_FLIGHT);
+        long start = System.nanoTime();
+        runner.run(files, file -> {
+            try {
+                // simulated round trip of a remote filesystem
+                Thread.sleep(LATENCY_MILLIS);
+                bytes.add(Files.readAllBytes(file.toPath()).length);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals(files.size() * 16L, bytes.sum());
+        LOG.info("{} threads: {} files in {} ms ({} files/s)", runner.getMode(), files.size(), millis,
+                files.size() * 1000L / Math.max(1, millis));
+        return millis;
+    }
+
+    @Test
+    void compareThreadModesOnSlowFilesystem() throws Exception {
+        List<File> files = Lists.newArrayList();
+        for (int i = 0; i < FILES; i++) {
+            Path file = directory.resolve("IMG_" + i + ".jpg");
+            Files.write(file, new byte[16]);
+            files.add(file.toFile());
+        }
+
+        // warm up both code paths
+        measure(FileTaskRunner.PLATFORM, files.subList(0, 50));
+        measure(FileTaskRunner.VIRTUAL, files.subList(0, 50));
+
+        long platform = measure(FileTaskRunner.PLATFORM, files);
+        long virtual = measure(FileTaskRunner.VIRTUAL, files);
+        LOG.info("Virtual threads speed-up: {}", String.format("%.1fx", platform / (double) Math.max(1, virtual)));
+
+        if (FileTaskRunner.isVirtualThreadSupported()
+                && Runtime.getRuntime().availableProcessors() < FileTaskRunner.DEFAULT_IN_FLIGHT) {
+            assertTrue(virtual < platform, "Virtual threads should outperform the common pool on blocking I/O");
+        }
+    }
+}
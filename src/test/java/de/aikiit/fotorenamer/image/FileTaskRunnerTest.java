@@ -0,0 +1,66 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.collect.Lists;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileTaskRunnerTest {
+
+    @Test
+    void allFilesAreProcessed() {
+        List<File> files = Lists.newArrayList();
+        for (int i = 0; i < 100; i++) {
+            files.add(new File("file" + i + ".jpg"));
+        }
+        Set<File> processed = ConcurrentHashMap.newKeySet();
+
+        new FileTaskRunner(FileTaskRunner.VIRTUAL, 4).run(files, processed::add);
+        assertEquals(files.size(), processed.size());
+
+        processed.clear();
+        new FileTaskRunner(FileTaskRunner.PLATFORM, 8, true).run(files, processed::add);
+        assertEquals(files.size(), processed.size());
+    }
+
+    @Test
+    void modeFallsBackWithoutVirtualThreads() {
+        FileTaskRunner runner = new FileTaskRunner(FileTaskRunner.VIRTUAL, 1);
+        assertEquals(FileTaskRunner.isVirtualThreadSupported() ? FileTaskRunner.VIRTUAL : FileTaskRunner.PLATFORM,
+                runner.getMode());
+        assertEquals(FileTaskRunner.PLATFORM, new FileTaskRunner(FileTaskRunner.PLATFORM, 1).getMode());
+        assertThrows(IllegalArgumentException.class, () -> new FileTaskRunner(FileTaskRunner.PLATFORM, 0));
+
+        try {
+            System.setProperty(FileTaskRunner.IN_FLIGHT_PROPERTY, "16");
+            assertFalse(FileTaskRunner.fromSystemProperties().isAdaptive());
+            assertEquals(16, FileTaskRunner.fromSystemProperties().getMaxInFlight());
+        } finally {
+            System.clearProperty(FileTaskRunner.IN_FLIGHT_PROPERTY);
+        }
+        assertTrue(FileTaskRunner.fromSystemProperties().isAdaptive());
+    }
+}
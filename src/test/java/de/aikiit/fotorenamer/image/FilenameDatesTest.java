@@ -0,0 +1,77 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FilenameDatesTest {
+
+    @Test
+    void builtInPatterns() {
+        FilenameDates.Match phone = FilenameDates.DEFAULT.match("IMG_20230514_101530.jpg");
+        assertEquals(LocalDateTime.of(2023, 5, 14, 10, 15, 30), phone.getDate());
+        assertTrue(phone.isWithTime());
+
+        assertEquals(LocalDateTime.of(2023, 5, 14, 10, 15, 30),
+                FilenameDates.DEFAULT.match("Screenshot 2023-05-14 at 10.15.30.png").getDate());
+        assertEquals(LocalDateTime.of(2023, 5, 14, 10, 15, 30),
+                FilenameDates.DEFAULT.match("PXL_20230514_101530123.jpg").getDate());
+
+        FilenameDates.Match messenger = FilenameDates.DEFAULT.match("IMG-20230514-WA0001.jpg");
+        assertEquals(LocalDateTime.of(2023, 5, 14, 0, 0), messenger.getDate());
+        assertFalse(messenger.isWithTime());
+
+        assertNull(FilenameDates.DEFAULT.match("IMG_7559.JPG"));
+        assertNull(FilenameDates.DEFAULT.match("IMG_20231314_101530.jpg"));
+    }
+
+    @Test
+    void customPatterns() {
+        FilenameDates dates = FilenameDates.of(ImmutableList.of("scan_(?<day>\\d{2})\\.(?<month>\\d{2})\\.(?<year>\\d{4})"));
+        assertEquals(LocalDateTime.of(1999, 12, 24, 0, 0), dates.match("scan_24.12.1999.png").getDate());
+        assertNull(dates.match("IMG_20230514_101530.jpg"));
+        assertNull(FilenameDates.of(ImmutableList.of()).match("IMG_20230514_101530.jpg"));
+
+        assertThrows(IllegalArgumentException.class, () -> FilenameDates.of(ImmutableList.of("(?<year>\\d{4})")));
+        assertThrows(IllegalArgumentException.class,
+                () -> FilenameDates.of(ImmutableList.of("(?<year>\\d{4})(?<month>\\d{2})(?<day>\\d{2}")));
+    }
+
+    @Test
+    void systemPropertyAddsPatterns() {
+        try {
+            System.setProperty(FilenameDates.SYSTEM_PROPERTY, "x(?<year>\\d{4})(?<month>\\d{2})(?<day>\\d{2}) ; ");
+            FilenameDates dates = FilenameDates.fromSystemProperties();
+            assertEquals(FilenameDates.DEFAULT_PATTERNS.size() + 1, dates.getPatterns().size());
+            assertEquals(LocalDateTime.of(2001, 2, 3, 0, 0), dates.match("x20010203.jpg").getDate());
+
+            System.setProperty(FilenameDates.SYSTEM_PROPERTY, "(?<year>");
+            assertSame(FilenameDates.DEFAULT, FilenameDates.fromSystemProperties());
+        } finally {
+            System.clearProperty(FilenameDates.SYSTEM_PROPERTY);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FolderLayoutTest {
+
+    private static final LocalDateTime DATE = LocalDateTime.of(2011, 1, 30, 13, 11, 2);
+
+    @Test
+    void foldersAreDerivedFromTemplate() {
+        assertEquals("2011/01/30", FolderLayout.DEFAULT.folderFor(DATE));
+        assertEquals("2011/2011-01", FolderLayout.of("yyyy/yyyy-MM").folderFor(DATE));
+        assertEquals("2011/Q1", FolderLayout.of("yyyy/'Q'Q").folderFor(DATE));
+    }
+
+    @Test
+    void invalidTemplatesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> FolderLayout.of(" "));
+        assertThrows(IllegalArgumentException.class, () -> FolderLayout.of("/yyyy"));
+        assertThrows(IllegalArgumentException.class, () -> FolderLayout.of("yyyy//MM"));
+        assertThrows(IllegalArgumentException.class, () -> FolderLayout.of("yyyy/'..'"));
+        assertThrows(IllegalArgumentException.class, () -> FolderLayout.of("yyyy/{"));
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Bytes;
+import de.aikiit.fotorenamer.TestConstants;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HeaderPrefetcherTest {
+
+    private static final Path IMAGE = Paths.get(TestConstants.FULLPATH_TEST_IMG);
+    /**
+     * Position of the EXIF segment in the test image, after the JFIF
+     * segment.
+     */
+    private static final int APP1_POSITION = 20;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Creates a copy of the test image with a padding segment (APP2) of
+     * the given size in front of the EXIF segment.
+     */
+    private File padded(final String name, final int padding) throws IOException {
+        byte[] image = Files.readAllBytes(IMAGE);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(image, 0, APP1_POSITION);
+        for (int remaining = padding; remaining > 0; remaining -= 0xFFFF - 2) {
+            int length = Math.min(remaining, 0xFFFF - 2);
+            out.write(new byte[]{(byte) 0xFF, (byte) 0xE2, (byte) ((length + 2) >> 8), (byte) (length + 2)});
+            out.write(new byte[length]);
+        }
+        out.write(image, APP1_POSITION, image.length - APP1_POSITION);
+        Path file = directory.resolve(name);
+        Files.write(file, out.toByteArray());
+        return file.toFile();
+    }
+
+    @Test
+    void datesAreParsedFromPrefetchedHeaders() throws Exception {
+        LocalDateTime expected = MetaDataExtractor.getCreationDate(IMAGE.toFile());
+        assertNotNull(expected);
+
+        List<File> files = ImmutableList.of(
+                Files.copy(IMAGE, directory.resolve("a.jpg"), StandardCopyOption.REPLACE_EXISTING).toFile(),
+                padded("b.jpg", 10_000),
+                // the EXIF segment ends beyond the first read
+                padded("c.JPG", 3 * HeaderPrefetcher.INITIAL_READ),
+                directory.resolve("d.png").toFile());
+        try (HeaderPrefetcher prefetcher = new HeaderPrefetcher(files, 1)) {
+            assertFalse(prefetcher.contains(files.get(3)));
+            for (File file : files.subList(0, 3)) {
+                assertTrue(prefetcher.contains(file));
+                assertEquals(expected, prefetcher.getCreationDate(file), file.getName());
+            }
+        }
+    }
+
+    @Test
+    void missingFilesAreReported() throws Exception {
+        File missing = directory.resolve("missing.jpg").toFile();
+        File empty = Files.write(directory.resolve("empty.jpg"), new byte[0]).toFile();
+        try (HeaderPrefetcher prefetcher = new HeaderPrefetcher(ImmutableList.of(missing, empty), 4)) {
+            assertThrows(IOException.class, () -> prefetcher.getCreationDate(missing));
+            assertThrows(IOException.class, () -> prefetcher.getCreationDate(empty));
+        }
+    }
+
+    @Test
+    void requiredLengthFollowsTheSegments() throws Exception {
+        byte[] image = Files.readAllBytes(IMAGE);
+        // up to the end of the EXIF segment
+        assertEquals(APP1_POSITION + 2 + 4215, HeaderPrefetcher.requiredLength(image));
+        assertEquals(APP1_POSITION + 2 + 4215, HeaderPrefetcher.requiredLength(Arrays.copyOf(image, 100)));
+        // the next segment's header is cut off
+        assertEquals(40, HeaderPrefetcher.requiredLength(Arrays.copyOf(image, 20)));
+        // image data starts before any EXIF segment
+        byte[] withoutExif = Bytes.concat(Arrays.copyOf(image, APP1_POSITION), new byte[]{(byte) 0xFF, (byte) 0xDA});
+        assertEquals(APP1_POSITION, HeaderPrefetcher.requiredLength(Bytes.concat(withoutExif, new byte[10])));
+        // anything else is left to the parser
+        assertEquals(3, HeaderPrefetcher.requiredLength(new byte[]{'P', 'N', 'G'}));
+    }
+
+    @Test
+    void prefetchingCanBeDisabled() {
+        System.setProperty(HeaderPrefetcher.SYSTEM_PROPERTY, "0");
+        try {
+            assertNull(HeaderPrefetcher.fromSystemProperties(new FileCatalog(), new int[0]));
+        } finally {
+            System.clearProperty(HeaderPrefetcher.SYSTEM_PROPERTY);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IsoBmffReaderTest {
+
+    @TempDir
+    Path directory;
+
+    private static byte[] box(final String type, final byte[]... payloads) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (byte[] payload : payloads) {
+            content.write(payload);
+        }
+        return ByteBuffer.allocate(8 + content.size()).putInt(8 + content.size())
+                .put(type.getBytes(StandardCharsets.US_ASCII)).put(content.toByteArray()).array();
+    }
+
+    private static byte[] fullBox(final String type, final int version, final byte[]... payloads) throws IOException {
+        byte[][] all = new byte[payloads.length + 1][];
+        all[0] = new byte[]{(byte) version, 0, 0, 0};
+        System.arraycopy(payloads, 0, all, 1, payloads.length);
+        return box(type, all);
+    }
+
+    /**
+     * Big-endian TIFF with IFD0 pointing to an EXIF IFD with
+     * DateTimeOriginal.
+     */
+    static byte[] tiff(final String date) {
+        return ByteBuffer.allocate(64).put((byte) 'M').put((byte) 'M').putShort((short) 42).putInt(8)
+                // IFD0 at 8
+                .putShort((short) 1).putShort((short) TiffDateReader.TAG_EXIF_IFD).putShort((short) 4).putInt(1)
+                .putInt(26).putInt(0)
+                // EXIF IFD at 26
+                .putShort((short) 1).putShort((short) TiffDateReader.TAG_DATE_TIME_ORIGINAL).putShort((short) 2)
+                .putInt(20).putInt(44).putInt(0)
+                // value at 44
+                .put((date + "\0").getBytes(StandardCharsets.US_ASCII)).array();
+    }
+
+    private Path heic(final String date) throws IOException {
+        byte[] item = ByteBuffer.allocate(4 + 6 + 64).putInt(6).put("Exif\0\0".getBytes(StandardCharsets.US_ASCII))
+                .put(tiff(date)).array();
+        byte[] ftyp = box("ftyp", "heic".getBytes(StandardCharsets.US_ASCII), new byte[4]);
+        byte[] iinf = fullBox("iinf", 0, new byte[]{0, 1},
+                fullBox("infe", 2, new byte[]{0, 1, 0, 0}, "Exif".getBytes(StandardCharsets.US_ASCII), new byte[1]));
+        int metaSize = fullBox("meta", 0, iinf, iloc(0, 0)).length;
+        int offset = ftyp.length + metaSize + 8;
+        byte[] meta = fullBox("meta", 0, iinf, iloc(offset, item.length));
+
+        Path file = directory.resolve("IMG_0001.HEIC");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(ftyp);
+        out.write(meta);
+        out.write(box("mdat", item));
+        Files.write(file, out.toByteArray());
+        return file;
+    }
+
+    private static byte[] iloc(final int offset, final int length) throws IOException {
+        return fullBox("iloc", 0, ByteBuffer.allocate(18).putShort((short) 0x4400).putShort((short) 1)
+                .putShort((short) 1).putShort((short) 0).putShort((short) 1).putInt(offset).putInt(length).array());
+    }
+
+    @Test
+    void heicDateIsReadFromExifItem() throws Exception {
+        assertEquals(LocalDateTime.of(2021, 6, 15, 8, 30), IsoBmffReader.getCreationDate(heic("2021:06:15 08:30:00")));
+    }
+
+    @Test
+    void videoDateIsReadFromMovieHeader() throws Exception {
+        LocalDateTime utc = LocalDateTime.of(2020, 12, 24, 18, 0, 5);
+        long created = utc.toEpochSecond(ZoneOffset.UTC) + 2082844800L;
+        byte[] mvhd = fullBox("mvhd", 0, ByteBuffer.allocate(8).putInt((int) created).putInt((int) created).array());
+
+        Path file = directory.resolve("clip.mov");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(box("ftyp", "qt  ".getBytes(StandardCharsets.US_ASCII), new byte[4]));
+        out.write(box("mdat", new byte[100_000]));
+        out.write(box("moov", mvhd));
+        Files.write(file, out.toByteArray());
+
+        assertEquals(utc.atOffset(ZoneOffset.UTC).atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime(),
+                IsoBmffReader.getCreationDate(file));
+    }
+
+    @Test
+    void filesWithoutDateOrStructure() throws Exception {
+        Path empty = Files.write(directory.resolve("empty.mp4"), box("ftyp", new byte[8]));
+        assertNull(IsoBmffReader.getCreationDate(empty));
+
+        Path broken = Files.write(directory.resolve("broken.mp4"), ByteBuffer.allocate(8).putInt(100).put(
+                "moov".getBytes(StandardCharsets.US_ASCII)).array());
+        assertThrows(IOException.class, () -> IsoBmffReader.getCreationDate(broken));
+
+        assertTrue(IsoBmffReader.isSupported("IMG_0001.HEIC"));
+        assertFalse(IsoBmffReader.isSupported("IMG_0001.JPG"));
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import de.aikiit.fotorenamer.TestConstants;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+class LinkViewTest {
+
+    @TempDir
+    Path library;
+
+    @TempDir
+    Path view;
+
+    @Test
+    void viewIsMaintainedIncrementally() throws Exception {
+        File image = new File(TestConstants.FULLPATH_TEST_IMG);
+        if (!image.exists()) {
+            image = new File(TestConstants.FULLPATH_TEST_IMG_RENAMED);
+        }
+        Path camera = Files.createDirectories(library.resolve("DCIM/100CANON"));
+        Path source = camera.resolve(TestConstants.PLAIN_FILE_NAME);
+        Files.copy(image.toPath(), source);
+        Files.write(camera.resolve("broken.jpg"), new byte[]{1, 2, 3});
+
+        LinkView linkView = new LinkView(library.toFile(), view.toFile(), FolderLayout.DEFAULT);
+        LinkView.Result result = linkView.update();
+        assertEquals(1, result.getAdded());
+        assertEquals(1, result.getFailed());
+
+        Path link = view.resolve("2011/01/30/20110130_131102_" + TestConstants.PLAIN_FILE_NAME);
+        assertTrue(Files.isSameFile(source, link));
+        assertTrue(Files.exists(source));
+
+        // only the broken image is read again
+        result = linkView.update();
+        assertEquals(0, result.getAdded());
+        assertEquals(1, result.getUnchanged());
+        assertEquals(1, result.getFailed());
+
+        Files.delete(source);
+        result = linkView.update();
+        assertEquals(1, result.getRemoved());
+        assertFalse(Files.exists(link));
+    }
+
+    @Test
+    void unchangedDirectoriesAreNotListed() throws Exception {
+        File image = new File(TestConstants.FULLPATH_TEST_IMG);
+        if (!image.exists()) {
+            image = new File(TestConstants.FULLPATH_TEST_IMG_RENAMED);
+        }
+        Path first = Files.createDirectories(library.resolve("2011/first"));
+        Path second = Files.createDirectories(library.resolve("2011/second"));
+        Files.copy(image.toPath(), first.resolve(TestConstants.PLAIN_FILE_NAME));
+        FileTime lastWeek = FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(7));
+        for (Path directory : new Path[]{library, library.resolve("2011"), first, second}) {
+            Files.setLastModifiedTime(directory, lastWeek);
+        }
+
+        LinkView linkView = new LinkView(library.toFile(), view.toFile(), FolderLayout.DEFAULT);
+        LinkView.Result result = linkView.update();
+        assertEquals(1, result.getAdded());
+        assertEquals(0, result.getSkippedDirectories());
+        assertTrue(Files.exists(view.resolve(LinkView.SNAPSHOT_FILE_NAME)));
+
+        result = linkView.update();
+        assertEquals(1, result.getUnchanged());
+        assertEquals(4, result.getSkippedDirectories());
+
+        // only the changed directory is listed
+        Files.copy(image.toPath(), second.resolve("copy.jpg"));
+        result = linkView.update();
+        assertEquals(1, result.getAdded());
+        assertEquals(1, result.getUnchanged());
+        assertEquals(3, result.getSkippedDirectories());
+        assertTrue(Files.exists(view.resolve("2011/01/30/20110130_131102_copy.jpg")));
+
+        Files.delete(first.resolve(TestConstants.PLAIN_FILE_NAME));
+        result = linkView.update();
+        assertEquals(1, result.getRemoved());
+        assertEquals(1, result.getUnchanged());
+    }
+
+    @Test
+    void linksOfUnreadableDirectoriesAreKept() throws Exception {
+        File image = new File(TestConstants.FULLPATH_TEST_IMG);
+        if (!image.exists()) {
+            image = new File(TestConstants.FULLPATH_TEST_IMG_RENAMED);
+        }
+        Path second = Files.createDirectories(library.resolve("2011/second"));
+        Path nested = Files.createDirectories(second.resolve("nested"));
+        Files.copy(image.toPath(), second.resolve(TestConstants.PLAIN_FILE_NAME));
+        Files.copy(image.toPath(), nested.resolve("nested.jpg"));
+        LinkView linkView = new LinkView(library.toFile(), view.toFile(), FolderLayout.DEFAULT);
+        assertEquals(2, linkView.update().getAdded());
+
+        // modified, so that it is listed again
+        Files.write(second.resolve("notes.txt"), new byte[]{1});
+        assertTrue(second.toFile().setReadable(false, false));
+        try {
+            assumeFalse(Files.isReadable(second), "directories stay readable, e.g. for root");
+            LinkView.Result result = linkView.update();
+            assertEquals(0, result.getRemoved());
+            assertEquals(2, result.getUnchanged());
+            assertTrue(Files.exists(view.resolve("2011/01/30/20110130_131102_" + TestConstants.PLAIN_FILE_NAME)));
+            assertTrue(Files.exists(view.resolve("2011/01/30/20110130_131102_nested.jpg")));
+        } finally {
+            assertTrue(second.toFile().setReadable(true, false));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MemoryBudgetTest {
+
+    @Test
+    void smallFilesPassALargeOne() throws Exception {
+        MemoryBudget budget = new MemoryBudget(100);
+        MemoryBudget.Permit first = budget.acquire(60);
+
+        CompletableFuture<MemoryBudget.Permit> large = CompletableFuture.supplyAsync(() -> budget.acquire(80));
+        assertThrows(TimeoutException.class, () -> large.get(100, TimeUnit.MILLISECONDS));
+
+        // fits into the remainder although the large file waits
+        MemoryBudget.Permit small = budget.acquire(30);
+        assertEquals(90, budget.getInUse());
+        small.close();
+        assertFalse(large.isDone());
+
+        first.close();
+        MemoryBudget.Permit admitted = large.get(5, TimeUnit.SECONDS);
+        assertEquals(80, budget.getInUse());
+        admitted.close();
+        admitted.close();
+        assertEquals(0, budget.getInUse());
+    }
+
+    @Test
+    void oversizedFilesAreProcessedAlone() throws Exception {
+        MemoryBudget budget = new MemoryBudget(100);
+        MemoryBudget.Permit small = budget.acquire(1);
+
+        CompletableFuture<MemoryBudget.Permit> huge = CompletableFuture.supplyAsync(() -> budget.acquire(1000));
+        assertThrows(TimeoutException.class, () -> huge.get(100, TimeUnit.MILLISECONDS));
+        small.close();
+        try (MemoryBudget.Permit permit = huge.get(5, TimeUnit.SECONDS)) {
+            assertEquals(100, permit.getWeight());
+            assertEquals(100, budget.getInUse());
+        }
+        assertThrows(IllegalArgumentException.class, () -> new MemoryBudget(0));
+    }
+
+    @Test
+    void bytesReadAreEstimatedPerFormat() {
+        long size = 60L * 1024 * 1024;
+        assertEquals(size, MetaDataExtractor.estimateBytesRead(new File("IMG_0001.JPG"), size));
+        assertEquals(MetaDataExtractor.HEADER_ESTIMATE, MetaDataExtractor.estimateBytesRead(new File("IMG_0001.CR2"), size));
+        assertEquals(MetaDataExtractor.HEADER_ESTIMATE, MetaDataExtractor.estimateBytesRead(new File("IMG_0001.heic"), size));
+        assertEquals(100, MetaDataExtractor.estimateBytesRead(new File("small.png"), 100));
+        assertTrue(MemoryBudget.getDefault().getBudget() > 0);
+    }
+}
@@ -23,6 +23,7 @@ import org.junit.jupiter.api.Test;
 import java.io.File;
 import java.util.regex.Matcher;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -61,6 +62,16 @@ class MetaDataExtractorTest {
         assertTrue(renamedFile.length() >= minLength);
     }
 
+    @Test
+    void subSecondsAreConvertedToNanos() {
+        assertEquals(420_000_000, MetaDataExtractor.toNanos("'42'"));
+        assertEquals(7_000_000, MetaDataExtractor.toNanos("007 "));
+        assertEquals(123_456_789, MetaDataExtractor.toNanos("1234567891"));
+        assertEquals(0, MetaDataExtractor.toNanos(""));
+        assertEquals(0, MetaDataExtractor.toNanos(null));
+        assertEquals(0, MetaDataExtractor.toNanos("'  '"));
+    }
+
     /**
      * Checks assertion failure with null parameter.
      */
@@ -0,0 +1,98 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PngReaderTest {
+
+    @TempDir
+    Path directory;
+
+    private static byte[] chunk(final String type, final byte[] data) {
+        return ByteBuffer.allocate(12 + data.length).putInt(data.length)
+                .put(type.getBytes(StandardCharsets.US_ASCII)).put(data).putInt(0).array();
+    }
+
+    private Path png(final byte[]... chunks) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(ByteBuffer.allocate(8).putLong(0x89504E470D0A1A0AL).array());
+        out.write(chunk("IHDR", new byte[13]));
+        for (byte[] chunk : chunks) {
+            out.write(chunk);
+        }
+        out.write(chunk("IEND", new byte[0]));
+        return Files.write(directory.resolve("image.png"), out.toByteArray());
+    }
+
+    @Test
+    void dateIsReadFromExifChunk() throws Exception {
+        Path file = png(chunk("IDAT", new byte[100_000]), chunk("eXIf", IsoBmffReaderTest.tiff("2021:06:15 08:30:00")));
+        assertEquals(LocalDateTime.of(2021, 6, 15, 8, 30), PngReader.getCreationDate(file));
+    }
+
+    @Test
+    void dateIsReadFromTextChunks() throws Exception {
+        Path text = png(chunk("tEXt", "Creation Time\u00002019:03:01 12:00:00".getBytes(StandardCharsets.ISO_8859_1)),
+                chunk("IDAT", new byte[10]));
+        assertEquals(LocalDateTime.of(2019, 3, 1, 12, 0), PngReader.getCreationDate(text));
+
+        Path international = png(chunk("iTXt",
+                "Creation Time\u0000\u0000\u0000de\u0000Erstellungszeit\u0000Fri, 1 Mar 2019 12:00:00 GMT"
+                        .getBytes(StandardCharsets.UTF_8)));
+        assertEquals(LocalDateTime.of(2019, 3, 1, 12, 0).atOffset(ZoneOffset.UTC)
+                        .atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime(),
+                PngReader.getCreationDate(international));
+    }
+
+    @Test
+    void invalidExifChunksFallBackToText() throws Exception {
+        Path file = png(chunk("eXIf", new byte[]{'X', 'X', 0, 42, 0, 0, 0, 8}),
+                chunk("tEXt", "Creation Time\u00002019:03:01 12:00:00".getBytes(StandardCharsets.ISO_8859_1)),
+                chunk("IDAT", new byte[10]));
+        assertEquals(LocalDateTime.of(2019, 3, 1, 12, 0), PngReader.getCreationDate(file));
+    }
+
+    @Test
+    void imagesWithoutDateOrSignature() throws Exception {
+        assertNull(PngReader.getCreationDate(png(chunk("tEXt", "Author\u0000hirsch".getBytes(StandardCharsets.US_ASCII)),
+                chunk("IDAT", new byte[10]))));
+        assertNull(PngReader.parse("yesterday"));
+
+        Path broken = Files.write(directory.resolve("broken.png"), new byte[16]);
+        assertThrows(IOException.class, () -> PngReader.getCreationDate(broken));
+
+        assertTrue(PngReader.isPng("IMG_0001.PNG"));
+        assertFalse(PngReader.isPng("IMG_0001.JPG"));
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProcessedLedgerTest {
+
+    private static final String PURPOSE = RenameMode.EXIF_DATE_PREFIX.name();
+
+    @TempDir
+    Path directory;
+
+    private BasicFileAttributes attributes(final Path file) throws Exception {
+        return Files.readAttributes(file, BasicFileAttributes.class);
+    }
+
+    @Test
+    void entriesAreKeptInTheJournalUntilCompacted() throws Exception {
+        File file = directory.resolve("ledger").toFile();
+        Path image = Files.write(directory.resolve("a.jpg"), new byte[]{1, 2, 3});
+
+        try (ProcessedLedger ledger = ProcessedLedger.open(file)) {
+            assertFalse(ledger.contains(PURPOSE, image, attributes(image)));
+            ledger.add(PURPOSE, image, attributes(image));
+            assertTrue(ledger.contains(PURPOSE, image, attributes(image)));
+            assertFalse(ledger.contains(RenameMode.REMOVE_DATE_PREFIX.name(), image, attributes(image)));
+        }
+        assertFalse(file.exists());
+
+        BasicFileAttributes original = attributes(image);
+        try (ProcessedLedger ledger = ProcessedLedger.open(file)) {
+            assertTrue(ledger.contains(PURPOSE, image, original));
+            // a changed file is processed again
+            Files.write(image, new byte[]{4}, StandardOpenOption.APPEND);
+            assertFalse(ledger.contains(PURPOSE, image, attributes(image)));
+        }
+
+        // an interrupted write leaves an incomplete entry behind
+        Files.write(directory.resolve("ledger" + ProcessedLedger.JOURNAL_SUFFIX), new byte[]{1, 2, 3},
+                StandardOpenOption.APPEND);
+        assertEquals(1, ProcessedLedger.compact(file, false));
+        assertTrue(file.exists());
+        assertFalse(Files.exists(directory.resolve("ledger" + ProcessedLedger.JOURNAL_SUFFIX)));
+        try (ProcessedLedger ledger = ProcessedLedger.open(file)) {
+            assertTrue(ledger.contains(PURPOSE, image, original));
+            assertEquals(1, ledger.getConfirmed());
+        }
+    }
+
+    @Test
+    void entriesAfterAnInterruptedWriteAreKept() throws Exception {
+        File file = directory.resolve("ledger").toFile();
+        Path first = Files.write(directory.resolve("a.jpg"), new byte[]{1});
+        Path second = Files.write(directory.resolve("b.jpg"), new byte[]{2});
+        try (ProcessedLedger ledger = ProcessedLedger.open(file)) {
+            ledger.add(PURPOSE, first, attributes(first));
+        }
+        Files.write(directory.resolve("ledger" + ProcessedLedger.JOURNAL_SUFFIX), new byte[]{1, 2, 3},
+                StandardOpenOption.APPEND);
+
+        // the incomplete entry is cut off before the next one is appended
+        try (ProcessedLedger ledger = ProcessedLedger.open(file)) {
+            ledger.add(PURPOSE, second, attributes(second));
+        }
+        try (ProcessedLedger ledger = ProcessedLedger.open(file)) {
+            assertTrue(ledger.contains(PURPOSE, first, attributes(first)));
+            assertTrue(ledger.contains(PURPOSE, second, attributes(second)));
+        }
+        assertEquals(2, ProcessedLedger.compact(file, false));
+    }
+
+    @Test
+    void newFilesAreToldApartInMemory() throws Exception {
+        File file = directory.resolve("ledger").toFile();
+        BasicFileAttributes attributes = attributes(Files.write(directory.resolve("a.jpg"), new byte[]{1}));
+        int entries = 5 * ProcessedLedger.FENCE_INTERVAL + 17;
+        try (ProcessedLedger ledger = ProcessedLedger.open(file)) {
+            for (int i = 0; i < entries; i++) {
+                ledger.add(PURPOSE, directory.resolve("archive/IMG_" + i + ".JPG"), attributes);
+            }
+            // duplicates are remembered once
+            ledger.add(PURPOSE, directory.resolve("archive/IMG_0.JPG"), attributes);
+        }
+        assertEquals(entries, ProcessedLedger.compact(file, false));
+
+        try (ProcessedLedger ledger = ProcessedLedger.open(file)) {
+            for (int i = 0; i < entries; i++) {
+                assertTrue(ledger.contains(PURPOSE, directory.resolve("archive/IMG_" + i + ".JPG"), attributes));
+            }
+            assertEquals(entries, ledger.getConfirmed());
+            int unknown = 1000;
+            for (int i = 0; i < unknown; i++) {
+                assertFalse(ledger.contains(PURPOSE, directory.resolve("new/IMG_" + i + ".JPG"), attributes));
+            }
+            assertTrue(ledger.getFiltered() > unknown * 0.95, "filtered: " + ledger.getFiltered());
+        }
+    }
+
+    @Test
+    void compactionPrunesFilesThatAreGoneOrChanged() throws Exception {
+        File file = directory.resolve("ledger").toFile();
+        Path kept = Files.write(directory.resolve("kept.jpg"), new byte[]{1});
+        Path removed = Files.write(directory.resolve("removed.jpg"), new byte[]{2});
+        Path changed = Files.write(directory.resolve("changed.jpg"), new byte[]{3});
+        try (ProcessedLedger ledger = ProcessedLedger.open(file)) {
+            ledger.add(PURPOSE, kept, attributes(kept));
+            ledger.add(PURPOSE, removed, attributes(removed));
+            ledger.add(PURPOSE, changed, attributes(changed));
+        }
+        assertEquals(3, ProcessedLedger.compact(file, false));
+        Files.delete(removed);
+        Files.setLastModifiedTime(changed, FileTime.fromMillis(0));
+
+        assertEquals(1, ProcessedLedger.compact(file, true));
+        try (ProcessedLedger ledger = ProcessedLedger.open(file)) {
+            assertTrue(ledger.contains(PURPOSE, kept, attributes(kept)));
+        }
+    }
+
+    @Test
+    void invalidLedgersAreRejected() throws Exception {
+        Path file = Files.write(directory.resolve("ledger"), new byte[32]);
+        assertThrows(IOException.class, () -> ProcessedLedger.open(file.toFile()));
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Compares listing and inode order on a spinning disk that is simulated by
+ * a single head: a read close to the previous one costs a little transfer
+ * time, any other read a seek that grows with the distance in inode
+ * numbers. The hashed listing order of e.g. ext4 is simulated by shuffling
+ * the listing. Runs via <code>mvn verify -Pbenchmark</code>.
+ */
+class ProcessingOrderBenchmarkIT {
+
+    private static final Logger LOG = LogManager.getLogger(ProcessingOrderBenchmarkIT.class);
+
+    private static final int FILES = 400;
+    private static final int WORKERS = 4;
+    private static final long SEQUENTIAL_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long MIN_SEEK_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final long FULL_STROKE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long READ_AHEAD = 8;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * A disk with a single head, so that concurrent reads are served one
+     * after another.
+     */
+    private static final class SimulatedDisk {
+        private final long span;
+        private long head;
+
+        SimulatedDisk(final long first, final long last) {
+            this.span = Math.max(1, last - first);
+            this.head = first;
+        }
+
+        synchronized void read(final long inode) {
+            long distance = Math.abs(inode - head);
+            long nanos = distance <= READ_AHEAD ? SEQUENTIAL_NANOS
+                    : MIN_SEEK_NANOS + (FULL_STROKE_NANOS - MIN_SEEK_NANOS) * distance / span;
+            LockSupport.parkNanos(nanos);
+            head = inode;
+        }
+    }
+
+    private long measure(final ProcessingOrder order, final List<File> files, final Map<File, Long> inodes,
+                         final SimulatedDisk disk) {
+        FileTaskRunner runner = new FileTaskRunner(FileTaskRunner.PLATFORM, WORKERS, true);
+        List<List<File>> tasks = order.arrange(files, inodes::get);
+        long start = System.nanoTime();
+        runner.run(tasks, chunk -> chunk.forEach(file -> disk.read(inodes.get(file))));
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        LOG.info("{} order: {} files in {} ms ({} files/s)", order, files.size(), millis,
+                files.size() * 1000L / Math.max(1, millis));
+        return millis;
+    }
+
+    @Test
+    void compareOrdersOnSpinningDisk() throws Exception {
+        for (int i = 0; i < FILES; i++) {
+            Files.write(directory.resolve("IMG_" + i + ".jpg"), new byte[16]);
+        }
+        FileCatalog catalog;
+        try (DirectoryHandle handle = DirectoryHandle.open(directory.toFile())) {
+            catalog = handle.catalog(name -> true);
+        }
+        Map<File, Long> inodes = Maps.newHashMap();
+        for (int i = 0; i < catalog.size(); i++) {
+            inodes.put(catalog.getFile(i), catalog.getInode(i));
+        }
+        assumeTrue(inodes.values().stream().allMatch(inode -> inode >= 0), "file system without inode numbers");
+
+        List<File> files = Lists.newArrayList(catalog.getFiles());
+        Collections.shuffle(files, new Random(42));
+        long first = Collections.min(inodes.values());
+        long last = Collections.max(inodes.values());
+
+        long listingOrder = measure(ProcessingOrder.LISTING, files, inodes, new SimulatedDisk(first, last));
+        long inodeOrder = measure(ProcessingOrder.INODE, files, inodes, new SimulatedDisk(first, last));
+        LOG.info("Inode order speed-up: {}", String.format("%.1fx", listingOrder / (double) Math.max(1, inodeOrder)));
+
+        assertTrue(inodeOrder < listingOrder, "Inode order should reduce the seeks of a spinning disk");
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ProcessingOrderTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void listingOrderIsKept() {
+        List<List<String>> tasks = ProcessingOrder.LISTING.arrange(ImmutableList.of("b", "a", "c"), item -> {
+            throw new AssertionError("inode numbers are not needed in listing order");
+        });
+        assertEquals(ImmutableList.of(ImmutableList.of("b"), ImmutableList.of("a"), ImmutableList.of("c")), tasks);
+    }
+
+    @Test
+    void inodeOrderIsChunked() {
+        List<Long> items = Lists.newArrayList();
+        for (long i = 40; i > 0; i--) {
+            items.add(i);
+        }
+        // unknown inode numbers go last, in listing order
+        items.add(0, -2L);
+        items.add(-1L);
+
+        List<List<Long>> tasks = ProcessingOrder.INODE.arrange(items, item -> item < 0 ? ProcessingOrder.UNKNOWN : item);
+        assertEquals(3, tasks.size());
+        assertEquals(ProcessingOrder.CHUNK_SIZE, tasks.get(0).size());
+        assertEquals(1L, tasks.get(0).get(0));
+        assertEquals(ImmutableList.of(33L, 34L, 35L, 36L, 37L, 38L, 39L, 40L, -2L, -1L), tasks.get(2));
+    }
+
+    @Test
+    void inodeNumbersAreReadFromTheListing() throws Exception {
+        Files.write(directory.resolve("a.jpg"), new byte[1]);
+        Files.write(directory.resolve("b.jpg"), new byte[1]);
+        FileCatalog catalog;
+        try (DirectoryHandle handle = DirectoryHandle.open(directory.toFile())) {
+            catalog = handle.catalog(name -> true);
+        }
+        Map<File, Long> inodes = Maps.newHashMap();
+        for (int i = 0; i < catalog.size(); i++) {
+            inodes.put(catalog.getFile(i), catalog.getInode(i));
+        }
+        assumeTrue(inodes.values().stream().allMatch(inode -> inode >= 0), "file system without inode numbers");
+
+        File a = directory.resolve("a.jpg").toFile();
+        assertEquals(Files.getAttribute(a.toPath(), "unix:ino"), inodes.get(a));
+        assertNotEquals(inodes.get(a), inodes.get(directory.resolve("b.jpg").toFile()));
+        assertEquals(ProcessingOrder.UNKNOWN, ProcessingOrder.inode(directory.resolve("missing.jpg").toFile(), null));
+    }
+
+    @Test
+    void orderIsConfigurable() {
+        assertEquals(ProcessingOrder.LISTING, ProcessingOrder.fromSystemProperties());
+        System.setProperty(ProcessingOrder.SYSTEM_PROPERTY, "inode");
+        try {
+            assertEquals(ProcessingOrder.INODE, ProcessingOrder.fromSystemProperties());
+            System.setProperty(ProcessingOrder.SYSTEM_PROPERTY, "random");
+            assertEquals(ProcessingOrder.LISTING, ProcessingOrder.fromSystemProperties());
+        } finally {
+            System.clearProperty(ProcessingOrder.SYSTEM_PROPERTY);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimitsTest {
+
+    @Test
+    void limitsAreParsed() {
+        RateLimits limits = new RateLimits("files=20, bytes=50M ,ops=100", null);
+        assertEquals(20, limits.getFilesPerSecond());
+        assertEquals(50 * 1024 * 1024, limits.getBytesPerSecond());
+        assertEquals(100, limits.getOperationsPerSecond());
+        assertEquals("", limits.getSchedule());
+
+        RateLimits unlimited = new RateLimits(RateLimits.UNLIMITED, null);
+        assertEquals(0, unlimited.getFilesPerSecond());
+        assertEquals(0, new RateLimits(null, null).getBytesPerSecond());
+
+        assertThrows(IllegalArgumentException.class, () -> new RateLimits("files", null));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimits("speed=1", null));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimits("bytes=lots", null));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimits(null, "08:00 files=1"));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimits(null, "8-18 files=1"));
+    }
+
+    @Test
+    void scheduleSelectsTheWindowOfTheDay() {
+        RateLimits limits = new RateLimits("files=100", "08:00-18:00 files=20,bytes=1K;22:00-06:00 unlimited");
+
+        limits.applySchedule(LocalTime.of(9, 30));
+        assertEquals(20, limits.getFilesPerSecond());
+        assertEquals(1024, limits.getBytesPerSecond());
+        limits.applySchedule(LocalTime.of(19, 0));
+        assertEquals(100, limits.getFilesPerSecond());
+        assertEquals(0, limits.getBytesPerSecond());
+        limits.applySchedule(LocalTime.of(2, 0));
+        assertEquals(0, limits.getFilesPerSecond());
+
+        // manual changes win until the schedule is followed again
+        limits.setFilesPerSecond(5);
+        assertFalse(limits.isFollowingSchedule());
+        limits.applySchedule(LocalTime.of(9, 30));
+        assertEquals(5, limits.getFilesPerSecond());
+        limits.setFollowingSchedule(true);
+        assertTrue(limits.isFollowingSchedule());
+    }
+
+    @Test
+    void filesAreThrottled() {
+        RateLimits limits = new RateLimits("files=50", null);
+        long start = System.nanoTime();
+        for (int i = 0; i < 11; i++) {
+            limits.acquireFiles(1);
+        }
+        // the first file passes immediately, each further one waits 20 ms
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 150);
+
+        limits.setFilesPerSecond(0);
+        start = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            limits.acquireFiles(1);
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 150);
+    }
+}
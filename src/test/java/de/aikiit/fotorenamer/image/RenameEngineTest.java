@@ -0,0 +1,389 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import com.google.common.base.Strings;
+import de.aikiit.fotorenamer.TestConstants;
+import de.aikiit.fotorenamer.exception.DirectoryLockedException;
+import de.aikiit.fotorenamer.exception.InvalidDirectoryException;
+import de.aikiit.fotorenamer.exception.NoFilesFoundException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RenameEngineTest {
+
+    private static final String RENAMED = "20110130_131102_" + TestConstants.PLAIN_FILE_NAME;
+
+    @TempDir
+    Path directory;
+
+    private void copyTestImage(final String name) throws Exception {
+        File source = new File(TestConstants.FULLPATH_TEST_IMG);
+        if (!source.exists()) {
+            source = new File(TestConstants.FULLPATH_TEST_IMG_RENAMED);
+        }
+        Files.copy(source.toPath(), directory.resolve(name));
+    }
+
+    @Test
+    void invalidJobsAreRejected() throws Exception {
+        RenameEngine engine = new RenameEngine();
+        assertThrows(InvalidDirectoryException.class, () -> engine.prepare(RenameJob.builder(null).build()));
+        assertThrows(NoFilesFoundException.class, () -> engine.prepare(RenameJob.builder(directory.toFile()).build()));
+        assertThrows(IllegalArgumentException.class, () -> RenameJob.builder(directory.toFile()).bufferSize(0).build());
+    }
+
+    @Test
+    void renameAndRevertWithListener() throws Exception {
+        copyTestImage(TestConstants.PLAIN_FILE_NAME);
+        List<FileResult> results = new CopyOnWriteArrayList<>();
+
+        RenameHandle handle = new RenameEngine().prepare(RenameJob.builder(directory.toFile()).build());
+        handle.addListener(results::add);
+        RenameResult result = handle.start().get(30, TimeUnit.SECONDS);
+
+        assertEquals(1, result.getTotalFiles());
+        assertEquals(1, result.getStatistics().getRenamed());
+        assertFalse(result.isAborted());
+        assertNull(result.getReport());
+        assertEquals(1, results.size());
+        assertEquals(FileResult.Status.RENAMED, results.get(0).getStatus());
+        assertTrue(Files.exists(directory.resolve(RENAMED)));
+
+        // a second start does not run the job again
+        assertEquals(result, handle.start().get());
+
+        RenameResult revert = new RenameEngine().submit(RenameJob.builder(directory.toFile())
+                .mode(RenameMode.REMOVE_DATE_PREFIX).build()).getResult().get(30, TimeUnit.SECONDS);
+        assertEquals(1, revert.getStatistics().getRenamed());
+    }
+
+    @Test
+    void collisionsAreCountedAndAbortTheRun() throws Exception {
+        copyTestImage(TestConstants.PLAIN_FILE_NAME);
+        copyTestImage("IMG_0002.JPG");
+        // a blocked target does not depend on the order files are processed in
+        Files.createDirectory(directory.resolve(RENAMED));
+
+        RenameResult result = new RenameEngine().submit(RenameJob.builder(directory.toFile())
+                .errorBudget(ErrorBudget.absolute(0)).build()).getResult().get(30, TimeUnit.SECONDS);
+
+        assertTrue(result.getStatistics().getErrors(ErrorCategory.COLLISION) >= 1);
+        assertTrue(result.isAborted());
+        assertTrue(result.getReport().delete());
+    }
+
+    @Test
+    void directoryIsLockedWhileJobIsRunning() throws Exception {
+        copyTestImage(TestConstants.PLAIN_FILE_NAME);
+        copyTestImage("IMG_0002.JPG");
+        RenameEngine engine = new RenameEngine();
+
+        // without demand the first job blocks after one result
+        RenameHandle first = engine.prepare(RenameJob.builder(directory.toFile()).bufferSize(1).build());
+        RenameFlow.Subscription[] subscription = new RenameFlow.Subscription[1];
+        first.getResults().subscribe(new RenameFlow.Subscriber<FileResult>() {
+            @Override
+            public void onSubscribe(final RenameFlow.Subscription s) {
+                subscription[0] = s;
+            }
+
+            @Override
+            public void onNext(final FileResult item) {
+                // consume
+            }
+
+            @Override
+            public void onError(final Throwable throwable) {
+                // not expected
+            }
+
+            @Override
+            public void onComplete() {
+                // not needed
+            }
+        });
+        first.start();
+
+        RenameHandle second = engine.prepare(RenameJob.builder(directory.toFile()).build());
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> second.start().get(30, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof DirectoryLockedException);
+
+        subscription[0].request(Long.MAX_VALUE);
+        assertEquals(2, first.getResult().get(30, TimeUnit.SECONDS).getTotalFiles());
+        // lock is released afterwards
+        engine.submit(RenameJob.builder(directory.toFile()).mode(RenameMode.REMOVE_DATE_PREFIX).build())
+                .getResult().get(30, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void directoryIsReleasedIfAJobFailsWithAnError() throws Exception {
+        copyTestImage(TestConstants.PLAIN_FILE_NAME);
+        RenameEngine engine = new RenameEngine();
+        RenameHandle handle = engine.prepare(RenameJob.builder(directory.toFile()).build());
+        handle.addListener(result -> {
+            throw new Error("listener failed");
+        });
+
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> handle.start().get(30, TimeUnit.SECONDS));
+        assertEquals("listener failed", failure.getCause().getMessage());
+        assertEquals(0, engine.submit(RenameJob.builder(directory.toFile()).mode(RenameMode.REMOVE_DATE_PREFIX)
+                .build()).getResult().get(30, TimeUnit.SECONDS).getStatistics().getErrorCount());
+    }
+
+    @Test
+    void organizeIntoDateFolders(@TempDir final Path target) throws Exception {
+        copyTestImage(TestConstants.PLAIN_FILE_NAME);
+        Files.write(directory.resolve("no-exif.jpg"), new byte[]{1, 2, 3});
+
+        RenameResult result = new RenameEngine().submit(RenameJob.builder(directory.toFile())
+                        .organizeInto(target.toFile(), FolderLayout.DEFAULT).build())
+                .getResult().get(30, TimeUnit.SECONDS);
+
+        assertEquals(1, result.getStatistics().getRenamed());
+        assertTrue(Files.exists(target.resolve("2011/01/30").resolve(RENAMED)));
+        assertFalse(Files.exists(directory.resolve(TestConstants.PLAIN_FILE_NAME)));
+        assertTrue(Files.exists(directory.resolve("no-exif.jpg")));
+        assertTrue(result.getReport().delete());
+        assertThrows(IllegalArgumentException.class,
+                () -> RenameJob.builder(directory.toFile()).organizeInto(target.toFile(), null).build());
+    }
+
+    @Test
+    void duplicatesAreMovedAsideBeforeRenaming() throws Exception {
+        copyTestImage(TestConstants.PLAIN_FILE_NAME);
+        copyTestImage("IMG_0001 (2).JPG");
+
+        RenameResult result = new RenameEngine().submit(RenameJob.builder(directory.toFile())
+                        .duplicates(DuplicateAction.MOVE_ASIDE).build())
+                .getResult().get(30, TimeUnit.SECONDS);
+
+        assertEquals(1, result.getStatistics().getDuplicates());
+        assertEquals(1, result.getStatistics().getRenamed());
+        assertTrue(Files.exists(directory.resolve(DuplicateAction.FOLDER).resolve(TestConstants.PLAIN_FILE_NAME)));
+        assertTrue(Files.exists(directory.resolve("20110130_131102_IMG_0001 (2).JPG")));
+        assertTrue(result.getReport().delete());
+    }
+
+    @Test
+    void groupIsRenamedWithTheRawDate() throws Exception {
+        copyTestImage("IMG_0001.JPG");
+        Files.write(directory.resolve("IMG_0001.CR2"), IsoBmffReaderTest.tiff("2021:06:15 08:30:00"));
+        Files.write(directory.resolve("IMG_0001.xmp"), new byte[]{1});
+        Files.write(directory.resolve("IMG_0001.THM"), new byte[]{2});
+        Files.write(directory.resolve("orphan.xmp"), new byte[]{3});
+
+        RenameResult result = new RenameEngine().submit(RenameJob.builder(directory.toFile()).build())
+                .getResult().get(30, TimeUnit.SECONDS);
+
+        assertEquals(4, result.getStatistics().getRenamed());
+        for (String extension : new String[]{"JPG", "CR2", "xmp", "THM"}) {
+            assertTrue(Files.exists(directory.resolve("20210615_083000_IMG_0001." + extension)), extension);
+        }
+        assertTrue(Files.exists(directory.resolve("orphan.xmp")));
+    }
+
+    @Test
+    void groupIsNotSplitByACollision() throws Exception {
+        copyTestImage("IMG_0001.JPG");
+        Files.write(directory.resolve("IMG_0001.xmp"), new byte[]{1});
+        Files.write(directory.resolve("20110130_131102_IMG_0001.xmp"), new byte[]{2});
+
+        RenameResult result = new RenameEngine().submit(RenameJob.builder(directory.toFile()).build())
+                .getResult().get(30, TimeUnit.SECONDS);
+
+        assertEquals(0, result.getStatistics().getRenamed());
+        assertEquals(2, result.getStatistics().getErrors(ErrorCategory.COLLISION));
+        assertTrue(Files.exists(directory.resolve("IMG_0001.JPG")));
+        assertTrue(Files.exists(directory.resolve("IMG_0001.xmp")));
+        assertTrue(result.getReport().delete());
+    }
+
+    @Test
+    void filesWithTheSameTargetDoNotReplaceEachOther() throws Exception {
+        // groups are processed in parallel, pairs make a race on a target likely
+        final int pairs = 200;
+        for (int i = 0; i < pairs; i++) {
+            Files.write(directory.resolve("20110130_131102_IMG_" + i + ".jpg"), new byte[]{1});
+            Files.write(directory.resolve("20120101_101010_IMG_" + i + ".jpg"), new byte[]{2});
+        }
+
+        RenameResult result = new RenameEngine().submit(RenameJob.builder(directory.toFile())
+                .mode(RenameMode.REMOVE_DATE_PREFIX).errorBudget(ErrorBudget.absolute(pairs)).build())
+                .getResult().get(30, TimeUnit.SECONDS);
+
+        assertEquals(pairs, result.getStatistics().getRenamed());
+        assertEquals(pairs, result.getStatistics().getErrors(ErrorCategory.COLLISION));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(2 * pairs, files.filter(file -> file.toString().endsWith(".jpg")).count());
+        }
+        assertTrue(result.getReport().delete());
+    }
+
+    @Test
+    void datesAreTakenFromFilenames() throws Exception {
+        Files.write(directory.resolve("IMG_20230514_101530.jpg"), new byte[]{1, 2, 3});
+        Files.write(directory.resolve("IMG-20230514-WA0001.jpg"), new byte[]{1, 2, 3});
+        copyTestImage("IMG-20230514-WA0002.jpg");
+        List<FileResult> results = new CopyOnWriteArrayList<>();
+
+        RenameHandle handle = new RenameEngine().prepare(RenameJob.builder(directory.toFile()).build());
+        handle.addListener(results::add);
+        RenameResult result = handle.start().get(30, TimeUnit.SECONDS);
+
+        assertEquals(3, result.getStatistics().getRenamed());
+        assertEquals(2, result.getStatistics().getDated(DateSource.FILENAME));
+        assertEquals(1, result.getStatistics().getDated(DateSource.METADATA));
+        assertTrue(Files.exists(directory.resolve("20230514_101530_IMG_20230514_101530.jpg")));
+        assertTrue(Files.exists(directory.resolve("20230514_000000_IMG-20230514-WA0001.jpg")));
+        assertTrue(Files.exists(directory.resolve("20110130_131102_IMG-20230514-WA0002.jpg")));
+        for (FileResult fileResult : results) {
+            assertEquals(fileResult.getSource().getName().endsWith("2.jpg") ? DateSource.METADATA
+                    : DateSource.FILENAME, fileResult.getDateSource(), fileResult.toString());
+        }
+    }
+
+    @Test
+    void filesystemDatesAreTheLastResort() throws Exception {
+        Path file = Files.write(directory.resolve("no-exif.jpg"), new byte[]{1, 2, 3});
+        Files.setLastModifiedTime(file, FileTime.from(LocalDateTime.of(2015, 3, 4, 5, 6, 7)
+                .atZone(ZoneId.systemDefault()).toInstant()));
+
+        RenameResult withoutFallback = new RenameEngine().submit(RenameJob.builder(directory.toFile()).build())
+                .getResult().get(30, TimeUnit.SECONDS);
+        assertEquals(1, withoutFallback.getStatistics().getErrors(ErrorCategory.PARSE_ERROR));
+        assertTrue(withoutFallback.getReport().delete());
+
+        RenameResult result = new RenameEngine().submit(RenameJob.builder(directory.toFile())
+                .filesystemDates(true).build()).getResult().get(30, TimeUnit.SECONDS);
+        assertEquals(1, result.getStatistics().getRenamed());
+        assertEquals(1, result.getStatistics().getDated(DateSource.FILESYSTEM));
+        assertTrue(Files.exists(directory.resolve("20150304_050607_no-exif.jpg")));
+    }
+
+    @Test
+    void filesOfEarlierRunsAreSkipped(@TempDir final Path state) throws Exception {
+        copyTestImage(TestConstants.PLAIN_FILE_NAME);
+        Files.write(directory.resolve("IMG_20230514_101530.jpg"), new byte[]{1, 2, 3});
+
+        try (ProcessedLedger ledger = ProcessedLedger.open(state.resolve("ledger").toFile())) {
+            RenameResult first = new RenameEngine().submit(RenameJob.builder(directory.toFile()).ledger(ledger)
+                    .build()).getResult().get(30, TimeUnit.SECONDS);
+            assertEquals(2, first.getStatistics().getRenamed());
+
+            // without the ledger the date would be prefixed twice
+            Files.write(directory.resolve("IMG_20230514_101531.jpg"), new byte[]{4});
+            List<FileResult> results = new CopyOnWriteArrayList<>();
+            RenameHandle handle = new RenameEngine().prepare(RenameJob.builder(directory.toFile()).ledger(ledger)
+                    .build());
+            handle.addListener(results::add);
+            RenameResult second = handle.start().get(30, TimeUnit.SECONDS);
+            assertEquals(1, second.getStatistics().getRenamed());
+            assertEquals(2, second.getStatistics().getKnown());
+            assertEquals(2, results.stream().filter(r -> r.getStatus() == FileResult.Status.KNOWN).count());
+            assertTrue(Files.exists(directory.resolve(RENAMED)));
+            assertTrue(Files.exists(directory.resolve("20230514_101531_IMG_20230514_101531.jpg")));
+        }
+    }
+
+    @Test
+    void runsAreRestrictedToACaptureRange() throws Exception {
+        copyTestImage(TestConstants.PLAIN_FILE_NAME);
+        Files.write(directory.resolve("IMG_20230514_101530.jpg"), new byte[]{1, 2, 3});
+        Files.write(directory.resolve("IMG_20220101_120000.jpg"), new byte[]{4});
+
+        RenameResult first = new RenameEngine().submit(RenameJob.builder(directory.toFile()).ledger(null)
+                .dateIndex(true).captureRange(LocalDateTime.of(2023, 5, 1, 0, 0), LocalDateTime.of(2023, 6, 1, 0, 0))
+                .build()).getResult().get(30, TimeUnit.SECONDS);
+        assertEquals(1, first.getStatistics().getRenamed());
+        assertEquals(2, first.getStatistics().getExcluded());
+        assertTrue(Files.exists(directory.resolve(TestConstants.PLAIN_FILE_NAME)));
+        assertEquals(3, DateIndex.read(directory).size());
+
+        // the image is not read again, its indexed date is outside the range
+        Path image = directory.resolve(TestConstants.PLAIN_FILE_NAME);
+        FileTime modified = Files.getLastModifiedTime(image);
+        Files.write(image, new byte[(int) Files.size(image)]);
+        Files.setLastModifiedTime(image, modified);
+
+        RenameResult second = new RenameEngine().submit(RenameJob.builder(directory.toFile()).ledger(null)
+                .dateIndex(true).captureRange(LocalDateTime.of(2022, 1, 1, 0, 0), LocalDateTime.of(2022, 2, 1, 0, 0))
+                .build()).getResult().get(30, TimeUnit.SECONDS);
+        assertEquals(1, second.getStatistics().getRenamed());
+        assertEquals(2, second.getStatistics().getExcluded());
+        assertEquals(0, second.getStatistics().getErrorCount());
+        assertTrue(Files.exists(directory.resolve("20230514_101530_IMG_20230514_101530.jpg")));
+
+        DateIndex index = DateIndex.read(directory);
+        assertEquals(3, index.size());
+        assertEquals(LocalDateTime.of(2022, 1, 1, 12, 0),
+                index.find("20220101_120000_IMG_20220101_120000.jpg").getDate());
+        assertNull(index.find("IMG_20220101_120000.jpg"));
+    }
+
+    @Test
+    void captureRangeMustNotBeEmpty() {
+        LocalDateTime date = LocalDateTime.of(2023, 5, 1, 0, 0);
+        assertThrows(IllegalArgumentException.class,
+                () -> RenameJob.builder(directory.toFile()).captureRange(date, date).build());
+        assertThrows(IllegalArgumentException.class,
+                () -> RenameJob.builder(directory.toFile()).captureRange(date, null).build());
+    }
+
+    @Test
+    void groupIsRolledBackIfAMemberCannotBeMoved() throws Exception {
+        // the prefixed names of the four-letter extensions exceed the file system's limit of 255 bytes
+        String base = Strings.padEnd("IMG_20230514_101530_", 235, 'x');
+        for (String extension : new String[]{".cr2", ".jpg", ".jpeg", ".heic"}) {
+            Files.write(directory.resolve(base + extension), new byte[]{1});
+        }
+
+        List<FileResult> results = new CopyOnWriteArrayList<>();
+        RenameHandle handle = new RenameEngine().prepare(RenameJob.builder(directory.toFile()).ledger(null).build());
+        handle.addListener(results::add);
+        RenameResult result = handle.start().get(30, TimeUnit.SECONDS);
+
+        // whichever member fails first, the members after it get a result as well
+        assertEquals(4, results.size());
+        assertEquals(4, results.stream().map(FileResult::getSource).distinct().count());
+        assertEquals(0, result.getStatistics().getRenamed());
+        assertTrue(result.getStatistics().getErrors(ErrorCategory.MOVE_FAILED) >= 2);
+        for (String extension : new String[]{".cr2", ".jpg", ".jpeg", ".heic"}) {
+            assertTrue(Files.exists(directory.resolve(base + extension)));
+        }
+        assertTrue(result.getReport().delete());
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RenameStatisticsTest {
+
+    @Test
+    void countersAreUpdatedConcurrently() {
+        RenameStatistics statistics = new RenameStatistics();
+        IntStream.range(0, 1000).parallel().forEach(i -> {
+            statistics.renamed();
+            statistics.failed(ErrorCategory.values()[i % ErrorCategory.values().length], new File("f" + i), null);
+        });
+
+        assertEquals(1000, statistics.getRenamed());
+        assertEquals(1000, statistics.getErrorCount());
+        assertEquals(250, statistics.getErrors(ErrorCategory.COLLISION));
+        assertEquals(750, statistics.getBudgetRelevantErrorCount());
+    }
+
+    @Test
+    void noReportWithoutErrors() {
+        assertNull(new RenameStatistics().writeReport(new File(".")));
+    }
+
+    @Test
+    void reportContainsAllFailures() throws Exception {
+        RenameStatistics statistics = new RenameStatistics();
+        statistics.renamed();
+        statistics.skipped();
+        statistics.failed(ErrorCategory.MOVE_FAILED, new File("a.jpg"), "read-only");
+        statistics.failed(ErrorCategory.NO_EXIF, new File("b.jpg"), null);
+
+        File report = statistics.writeReport(new File("."));
+        assertNotNull(report);
+        try {
+            List<String> lines = Files.readAllLines(report.toPath());
+            assertTrue(lines.contains("# renamed: 1"));
+            assertTrue(lines.contains("# skipped: 1"));
+            assertTrue(lines.contains("# MOVE_FAILED: 1"));
+            assertTrue(lines.contains("MOVE_FAILED\ta.jpg\tread-only"));
+            assertTrue(lines.contains("NO_EXIF\tb.jpg\t"));
+        } finally {
+            Files.delete(report.toPath());
+        }
+    }
+
+    @Test
+    void reportsOfTheSameSecondAreKept() throws Exception {
+        RenameStatistics statistics = new RenameStatistics();
+        statistics.failed(ErrorCategory.COLLISION, new File("a.jpg"), "b.jpg");
+
+        File first = statistics.writeReport(new File("."));
+        File second = statistics.writeReport(new File("."));
+        try {
+            assertNotEquals(first, second);
+            assertTrue(first.exists());
+            assertTrue(second.exists());
+        } finally {
+            Files.delete(first.toPath());
+            Files.delete(second.toPath());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import de.aikiit.fotorenamer.TestConstants;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShootSequencerTest {
+
+    @TempDir
+    Path cardA;
+
+    @TempDir
+    Path cardB;
+
+    @TempDir
+    Path spill;
+
+    @Test
+    void imagesOfAllFoldersAreNumberedInCaptureOrder() throws Exception {
+        File image = new File(TestConstants.FULLPATH_TEST_IMG);
+        if (!image.exists()) {
+            image = new File(TestConstants.FULLPATH_TEST_IMG_RENAMED);
+        }
+        Files.copy(image.toPath(), cardA.resolve(TestConstants.PLAIN_FILE_NAME));
+        Files.write(cardA.resolve("IMG_20230514_101530.jpg"), new byte[]{1});
+        Files.write(cardA.resolve("IMG_0001.JPG"), new byte[]{1, 2, 3});
+        Files.write(cardB.resolve("IMG_20230514_101500.jpg"), new byte[]{2});
+        Files.write(cardB.resolve("IMG_20230514_101500.xmp"), new byte[]{3});
+        Files.write(cardB.resolve("IMG_20230514_101530.jpg"), new byte[]{4});
+
+        // the tiny budget spills every image into a run of its own
+        ShootSequencer sequencer = ShootSequencer.builder().folder(cardA.toFile()).folder(cardB.toFile())
+                .spillDirectory(spill.toFile()).memory(1).filenameDates(FilenameDates.DEFAULT).build();
+        RenameStatistics statistics = sequencer.run();
+
+        assertEquals(5, statistics.getRenamed());
+        assertEquals(1, statistics.getErrorCount());
+        assertTrue(Files.exists(cardA.resolve("20110130_131102_0001.JPG")));
+        assertTrue(Files.exists(cardB.resolve("20230514_101500_0002.jpg")));
+        assertTrue(Files.exists(cardB.resolve("20230514_101500_0002.xmp")));
+        assertEquals(1, Files.readAllBytes(cardA.resolve("20230514_101530_0003.jpg"))[0]);
+        assertEquals(4, Files.readAllBytes(cardB.resolve("20230514_101530_0004.jpg"))[0]);
+        assertTrue(Files.exists(cardA.resolve("IMG_0001.JPG")));
+        try (Stream<Path> files = Files.list(spill)) {
+            assertEquals(0, files.count());
+        }
+
+        // numbered names carry their date, a second run keeps them
+        RenameStatistics again = ShootSequencer.builder().folder(cardA.toFile()).folder(cardB.toFile())
+                .spillDirectory(spill.toFile()).filenameDates(FilenameDates.DEFAULT).build().run();
+        assertEquals(0, again.getRenamed());
+        assertEquals(1, again.getErrorCount());
+        assertTrue(Files.exists(cardA.resolve("20230514_101530_0003.jpg")));
+    }
+
+    @Test
+    void numbersShiftWhenAFolderWithEarlierFramesIsAdded(@TempDir final Path cardC) throws Exception {
+        // a burst: all frames are taken within the same second and ordered by name
+        for (int frame = 1; frame <= 3; frame++) {
+            copyFrame(cardA.resolve("IMG_000" + frame + ".JPG"), frame);
+        }
+        ShootSequencer.Builder builder = ShootSequencer.builder().folder(cardA.toFile())
+                .spillDirectory(spill.toFile()).filenameDates(FilenameDates.DEFAULT);
+        assertEquals(3, builder.build().run().getRenamed());
+        assertEquals(3, lastByte(cardA.resolve("20110130_131102_0003.JPG")));
+
+        // every number of the first card moves on by one, onto the name of the next frame
+        copyFrame(cardC.resolve("0.JPG"), 0);
+        RenameStatistics statistics = builder.folder(cardC.toFile()).build().run();
+
+        assertEquals(4, statistics.getRenamed());
+        assertEquals(0, statistics.getErrorCount());
+        assertEquals(0, lastByte(cardC.resolve("20110130_131102_0001.JPG")));
+        for (int frame = 1; frame <= 3; frame++) {
+            assertEquals(frame, lastByte(cardA.resolve("20110130_131102_000" + (frame + 1) + ".JPG")));
+        }
+        try (Stream<Path> files = Files.list(cardA)) {
+            assertEquals(3, files.filter(file -> file.toString().endsWith(".JPG")).count());
+        }
+        try (Stream<Path> files = Files.list(spill)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    private static void copyFrame(final Path target, final int frame) throws Exception {
+        File image = new File(TestConstants.FULLPATH_TEST_IMG);
+        if (!image.exists()) {
+            image = new File(TestConstants.FULLPATH_TEST_IMG_RENAMED);
+        }
+        Files.copy(image.toPath(), target);
+        Files.write(target, new byte[]{(byte) frame}, StandardOpenOption.APPEND);
+    }
+
+    private static int lastByte(final Path file) throws Exception {
+        byte[] content = Files.readAllBytes(file);
+        return content[content.length - 1];
+    }
+
+    @Test
+    void invalidSequencingsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> ShootSequencer.builder().build());
+        assertThrows(IllegalArgumentException.class,
+                () -> ShootSequencer.builder().folder(cardA.toFile()).memory(0).build());
+        assertThrows(IllegalArgumentException.class,
+                () -> ShootSequencer.builder().folder(cardA.toFile()).folder(cardA.toFile()).build());
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.image;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VerifiedCopyTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void moveCopiesAndDeletesSource() throws Exception {
+        byte[] content = new byte[300_000];
+        new Random(42).nextBytes(content);
+        Path source = directory.resolve("source.jpg");
+        Path target = directory.resolve("target.jpg");
+        Files.write(source, content);
+        Files.setLastModifiedTime(source, FileTime.fromMillis(1296389462000L));
+
+        VerifiedCopy.move(source, target);
+
+        assertFalse(Files.exists(source));
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(1296389462000L, Files.getLastModifiedTime(target).toMillis());
+        assertFalse(Files.exists(directory.resolve(".target.jpg" + VerifiedCopy.PART_SUFFIX)));
+    }
+
+    @Test
+    void existingTargetsAreKept() throws Exception {
+        Path source = directory.resolve("source.jpg");
+        Path target = directory.resolve("target.jpg");
+        Files.write(source, new byte[]{1});
+        Files.write(target, new byte[]{2});
+
+        assertThrows(FileAlreadyExistsException.class, () -> VerifiedCopy.move(source, target));
+        assertTrue(Files.exists(source));
+        assertArrayEquals(new byte[]{2}, Files.readAllBytes(target));
+    }
+
+    @Test
+    void publishingNeverReplacesAFile() throws Exception {
+        Path target = Files.write(directory.resolve("IMG_0001.JPG"), new byte[]{1});
+        Path part = Files.write(directory.resolve(".IMG_0001.JPG" + VerifiedCopy.PART_SUFFIX), new byte[]{2});
+        assertThrows(FileAlreadyExistsException.class, () -> VerifiedCopy.publish(part, target));
+        assertArrayEquals(new byte[]{1}, Files.readAllBytes(target));
+        assertTrue(Files.exists(part));
+
+        Path free = directory.resolve("IMG_0002.JPG");
+        VerifiedCopy.publish(part, free);
+        assertArrayEquals(new byte[]{2}, Files.readAllBytes(free));
+        assertFalse(Files.exists(part));
+    }
+
+    @Test
+    void differingCopiesFailVerification() throws Exception {
+        Path source = directory.resolve("source.jpg");
+        Path copy = directory.resolve("copy.jpg");
+        Files.write(source, new byte[]{1, 2, 3});
+        Files.write(copy, new byte[]{1, 2, 4});
+
+        assertThrows(IOException.class, () -> VerifiedCopy.verify(source, copy));
+        Files.write(copy, new byte[]{1, 2, 3});
+        VerifiedCopy.verify(source, copy);
+    }
+}
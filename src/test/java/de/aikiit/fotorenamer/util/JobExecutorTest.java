@@ -0,0 +1,101 @@
+/**
+ * Copyright 2011, Aiki IT, FotoRenamer
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.aikiit.fotorenamer.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JobExecutorTest {
+
+    /**
+     * Job that blocks until it is cancelled.
+     */
+    private static final class BlockingJob implements JobExecutor.CancellableJob {
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicBoolean ran = new AtomicBoolean(false);
+        private final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+        @Override
+        public void run() {
+            ran.set(true);
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled.set(true);
+            release.countDown();
+        }
+    }
+
+    @Test
+    void invalidConcurrency() {
+        assertThrows(IllegalArgumentException.class, () -> new JobExecutor(0));
+    }
+
+    @Test
+    void concurrencyIsBoundedAndShutdownIsOrderly() throws Exception {
+        JobExecutor executor = new JobExecutor(1);
+        assertEquals(1, executor.getMaxConcurrentJobs());
+
+        BlockingJob first = new BlockingJob();
+        BlockingJob second = new BlockingJob();
+        executor.execute(first);
+        executor.execute(second);
+        assertTrue(first.started.await(5, TimeUnit.SECONDS));
+        assertEquals(1, executor.getRunningJobs());
+        assertEquals(1, executor.getQueuedJobs());
+
+        assertTrue(executor.shutdown(5, TimeUnit.SECONDS));
+        assertTrue(executor.isShutdown());
+        assertTrue(first.cancelled.get());
+        assertTrue(second.cancelled.get());
+        assertFalse(second.ran.get());
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(new BlockingJob()));
+    }
+
+    @Test
+    void plainRunnablesAreExecuted() throws Exception {
+        JobExecutor executor = new JobExecutor(2);
+        AtomicInteger counter = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(3);
+        for (int i = 0; i < 3; i++) {
+            executor.execute(() -> {
+                counter.incrementAndGet();
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(3, counter.get());
+        assertTrue(executor.shutdown(5, TimeUnit.SECONDS));
+    }
+}